@@ -0,0 +1,71 @@
+package commons.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import commons.Configuration;
+
+/**
+ * Measures {@link DefaultConfigurationLoader#load(String)} on configuration
+ * files with the given number of properties, each one preceded by a comment
+ * and followed by a blank line, like the files of conf.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultConfigurationLoaderBenchmark {
+	
+	@Param({"10", "1000"})
+	private int properties;
+	
+	private DefaultConfigurationLoader loader;
+	private File file;
+	
+	@Setup
+	public void setUp() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int property = 0; property < properties; property++) {
+			content.append("# the property number ").append(property).append('\n');
+			content.append("PROPERTY_").append(property).append("=value_").append(property).append('\n');
+			content.append('\n');
+		}
+		file = File.createTempFile("configuration-loader-benchmark", ".conf");
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(content.toString().getBytes());
+		} finally {
+			stream.close();
+		}
+		loader = new DefaultConfigurationLoader();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+	
+	@Benchmark
+	public Configuration load() throws IOException {
+		return loader.load(file.getPath());
+	}
+}
@@ -0,0 +1,62 @@
+package commons.internal;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link LinuxFacade#isRunning(String)} for a process which is running,
+ * the benchmark JVM itself, and for one which is not. Most of the queries are
+ * answered by the last snapshot of the process table, so the cost of reading the
+ * table is measured apart, by a {@link ProcessTable} which is read on every query.
+ * The time of a read depends on the number of processes of the machine, so the
+ * results of different machines must not be compared.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinuxFacadeBenchmark {
+	
+	private static final String RUNNING_PROCESS = "java";
+	
+	private LinuxFacade facade;
+	private ProcessTable uncachedTable;
+	private String missingProcess;
+	
+	@Setup
+	public void setUp() {
+		facade = new LinuxFacade();
+		uncachedTable = new ProcessTable("/proc", 0);
+		missingProcess = "no-such-process-" + System.nanoTime();
+	}
+	
+	@Benchmark
+	public boolean isRunningForRunningProcess() throws IOException {
+		return facade.isRunning(RUNNING_PROCESS);
+	}
+	
+	@Benchmark
+	public boolean isRunningForMissingProcess() throws IOException {
+		return facade.isRunning(missingProcess);
+	}
+	
+	@Benchmark
+	public boolean readProcessTable() throws IOException {
+		return uncachedTable.getSnapshot().contains(RUNNING_PROCESS);
+	}
+}
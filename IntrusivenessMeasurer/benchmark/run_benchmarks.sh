@@ -0,0 +1,44 @@
+#!/bin/bash -e
+
+#
+# Federal University of Campina Grande
+# Distributed Systems Laboratory
+#
+# Author: Armstrong Mardilson da Silva Goes
+# Contact: armstrongmsg@lsd.ufcg.edu.br
+#
+
+#
+# Benchmark runner
+#
+# This program compiles the JMH benchmarks of this directory, with
+# the sources they measure, and runs them with the GC profiler, so
+# the time per operation and the allocation rate are reported.
+# The benchmarks need JDK 8 or newer.
+#
+# usage:
+# run_benchmarks.sh [JMH_OPTIONS]
+#
+# Parameters:
+# JMH_OPTIONS : options passed to JMH, like the regular expression
+# of the benchmarks to be run or -p cpus=512. Run with -h to list them.
+#
+# Environment:
+# BENCHMARK_CLASSPATH : the classpath with the jars of jmh-core,
+# jmh-generator-annprocess, jopt-simple, commons-math3, log4j,
+# slf4j-api and slf4j-log4j12. The default is PROJECT_DIRECTORY/lib/*.
+#
+
+BENCHMARK_DIRECTORY=$(cd "$(dirname "$0")" && pwd)
+PROJECT_DIRECTORY=$(dirname "$BENCHMARK_DIRECTORY")
+BENCHMARK_CLASSPATH=${BENCHMARK_CLASSPATH:-"$PROJECT_DIRECTORY/lib/*"}
+CLASSES_DIRECTORY="$BENCHMARK_DIRECTORY/bin"
+
+rm -rf "$CLASSES_DIRECTORY"
+mkdir -p "$CLASSES_DIRECTORY"
+
+javac -nowarn -cp "$BENCHMARK_CLASSPATH" -sourcepath "$PROJECT_DIRECTORY/src" \
+	-processor org.openjdk.jmh.generators.BenchmarkProcessor \
+	-d "$CLASSES_DIRECTORY" $(find "$BENCHMARK_DIRECTORY" -name "*.java")
+
+java -cp "$CLASSES_DIRECTORY:$BENCHMARK_CLASSPATH" org.openjdk.jmh.Main -prof gc "$@"
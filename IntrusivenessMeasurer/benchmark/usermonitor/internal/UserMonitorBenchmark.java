@@ -0,0 +1,97 @@
+package usermonitor.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import usermonitor.CPUInfo;
+import usermonitor.MemoryInfo;
+import usermonitor.MonitorSnapshot;
+import usermonitor.test.ProcFixtures;
+
+import commons.internal.DefaultConfiguration;
+
+/**
+ * Measures the reads of {@link DefaultUserMonitor} on synthetic /proc files
+ * written by {@link ProcFixtures}, for machines from 4 to 512 CPUs and for
+ * meminfo files from the usual size to a long one, like the files of the
+ * machines with many NUMA nodes and huge page sizes.</br>
+ * </br>
+ * The CPU configurations are read only once while the online CPUs do not
+ * change, so {@link #getCPUInfo()} measures the steady state, while
+ * {@link #getCPUInfoAfterHotplug()} changes the content of the online CPUs
+ * file before each read and measures the parsing of the whole cpuinfo file.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMonitorBenchmark {
+	
+	@Param({"4", "64", "512"})
+	private int cpus;
+	
+	@Param({"53", "2000"})
+	private int memoryInfoLines;
+	
+	private ProcFixtures fixtures;
+	private DefaultUserMonitor monitor;
+	private MonitorSnapshot snapshot;
+	private boolean alternateOnlineFile;
+	
+	@Setup
+	public void setUp() throws IOException {
+		File directory = new File(System.getProperty("java.io.tmpdir"),
+									"user-monitor-benchmark-" + System.nanoTime());
+		fixtures = new ProcFixtures(directory);
+		fixtures.writeMachine(cpus, memoryInfoLines);
+		
+		monitor = new DefaultUserMonitor(new DefaultConfiguration(fixtures.getMonitorProperties()));
+		snapshot = new MonitorSnapshot();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		fixtures.delete();
+	}
+	
+	@Benchmark
+	public MemoryInfo getMemoryInfo() throws IOException {
+		return monitor.getMemoryInfo();
+	}
+	
+	@Benchmark
+	public CPUInfo getCPUInfo() throws IOException {
+		return monitor.getCPUInfo();
+	}
+	
+	@Benchmark
+	public CPUInfo getCPUInfoAfterHotplug() throws IOException {
+		alternateOnlineFile = !alternateOnlineFile;
+		fixtures.writeCPUOnlineFile(cpus, alternateOnlineFile);
+		return monitor.getCPUInfo();
+	}
+	
+	@Benchmark
+	public MonitorSnapshot snapshot() throws IOException {
+		monitor.snapshot(snapshot);
+		return snapshot;
+	}
+}
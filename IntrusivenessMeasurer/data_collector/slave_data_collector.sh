@@ -12,27 +12,40 @@
 # Slave Data Collector
 # 
 # This program collects data about CPU and memory usages by  
-# the given process.
+# the given process and its descendants, like the child JVMs of 
+# a Hadoop benchmark. The data is read directly from the files of 
+# the process under /proc by usermonitor.internal.ProcessDataCollector, 
+# so no process is forked to take a sample.
 #
 # usage: 
 # slave_data_collector PROCESS_PID TIME_BETWEEN_CHECKS OUTPUT_BASE_FILENAME
 #
 # Parameters:
 # PROCESS_PID : the PID of the process to be monitored  
-# TIME_BETWEEN_CHECKS : time between data collects. time is given in seconds.
+# TIME_BETWEEN_CHECKS : time between data collects. time is given in seconds. 
+# If it is MIN:MAX, the time adapts to the activity of the process, between 
+# MIN seconds, while its usage changes, and MAX seconds, while it is stable.
 # OUTPUT_BASE_FILENAME : this radical is used to construct the output file names. 
-# The program creates two files, one for CPU information and other for memory information. 
-# If OUTPUT_BASE_FILENAME is "aaaa", the created files are aaaa.cpu and aaaa.mem
+# The program creates three files, one for CPU information, other for memory information 
+# and other for the remaining process information (resident and virtual memory, page faults, 
+# threads, processes, bytes read from and written to the storage and time between checks). If OUTPUT_BASE_FILENAME 
+# is "aaaa", the created files are aaaa.cpu, aaaa.mem and aaaa.proc
+#
+# Environment:
+# COLLECTOR_CLASSPATH : the classpath of the compiled project and its libraries. 
+# The default is the bin and lib directories of the project.
 #  
 
 # TODO Arguments checking
-# TODO Error handling
 
 PROCESS_PID=$1
 TIME_BETWEEN_CHECKS=$2
 OUTPUT_BASE_FILENAME=$3
-OUTPUT_CPU_FILENAME="$OUTPUT_BASE_FILENAME.cpu"
-OUTPUT_MEMORY_FILENAME="$OUTPUT_BASE_FILENAME.mem"
+
+PROJECT_DIRECTORY="`dirname $0`/.."
+COLLECTOR_CLASSPATH=${COLLECTOR_CLASSPATH:-"$PROJECT_DIRECTORY/bin:$PROJECT_DIRECTORY/lib/*"}
+COLLECTOR_CLASS="usermonitor.internal.ProcessDataCollector"
+LOG_CONFIGURATION="$PROJECT_DIRECTORY/conf/slave/log4j.conf"
 
 DEBUG=true
 DEBUG_FILE_NAME="collector.log"
@@ -54,78 +67,13 @@ function debug
 	fi
 }
 
-function process_is_running
-{
-	if [ ! "`ps axco pid | grep $PROCESS_PID`" = "" ] ; then
-		echo "1"
-	else 
-		echo "0"
-	fi
-}
-
-function get_cpu_consumption
-{
-	echo "`ps -p $PROCESS_PID -o %cpu | sed 1d`"
-}
-
-function get_memory_consumption
-{
-	echo "`ps -p $PROCESS_PID -o %mem | sed 1d`"
-}
-
-function write_cpu_consumption
-{
-	echo "$1" >> $OUTPUT_CPU_FILENAME
-}
-
-function write_memory_consumption
-{
-	echo "$1" >> $OUTPUT_MEMORY_FILENAME
-}
-
-function write_file_header
-{
-	echo "process=$PROCESS_PID" >> "$1"
-	echo "start time=`date "+%d-%m-%Y-%H-%M-%S"`" >> "$1"
-	echo "time between checks=$TIME_BETWEEN_CHECKS" >> "$1"
-}
-
-function write_file_ending
-{
-	echo "stop time=`date "+%d-%m-%Y-%H-%M-%S"`" >> "$1"
-}
-
 debug_startup
 
-touch $OUTPUT_CPU_FILENAME
-touch $OUTPUT_MEMORY_FILENAME
-
 debug "process to monitor : $PROCESS_PID"
-debug "created output files"
 
-write_file_header $OUTPUT_CPU_FILENAME
-write_file_header $OUTPUT_MEMORY_FILENAME
-
-debug "wrote header to output files"
-
-while [ $(process_is_running) -eq 1 ]; do
-
-	CPU_CONSUMPTION=$(get_cpu_consumption)
-	MEMORY_CONSUMPTION=$(get_memory_consumption) 
-
-	write_cpu_consumption $CPU_CONSUMPTION
-	write_memory_consumption $MEMORY_CONSUMPTION
-
-	debug "going sleep : $TIME_BETWEEN_CHECKS"
-
-	sleep $TIME_BETWEEN_CHECKS
-done
+java -Dlog4j.configuration="file:$LOG_CONFIGURATION" -cp "$COLLECTOR_CLASSPATH" $COLLECTOR_CLASS \
+	$PROCESS_PID $TIME_BETWEEN_CHECKS $OUTPUT_BASE_FILENAME >> $DEBUG_FILE_NAME 2>&1
 
 debug "process to monitor stopped"
-
-write_file_ending $OUTPUT_CPU_FILENAME
-write_file_ending $OUTPUT_MEMORY_FILENAME
-
-debug "wrote ending of output files"
 debug "-----------------------------"
 debug "-----------------------------"
@@ -1,6 +1,307 @@
+/*
+   Federal University of Campina Grande
+   Distributed Systems Laboratory
+
+   Author: Armstrong Mardilson da Silva Goes
+   Contact: armstrongmsg@lsd.ufcg.edu.br
+
+   This code is used in a project on the measurement
+   of the intrusiveness of running MapReduce in opportunistic
+   environments.
+*/
+
+/*
+   cpu.c
+
+   This program keeps the given number of threads using the
+   given percentage of a core each, for the given amount of time.
+   Each thread alternates busy and sleeping slices inside periods
+   of 5 milliseconds, so the usage is steady even when it is read
+   at high sampling rates. The percentage is read again from the
+   control file every 100 milliseconds, so it can be changed while
+   the program runs.
+
+   usage:
+
+   cpu threads percentage timeout control_file [core ...]
+
+   Parameters:
+
+	threads:
+		Number of threads which use the CPU.
+		This value must be positive.
+
+	percentage:
+		Percentage of a core used by each thread.
+		This value must be between 0 and 100.
+
+	timeout:
+		Amount of time to use the CPU. Value given in seconds.
+		This value must be non-negative.
+
+	control_file:
+		File which holds the percentage to be used. When its
+		content is not a valid percentage, like while it is being
+		written, the current percentage is kept. It may not exist.
+
+	core:
+		Cores where the threads run. The thread i runs on the
+		core i modulo the number of given cores. When no core is
+		given, the threads run on any core.
+*/
+
+# define _GNU_SOURCE
+
 # include <stdio.h>
+# include <stdlib.h>
+# include <unistd.h>
+# include <string.h>
+# include <signal.h>
+# include <fcntl.h>
+# include <time.h>
+# include <pthread.h>
+# include <sched.h>
+
+# define NANOSECONDS_PER_SECOND 1000000000L
+# define DUTY_CYCLE_PERIOD 5000000L
+# define CONTROL_PERIOD 100000000L
+# define MAXIMUM_PERCENTAGE 100
+
+/*
+  The percentage of a core used by each thread. It is written by the
+  main thread and read by the burning threads once per period.
+*/
+volatile int percentage;
+volatile int running = 1;
 
-int main(void)
+struct worker
 {
+	pthread_t thread;
+	int core;
+};
+
+void print_correct_usage(void);
+void print_invalid_argument(void);
+
+void check_arguments(int argc, const char *const argv[]);
+
+int parse_argument(const char *argument, int minimum, int maximum);
+int read_percentage(int control_file, int current);
+
+void add_nanoseconds(struct timespec *time, long nanoseconds);
+int is_before(const struct timespec *time, const struct timespec *limit);
+void pin(int core);
+void *burn(void *argument);
+
+void print_correct_usage(void)
+{
+	printf("correct usage:\n");
+	printf("cpu threads percentage timeout control_file [core ...]\n");
+}
+
+void print_invalid_argument(void)
+{
+	printf("error\nInvalid argument\n");
+}
+
+void check_arguments(int argc, const char *const argv[])
+{
+	if (argc < 5)
+	{
+		print_correct_usage();
+		exit(1);
+	}
+}
+
+/*
+   Returns the number written in the argument, exiting when it is
+   not a number between minimum and maximum.
+*/
+int parse_argument(const char *argument, int minimum, int maximum)
+{
+	char *end;
+	long value = strtol(argument, &end, 10);
+	if (end == argument || *end != '\0' || value < minimum || value > maximum)
+	{
+		print_invalid_argument();
+		exit(1);
+	}
+	return (int) value;
+}
+
+/*
+   Returns the percentage written in the control file, or the current
+   one if the file does not hold a valid percentage.
+*/
+int read_percentage(int control_file, int current)
+{
+	char content[16];
+	char *end;
+	long value;
+	ssize_t length = pread(control_file, content, sizeof(content) - 1, 0);
+	if (length <= 0)
+	{
+		return current;
+	}
+	content[length] = '\0';
+	value = strtol(content, &end, 10);
+	if (end == content || (*end != '\0' && *end != '\n') || value < 0 || value > MAXIMUM_PERCENTAGE)
+	{
+		return current;
+	}
+	return (int) value;
+}
+
+void add_nanoseconds(struct timespec *time, long nanoseconds)
+{
+	time->tv_nsec += nanoseconds;
+	while (time->tv_nsec >= NANOSECONDS_PER_SECOND)
+	{
+		time->tv_nsec -= NANOSECONDS_PER_SECOND;
+		time->tv_sec++;
+	}
+}
+
+int is_before(const struct timespec *time, const struct timespec *limit)
+{
+	return time->tv_sec < limit->tv_sec
+		|| (time->tv_sec == limit->tv_sec && time->tv_nsec < limit->tv_nsec);
+}
+
+void pin(int core)
+{
+	cpu_set_t cores;
+	CPU_ZERO(&cores);
+	CPU_SET(core, &cores);
+	if (pthread_setaffinity_np(pthread_self(), sizeof(cores), &cores) != 0)
+	{
+		printf("Could not pin a thread to the core %d.\n", core);
+	}
+}
+
+/*
+   Uses the CPU for the current percentage of each period and sleeps
+   until the end of the period. The periods are scheduled by absolute
+   deadlines, so the sleeping overhead does not accumulate. When the
+   thread falls behind, because it was preempted, the next period
+   starts from now.
+*/
+void *burn(void *argument)
+{
+	struct worker *worker = (struct worker *) argument;
+	struct timespec period_start;
+	struct timespec busy_end;
+	struct timespec now;
+
+	if (worker->core >= 0)
+	{
+		pin(worker->core);
+	}
+
+	clock_gettime(CLOCK_MONOTONIC, &period_start);
+	while (running)
+	{
+		busy_end = period_start;
+		add_nanoseconds(&busy_end, DUTY_CYCLE_PERIOD / MAXIMUM_PERCENTAGE * percentage);
+		do
+		{
+			clock_gettime(CLOCK_MONOTONIC, &now);
+		} while (is_before(&now, &busy_end));
+
+		add_nanoseconds(&period_start, DUTY_CYCLE_PERIOD);
+		if (is_before(&now, &period_start))
+		{
+			clock_nanosleep(CLOCK_MONOTONIC, TIMER_ABSTIME, &period_start, NULL);
+		}
+		else
+		{
+			period_start = now;
+		}
+	}
+	return NULL;
+}
+
+/*
+   When handling kill, call this function
+*/
+void kill_handler(int signum)
+{
+	printf("signal:%d\n", signum);
+	exit(signum);
+}
+
+int main(int argc, const char *const argv[])
+{
+	int threads = 0;
+	int timeout = 0;
+	int number_of_cores = 0;
+	int control_file = -1;
+	int i = 0;
+	struct worker *workers;
+	struct timespec deadline;
+	struct timespec next_control;
+
+	check_arguments(argc, argv);
+
+	threads = parse_argument(argv[1], 1, 4096);
+	percentage = parse_argument(argv[2], 0, MAXIMUM_PERCENTAGE);
+	timeout = parse_argument(argv[3], 0, 0x7fffffff);
+	number_of_cores = argc - 5;
+
+	signal(SIGTERM, kill_handler);
+
+	workers = calloc(threads, sizeof(struct worker));
+	if (!workers)
+	{
+		printf("An error occurred when allocating memory.\n");
+		exit(1);
+	}
+	for (i = 0; i < threads; i++)
+	{
+		workers[i].core = number_of_cores > 0
+			? parse_argument(argv[5 + i % number_of_cores], 0, CPU_SETSIZE - 1) : -1;
+	}
+	for (i = 0; i < threads; i++)
+	{
+		if (pthread_create(&workers[i].thread, NULL, burn, &workers[i]) != 0)
+		{
+			printf("Could not create the thread %d.\n", i);
+			exit(1);
+		}
+	}
+
+	clock_gettime(CLOCK_MONOTONIC, &deadline);
+	deadline.tv_sec += timeout;
+	clock_gettime(CLOCK_MONOTONIC, &next_control);
+	while (is_before(&next_control, &deadline))
+	{
+		add_nanoseconds(&next_control, CONTROL_PERIOD);
+		if (!is_before(&next_control, &deadline))
+		{
+			next_control = deadline;
+		}
+		clock_nanosleep(CLOCK_MONOTONIC, TIMER_ABSTIME, &next_control, NULL);
+
+		if (control_file < 0)
+		{
+			control_file = open(argv[4], O_RDONLY);
+		}
+		if (control_file >= 0)
+		{
+			percentage = read_percentage(control_file, percentage);
+		}
+	}
+
+	running = 0;
+	for (i = 0; i < threads; i++)
+	{
+		pthread_join(workers[i].thread, NULL);
+	}
+	if (control_file >= 0)
+	{
+		close(control_file);
+	}
+	free(workers);
+
 	return 0;
 }
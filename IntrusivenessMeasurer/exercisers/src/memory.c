@@ -18,9 +18,14 @@
    amount of time, and then call the free function to free 
    the allocated space.
 
+   When a control file is given, the amount is read again from 
+   it every 100 milliseconds and the memory grows and shrinks 
+   to follow it, in chunks of 1 MB whose pages are touched, so 
+   the resident memory of the program is the given amount.
+
    usage:
 
-   memory amount timeout
+   memory amount timeout [control_file]
 
    Parameters:
    
@@ -31,6 +36,11 @@
 	timeout: 
 		Amount of time to wait until free the memory. Value given in seconds.
 		This value must be non-negative.
+
+	control_file:
+		File which holds the amount of memory to be allocated. When 
+		its content is not a valid amount, like while it is being 
+		written, the current amount is kept. It may not exist.
 */
 
 # include <stdio.h>
@@ -38,12 +48,25 @@
 # include <unistd.h>
 # include <string.h>
 # include <signal.h>
+# include <fcntl.h>
+# include <time.h>
+
+# define CHUNK_SIZE 1048576LL
+# define NANOSECONDS_PER_SECOND 1000000000L
+# define CONTROL_PERIOD 100000000L
 
 /*
   The pointer to the allocated memory in the session
 */
 void *allocated;
 
+/*
+  The chunks allocated while following a control file
+*/
+void **chunks;
+long long number_of_chunks;
+long long capacity;
+
 void print_error_on_allocation(void);
 void print_correct_usage(void);
 void print_invalid_argument(void);
@@ -56,6 +79,14 @@ void check_arguments(int argc, const char *const argv[]);
 int get_memory_to_allocate(const char *const argv[]);
 int get_timeout(const char *const argv[]);
 
+long long parse_amount(const char *argument, long long current);
+long long read_amount(int control_file, long long current);
+void resize(long long amount);
+void free_chunks(void);
+void add_nanoseconds(struct timespec *time, long nanoseconds);
+int is_before(const struct timespec *time, const struct timespec *limit);
+void follow(const char *control_file_name, long long amount, int timeout);
+
 void print_error_on_allocation(void)
 {
 	printf("An error occurred when allocating memory.\n");
@@ -64,7 +95,7 @@ void print_error_on_allocation(void)
 void print_correct_usage(void)
 {
 	printf("correct usage:\n");
-	printf("memory amount timeout\n");
+	printf("memory amount timeout [control_file]\n");
 }
 
 void print_invalid_argument(void)
@@ -90,7 +121,7 @@ void on_free(void)
 
 void check_arguments(int argc, const char *const argv[])
 {
-	if (argc != 3)
+	if (argc != 3 && argc != 4)
 	{
 		print_correct_usage();
 		// FIXME review this value
@@ -122,6 +153,139 @@ int get_timeout(const char *const argv[])
 	return timeout;
 }
 
+/*
+   Returns the amount written in the argument, or the current one if 
+   it is not a non-negative number.
+*/
+long long parse_amount(const char *argument, long long current)
+{
+	char *end;
+	long long value = strtoll(argument, &end, 10);
+	if (end == argument || (*end != '\0' && *end != '\n') || value < 0)
+	{
+		return current;
+	}
+	return value;
+}
+
+long long read_amount(int control_file, long long current)
+{
+	char content[32];
+	ssize_t length = pread(control_file, content, sizeof(content) - 1, 0);
+	if (length <= 0)
+	{
+		return current;
+	}
+	content[length] = '\0';
+	return parse_amount(content, current);
+}
+
+/*
+   Allocates or frees chunks until their size is the first multiple of 
+   the chunk size not less than amount. Each chunk is written, so its 
+   pages are resident. The chunks are big enough to be mapped on their 
+   own by malloc, so a freed chunk is given back to the system.
+*/
+void resize(long long amount)
+{
+	long long target = (amount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	void **resized;
+	void *chunk;
+
+	while (number_of_chunks < target)
+	{
+		if (number_of_chunks == capacity)
+		{
+			capacity = capacity > 0 ? capacity * 2 : 64;
+			resized = realloc(chunks, capacity * sizeof(void *));
+			if (!resized)
+			{
+				print_error_on_allocation();
+				exit(1);
+			}
+			chunks = resized;
+		}
+		chunk = malloc(CHUNK_SIZE);
+		if (!chunk)
+		{
+			print_error_on_allocation();
+			exit(1);
+		}
+		memset(chunk, 1, CHUNK_SIZE);
+		chunks[number_of_chunks++] = chunk;
+	}
+	while (number_of_chunks > target)
+	{
+		free(chunks[--number_of_chunks]);
+	}
+}
+
+void free_chunks(void)
+{
+	resize(0);
+	free(chunks);
+	chunks = NULL;
+	capacity = 0;
+}
+
+void add_nanoseconds(struct timespec *time, long nanoseconds)
+{
+	time->tv_nsec += nanoseconds;
+	while (time->tv_nsec >= NANOSECONDS_PER_SECOND)
+	{
+		time->tv_nsec -= NANOSECONDS_PER_SECOND;
+		time->tv_sec++;
+	}
+}
+
+int is_before(const struct timespec *time, const struct timespec *limit)
+{
+	return time->tv_sec < limit->tv_sec
+		|| (time->tv_sec == limit->tv_sec && time->tv_nsec < limit->tv_nsec);
+}
+
+/*
+   Keeps the amount written in the control file allocated until 
+   the timeout.
+*/
+void follow(const char *control_file_name, long long amount, int timeout)
+{
+	int control_file = -1;
+	struct timespec deadline;
+	struct timespec next_control;
+
+	resize(amount);
+
+	clock_gettime(CLOCK_MONOTONIC, &deadline);
+	deadline.tv_sec += timeout;
+	clock_gettime(CLOCK_MONOTONIC, &next_control);
+	while (is_before(&next_control, &deadline))
+	{
+		add_nanoseconds(&next_control, CONTROL_PERIOD);
+		if (!is_before(&next_control, &deadline))
+		{
+			next_control = deadline;
+		}
+		clock_nanosleep(CLOCK_MONOTONIC, TIMER_ABSTIME, &next_control, NULL);
+
+		if (control_file < 0)
+		{
+			control_file = open(control_file_name, O_RDONLY);
+		}
+		if (control_file >= 0)
+		{
+			amount = read_amount(control_file, amount);
+			resize(amount);
+		}
+	}
+
+	if (control_file >= 0)
+	{
+		close(control_file);
+	}
+	free_chunks();
+}
+
 /*
    When handling kill, call this function
 */
@@ -130,6 +294,7 @@ void kill_handler(int signum)
 	printf("signal:%d\n", signum);
 
 	on_free();
+	free_chunks();
 	exit(signum);
 }
 
@@ -137,11 +302,26 @@ int main(int argc, const char *const argv[])
 {	
 	int memory_to_allocate = 0;
 	int timeout = 0;
+	long long amount_to_follow = 0;
 	check_arguments(argc, argv);
 
-	memory_to_allocate = get_memory_to_allocate(argv);
 	timeout = get_timeout(argv);
 
+	if (argc == 4)
+	{
+		amount_to_follow = parse_amount(argv[1], -1);
+		if (amount_to_follow < 0)
+		{
+			print_invalid_argument();
+			exit(1);
+		}
+		signal(SIGTERM, kill_handler);
+		follow(argv[3], amount_to_follow, timeout);
+		return 0;
+	}
+
+	memory_to_allocate = get_memory_to_allocate(argv);
+
 	signal(SIGTERM, kill_handler);
 
 	on_allocate(memory_to_allocate);
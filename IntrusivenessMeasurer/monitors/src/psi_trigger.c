@@ -0,0 +1,179 @@
+/*
+   Federal University of Campina Grande
+   Distributed Systems Laboratory
+   
+   Author: Armstrong Mardilson da Silva Goes
+   Contact: armstrongmsg@lsd.ufcg.edu.br
+
+   This code is used in a project on the measurement 
+   of the intrusiveness of running MapReduce in opportunistic 
+   environments.
+*/
+
+/*
+   psi_trigger.c
+
+   This program registers a pressure stall information trigger 
+   in one of the files of /proc/pressure and waits for the kernel 
+   to notify that the stall time exceeded the threshold. Each 
+   notification is written to the standard output as a line 
+   containing "pressure", so another process can be woken as soon 
+   as the pressure rises, instead of polling the pressure files.
+   The program runs until it is killed.
+
+   usage:
+
+   psi_trigger file type threshold window
+
+   Parameters:
+
+	file:
+		The pressure file, like /proc/pressure/memory.
+
+	type:
+		"some" or "full".
+
+	threshold:
+		The stall time, in microseconds, which triggers a notification 
+		when it is exceeded in a window.
+
+	window:
+		The length of the window, in microseconds. The kernel accepts 
+		windows from 500000 to 10000000. Processes without the 
+		CAP_SYS_RESOURCE capability may only use multiples of 2000000.
+*/
+
+# include <stdio.h>
+# include <stdlib.h>
+# include <string.h>
+# include <errno.h>
+# include <fcntl.h>
+# include <poll.h>
+# include <unistd.h>
+
+# define TRIGGER_SIZE 128
+
+void print_correct_usage(void);
+void print_invalid_argument(void);
+void print_error(const char *message);
+
+void check_arguments(int argc, const char *const argv[]);
+long get_positive_argument(const char *const argument);
+
+int register_trigger(const char *const file, const char *const type, long threshold, long window);
+void wait_for_pressure(int fd);
+
+void print_correct_usage(void)
+{
+	printf("correct usage:\n");
+	printf("psi_trigger file type threshold window\n");
+}
+
+void print_invalid_argument(void)
+{
+	printf("error\nInvalid argument\n");
+}
+
+void print_error(const char *message)
+{
+	printf("error\n%s: %s\n", message, strerror(errno));
+}
+
+void check_arguments(int argc, const char *const argv[])
+{
+	if (argc != 5)
+	{
+		print_correct_usage();
+		exit(1);
+	}
+
+	if (strcmp(argv[2], "some") != 0 && strcmp(argv[2], "full") != 0)
+	{
+		print_invalid_argument();
+		exit(1);
+	}
+}
+
+long get_positive_argument(const char *const argument)
+{
+	long value = atol(argument);
+	if (value <= 0)
+	{
+		print_invalid_argument();
+		exit(1);
+	}
+	return value;
+}
+
+/*
+   The trigger is kept while the file is open.
+*/
+int register_trigger(const char *const file, const char *const type, long threshold, long window)
+{
+	char trigger[TRIGGER_SIZE];
+	int fd = open(file, O_RDWR | O_NONBLOCK);
+	if (fd < 0)
+	{
+		print_error("Could not open the pressure file");
+		exit(1);
+	}
+
+	snprintf(trigger, TRIGGER_SIZE, "%s %ld %ld", type, threshold, window);
+	if (write(fd, trigger, strlen(trigger) + 1) < 0)
+	{
+		print_error("Could not register the trigger");
+		exit(1);
+	}
+	return fd;
+}
+
+void wait_for_pressure(int fd)
+{
+	struct pollfd descriptor;
+	descriptor.fd = fd;
+	descriptor.events = POLLPRI;
+
+	while (1)
+	{
+		int events = poll(&descriptor, 1, -1);
+		if (events < 0)
+		{
+			if (errno == EINTR)
+			{
+				continue;
+			}
+			print_error("Could not wait for the trigger");
+			exit(1);
+		}
+
+		if (descriptor.revents & POLLERR)
+		{
+			printf("error\nThe pressure file is no longer available.\n");
+			exit(1);
+		}
+
+		if (descriptor.revents & POLLPRI)
+		{
+			printf("pressure\n");
+			fflush(stdout);
+		}
+	}
+}
+
+int main(int argc, const char *const argv[])
+{
+	int fd = 0;
+	long threshold = 0;
+	long window = 0;
+	check_arguments(argc, argv);
+
+	threshold = get_positive_argument(argv[3]);
+	window = get_positive_argument(argv[4]);
+
+	fd = register_trigger(argv[1], argv[2], threshold, window);
+	printf("started\n");
+	fflush(stdout);
+	wait_for_pressure(fd);
+
+	return 0;
+}
@@ -0,0 +1,130 @@
+package commons;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A group of processes whose resource usage is accounted and limited by the
+ * operating system as a whole, like a Linux cgroup. The processes launched
+ * through {@link #confine(String[])} and all their children belong to the group,
+ * so its usage is read from the group itself instead of searching its processes.</br>
+ * </br>
+ * The usage is read by {@link #read()} and kept until the next read. Values which
+ * are not accounted for the group, because the controller is not enabled, are -1.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public interface ControlGroup extends Closeable {
+	
+	/**
+	 * The value of a limit which does not restrict the usage.
+	 */
+	long UNLIMITED = -1;
+	
+	/**
+	 * Returns the directory which represents the group.
+	 */
+	String getPath();
+	
+	/**
+	 * Returns a command which moves itself into the group and then executes the
+	 * given command, so the command runs inside the group from its start.
+	 *
+	 * @param command The program to run and its arguments.
+	 * @throws IllegalArgumentException If command is null or empty.
+	 */
+	String[] confine(String[] command);
+	
+	/**
+	 * Limits the CPU time of the group to quota microseconds in each period.
+	 *
+	 * @param quota The CPU time in microseconds or {@link #UNLIMITED}. A quota
+	 * greater than the period allows the group to use more than one CPU.
+	 * @param period The period in microseconds. It must be positive.
+	 * @throws IOException If the limit could not be written.
+	 * @throws IllegalArgumentException If quota is neither positive nor
+	 * {@link #UNLIMITED} or period is not positive.
+	 */
+	void limitCPU(long quota, long period) throws IOException;
+	
+	/**
+	 * Sets the amount of memory above which the processes of the group are
+	 * throttled and their memory is reclaimed.
+	 *
+	 * @param bytes The amount of memory or {@link #UNLIMITED}.
+	 * @throws IOException If the limit could not be written.
+	 * @throws IllegalArgumentException If bytes is neither non-negative nor
+	 * {@link #UNLIMITED}.
+	 */
+	void limitMemory(long bytes) throws IOException;
+	
+	/**
+	 * Limits the rates the group reads from and writes to the given device.
+	 *
+	 * @param device The device, as "major:minor".
+	 * @param readBytesPerSecond The read rate or {@link #UNLIMITED}.
+	 * @param writtenBytesPerSecond The write rate or {@link #UNLIMITED}.
+	 * @throws IOException If the limit could not be written.
+	 * @throws IllegalArgumentException If device is null or any rate is neither
+	 * positive nor {@link #UNLIMITED}.
+	 */
+	void limitIO(String device, long readBytesPerSecond, long writtenBytesPerSecond) throws IOException;
+	
+	/**
+	 * Reads the current usage of the group.
+	 *
+	 * @throws IOException If the usage could not be read.
+	 */
+	void read() throws IOException;
+	
+	/**
+	 * Returns the CPU time used by the group, in microseconds.
+	 */
+	long getCPUUsage();
+	
+	/**
+	 * Returns the CPU time used by the group in user mode, in microseconds.
+	 */
+	long getUserCPUUsage();
+	
+	/**
+	 * Returns the CPU time used by the group in kernel mode, in microseconds.
+	 */
+	long getSystemCPUUsage();
+	
+	/**
+	 * Returns the amount of memory used by the group, in bytes.
+	 */
+	long getMemoryUsage();
+	
+	/**
+	 * Returns the number of bytes read by the group from all the devices.
+	 */
+	long getReadBytes();
+	
+	/**
+	 * Returns the number of bytes written by the group to all the devices.
+	 */
+	long getWrittenBytes();
+	
+	/**
+	 * Returns true if there is any process in the group.
+	 *
+	 * @throws IOException If the state of the group could not be read.
+	 */
+	boolean isPopulated() throws IOException;
+	
+	/**
+	 * Kills all the processes of the group.
+	 *
+	 * @throws IOException If the processes could not be killed.
+	 */
+	void kill() throws IOException;
+	
+	/**
+	 * Closes the group and removes it from the system. It must have no processes.
+	 *
+	 * @throws IOException If the group could not be removed.
+	 */
+	void delete() throws IOException;
+}
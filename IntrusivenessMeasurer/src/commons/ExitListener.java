@@ -0,0 +1,15 @@
+package commons;
+
+/**
+ * Receives the exit of the processes watched through 
+ * {@link OperatingSystem#watch(SystemProcess, ExitListener)}.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public interface ExitListener {
+	
+	/**
+	 * Called once, by a thread of the system, after the process exited.
+	 */
+	void exited(SystemProcess process);
+}
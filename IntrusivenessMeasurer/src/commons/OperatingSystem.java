@@ -4,5 +4,13 @@ import java.io.IOException;
 
 public interface OperatingSystem {
 	SystemProcess execute(String command) throws IOException;
+	SystemProcess execute(String[] command) throws IOException;
 	boolean isRunning(String processName) throws IOException;
+	
+	/**
+	 * Makes the listener be called when the given process, which must have 
+	 * been executed, exits. All the processes are watched by a single thread, 
+	 * which does not fork any process to check them.
+	 */
+	void watch(SystemProcess process, ExitListener listener);
 }
@@ -0,0 +1,34 @@
+package commons;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Iterates over records of a {@link TimeSeriesStore}. The values of the 
+ * current record are read from the store on demand, so a cursor may scan 
+ * more records than would fit in memory.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public interface TimeSeriesCursor extends Closeable {
+	
+	/**
+	 * Moves the cursor to the next record.
+	 * 
+	 * @return false if there are no more records.
+	 * @throws IOException If the store could not be read.
+	 */
+	boolean next() throws IOException;
+	
+	/**
+	 * Returns the timestamp of the current record.
+	 */
+	long getTimestamp();
+	
+	/**
+	 * Returns the given value of the current record.
+	 * 
+	 * @param index The position of the value, from 0 to the number of values of the store - 1.
+	 */
+	double getValue(int index);
+}
@@ -0,0 +1,47 @@
+package commons;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A persistent store of time series records. Each record has a timestamp and 
+ * a fixed number of values, and the records are kept in the order they were 
+ * appended, so the stored timestamps never decrease.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public interface TimeSeriesStore extends Closeable {
+	
+	/**
+	 * Returns the number of values of each record.
+	 */
+	int getNumberOfValues();
+	
+	/**
+	 * Appends a record to the store.
+	 * 
+	 * @param timestamp The time of the record, in milliseconds. If it is less than 
+	 * the timestamp of the last appended record, like after the clock is stepped 
+	 * back, the record is stored with the last timestamp.
+	 * @param values The values of the record. Only the first 
+	 * {@link #getNumberOfValues()} values are stored.
+	 * @throws IOException If the record could not be written.
+	 * @throws IllegalArgumentException If values has less values than a record.
+	 */
+	void append(long timestamp, double[] values) throws IOException;
+	
+	/**
+	 * Writes the appended records to the storage device.
+	 * 
+	 * @throws IOException If the records could not be written.
+	 */
+	void flush() throws IOException;
+	
+	/**
+	 * Opens a cursor over the records whose timestamps are between from and to, 
+	 * both inclusive, from the oldest to the newest.
+	 * 
+	 * @throws IOException If the store could not be read.
+	 */
+	TimeSeriesCursor scan(long from, long to) throws IOException;
+}
@@ -43,7 +43,11 @@ public class DefaultConfigurationLoader implements ConfigurationLoader {
 		checkFileIsReadable(file);
 		
 		RandomAccessFile configurationFile = new RandomAccessFile(file, "r");
-		return new DefaultConfiguration(readProperties(configurationFile));
+		try {
+			return new DefaultConfiguration(readProperties(configurationFile));
+		} finally {
+			configurationFile.close();
+		}
 	}
 
 	private Properties readProperties(RandomAccessFile configurationFile) throws IOException {
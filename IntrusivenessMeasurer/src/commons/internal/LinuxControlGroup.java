@@ -0,0 +1,395 @@
+package commons.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+import static commons.util.FileUtil.checkFileExist;
+import static commons.util.FileUtil.toPath;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.ControlGroup;
+import commons.util.ProcFileReader;
+
+/**
+ * This is an implementation of {@link ControlGroup} which uses a directory of the
+ * cgroup v2 file system, usually mounted on /sys/fs/cgroup. The group is created
+ * as a child of the given parent directory, whose cgroup.subtree_control is used to
+ * enable the cpu, memory and io controllers for it.</br>
+ * </br>
+ * The usage is read from the cpu.stat, memory.current and io.stat files of the group,
+ * which are kept open and read with {@link ProcFileReader}, so reading the usage costs
+ * the same no matter how many processes the group has and creates no objects. The
+ * files which do not exist, because their controller is not enabled, are opened on
+ * the first read after they appear.</br>
+ * </br>
+ * The limits are written to the cpu.max, memory.high and io.max files. Since the
+ * processes are created without the control of their pid, a confined command is
+ * a shell which writes its own pid to cgroup.procs before executing the command.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class LinuxControlGroup implements ControlGroup {
+	
+	private static Logger logger = LoggerFactory.getLogger(LinuxControlGroup.class);
+	
+	private static final String SUBTREE_CONTROL_FILE = "cgroup.subtree_control";
+	private static final String[] CONTROLLERS = {"cpu", "memory", "io"};
+	private static final String PROCS_FILE = "cgroup.procs";
+	private static final String EVENTS_FILE = "cgroup.events";
+	private static final String KILL_FILE = "cgroup.kill";
+	private static final String CPU_STAT_FILE = "cpu.stat";
+	private static final String MEMORY_CURRENT_FILE = "memory.current";
+	private static final String IO_STAT_FILE = "io.stat";
+	private static final String CPU_MAX_FILE = "cpu.max";
+	private static final String MEMORY_HIGH_FILE = "memory.high";
+	private static final String IO_MAX_FILE = "io.max";
+	private static final String UNLIMITED_VALUE = "max";
+	private static final String SHELL = "/bin/sh";
+	private static final String CONFINING_SCRIPT = "echo $$ > \"$0\" && exec \"$@\"";
+	private static final int BUFFER_SIZE = 512;
+	
+	private static final byte[] USAGE_HEADER = "usage_usec ".getBytes();
+	private static final byte[] USER_HEADER = "user_usec ".getBytes();
+	private static final byte[] SYSTEM_HEADER = "system_usec ".getBytes();
+	private static final byte[] POPULATED_HEADER = "populated ".getBytes();
+	private static final byte[] READ_BYTES_KEY = "rbytes=".getBytes();
+	private static final byte[] WRITTEN_BYTES_KEY = "wbytes=".getBytes();
+	
+	private final String path;
+	
+	private ProcFileReader cpuStatFile;
+	private ProcFileReader memoryCurrentFile;
+	private ProcFileReader ioStatFile;
+	private ProcFileReader eventsFile;
+	
+	private long cpuUsage = -1;
+	private long userCPUUsage = -1;
+	private long systemCPUUsage = -1;
+	private long memoryUsage = -1;
+	private long readBytes = -1;
+	private long writtenBytes = -1;
+	
+	/**
+	 * Creates the group, if it does not exist yet.
+	 *
+	 * @param parentDirectory The directory of the parent group. It must exist.
+	 * @param name The name of the group.
+	 * @throws IOException If the parent directory does not exist or the group
+	 * could not be created.
+	 * @throws IllegalArgumentException If any of the arguments is null.
+	 */
+	public LinuxControlGroup(String parentDirectory, String name) throws IOException {
+		checkNotNull(parentDirectory, "parentDirectory must not be null.");
+		checkNotNull(name, "name must not be null.");
+		checkFileExist(parentDirectory);
+		
+		enableControllers(parentDirectory);
+		this.path = toPath(parentDirectory, name);
+		File directory = new File(path);
+		if (!directory.mkdir() && !directory.isDirectory()) {
+			throw new IOException("Could not create the control group " + path + ".");
+		}
+	}
+	
+	/*
+	 * The controllers are enabled one at a time, since the kernel rejects the whole
+	 * write if any of them is not available.
+	 */
+	private static void enableControllers(String parentDirectory) {
+		String subtreeControl = toPath(parentDirectory, SUBTREE_CONTROL_FILE);
+		if (!new File(subtreeControl).exists()) {
+			logger.warn("{} was not found. The controllers were not enabled.", subtreeControl);
+			return;
+		}
+		for (String controller : CONTROLLERS) {
+			try {
+				write(subtreeControl, "+" + controller);
+			} catch (IOException e) {
+				logger.warn("could not enable the {} controller: {}", controller, e.getMessage());
+			}
+		}
+	}
+	
+	@Override
+	public String getPath() {
+		return path;
+	}
+	
+	@Override
+	public String[] confine(String[] command) {
+		checkNotNull(command, "command must not be null.");
+		check(command.length > 0, "command must not be empty.");
+		
+		String[] confined = new String[command.length + 4];
+		confined[0] = SHELL;
+		confined[1] = "-c";
+		confined[2] = CONFINING_SCRIPT;
+		confined[3] = toPath(path, PROCS_FILE);
+		System.arraycopy(command, 0, confined, 4, command.length);
+		return confined;
+	}
+	
+	@Override
+	public void limitCPU(long quota, long period) throws IOException {
+		check(quota > 0 || quota == UNLIMITED, "quota must be positive or UNLIMITED.");
+		check(period > 0, "period must be positive.");
+		write(toPath(path, CPU_MAX_FILE), toLimit(quota) + " " + period);
+	}
+	
+	@Override
+	public void limitMemory(long bytes) throws IOException {
+		check(bytes >= 0 || bytes == UNLIMITED, "bytes must be non-negative or UNLIMITED.");
+		write(toPath(path, MEMORY_HIGH_FILE), toLimit(bytes));
+	}
+	
+	@Override
+	public void limitIO(String device, long readBytesPerSecond, long writtenBytesPerSecond)
+			throws IOException {
+		checkNotNull(device, "device must not be null.");
+		check(readBytesPerSecond > 0 || readBytesPerSecond == UNLIMITED,
+				"readBytesPerSecond must be positive or UNLIMITED.");
+		check(writtenBytesPerSecond > 0 || writtenBytesPerSecond == UNLIMITED,
+				"writtenBytesPerSecond must be positive or UNLIMITED.");
+		write(toPath(path, IO_MAX_FILE), device + " rbps=" + toLimit(readBytesPerSecond)
+				+ " wbps=" + toLimit(writtenBytesPerSecond));
+	}
+	
+	private static String toLimit(long value) {
+		return value == UNLIMITED ? UNLIMITED_VALUE : String.valueOf(value);
+	}
+	
+	/*
+	 * The control files are created by the kernel, so a missing file means its
+	 * controller is not enabled for the group.
+	 */
+	private static void write(String file, String value) throws IOException {
+		checkFileExist(file);
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(value.getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+	
+	@Override
+	public void read() throws IOException {
+		readCPUStat();
+		readMemoryCurrent();
+		readIOStat();
+	}
+	
+	private void readCPUStat() throws IOException {
+		cpuStatFile = open(cpuStatFile, CPU_STAT_FILE);
+		cpuUsage = -1;
+		userCPUUsage = -1;
+		systemCPUUsage = -1;
+		if (cpuStatFile == null) {
+			return;
+		}
+		cpuStatFile.read();
+		while (cpuStatFile.nextLine()) {
+			if (cpuStatFile.lineStartsWith(USAGE_HEADER)) {
+				cpuUsage = readValue(cpuStatFile, USAGE_HEADER);
+			} else if (cpuStatFile.lineStartsWith(USER_HEADER)) {
+				userCPUUsage = readValue(cpuStatFile, USER_HEADER);
+			} else if (cpuStatFile.lineStartsWith(SYSTEM_HEADER)) {
+				systemCPUUsage = readValue(cpuStatFile, SYSTEM_HEADER);
+			}
+		}
+	}
+	
+	private void readMemoryCurrent() throws IOException {
+		memoryCurrentFile = open(memoryCurrentFile, MEMORY_CURRENT_FILE);
+		memoryUsage = -1;
+		if (memoryCurrentFile == null) {
+			return;
+		}
+		memoryCurrentFile.read();
+		if (memoryCurrentFile.nextLine()) {
+			memoryUsage = memoryCurrentFile.parseLong(memoryCurrentFile.getLineStart(),
+					memoryCurrentFile.getLineEnd());
+		}
+	}
+	
+	/*
+	 * Each line of io.stat holds the counters of a device, like
+	 * "8:0 rbytes=1024 wbytes=512 rios=2 wios=1 dbytes=0 dios=0".
+	 */
+	private void readIOStat() throws IOException {
+		ioStatFile = open(ioStatFile, IO_STAT_FILE);
+		readBytes = -1;
+		writtenBytes = -1;
+		if (ioStatFile == null) {
+			return;
+		}
+		readBytes = 0;
+		writtenBytes = 0;
+		ioStatFile.read();
+		byte[] data = ioStatFile.getData();
+		while (ioStatFile.nextLine()) {
+			int end = ioStatFile.getLineEnd();
+			int position = ioStatFile.skipSpaces(ioStatFile.getLineStart(), end);
+			while (position < end) {
+				int tokenEnd = ioStatFile.tokenEnd(position, end);
+				if (startsWith(data, position, tokenEnd, READ_BYTES_KEY)) {
+					readBytes += parseCounter(ioStatFile, position + READ_BYTES_KEY.length, tokenEnd);
+				} else if (startsWith(data, position, tokenEnd, WRITTEN_BYTES_KEY)) {
+					writtenBytes += parseCounter(ioStatFile, position + WRITTEN_BYTES_KEY.length,
+							tokenEnd);
+				}
+				position = ioStatFile.skipSpaces(tokenEnd, end);
+			}
+		}
+	}
+	
+	private static boolean startsWith(byte[] data, int from, int to, byte[] key) {
+		if (to - from < key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (data[from + i] != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static long readValue(ProcFileReader file, byte[] header) throws IOException {
+		return parseCounter(file, file.getLineStart() + header.length, file.getLineEnd());
+	}
+	
+	private static long parseCounter(ProcFileReader file, int from, int to) throws IOException {
+		long value = file.parseLong(from, to);
+		if (value < 0) {
+			throw new IOException("Invalid input format in " + file.getFilename() + ".");
+		}
+		return value;
+	}
+	
+	private ProcFileReader open(ProcFileReader file, String name) throws IOException {
+		if (file != null) {
+			return file;
+		}
+		String filename = toPath(path, name);
+		if (!new File(filename).exists()) {
+			return null;
+		}
+		return new ProcFileReader(filename, BUFFER_SIZE);
+	}
+	
+	@Override
+	public long getCPUUsage() {
+		return cpuUsage;
+	}
+	
+	@Override
+	public long getUserCPUUsage() {
+		return userCPUUsage;
+	}
+	
+	@Override
+	public long getSystemCPUUsage() {
+		return systemCPUUsage;
+	}
+	
+	@Override
+	public long getMemoryUsage() {
+		return memoryUsage;
+	}
+	
+	@Override
+	public long getReadBytes() {
+		return readBytes;
+	}
+	
+	@Override
+	public long getWrittenBytes() {
+		return writtenBytes;
+	}
+	
+	@Override
+	public boolean isPopulated() throws IOException {
+		eventsFile = open(eventsFile, EVENTS_FILE);
+		if (eventsFile == null) {
+			throw new IOException(toPath(path, EVENTS_FILE) + " was not found.");
+		}
+		eventsFile.read();
+		while (eventsFile.nextLine()) {
+			if (eventsFile.lineStartsWith(POPULATED_HEADER)) {
+				return readValue(eventsFile, POPULATED_HEADER) != 0;
+			}
+		}
+		throw new IOException("Could not find necessary data.");
+	}
+	
+	/*
+	 * cgroup.kill is only available since Linux 5.14. On the older kernels, the
+	 * processes listed in cgroup.procs are killed one by one.
+	 */
+	@Override
+	public void kill() throws IOException {
+		String killFile = toPath(path, KILL_FILE);
+		if (new File(killFile).exists()) {
+			write(killFile, "1");
+			return;
+		}
+		List<String> command = new ArrayList<String>();
+		command.add("kill");
+		command.add("-KILL");
+		ProcFileReader procsFile = new ProcFileReader(toPath(path, PROCS_FILE));
+		try {
+			procsFile.read();
+			while (procsFile.nextLine()) {
+				if (!procsFile.isBlankLine()) {
+					command.add(new String(procsFile.getData(), procsFile.getLineStart(),
+							procsFile.getLineEnd() - procsFile.getLineStart()));
+				}
+			}
+		} finally {
+			procsFile.close();
+		}
+		if (command.size() > 2) {
+			waitFor(Runtime.getRuntime().exec(command.toArray(new String[command.size()])));
+		}
+	}
+	
+	private static void waitFor(Process process) throws IOException {
+		try {
+			process.waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while killing the processes.");
+		}
+	}
+	
+	@Override
+	public void delete() throws IOException {
+		close();
+		if (!new File(path).delete()) {
+			throw new IOException("Could not remove the control group " + path + ".");
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		cpuStatFile = close(cpuStatFile);
+		memoryCurrentFile = close(memoryCurrentFile);
+		ioStatFile = close(ioStatFile);
+		eventsFile = close(eventsFile);
+	}
+	
+	private static ProcFileReader close(ProcFileReader file) throws IOException {
+		if (file != null) {
+			file.close();
+		}
+		return null;
+	}
+}
@@ -4,20 +4,71 @@ import static commons.Preconditions.checkNotNull;
 
 import java.io.IOException;
 
+import commons.ExitListener;
 import commons.OperatingSystem;
 import commons.SystemProcess;
+import commons.util.LatencyHistogram;
 
 public class LinuxFacade implements OperatingSystem {
 	
+	private static final String PROC_DIRECTORY = "/proc";
+	
+	/**
+	 * The time, in milliseconds, a snapshot of the processes answers the 
+	 * queries by name before /proc is read again.
+	 */
+	private static final long PROCESS_TABLE_REFRESH_INTERVAL = 1000;
+	
+	private final ProcessReaper reaper = new ProcessReaper();
+	private final ProcessTable processTable = new ProcessTable(PROC_DIRECTORY, PROCESS_TABLE_REFRESH_INTERVAL);
+	private final ProcessLauncher launcher = new ProcessLauncher();
+	
+	/**
+	 * The file where the output of the processes is appended. It is null 
+	 * when the output is discarded.
+	 */
+	private final String outputFile;
+	
+	public LinuxFacade() {
+		this(null);
+	}
+	
+	/**
+	 * @param outputFile The file where the output of the executed processes is appended,
+	 * or null to discard it.
+	 */
+	public LinuxFacade(String outputFile) {
+		this.outputFile = outputFile;
+	}
+	
 	@Override
 	public SystemProcess execute(String command) throws IOException {
 		checkNotNull(command, "command must not be null.");
-		return new LinuxProcess(command);
+		return new LinuxProcess(command, launcher, outputFile);
+	}
+
+	@Override
+	public SystemProcess execute(String[] command) throws IOException {
+		checkNotNull(command, "command must not be null.");
+		return new LinuxProcess(command, launcher, outputFile);
 	}
 
 	@Override
 	public boolean isRunning(String processName) throws IOException {
 		checkNotNull(processName, "processName must not be null.");
-		return new LinuxProcess(processName).isRunning();
+		return processTable.getSnapshot().contains(processName);
+	}
+
+	@Override
+	public void watch(SystemProcess process, ExitListener listener) {
+		reaper.watch(process, listener);
+	}
+	
+	/**
+	 * Returns the latencies, in nanoseconds, from the execution requests until 
+	 * the processes were running.
+	 */
+	public LatencyHistogram getSpawnLatencies() {
+		return launcher.getSpawnLatencies();
 	}
 }
@@ -1,76 +1,128 @@
 package commons.internal;
 
-import static java.lang.Runtime.getRuntime;
+import static commons.Preconditions.checkNotNull;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import commons.SystemProcess;
 
 public class LinuxProcess implements SystemProcess {
 
-	private static Logger logger = LoggerFactory.getLogger(LinuxProcess.class);  
-	private static final int PS_XAU_PROCESSES_NAMES_COLUMN = 11;
-	
-	private Process process;
+	private Future<Process> process;
 	private String name;
 	
-	public LinuxProcess(String name) throws IOException {
-		this.name = name;
-		this.process = null;
+	/**
+	 * The program and its arguments. A command line is split on white space, 
+	 * as {@link Runtime#exec(String)} does.
+	 */
+	private String[] command;
+	private ProcessLauncher launcher;
+	
+	/**
+	 * The file where the output of the process is appended. It is null 
+	 * when the output is discarded.
+	 */
+	private String outputFile;
+	
+	public LinuxProcess(String commandLine, ProcessLauncher launcher, String outputFile) throws IOException {
+		this(split(commandLine), launcher, outputFile);
+		this.name = commandLine;
 	}
-
-	@Override
-	public boolean isRunning() throws IOException {
-		Process p = Runtime.getRuntime().exec("ps xau");
-		BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
-		String line = reader.readLine();
-		boolean isRunning = false;
-		boolean search = line != null;
-		logger.debug("empty stream={}", !search);
-		while (search) {
-			String[] lineTokens = line.split("\\s+");
-			checkPsXauOutput(lineTokens);
-			if (lineTokens[PS_XAU_PROCESSES_NAMES_COLUMN - 1].contains(name)) {
-				isRunning = true;
-				search = false;
-			} else {
-				line = reader.readLine();
-				search = line != null;
+	
+	public LinuxProcess(String[] command, ProcessLauncher launcher, String outputFile) throws IOException {
+		checkNotNull(command, "command must not be null.");
+		checkNotNull(launcher, "launcher must not be null.");
+		this.name = concat(command);
+		this.command = command.clone();
+		this.launcher = launcher;
+		this.outputFile = outputFile;
+	}
+	
+	private static String[] split(String commandLine) {
+		checkNotNull(commandLine, "commandLine must not be null.");
+		StringTokenizer tokenizer = new StringTokenizer(commandLine);
+		String[] command = new String[tokenizer.countTokens()];
+		for (int i = 0; i < command.length; i++) {
+			command[i] = tokenizer.nextToken();
+		}
+		return command;
+	}
+	
+	private static String concat(String[] command) {
+		StringBuilder builder = new StringBuilder();
+		for (String argument : command) {
+			if (builder.length() > 0) {
+				builder.append(' ');
 			}
+			builder.append(argument);
 		}
-		reader.close();
-		return isRunning;
+		return builder.toString();
 	}
 
-	private static void checkPsXauOutput(String[] lineTokens) throws IOException {
-		if (lineTokens.length < PS_XAU_PROCESSES_NAMES_COLUMN) {
-			throw new IOException("Invalid input format. The stream may be corrupted or ps xau " +
-					"command has generated an expected output.");
+	/**
+	 * Returns whether the process executed by this instance is running. It is 
+	 * checked through its handle, which does not fork, and is taken as running 
+	 * while it is being started. A process which was not executed yet is not 
+	 * running. The processes are searched by name by 
+	 * {@link LinuxFacade#isRunning(String)}, from the {@link ProcessTable}.
+	 */
+	@Override
+	public boolean isRunning() throws IOException {
+		if (process == null) {
+			return false;
+		}
+		if (!process.isDone()) {
+			return true;
+		}
+		Process started = getStartedProcess();
+		if (started == null) {
+			return false;
+		}
+		try {
+			started.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
 		}
 	}
 	
+	/**
+	 * Destroys the process executed by this instance, if it was started.
+	 */
 	@Override
 	public void terminate() throws IOException {
-		// FIXME this is not good
-		// this class enables to create two 
-		// SystemProcess instances to the same 
-		// process. But the second one does not 
-		// have the Process instance to terminate
-		// So i cannot stop the process through the
-		// second instance.
-		if (isRunning() && process != null) {
-			process.destroy();			
+		if (process != null) {
+			Process started = getStartedProcess();
+			if (started != null) {
+				started.destroy();
+			}
 		}
 	}
 
+	/**
+	 * Requests the process to be started and returns without waiting for it.
+	 * A process which could not be started is reported as not running.
+	 */
 	@Override
 	public void execute() throws IOException {
-		this.process = getRuntime().exec(name);
+		this.process = launcher.launch(command, outputFile);
+	}
+	
+	/**
+	 * Waits for the process to be started. Returns null if it could not be started.
+	 */
+	private Process getStartedProcess() throws IOException {
+		try {
+			return process.get();
+		} catch (ExecutionException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while the process was started.");
+		}
 	}
 
 	@Override
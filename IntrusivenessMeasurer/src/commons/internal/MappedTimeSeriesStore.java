@@ -0,0 +1,417 @@
+package commons.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.TimeSeriesCursor;
+import commons.TimeSeriesStore;
+
+/**
+ * This implementation of TimeSeriesStore writes the records into memory-mapped
+ * segment files of a directory. A segment has a fixed size, which is allocated
+ * when it is created, and a new segment is created when the last one is full.
+ * The segments are named by their sequence number, like 00000000.segment,
+ * and have the following binary format:</br>
+ * </br>
+ * magic (int) number of values (int) number of records (long) fields checksum (long)</br>
+ * timestamp (long) value (double) ... value (double)</br>
+ * ...</br>
+ * </br>
+ * The magic number identifies the version of the format, and the fields checksum is
+ * the CRC32 of the names of the values, so the records of a store are never read or
+ * appended as records of other fields, even if they have the same number of values,
+ * like after a field is renamed or the fields are reordered.</br>
+ * </br>
+ * All the records have the same width, so the position of a record is computed
+ * from its index and a time range is found by a binary search on the timestamps.
+ * Appending a record only writes to the mapped memory of the last segment, and
+ * the operating system writes it to the file later, or when the store is flushed.
+ * The number of records is written after the record, so a reader never sees a
+ * partially written record.</br>
+ * </br>
+ * The cursors map one segment at a time, only for reading, so the store can be
+ * scanned in other processes, like the master, and a scan does not load the
+ * records into the heap. The last segment is mapped only when the first record
+ * is appended, so a store which is only scanned does not write to its directory.</br>
+ * </br>
+ * The timestamps are the wall-clock time, so they can be compared with the ones of
+ * other machines. If the clock is stepped back, the records appended until it
+ * reaches the last timestamp again are stored with the last timestamp, so the
+ * records stay sorted, and the step is logged.</br>
+ * </br>
+ * Note this class is not thread-safe.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class MappedTimeSeriesStore implements TimeSeriesStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(MappedTimeSeriesStore.class);
+
+	/**
+	 * The default size of the segments, in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final int MAGIC = 0x54535332;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int NUMBER_OF_VALUES_OFFSET = 4;
+	private static final int NUMBER_OF_RECORDS_OFFSET = 8;
+	private static final int FIELDS_CHECKSUM_OFFSET = 16;
+	private static final int HEADER_SIZE = 24;
+	private static final int TIMESTAMP_SIZE = 8;
+	private static final int VALUE_SIZE = 8;
+	private static final String SEGMENT_SUFFIX = ".segment";
+	private static final Charset FIELD_NAME_CHARSET = Charset.forName("UTF-8");
+
+	private final File directory;
+	private final int numberOfValues;
+	private final long fieldsChecksum;
+	private final int recordSize;
+	private final int recordsPerSegment;
+
+	/**
+	 * The last segment, which is written, or null if it was not mapped yet.
+	 */
+	private MappedByteBuffer segment;
+	private int segmentIndex;
+	private int segmentCapacity;
+	private int numberOfRecords;
+	private long lastTimestamp = Long.MIN_VALUE;
+	/**
+	 * Whether the last appended timestamp was less than the one stored.
+	 */
+	private boolean clockSteppedBack;
+
+	/**
+	 * Creates a store with segments of {@link #DEFAULT_SEGMENT_SIZE} bytes.
+	 *
+	 * @see #MappedTimeSeriesStore(String, String[], int)
+	 */
+	public MappedTimeSeriesStore(String directory, String[] fieldNames) throws IOException {
+		this(directory, fieldNames, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates a store whose values are named by their indexes, with segments of
+	 * {@link #DEFAULT_SEGMENT_SIZE} bytes.
+	 *
+	 * @see #MappedTimeSeriesStore(String, int, int)
+	 */
+	public MappedTimeSeriesStore(String directory, int numberOfValues) throws IOException {
+		this(directory, numberOfValues, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates a store whose values are named by their indexes, "0", "1" and so on.
+	 *
+	 * @throws IllegalArgumentException If numberOfValues is not positive.
+	 * @see #MappedTimeSeriesStore(String, String[], int)
+	 */
+	public MappedTimeSeriesStore(String directory, int numberOfValues, int segmentSize) throws IOException {
+		this(directory, getIndexNames(numberOfValues), segmentSize);
+	}
+
+	/**
+	 * @param directory The directory of the segments. It is created if it does not
+	 * exist. If it has segments, the new records are appended to the last one.
+	 * @param fieldNames The names of the values of each record, in their order. It must
+	 * not be empty. The segments of the directory must have been written with the same
+	 * names.
+	 * @param segmentSize The size of the new segments, in bytes. It must fit at least
+	 * one record.
+	 * @throws IOException If the directory could not be created.
+	 * @throws IllegalArgumentException If directory or fieldNames is null, fieldNames is
+	 * empty or segmentSize is too small.
+	 */
+	public MappedTimeSeriesStore(String directory, String[] fieldNames, int segmentSize) throws IOException {
+		checkNotNull(directory, "directory must not be null.");
+		checkNotNull(fieldNames, "fieldNames must not be null.");
+		check(fieldNames.length > 0, "fieldNames must not be empty.");
+
+		this.directory = new File(directory);
+		this.numberOfValues = fieldNames.length;
+		this.fieldsChecksum = getChecksum(fieldNames);
+		this.recordSize = TIMESTAMP_SIZE + numberOfValues * VALUE_SIZE;
+		this.recordsPerSegment = (segmentSize - HEADER_SIZE) / recordSize;
+		check(segmentSize > HEADER_SIZE && recordsPerSegment > 0, "segmentSize must fit at least one record.");
+
+		this.directory.mkdirs();
+		if (!this.directory.isDirectory()) {
+			throw new IOException(directory + " is not a directory.");
+		}
+	}
+
+	private static String[] getIndexNames(int numberOfValues) {
+		check(numberOfValues > 0, "numberOfValues must be positive.");
+		String[] names = new String[numberOfValues];
+		for (int value = 0; value < numberOfValues; value++) {
+			names[value] = Integer.toString(value);
+		}
+		return names;
+	}
+
+	private static long getChecksum(String[] fieldNames) {
+		CRC32 checksum = new CRC32();
+		for (String name : fieldNames) {
+			checkNotNull(name, "fieldNames must not have null names.");
+			checksum.update(name.getBytes(FIELD_NAME_CHARSET));
+			// the separator keeps ["ab", "c"] apart from ["a", "bc"]
+			checksum.update(0);
+		}
+		return checksum.getValue();
+	}
+
+	@Override
+	public int getNumberOfValues() {
+		return numberOfValues;
+	}
+
+	@Override
+	public void append(long timestamp, double[] values) throws IOException {
+		checkNotNull(values, "values must not be null.");
+		check(values.length >= numberOfValues, "values must have the number of values of a record.");
+		if (segment == null) {
+			openLastSegment();
+		}
+		if (timestamp < lastTimestamp) {
+			if (!clockSteppedBack) {
+				logger.warn("The clock was stepped back {} ms. The records are stored with the last "
+							+ "timestamp until it is reached again.", lastTimestamp - timestamp);
+				clockSteppedBack = true;
+			}
+			timestamp = lastTimestamp;
+		} else {
+			clockSteppedBack = false;
+		}
+
+		if (numberOfRecords == segmentCapacity) {
+			createSegment(segmentIndex + 1);
+		}
+		int position = HEADER_SIZE + numberOfRecords * recordSize;
+		segment.putLong(position, timestamp);
+		position += TIMESTAMP_SIZE;
+		for (int value = 0; value < numberOfValues; value++) {
+			segment.putDouble(position + value * VALUE_SIZE, values[value]);
+		}
+		numberOfRecords++;
+		segment.putLong(NUMBER_OF_RECORDS_OFFSET, numberOfRecords);
+		lastTimestamp = timestamp;
+	}
+
+	private void openLastSegment() throws IOException {
+		File[] segments = listSegments();
+		if (segments.length == 0) {
+			createSegment(0);
+			return;
+		}
+
+		File last = segments[segments.length - 1];
+		segmentIndex = getSegmentIndex(last);
+		segment = map(last, MapMode.READ_WRITE, last.length());
+		segmentCapacity = (segment.capacity() - HEADER_SIZE) / recordSize;
+		numberOfRecords = readNumberOfRecords(segment, last);
+		if (numberOfRecords > 0) {
+			lastTimestamp = segment.getLong(HEADER_SIZE + (numberOfRecords - 1) * recordSize);
+		}
+		logger.info("Appending to {}, which has {} records.", last, numberOfRecords);
+	}
+
+	private void createSegment(int index) throws IOException {
+		if (segment != null) {
+			segment.force();
+		}
+		File file = new File(directory, String.format("%08d%s", index, SEGMENT_SUFFIX));
+		segment = map(file, MapMode.READ_WRITE, HEADER_SIZE + (long) recordsPerSegment * recordSize);
+		segment.putInt(MAGIC_OFFSET, MAGIC);
+		segment.putInt(NUMBER_OF_VALUES_OFFSET, numberOfValues);
+		segment.putLong(NUMBER_OF_RECORDS_OFFSET, 0);
+		segment.putLong(FIELDS_CHECKSUM_OFFSET, fieldsChecksum);
+		segmentIndex = index;
+		segmentCapacity = recordsPerSegment;
+		numberOfRecords = 0;
+		logger.debug("Created segment {}.", file);
+	}
+
+	/**
+	 * The mapping is kept valid after the file is closed, until the buffer
+	 * is garbage collected.
+	 */
+	private static MappedByteBuffer map(File file, MapMode mode, long size) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, mode == MapMode.READ_ONLY ? "r" : "rw");
+		try {
+			return randomAccessFile.getChannel().map(mode, 0, size);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Checks the header of the segment and returns its number of records.
+	 */
+	private int readNumberOfRecords(MappedByteBuffer buffer, File file) throws IOException {
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+			throw new IOException(file + " is not a segment of this format version.");
+		}
+		if (buffer.getInt(NUMBER_OF_VALUES_OFFSET) != numberOfValues) {
+			throw new IOException(file + " has records of " + buffer.getInt(NUMBER_OF_VALUES_OFFSET)
+									+ " values, not " + numberOfValues + ".");
+		}
+		if (buffer.getLong(FIELDS_CHECKSUM_OFFSET) != fieldsChecksum) {
+			throw new IOException(file + " has records of other fields than the ones of the store.");
+		}
+		long records = buffer.getLong(NUMBER_OF_RECORDS_OFFSET);
+		if (records < 0 || HEADER_SIZE + records * recordSize > buffer.capacity()) {
+			throw new IOException(file + " has an invalid number of records.");
+		}
+		return (int) records;
+	}
+
+	private File[] listSegments() {
+		File[] segments = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		if (segments == null) {
+			return new File[0];
+		}
+		// the names have the same width, so they are sorted by sequence number
+		Arrays.sort(segments);
+		return segments;
+	}
+
+	private static int getSegmentIndex(File segment) throws IOException {
+		String name = segment.getName();
+		try {
+			return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			throw new IOException(segment + " is not a segment.");
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (segment != null) {
+			segment.force();
+		}
+	}
+
+	@Override
+	public TimeSeriesCursor scan(long from, long to) throws IOException {
+		return new SegmentCursor(listSegments(), from, to);
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		segment = null;
+	}
+
+	private class SegmentCursor implements TimeSeriesCursor {
+		private final File[] segments;
+		private final long from;
+		private final long to;
+		private int nextSegment;
+		private MappedByteBuffer buffer;
+		private File file;
+		private int numberOfRecords;
+		private int nextRecord;
+		private int position;
+
+		SegmentCursor(File[] segments, long from, long to) {
+			this.segments = segments;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			while (buffer != null || openNextSegment()) {
+				// the segment may be still written by the store
+				if (nextRecord == numberOfRecords) {
+					numberOfRecords = readNumberOfRecords(buffer, file);
+				}
+				if (nextRecord < numberOfRecords) {
+					int recordPosition = HEADER_SIZE + nextRecord * recordSize;
+					if (buffer.getLong(recordPosition) > to) {
+						close();
+						return false;
+					}
+					position = recordPosition;
+					nextRecord++;
+					return true;
+				}
+				buffer = null;
+			}
+			return false;
+		}
+
+		/**
+		 * Maps the next segment which has records in the range, skipping the
+		 * records older than the range.
+		 */
+		private boolean openNextSegment() throws IOException {
+			while (nextSegment < segments.length) {
+				file = segments[nextSegment++];
+				buffer = map(file, MapMode.READ_ONLY, file.length());
+				numberOfRecords = readNumberOfRecords(buffer, file);
+				if (numberOfRecords > 0 && getTimestamp(numberOfRecords - 1) >= from) {
+					nextRecord = findFirstRecord();
+					return true;
+				}
+			}
+			buffer = null;
+			return false;
+		}
+
+		private int findFirstRecord() {
+			int low = 0;
+			int high = numberOfRecords - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (getTimestamp(middle) < from) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		private long getTimestamp(int record) {
+			return buffer.getLong(HEADER_SIZE + record * recordSize);
+		}
+
+		@Override
+		public long getTimestamp() {
+			return buffer.getLong(position);
+		}
+
+		@Override
+		public double getValue(int index) {
+			check(index >= 0 && index < numberOfValues, "index must be less than the number of values.");
+			return buffer.getDouble(position + TIMESTAMP_SIZE + index * VALUE_SIZE);
+		}
+
+		@Override
+		public void close() {
+			buffer = null;
+			nextSegment = segments.length;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package commons.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.util.LatencyHistogram;
+
+/**
+ * Starts processes from a thread of its own, so the callers do not wait for
+ * the fork and exec, and drains their output, so a process which writes a
+ * lot never blocks on a full pipe.</br>
+ * </br>
+ * The processes are started by a {@link ProcessBuilder} with their arguments
+ * as given, without splitting a command line, and their error output is merged
+ * into their standard output. The output of all the processes is drained by a
+ * single thread, which is running only while there are processes: it copies
+ * the bytes which are available from each process, so it never blocks on one
+ * of them, to the file given for the process or discards them. The standard
+ * input of the processes is closed.</br>
+ * </br>
+ * The time from each request until the process is running, which delays
+ * the start of the tasks, is kept in a {@link LatencyHistogram}.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProcessLauncher {
+	
+	private static Logger logger = LoggerFactory.getLogger(ProcessLauncher.class);
+	private static final long PUMP_PERIOD = 20;
+	private static final int BUFFER_SIZE = 8192;
+	
+	private final ExecutorService spawner;
+	private final LatencyHistogram spawnLatencies = new LatencyHistogram();
+	private final List<Drain> drains = new ArrayList<Drain>();
+	private Thread pump;
+	
+	public ProcessLauncher() {
+		spawner = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "process-launcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * The output of a process and where it is copied to.
+	 */
+	private static class Drain {
+		private final Process process;
+		private final InputStream output;
+		private final OutputStream destination;
+		
+		Drain(Process process, OutputStream destination) {
+			this.process = process;
+			this.output = process.getInputStream();
+			this.destination = destination;
+		}
+	}
+	
+	/**
+	 * Requests the given command to be started. It returns right after the request.
+	 *
+	 * @param command The program and its arguments. It must be non-null and non-empty.
+	 * @param outputFile The file where the output of the process is appended, or null to
+	 * discard it.
+	 * @return The process, which is available after it is started. Its computation fails
+	 * with an {@link IOException} if the process could not be started.
+	 * @throws IllegalArgumentException If command is null or empty.
+	 */
+	public Future<Process> launch(String[] command, final String outputFile) {
+		checkNotNull(command, "command must not be null.");
+		check(command.length > 0, "command must not be empty.");
+		
+		final String[] arguments = command.clone();
+		final long requestTime = System.nanoTime();
+		return spawner.submit(new Callable<Process>() {
+			@Override
+			public Process call() throws IOException {
+				return spawn(arguments, outputFile, requestTime);
+			}
+		});
+	}
+	
+	private Process spawn(String[] command, String outputFile, long requestTime) throws IOException {
+		OutputStream destination = outputFile == null ? null : new FileOutputStream(outputFile, true);
+		Process process;
+		try {
+			process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		} catch (IOException e) {
+			logger.warn("could not start {}: {}", command[0], e.getMessage());
+			if (destination != null) {
+				destination.close();
+			}
+			throw e;
+		}
+		spawnLatencies.record(System.nanoTime() - requestTime);
+		try {
+			process.getOutputStream().close();
+		} catch (IOException e) {
+			// the process may have already exited
+		}
+		drain(new Drain(process, destination));
+		return process;
+	}
+	
+	private synchronized void drain(Drain drain) {
+		drains.add(drain);
+		if (pump == null) {
+			pump = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					pump();
+				}
+			}, "process-output-pump");
+			pump.setDaemon(true);
+			pump.start();
+		}
+	}
+	
+	private void pump() {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		List<Drain> finished = new ArrayList<Drain>();
+		try {
+			while (true) {
+				List<Drain> current;
+				synchronized (this) {
+					if (drains.isEmpty()) {
+						pump = null;
+						return;
+					}
+					current = new ArrayList<Drain>(drains);
+				}
+				
+				boolean copied = false;
+				for (Drain drain : current) {
+					try {
+						copied |= copyAvailable(drain, buffer);
+						if (hasExited(drain.process) && drain.output.available() == 0) {
+							finished.add(drain);
+						}
+					} catch (IOException e) {
+						logger.debug("could not drain a process: {}", e.getMessage());
+						finished.add(drain);
+					}
+				}
+				if (!finished.isEmpty()) {
+					synchronized (this) {
+						drains.removeAll(finished);
+					}
+					for (Drain drain : finished) {
+						close(drain);
+					}
+					finished.clear();
+				}
+				if (!copied) {
+					Thread.sleep(PUMP_PERIOD);
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.warn("output pump interrupted");
+			synchronized (this) {
+				pump = null;
+			}
+		}
+	}
+	
+	/*
+	 * Only the available bytes are read, so a read never blocks, even when
+	 * another process holds the pipe open.
+	 */
+	private static boolean copyAvailable(Drain drain, byte[] buffer) throws IOException {
+		boolean copied = false;
+		int available = drain.output.available();
+		while (available > 0) {
+			int read = drain.output.read(buffer, 0, Math.min(available, buffer.length));
+			if (read <= 0) {
+				break;
+			}
+			if (drain.destination != null) {
+				drain.destination.write(buffer, 0, read);
+			}
+			copied = true;
+			available = drain.output.available();
+		}
+		return copied;
+	}
+	
+	private static boolean hasExited(Process process) {
+		try {
+			process.exitValue();
+			return true;
+		} catch (IllegalThreadStateException e) {
+			return false;
+		}
+	}
+	
+	private static void close(Drain drain) {
+		try {
+			drain.output.close();
+			if (drain.destination != null) {
+				drain.destination.close();
+			}
+		} catch (IOException e) {
+			logger.debug("could not close the output of a process: {}", e.getMessage());
+		}
+	}
+	
+	/**
+	 * Returns the latencies, in nanoseconds, from the requests until the processes
+	 * were running.
+	 */
+	public LatencyHistogram getSpawnLatencies() {
+		return spawnLatencies;
+	}
+	
+	/**
+	 * Returns the number of processes whose output is still being drained.
+	 */
+	public synchronized int getNumberOfDrainedProcesses() {
+		return drains.size();
+	}
+}
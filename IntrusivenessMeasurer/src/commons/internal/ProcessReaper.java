@@ -0,0 +1,125 @@
+package commons.internal;
+
+import static commons.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.ExitListener;
+import commons.SystemProcess;
+
+/**
+ * Calls the listeners of the processes which exited, from a single daemon 
+ * thread shared by all of them.</br>
+ * </br>
+ * Java can not wait for the first of many processes to exit, so the thread 
+ * checks every 100 milliseconds whether each process is still running. A 
+ * {@link LinuxProcess} answers it from its own handle, without forking. The 
+ * thread only runs while there are processes to watch.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class ProcessReaper {
+	
+	private static Logger logger = LoggerFactory.getLogger(ProcessReaper.class);
+	private static final long REAP_PERIOD = 100;
+	
+	private final List<Watch> watches = new ArrayList<Watch>();
+	private Thread reaper;
+	
+	private static class Watch {
+		private final SystemProcess process;
+		private final ExitListener listener;
+		
+		Watch(SystemProcess process, ExitListener listener) {
+			this.process = process;
+			this.listener = listener;
+		}
+	}
+	
+	/**
+	 * @throws IllegalArgumentException If any of the arguments is null.
+	 */
+	synchronized void watch(SystemProcess process, ExitListener listener) {
+		checkNotNull(process, "process must not be null.");
+		checkNotNull(listener, "listener must not be null.");
+		
+		watches.add(new Watch(process, listener));
+		if (reaper == null) {
+			reaper = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					reap();
+				}
+			}, "process-reaper");
+			reaper.setDaemon(true);
+			reaper.start();
+		}
+	}
+	
+	synchronized int getNumberOfWatchedProcesses() {
+		return watches.size();
+	}
+	
+	private void reap() {
+		List<Watch> exited = new ArrayList<Watch>();
+		try {
+			while (true) {
+				Thread.sleep(REAP_PERIOD);
+				synchronized (this) {
+					Iterator<Watch> iterator = watches.iterator();
+					while (iterator.hasNext()) {
+						Watch watch = iterator.next();
+						if (!isRunning(watch.process)) {
+							exited.add(watch);
+							iterator.remove();
+						}
+					}
+				}
+				
+				// the listeners are called without the lock, so they can watch other processes
+				for (Watch watch : exited) {
+					notifyExit(watch);
+				}
+				exited.clear();
+				
+				synchronized (this) {
+					if (watches.isEmpty()) {
+						reaper = null;
+						return;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.warn("process reaper interrupted with {} processes", getNumberOfWatchedProcesses());
+			synchronized (this) {
+				reaper = null;
+			}
+		}
+	}
+	
+	/*
+	 * A process which can not be checked is not watched anymore, like one which exited.
+	 */
+	private static boolean isRunning(SystemProcess process) {
+		try {
+			return process.isRunning();
+		} catch (IOException e) {
+			logger.warn("could not check process {}: {}", process.getName(), e.getMessage());
+			return false;
+		}
+	}
+	
+	private static void notifyExit(Watch watch) {
+		try {
+			watch.listener.exited(watch.process);
+		} catch (RuntimeException e) {
+			logger.error("exit listener of " + watch.process.getName() + " failed", e);
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package commons.internal;
+
+import static commons.Preconditions.checkNonNegative;
+import static commons.Preconditions.checkNotNull;
+import static commons.util.FileUtil.toPath;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the processes of the system by name, read from the comm and
+ * cmdline files of each process under /proc, without forking ps. It is meant
+ * to be shared by the callers which look for processes by name, like the
+ * tasks which check whether their exerciser is running.</br>
+ * </br>
+ * The table is read again only when a snapshot is asked for and the last one
+ * is older than the refresh interval, so many callers asking at the same time
+ * cost a single scan of /proc and a table which nobody asks for is never read.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProcessTable {
+	
+	private static final String COMM_FILE = "comm";
+	private static final String CMDLINE_FILE = "cmdline";
+	private static final int BUFFER_SIZE = 4096;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000;
+	
+	private final String procDirectory;
+	private final long refreshInterval;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	
+	private Snapshot snapshot;
+	private long snapshotTime;
+	private long numberOfScans;
+	
+	/**
+	 * The processes of the system when the table was read.
+	 */
+	public static class Snapshot {
+		
+		private final Map<String, List<Integer>> pidsByName;
+		private final int numberOfProcesses;
+		
+		private Snapshot(Map<String, List<Integer>> pidsByName, int numberOfProcesses) {
+			this.pidsByName = pidsByName;
+			this.numberOfProcesses = numberOfProcesses;
+		}
+		
+		/**
+		 * Returns the pids of the processes with the given name, in ascending order.
+		 * The name of a process is its comm, which the kernel truncates to 15
+		 * characters, the program of its command line, as it was executed, and the
+		 * last part of the path of the program.
+		 */
+		public List<Integer> getPids(String name) {
+			List<Integer> pids = pidsByName.get(name);
+			return pids == null ? Collections.<Integer>emptyList() : Collections.unmodifiableList(pids);
+		}
+		
+		/**
+		 * Returns whether there is any process with the given name, as defined by
+		 * {@link #getPids(String)}.
+		 */
+		public boolean contains(String name) {
+			return pidsByName.containsKey(name);
+		}
+		
+		public int getNumberOfProcesses() {
+			return numberOfProcesses;
+		}
+	}
+	
+	/**
+	 * @param procDirectory The directory where the proc filesystem is mounted. It must be
+	 * non-null.
+	 * @param refreshInterval The time, in milliseconds, a snapshot is used before the table
+	 * is read again. It must be non-negative.
+	 * @throws IllegalArgumentException If procDirectory is null or refreshInterval is negative.
+	 */
+	public ProcessTable(String procDirectory, long refreshInterval) {
+		checkNotNull(procDirectory, "procDirectory must not be null.");
+		checkNonNegative(refreshInterval, "refreshInterval must be non-negative.");
+		
+		this.procDirectory = procDirectory;
+		this.refreshInterval = refreshInterval;
+	}
+	
+	/**
+	 * Returns the last snapshot, or reads the table again if the last snapshot is
+	 * older than the refresh interval. The callers which ask while the table is
+	 * being read wait for it and get the same snapshot.
+	 *
+	 * @throws IOException If the proc directory could not be listed.
+	 */
+	public synchronized Snapshot getSnapshot() throws IOException {
+		long now = System.nanoTime();
+		if (snapshot == null || now - snapshotTime >= refreshInterval * NANOSECONDS_PER_MILLISECOND) {
+			snapshot = scan();
+			snapshotTime = now;
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Returns the number of times the table was read.
+	 */
+	public synchronized long getNumberOfScans() {
+		return numberOfScans;
+	}
+	
+	private Snapshot scan() throws IOException {
+		String[] entries = new File(procDirectory).list();
+		if (entries == null) {
+			throw new IOException("Could not list " + procDirectory + ".");
+		}
+		numberOfScans++;
+		
+		Map<String, List<Integer>> pidsByName = new HashMap<String, List<Integer>>();
+		int numberOfProcesses = 0;
+		List<Integer> pids = new ArrayList<Integer>();
+		for (String entry : entries) {
+			int pid = parsePid(entry);
+			if (pid >= 0) {
+				pids.add(pid);
+			}
+		}
+		Collections.sort(pids);
+		for (Integer pid : pids) {
+			String processDirectory = toPath(procDirectory, String.valueOf(pid));
+			// a process which finished during the scan is not in the snapshot
+			String comm = readComm(toPath(processDirectory, COMM_FILE));
+			if (comm == null) {
+				continue;
+			}
+			numberOfProcesses++;
+			index(pidsByName, comm, pid);
+			String program = readProgram(toPath(processDirectory, CMDLINE_FILE));
+			if (program != null && !program.equals(comm)) {
+				index(pidsByName, program, pid);
+				String basename = program.substring(program.lastIndexOf('/') + 1);
+				if (!basename.equals(program) && !basename.equals(comm)) {
+					index(pidsByName, basename, pid);
+				}
+			}
+		}
+		return new Snapshot(pidsByName, numberOfProcesses);
+	}
+	
+	private static int parsePid(String entry) {
+		if (entry.length() == 0 || entry.length() > 9) {
+			return -1;
+		}
+		int pid = 0;
+		for (int i = 0; i < entry.length(); i++) {
+			char c = entry.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			pid = pid * 10 + (c - '0');
+		}
+		return pid;
+	}
+	
+	private static void index(Map<String, List<Integer>> pidsByName, String name, int pid) {
+		List<Integer> pids = pidsByName.get(name);
+		if (pids == null) {
+			pids = new ArrayList<Integer>(1);
+			pidsByName.put(name, pids);
+		}
+		pids.add(pid);
+	}
+	
+	/*
+	 * The comm file has the name followed by a line break.
+	 */
+	private String readComm(String file) {
+		int length = readFile(file);
+		if (length < 0) {
+			return null;
+		}
+		if (length > 0 && buffer[length - 1] == '\n') {
+			length--;
+		}
+		return new String(buffer, 0, length);
+	}
+	
+	/*
+	 * The arguments of the cmdline file are separated by '\0'. It is empty for the
+	 * kernel threads and the zombies, which have no program.
+	 */
+	private String readProgram(String file) {
+		int length = readFile(file);
+		int end = 0;
+		while (end < length && buffer[end] != 0) {
+			end++;
+		}
+		return end == 0 ? null : new String(buffer, 0, end);
+	}
+	
+	/**
+	 * Reads up to the size of the buffer of the given file. Returns the number of bytes
+	 * read, or -1 if the file could not be read.
+	 */
+	private int readFile(String file) {
+		FileInputStream stream = null;
+		try {
+			stream = new FileInputStream(file);
+			int length = 0;
+			int read = stream.read(buffer, 0, buffer.length);
+			while (read > 0) {
+				length += read;
+				read = stream.read(buffer, length, buffer.length - length);
+			}
+			return length;
+		} catch (IOException e) {
+			return -1;
+		} finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					// it was only read
+				}
+			}
+		}
+	}
+}
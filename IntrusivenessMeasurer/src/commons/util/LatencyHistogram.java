@@ -0,0 +1,126 @@
+package commons.util;
+
+import static commons.Preconditions.check;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies, in nanoseconds, whose buckets grow with the
+ * latencies: the values below 64 have their own buckets and each power of two
+ * above it is split into 32 buckets of the same width. So recording a value is
+ * a constant time increment of a fixed array and the percentiles are reported
+ * with a relative error of at most 1/32, no matter how many values are
+ * recorded.</br>
+ * </br>
+ * The values can be recorded by many threads at the same time. The statistics
+ * read while values are being recorded may not include the last ones.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+	private static final int NUMBER_OF_BUCKETS = (63 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+	private static final double MAXIMUM_PERCENTILE = 100;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong maximum = new AtomicLong();
+	
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanoseconds It must be non-negative.
+	 * @throws IllegalArgumentException If nanoseconds is negative.
+	 */
+	public void record(long nanoseconds) {
+		check(nanoseconds >= 0, "nanoseconds must be non-negative.");
+		counts.incrementAndGet(bucketOf(nanoseconds));
+		count.incrementAndGet();
+		sum.addAndGet(nanoseconds);
+		long current = maximum.get();
+		while (nanoseconds > current && !maximum.compareAndSet(current, nanoseconds)) {
+			current = maximum.get();
+		}
+	}
+	
+	static int bucketOf(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+	
+	/**
+	 * Returns the greatest value which is recorded in the given bucket.
+	 */
+	static long highestValueOf(int bucket) {
+		if (bucket < LINEAR_LIMIT) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Returns the mean of the recorded latencies, or 0 if there are none.
+	 */
+	public double getMean() {
+		long recorded = count.get();
+		return recorded == 0 ? 0 : (double) sum.get() / recorded;
+	}
+	
+	public long getMaximum() {
+		return maximum.get();
+	}
+	
+	/**
+	 * Returns the latency which is greater than or equal to the given
+	 * percentage of the recorded latencies, rounded up to the greatest value
+	 * of its bucket and limited by the maximum latency. It is 0 if there are
+	 * no latencies.
+	 *
+	 * @param percentile It must be between 0 and 100.
+	 * @throws IllegalArgumentException If percentile is out of its range.
+	 */
+	public long getPercentile(double percentile) {
+		check(percentile >= 0 && percentile <= MAXIMUM_PERCENTILE,
+				"percentile must be between 0 and 100.");
+		long recorded = count.get();
+		if (recorded == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / MAXIMUM_PERCENTILE * recorded));
+		long accumulated = 0;
+		for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+			accumulated += counts.get(bucket);
+			if (accumulated >= target) {
+				return Math.min(highestValueOf(bucket), getMaximum());
+			}
+		}
+		return getMaximum();
+	}
+	
+	/**
+	 * Removes all the recorded latencies.
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < NUMBER_OF_BUCKETS; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		maximum.set(0);
+	}
+}
@@ -0,0 +1,141 @@
+package commons.util;
+
+/**
+ * Parses the numbers written in a range of a byte or char buffer, like the
+ * content of a /proc file read by {@link ProcFileReader}, without creating
+ * substrings or boxed numbers. A range must hold only the number: the callers
+ * find its limits and skip the units, like "kB" or "%".</br>
+ * </br>
+ * The numbers are non-negative. The integers are a sequence of digits and
+ * the decimal numbers are a sequence of digits with an optional fractional
+ * part, separated by '.', like "96", "96.6", ".5" or "5.", which must have
+ * at least one digit. An invalid number is reported by a special value
+ * instead of an exception, since the callers report the format errors of
+ * their own files.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class NumberParser {
+	
+	/**
+	 * A decimal number with up to this number of digits is an exact double and is
+	 * divided by an exact power of 10, so the result is correctly rounded. Longer
+	 * numbers, which are not written by the kernel, are parsed by {@link Double}.
+	 */
+	private static final int MAXIMUM_EXACT_DIGITS = 15;
+	private static final long MAXIMUM_LONG_BEFORE_DIGIT = Long.MAX_VALUE / 10;
+	
+	/**
+	 * Parses the non-negative integer written in the given range of the buffer.
+	 *
+	 * @return The parsed number or -1 if the range is empty, contains other characters
+	 * than digits or the number does not fit in a long.
+	 */
+	public static long parseLong(byte[] data, int from, int to) {
+		if (from >= to) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = data[i] - '0';
+			if (digit < 0 || digit > 9 || !fitsAnotherDigit(value, digit)) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+	
+	/**
+	 * @see #parseLong(byte[], int, int)
+	 */
+	public static long parseLong(CharSequence data, int from, int to) {
+		if (from >= to) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = data.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || !fitsAnotherDigit(value, digit)) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+	
+	private static boolean fitsAnotherDigit(long value, int digit) {
+		return value < MAXIMUM_LONG_BEFORE_DIGIT
+				|| (value == MAXIMUM_LONG_BEFORE_DIGIT && digit <= Long.MAX_VALUE % 10);
+	}
+	
+	/**
+	 * Parses the non-negative decimal number written in the given range of the buffer.
+	 *
+	 * @return The parsed number or {@link Double#NaN} if the range has no digits or
+	 * contains other characters.
+	 */
+	public static double parseDecimal(byte[] data, int from, int to) {
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+		for (int i = from; i < to; i++) {
+			byte c = data[i];
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (fraction) {
+					fractionDigits++;
+				}
+			} else if (c == '.' && !fraction) {
+				fraction = true;
+			} else {
+				return Double.NaN;
+			}
+		}
+		if (digits > MAXIMUM_EXACT_DIGITS) {
+			return Double.parseDouble(new String(data, from, to - from));
+		}
+		return toDecimal(mantissa, digits, fractionDigits);
+	}
+	
+	/**
+	 * @see #parseDecimal(byte[], int, int)
+	 */
+	public static double parseDecimal(CharSequence data, int from, int to) {
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean fraction = false;
+		for (int i = from; i < to; i++) {
+			char c = data.charAt(i);
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (fraction) {
+					fractionDigits++;
+				}
+			} else if (c == '.' && !fraction) {
+				fraction = true;
+			} else {
+				return Double.NaN;
+			}
+		}
+		if (digits > MAXIMUM_EXACT_DIGITS) {
+			return Double.parseDouble(data.subSequence(from, to).toString());
+		}
+		return toDecimal(mantissa, digits, fractionDigits);
+	}
+	
+	private static double toDecimal(long mantissa, int digits, int fractionDigits) {
+		if (digits == 0) {
+			return Double.NaN;
+		}
+		double divisor = 1;
+		for (int i = 0; i < fractionDigits; i++) {
+			divisor *= 10;
+		}
+		return mantissa / divisor;
+	}
+}
@@ -0,0 +1,218 @@
+package commons.util;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+import static commons.util.FileUtil.checkFileExist;
+import static commons.util.FileUtil.checkFileIsReadable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the whole content of a file into a reusable buffer, using
+ * positional reads on a file which is kept open. It is intended to be used
+ * with the small pseudo files under /proc and /sys, which are read many
+ * times per second and whose content is regenerated by the kernel on
+ * every read from the beginning of the file.</br>
+ * </br>
+ * After a call to {@link #read()}, the content can be scanned line by line
+ * with {@link #nextLine()} and the numbers in it can be parsed in place by
+ * {@link NumberParser}, so reading a file does not create any object, except
+ * when the buffer must grow to fit the content.</br>
+ * </br>
+ * Note this class is not thread-safe.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProcFileReader implements Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private final String filename;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	private byte[] data;
+	private ByteBuffer buffer;
+	private int length;
+
+	private int lineStart;
+	private int lineEnd;
+
+	/**
+	 * @param filename The file to be read. It must exist and be readable.
+	 * @throws IOException If the file does not exist, is not readable or could not be opened.
+	 * @throws IllegalArgumentException If filename is null.
+	 */
+	public ProcFileReader(String filename) throws IOException {
+		this(filename, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param filename The file to be read. It must exist and be readable.
+	 * @param initialBufferSize The initial size of the buffer. It grows if the
+	 * file content does not fit in it. It must be positive.
+	 * @throws IOException If the file does not exist, is not readable or could not be opened.
+	 * @throws IllegalArgumentException If filename is null or initialBufferSize is not positive.
+	 */
+	public ProcFileReader(String filename, int initialBufferSize) throws IOException {
+		checkNotNull(filename, "filename must not be null.");
+		check(initialBufferSize > 0, "initialBufferSize must be positive.");
+		checkFileExist(filename);
+		checkFileIsReadable(filename);
+
+		this.filename = filename;
+		this.file = new RandomAccessFile(filename, "r");
+		this.channel = file.getChannel();
+		allocate(initialBufferSize);
+	}
+
+	/**
+	 * Reads the whole content of the file, from its beginning, into the buffer
+	 * and rewinds the line cursor. Usually it is done with a single positional
+	 * read. A short read means the end of the file was reached, both for
+	 * regular files and for the /proc pseudo files, so the file is only read
+	 * again when the content filled the whole buffer, after growing it.
+	 *
+	 * @return The length of the read content.
+	 * @throws IOException If the file could not be read.
+	 */
+	public int read() throws IOException {
+		while (!readFully()) {
+			allocate(data.length * 2);
+		}
+		lineStart = 0;
+		lineEnd = -1;
+		return length;
+	}
+
+	private boolean readFully() throws IOException {
+		buffer.clear();
+		channel.read(buffer, 0);
+		length = buffer.position();
+		return buffer.hasRemaining();
+	}
+
+	private void allocate(int size) {
+		data = new byte[size];
+		buffer = ByteBuffer.wrap(data);
+		length = 0;
+	}
+
+	/**
+	 * Moves the line cursor to the next line of the read content.
+	 *
+	 * @return false if there are no more lines to read.
+	 */
+	public boolean nextLine() {
+		int start = lineEnd + 1;
+		if (start >= length) {
+			return false;
+		}
+		int end = start;
+		while (end < length && data[end] != '\n') {
+			end++;
+		}
+		lineStart = start;
+		lineEnd = end;
+		return true;
+	}
+
+	/**
+	 * Returns true if the current line has no characters.
+	 */
+	public boolean isBlankLine() {
+		return lineStart == lineEnd;
+	}
+
+	/**
+	 * Returns true if the current line starts with the given ASCII header.
+	 */
+	public boolean lineStartsWith(byte[] header) {
+		if (lineEnd - lineStart < header.length) {
+			return false;
+		}
+		for (int i = 0; i < header.length; i++) {
+			if (data[lineStart + i] != header[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getLineStart() {
+		return lineStart;
+	}
+
+	public int getLineEnd() {
+		return lineEnd;
+	}
+
+	/**
+	 * Returns the buffer which holds the content read by the last call to
+	 * {@link #read()}. Only the first {@link #getLength()} bytes are valid.
+	 * The returned array may change after the next read.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Returns the position of the first character which is not a blank space
+	 * or a tab, starting from the given position, or end if there is no such character.
+	 */
+	public int skipSpaces(int from, int end) {
+		while (from < end && (data[from] == ' ' || data[from] == '\t')) {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * Returns the position right after the token which starts at the given
+	 * position. Tokens are separated by blank spaces, tabs and line ends.
+	 */
+	public int tokenEnd(int from, int end) {
+		while (from < end && data[from] != ' ' && data[from] != '\t' && data[from] != '\n') {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * Parses the non-negative integer written in the given range of the buffer.
+	 *
+	 * @return The parsed number or -1 if the range is not a valid number.
+	 * @see NumberParser#parseLong(byte[], int, int)
+	 */
+	public long parseLong(int from, int to) {
+		return NumberParser.parseLong(data, from, to);
+	}
+
+	/**
+	 * Parses the non-negative decimal number written in the given range of the buffer.
+	 * The number may have a fractional part, separated by '.'.
+	 *
+	 * @return The parsed number or {@link Double#NaN} if the range is not a valid number.
+	 * @see NumberParser#parseDecimal(byte[], int, int)
+	 */
+	public double parseDecimal(int from, int to) {
+		return NumberParser.parseDecimal(data, from, to);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -2,19 +2,14 @@ package commons.util;
 
 public class StringUtil {
 	/**
-	 * Checks if all the characters of the given string are numeric or equal to 
-	 * '.' or '-'. It returns false if find a blank character.
+	 * Checks if the given string is a non-negative decimal number, as
+	 * parsed by {@link NumberParser#parseDecimal(CharSequence, int, int)}.
+	 * It returns false if find a blank character.
 	 * @param string
 	 * @return
 	 */
-	// FIXME test it !!!
 	public static boolean isNumeric(String string) {
-		for (int i = 0; i < string.length(); i++) {
-			if (!Character.isDigit(string.charAt(i)) && !(string.charAt(i) == '.') && !(string.charAt(i) == '-')) {
-				return false;
-			}
-		}
-		return true;
+		return !Double.isNaN(NumberParser.parseDecimal(string, 0, string.length()));
 	}
 	
 	// FIXME test it !!!
@@ -7,5 +7,33 @@ public enum TaskType {
 	 * consumes a certain amount of memory, which may be static or vary over
 	 * the time. The Disk and CPU usages are expected to be small.
 	 */
-	MEMORY
+	MEMORY,
+	
+	/**
+	 * A {@link Task} whose type is {@link TaskType#CPU} uses a certain 
+	 * percentage of some cores, which may vary over the time. The Memory 
+	 * and Disk usages are expected to be small.
+	 */
+	CPU,
+	
+	/**
+	 * A {@link Task} whose type is {@link TaskType#DISK} reads or writes 
+	 * files at a certain throughput. The CPU and Memory usages are expected 
+	 * to be small.
+	 */
+	DISK,
+	
+	/**
+	 * A {@link Task} whose type is {@link TaskType#REPLAY} reproduces the 
+	 * file operations of a traced workload, so its usages are the ones of 
+	 * the workload.
+	 */
+	REPLAY,
+	
+	/**
+	 * A {@link Task} whose type is {@link TaskType#PROFILE} follows the 
+	 * CPU and memory usages collected from a workload over the time, so 
+	 * both usages vary like the ones of the workload.
+	 */
+	PROFILE
 }
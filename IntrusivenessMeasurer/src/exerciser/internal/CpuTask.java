@@ -0,0 +1,162 @@
+package exerciser.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNonNegative;
+import static commons.Preconditions.checkNotNull;
+import static exerciser.TaskType.CPU;
+import static java.lang.String.valueOf;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import commons.ControlGroup;
+import commons.OperatingSystem;
+
+import exerciser.Task;
+import exerciser.TaskType;
+
+/**
+ * This is an implementation of {@link Task} which exercises 
+ * CPU resources. It runs a binary whose threads use the given 
+ * percentage of a core each, alternating busy and sleeping slices 
+ * of a few milliseconds, for the given time. The threads may be 
+ * pinned to the given cores, the thread i to the core i modulo the 
+ * number of cores.</br>
+ * </br>
+ * The percentage can be changed while the task runs. It is written 
+ * to a control file, which the binary reads every 100 milliseconds.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class CpuTask extends ExerciserTask {
+	
+	private static final int MAXIMUM_PERCENTAGE = 100;
+	
+	private String controlFile;
+	private int threads;
+	private int percentage;
+	private int timeout;
+	private int[] cores;
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param cpuExerciser The path to the binary which uses the CPU. It must be 
+	 * non-null and a executable file.
+	 * @param controlFile The file where the percentage is written. It must be non-null.
+	 * @param threads The number of threads. It must be positive.
+	 * @param percentage The percentage of a core used by each thread. It must be 
+	 * between 0 and 100.
+	 * @param timeout The time, in seconds, that the exerciser will use the CPU. It must be 
+	 * non-negative.
+	 * @param cores The cores where the threads run. It must be non-null. If it is empty, 
+	 * the threads are not pinned.
+	 * @throws IOException If cpuExerciser is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null or any of the numeric 
+	 * arguments is out of its range.
+	 */
+	public CpuTask(OperatingSystem system, String cpuExerciser, String controlFile, int threads, 
+			int percentage, int timeout, int[] cores) throws IOException {
+		super(system, cpuExerciser);
+		setUp(controlFile, threads, percentage, timeout, cores);
+	}
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param cpuExerciser The path to the binary which uses the CPU. It must be 
+	 * non-null and a executable file.
+	 * @param controlFile The file where the percentage is written. It must be non-null.
+	 * @param threads The number of threads. It must be positive.
+	 * @param percentage The percentage of a core used by each thread. It must be 
+	 * between 0 and 100.
+	 * @param timeout The time, in seconds, that the exerciser will use the CPU. It must be 
+	 * non-negative.
+	 * @param cores The cores where the threads run. It must be non-null. If it is empty, 
+	 * the threads are not pinned.
+	 * @param controlGroup The group where the binary will run.
+	 * @throws IOException If cpuExerciser is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null or any of the numeric 
+	 * arguments is out of its range.
+	 */
+	public CpuTask(OperatingSystem system, String cpuExerciser, String controlFile, int threads, 
+			int percentage, int timeout, int[] cores, ControlGroup controlGroup) throws IOException {
+		super(system, cpuExerciser, controlGroup);
+		setUp(controlFile, threads, percentage, timeout, cores);
+	}
+	
+	private void setUp(String controlFile, int threads, int percentage, int timeout, int[] cores) {
+		checkNotNull(controlFile, "controlFile must be non-null.");
+		check(threads > 0, "threads must be positive.");
+		checkPercentage(percentage);
+		checkNonNegative(timeout, "timeout must be non-negative.");
+		checkNotNull(cores, "cores must be non-null.");
+		for (int core : cores) {
+			checkNonNegative(core, "cores must be non-negative.");
+		}
+		
+		this.controlFile = controlFile;
+		this.threads = threads;
+		this.percentage = percentage;
+		this.timeout = timeout;
+		this.cores = cores.clone();
+	}
+	
+	private static void checkPercentage(int percentage) {
+		check(percentage >= 0 && percentage <= MAXIMUM_PERCENTAGE, 
+				"percentage must be between 0 and 100.");
+	}
+	
+	@Override
+	public void run() throws IOException {
+		writePercentage();
+		super.run();
+	}
+	
+	@Override
+	protected String[] getArguments() {
+		String[] arguments = new String[4 + cores.length];
+		arguments[0] = valueOf(threads);
+		arguments[1] = valueOf(percentage);
+		arguments[2] = valueOf(timeout);
+		arguments[3] = controlFile;
+		for (int i = 0; i < cores.length; i++) {
+			arguments[4 + i] = valueOf(cores[i]);
+		}
+		return arguments;
+	}
+	
+	public int getPercentage() {
+		return percentage;
+	}
+	
+	/**
+	 * Changes the percentage of a core used by each thread. If the task is 
+	 * running, the exerciser uses the new percentage in at most 100 milliseconds.
+	 * 
+	 * @param percentage It must be between 0 and 100.
+	 * @throws IOException If the control file could not be written.
+	 * @throws IllegalArgumentException If percentage is out of its range.
+	 */
+	public void setPercentage(int percentage) throws IOException {
+		checkPercentage(percentage);
+		this.percentage = percentage;
+		writePercentage();
+	}
+	
+	/*
+	 * The file is rewritten in place, since the exerciser keeps it open. A read 
+	 * of the file while it is being written finds no valid percentage and is ignored.
+	 */
+	private void writePercentage() throws IOException {
+		FileOutputStream stream = new FileOutputStream(controlFile);
+		try {
+			stream.write((percentage + "\n").getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+	
+	@Override
+	public TaskType type() {
+		return CPU;
+	}
+}
@@ -0,0 +1,396 @@
+package exerciser.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNonNegative;
+import static commons.Preconditions.checkNotNull;
+import static exerciser.TaskType.DISK;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.util.LatencyHistogram;
+
+import exerciser.Task;
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+
+/**
+ * This is an implementation of {@link Task} which exercises
+ * disk resources, like the read and write phases of TestDFSIO.
+ * It reads or writes blocks of the given size of a file, sequentially
+ * or at random positions, for the given time.</br>
+ * </br>
+ * The I/O is done by the JVM itself, through positional reads and writes
+ * of a {@link FileChannel} from direct buffers, so no data is copied
+ * between streams. The queue depth is the number of threads which do
+ * the I/O at the same time, each one with a single outstanding operation.
+ * The target throughput is shared by all the threads: each operation waits
+ * for its turn in a schedule of evenly spaced operations. The writes may be
+ * forced to the device after a given number of them.</br>
+ * </br>
+ * When the page cache is bypassed, the writes are synchronous, so each one
+ * reaches the device before it completes. Java does not open files with
+ * O_DIRECT, so the cache can only be bypassed by the write patterns. The reads
+ * only miss the cache when the file does not fit in it.</br>
+ * </br>
+ * The achieved throughput and the latency of each operation are kept, so
+ * they can be compared with the intended load.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class DiskTask implements Task {
+	
+	/**
+	 * The order and direction of the operations.
+	 */
+	public enum Pattern {
+		SEQUENTIAL_READ(true, false),
+		SEQUENTIAL_WRITE(true, true),
+		RANDOM_READ(false, false),
+		RANDOM_WRITE(false, true);
+		
+		private final boolean sequential;
+		private final boolean write;
+		
+		private Pattern(boolean sequential, boolean write) {
+			this.sequential = sequential;
+			this.write = write;
+		}
+		
+		public boolean isSequential() {
+			return sequential;
+		}
+		
+		public boolean isWrite() {
+			return write;
+		}
+	}
+	
+	/**
+	 * The value of the target throughput which does not limit the operations.
+	 */
+	public static final long UNLIMITED = 0;
+	
+	private static Logger logger = LoggerFactory.getLogger(DiskTask.class);
+	private static final long NANOSECONDS_PER_SECOND = 1000000000L;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000L;
+	
+	private final String file;
+	private final long fileSize;
+	private final Pattern pattern;
+	private final int blockSize;
+	private final int queueDepth;
+	private final long targetThroughput;
+	private final int fsyncInterval;
+	private final boolean bypassCache;
+	private final int timeout;
+	private final long numberOfBlocks;
+	
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final AtomicLong transferredBytes = new AtomicLong();
+	private final AtomicLong nextSequentialBlock = new AtomicLong();
+	private final AtomicLong nextOperationTime = new AtomicLong();
+	private final AtomicLong writes = new AtomicLong();
+	private final AtomicInteger runningWorkers = new AtomicInteger();
+	
+	private volatile boolean stopped;
+	private volatile boolean started;
+	private volatile long startTime;
+	private volatile long endTime;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private Thread[] workers = new Thread[0];
+	
+	/**
+	 * The monitor which is notified when the task finishes. It can be null.
+	 */
+	private volatile TaskMonitor monitor;
+	
+	/**
+	 * @param file The file which is read or written. It is created if it does not exist
+	 * and filled up to fileSize before the reads. It must be non-null.
+	 * @param fileSize The size of the used part of the file, in bytes. It must be at least
+	 * the block size.
+	 * @param pattern The order and direction of the operations. It must be non-null.
+	 * @param blockSize The size of each operation, in bytes. It must be positive.
+	 * @param queueDepth The number of operations done at the same time. It must be positive.
+	 * @param targetThroughput The throughput to be reached, in bytes per second, or
+	 * {@link #UNLIMITED}. It must be non-negative.
+	 * @param fsyncInterval The number of writes after which the file is forced to the
+	 * device, or 0 to never force it. It must be non-negative.
+	 * @param bypassCache Whether the writes are synchronous. It must be false for the read
+	 * patterns, whose reads are only uncached when fileSize exceeds the memory of the machine.
+	 * @param timeout The time, in seconds, that the task does I/O. It must be non-negative.
+	 * @throws IllegalArgumentException If any of the arguments is null, any of the numeric
+	 * arguments is out of its range or bypassCache is true for a read pattern.
+	 */
+	public DiskTask(String file, long fileSize, Pattern pattern, int blockSize, int queueDepth,
+			long targetThroughput, int fsyncInterval, boolean bypassCache, int timeout) {
+		checkNotNull(file, "file must be non-null.");
+		checkNotNull(pattern, "pattern must be non-null.");
+		check(blockSize > 0, "blockSize must be positive.");
+		check(fileSize >= blockSize, "fileSize must be at least blockSize.");
+		check(queueDepth > 0, "queueDepth must be positive.");
+		checkNonNegative(targetThroughput, "targetThroughput must be non-negative.");
+		checkNonNegative(fsyncInterval, "fsyncInterval must be non-negative.");
+		checkNonNegative(timeout, "timeout must be non-negative.");
+		check(!bypassCache || pattern.isWrite(), "bypassCache must be false for the read patterns.");
+		
+		this.file = file;
+		this.fileSize = fileSize;
+		this.pattern = pattern;
+		this.blockSize = blockSize;
+		this.queueDepth = queueDepth;
+		this.targetThroughput = targetThroughput;
+		this.fsyncInterval = fsyncInterval;
+		this.bypassCache = bypassCache;
+		this.timeout = timeout;
+		this.numberOfBlocks = fileSize / blockSize;
+	}
+	
+	/**
+	 * Opens the file, fills it if it is read and starts the threads which do
+	 * the I/O. It returns right after starting them.
+	 *
+	 * @throws IOException If the task is already running or the file could not be
+	 * opened or filled.
+	 */
+	@Override
+	public synchronized void run() throws IOException {
+		if (isRunning()) {
+			throw new IOException("The task is already running.");
+		}
+		randomAccessFile = new RandomAccessFile(file, bypassCache && pattern.isWrite() ? "rwd" : "rw");
+		channel = randomAccessFile.getChannel();
+		if (!pattern.isWrite()) {
+			try {
+				fill();
+			} catch (IOException e) {
+				randomAccessFile.close();
+				throw e;
+			}
+		}
+		
+		latencies.reset();
+		transferredBytes.set(0);
+		nextSequentialBlock.set(0);
+		writes.set(0);
+		stopped = false;
+		startTime = System.nanoTime();
+		started = true;
+		nextOperationTime.set(startTime);
+		
+		long deadline = startTime + timeout * NANOSECONDS_PER_SECOND;
+		workers = new Thread[queueDepth];
+		runningWorkers.set(queueDepth);
+		for (int i = 0; i < queueDepth; i++) {
+			workers[i] = new Thread(new Worker(deadline, i), "disk-task-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		logger.debug("started {} of {} with {} threads", new Object[] {pattern, file, queueDepth});
+	}
+	
+	/*
+	 * The blocks which were already written are kept, so a file is only
+	 * written the first time it is read.
+	 */
+	private void fill() throws IOException {
+		ByteBuffer buffer = newBlock(0);
+		for (long position = channel.size() / blockSize * blockSize; position + blockSize <= fileSize;
+				position += blockSize) {
+			buffer.clear();
+			writeFully(buffer, position);
+		}
+		channel.force(false);
+	}
+	
+	private ByteBuffer newBlock(long seed) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(blockSize);
+		byte[] content = new byte[blockSize];
+		new Random(seed).nextBytes(content);
+		buffer.put(content);
+		buffer.clear();
+		return buffer;
+	}
+	
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+	
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Unexpected end of " + file + ".");
+			}
+			position += read;
+		}
+	}
+	
+	private class Worker implements Runnable {
+		
+		private final long deadline;
+		private final ByteBuffer buffer;
+		private final Random random;
+		
+		Worker(long deadline, int index) {
+			this.deadline = deadline;
+			this.buffer = newBlock(index);
+			this.random = new Random(index);
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while (!stopped && waitForTurn()) {
+					long position = nextBlock() * blockSize;
+					buffer.clear();
+					long operationStart = System.nanoTime();
+					if (pattern.isWrite()) {
+						writeFully(buffer, position);
+						if (fsyncInterval > 0 && writes.incrementAndGet() % fsyncInterval == 0) {
+							channel.force(false);
+						}
+					} else {
+						readFully(buffer, position);
+					}
+					latencies.record(System.nanoTime() - operationStart);
+					transferredBytes.addAndGet(blockSize);
+				}
+			} catch (IOException e) {
+				if (!stopped) {
+					logger.error("could not do I/O on " + file, e);
+				}
+			} finally {
+				finish();
+			}
+		}
+		
+		/*
+		 * Each operation takes the next slot of the schedule. A slot which is already
+		 * late is not waited for, so a slow device does not get a burst of operations
+		 * later, but the schedule keeps its pace.
+		 */
+		private boolean waitForTurn() {
+			long now = System.nanoTime();
+			if (now >= deadline) {
+				return false;
+			}
+			if (targetThroughput == UNLIMITED) {
+				return true;
+			}
+			long interval = blockSize * NANOSECONDS_PER_SECOND / targetThroughput;
+			long turn = nextOperationTime.getAndAdd(interval);
+			if (turn < now - interval) {
+				nextOperationTime.compareAndSet(turn + interval, now);
+			}
+			long wait = turn - now;
+			if (turn >= deadline) {
+				return false;
+			}
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / NANOSECONDS_PER_MILLISECOND, (int) (wait % NANOSECONDS_PER_MILLISECOND));
+				} catch (InterruptedException e) {
+					return false;
+				}
+			}
+			return !stopped;
+		}
+		
+		private long nextBlock() {
+			if (pattern.isSequential()) {
+				return nextSequentialBlock.getAndIncrement() % numberOfBlocks;
+			}
+			return (long) (random.nextDouble() * numberOfBlocks);
+		}
+	}
+	
+	private void finish() {
+		if (runningWorkers.decrementAndGet() == 0) {
+			endTime = System.nanoTime();
+			try {
+				randomAccessFile.close();
+			} catch (IOException e) {
+				logger.warn("could not close {}: {}", file, e.getMessage());
+			}
+			logger.debug("finished {} of {}", pattern, file);
+			TaskMonitor taskMonitor = monitor;
+			if (taskMonitor != null) {
+				taskMonitor.completed(this);
+			}
+		}
+	}
+	
+	@Override
+	public TaskType type() {
+		return DISK;
+	}
+	
+	/**
+	 * Sets the monitor which is notified, from the thread of the task, each time 
+	 * all of its workers finish, or null to notify none.
+	 */
+	public void setMonitor(TaskMonitor monitor) {
+		this.monitor = monitor;
+	}
+	
+	@Override
+	public void terminate() throws IOException {
+		stopped = true;
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while terminating the task.");
+			}
+		}
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return runningWorkers.get() > 0;
+	}
+	
+	/**
+	 * Returns the number of bytes read or written since the task started.
+	 */
+	public long getTransferredBytes() {
+		return transferredBytes.get();
+	}
+	
+	/**
+	 * Returns the achieved throughput, in bytes per second, since the task started
+	 * until it finished or until now. It is 0 if the task has not started.
+	 */
+	public double getThroughput() {
+		if (!started) {
+			return 0;
+		}
+		long end = isRunning() ? System.nanoTime() : endTime;
+		long elapsed = end - startTime;
+		return elapsed <= 0 ? 0 : (double) transferredBytes.get() * NANOSECONDS_PER_SECOND / elapsed;
+	}
+	
+	/**
+	 * Returns the latencies, in nanoseconds, of the operations done since the task started.
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+}
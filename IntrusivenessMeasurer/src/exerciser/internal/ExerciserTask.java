@@ -0,0 +1,161 @@
+package exerciser.internal;
+
+import static commons.Preconditions.checkNotNull;
+import static commons.util.FileUtil.checkFileExist;
+import static commons.util.FileUtil.checkFileIsExecutable;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.ControlGroup;
+import commons.ExitListener;
+import commons.OperatingSystem;
+import commons.SystemProcess;
+
+import exerciser.Task;
+import exerciser.TaskMonitor;
+
+/**
+ * A {@link Task} which runs a binary, an exerciser, with the arguments given by 
+ * the subclass. The exerciser is the only process of the task.</br>
+ * </br>
+ * When it is given a {@link ControlGroup}, the exerciser runs inside the group, 
+ * which accounts and limits its usage, and the task is running while the 
+ * group has any process. Otherwise, the task is running while its process has 
+ * not exited, which is checked through the process itself.</br>
+ * </br>
+ * The exit of the exerciser is watched by the system, which notifies the 
+ * {@link TaskMonitor} of the task, if it has one, from its own thread.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public abstract class ExerciserTask implements Task {
+	
+	private static Logger logger = LoggerFactory.getLogger(ExerciserTask.class);
+	private OperatingSystem system;
+	
+	/**
+	 * The path to the binary which exercises the resources.
+	 */
+	private String exerciser;
+	
+	/**
+	 * The process which represents this {@link Task}. It can be null when there is no 
+	 * process running.
+	 */
+	private SystemProcess runningProcess;
+	
+	/**
+	 * The group where the binary runs. It is null when the binary runs as an 
+	 * ordinary process.
+	 */
+	private ControlGroup controlGroup;
+	
+	/**
+	 * The monitor which is notified when the exerciser exits. It can be null.
+	 */
+	private volatile TaskMonitor monitor;
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param exerciser The path to the binary. It must be non-null and a executable file.
+	 * @throws IOException If exerciser is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null.
+	 */
+	protected ExerciserTask(OperatingSystem system, String exerciser) throws IOException {
+		checkNotNull(system, "system must be non-null.");
+		checkNotNull(exerciser, "exerciser must be non-null.");
+		
+		checkFileExist(exerciser);
+		checkFileIsExecutable(exerciser);
+		
+		this.system = system;
+		this.exerciser = exerciser;
+	}
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param exerciser The path to the binary. It must be non-null and a executable file.
+	 * @param controlGroup The group where the binary will run.
+	 * @throws IOException If exerciser is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null.
+	 */
+	protected ExerciserTask(OperatingSystem system, String exerciser, ControlGroup controlGroup) 
+			throws IOException {
+		this(system, exerciser);
+		checkNotNull(controlGroup, "controlGroup must be non-null.");
+		this.controlGroup = controlGroup;
+	}
+	
+	/**
+	 * Returns the arguments of the exerciser, which must not have blank characters.
+	 */
+	protected abstract String[] getArguments();
+	
+	@Override
+	public void run() throws IOException {
+		String[] arguments = getArguments();
+		String[] command = new String[arguments.length + 1];
+		command[0] = exerciser;
+		System.arraycopy(arguments, 0, command, 1, arguments.length);
+		
+		if (controlGroup != null) {
+			logger.debug("executing command in {}: {}", controlGroup.getPath(), exerciser);
+			runningProcess = system.execute(controlGroup.confine(command));
+		} else {
+			logger.debug("executing command: {}", exerciser);
+			runningProcess = system.execute(command);
+		}
+		runningProcess.execute();
+		system.watch(runningProcess, new ExitListener() {
+			@Override
+			public void exited(SystemProcess process) {
+				logger.debug("process exited: {}", exerciser);
+				TaskMonitor taskMonitor = monitor;
+				if (taskMonitor != null) {
+					taskMonitor.completed(ExerciserTask.this);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Returns the group where the binary runs, whose usage is the usage of the 
+	 * task, or null if the task was not given a group.
+	 */
+	public ControlGroup getControlGroup() {
+		return controlGroup;
+	}
+	
+	/**
+	 * Sets the monitor which is notified, from a thread of the system, each time 
+	 * the exerciser exits, or null to notify none.
+	 */
+	public void setMonitor(TaskMonitor monitor) {
+		this.monitor = monitor;
+	}
+	
+	@Override
+	public void terminate() throws IOException {
+		if (isRunning()) {
+			logger.debug("terminating process: {}", exerciser);
+			if (controlGroup != null) {
+				controlGroup.kill();
+			} else {
+				runningProcess.terminate();
+			}
+			runningProcess = null;
+		}
+	}
+	
+	@Override
+	public boolean isRunning() throws IOException {
+		if (controlGroup != null) {
+			return controlGroup.isPopulated();
+		}
+		SystemProcess process = runningProcess;
+		return process != null && process.isRunning();
+	}
+}
@@ -0,0 +1,417 @@
+package exerciser.internal;
+
+import static commons.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues the file operations equivalent to the system calls of a trace
+ * against the files of a scratch directory. A traced path is mapped to the same
+ * path under the scratch directory, and the traced file descriptors of each
+ * process are mapped to open files, shared by the descriptors created by dup and
+ * dup2, like the kernel does.</br>
+ * </br>
+ * The replayed calls are open, close, dup, dup2, read, write, llseek, stat, lstat,
+ * fstat, mkdir, rmdir, unlink and rename. The files which did not exist when they
+ * were traced, like the input of a job, are created when they are opened and grown
+ * when the trace reads past their end, so the read calls transfer the same amount
+ * of bytes. The extended attribute calls can not be issued by Java, so they are
+ * replayed as a lookup of the metadata of the file. The calls which failed when
+ * traced are not replayed.</br>
+ * </br>
+ * The calls of different threads can be replayed at the same time, but the calls
+ * of a thread must be replayed in order, by the same {@link Buffer}.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class FileOperationReplayer {
+	
+	private static final int ACCESS_MODE_MASK = 03;
+	private static final int O_RDONLY = 0;
+	private static final int O_TRUNC = 01000;
+	private static final int O_APPEND = 02000;
+	private static final int O_DIRECTORY = 0200000;
+	private static final String REGULAR_FILE_TYPE = "S_IFREG";
+	private static final String UNKNOWN = "null";
+	private static final String SEEK_SET = "SEEK_SET";
+	private static final String SEEK_CUR = "SEEK_CUR";
+	private static final String SEEK_END = "SEEK_END";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * The result of replaying a call.
+	 */
+	enum Result {
+		REPLAYED,
+		
+		/**
+		 * The call is not replayed, failed when it was traced or uses a file
+		 * descriptor which is unknown to the replay.
+		 */
+		SKIPPED
+	}
+	
+	/**
+	 * The buffer used by the reads and writes of a thread.
+	 */
+	static class Buffer {
+		private final ByteBuffer data = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+	
+	/**
+	 * An open file, shared by the descriptors which refer to it.
+	 */
+	private static class OpenFile {
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final boolean append;
+		private int references = 1;
+		
+		OpenFile(RandomAccessFile file, boolean append) {
+			this.file = file;
+			this.channel = file.getChannel();
+			this.append = append;
+		}
+	}
+	
+	private final File scratchDirectory;
+	private final Map<Long, OpenFile> descriptors = new ConcurrentHashMap<Long, OpenFile>();
+	
+	/**
+	 * @param scratchDirectory The directory under which the traced paths are replayed.
+	 * It is created if it does not exist.
+	 * @throws IOException If the directory could not be created.
+	 * @throws IllegalArgumentException If scratchDirectory is null.
+	 */
+	FileOperationReplayer(String scratchDirectory) throws IOException {
+		checkNotNull(scratchDirectory, "scratchDirectory must not be null.");
+		this.scratchDirectory = new File(scratchDirectory);
+		if (!this.scratchDirectory.isDirectory() && !this.scratchDirectory.mkdirs()) {
+			throw new IOException("Could not create " + scratchDirectory + ".");
+		}
+	}
+	
+	/**
+	 * Issues the file operations equivalent to the given call.
+	 *
+	 * @throws IOException If a file operation failed.
+	 */
+	Result replay(SyscallRecord record, Buffer buffer) throws IOException {
+		String call = record.getCall();
+		try {
+			if (record.getReturn() < 0) {
+				return Result.SKIPPED;
+			}
+			if (call.equals("open")) {
+				return open(record);
+			} else if (call.equals("close")) {
+				return close(record.getPid(), record.getNumericArgument(0));
+			} else if (call.equals("dup")) {
+				return duplicate(record.getPid(), record.getNumericArgument(0), record.getReturn());
+			} else if (call.equals("dup2")) {
+				return duplicate(record.getPid(), record.getNumericArgument(0), record.getNumericArgument(1));
+			} else if (call.equals("read") || call.equals("write")) {
+				return transfer(record, buffer, call.equals("write"));
+			} else if (call.equals("llseek")) {
+				return seek(record);
+			} else if (call.equals("fstat")) {
+				return lookUp(record.getPid(), record.getNumericArgument(0));
+			} else if (call.equals("stat") || call.equals("lstat")) {
+				return lookUp(toScratchFile(record.getArgument(0), record.getArgument(1)));
+			} else if (call.equals("mkdir")) {
+				return makeDirectory(toScratchFile(record.getArgument(0), record.getArgument(1)));
+			} else if (call.equals("rmdir") || call.equals("unlink")) {
+				return delete(toScratchFile(record.getArgument(0), record.getArgument(1)));
+			} else if (call.equals("rename")) {
+				return rename(toScratchFile(record.getArgument(0), record.getArgument(1)),
+						toScratchFile(record.getArgument(0), record.getArgument(2)));
+			} else if (call.endsWith("xattr")) {
+				return lookUpAttributes(record);
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid call: " + record + ".");
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("Invalid call: " + record + ".");
+		}
+		return Result.SKIPPED;
+	}
+	
+	/*
+	 * open: pwd, filename, flags, mode, returned descriptor
+	 */
+	private Result open(SyscallRecord record) throws IOException {
+		File file = toScratchFile(record.getArgument(0), record.getArgument(1));
+		int flags = (int) record.getNumericArgument(2);
+		if ((flags & O_DIRECTORY) != 0 || file.isDirectory()) {
+			return makeDirectory(file);
+		}
+		OpenFile openFile = open(file, (flags & O_APPEND) != 0);
+		if ((flags & O_TRUNC) != 0 && (flags & ACCESS_MODE_MASK) != O_RDONLY) {
+			openFile.file.setLength(0);
+		}
+		release(descriptors.put(key(record.getPid(), record.getReturn()), openFile));
+		return Result.REPLAYED;
+	}
+	
+	/*
+	 * The files are always opened for writing, since the files which are read
+	 * may have to be created or grown.
+	 */
+	private static OpenFile open(File file, boolean append) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory()) {
+			parent.mkdirs();
+		}
+		return new OpenFile(new RandomAccessFile(file, "rw"), append);
+	}
+	
+	private Result close(int pid, long descriptor) throws IOException {
+		OpenFile openFile = descriptors.remove(key(pid, descriptor));
+		if (openFile == null) {
+			return Result.SKIPPED;
+		}
+		release(openFile);
+		return Result.REPLAYED;
+	}
+	
+	private Result duplicate(int pid, long descriptor, long newDescriptor) throws IOException {
+		OpenFile openFile = descriptors.get(key(pid, descriptor));
+		if (openFile == null) {
+			return Result.SKIPPED;
+		}
+		if (descriptor == newDescriptor) {
+			return Result.REPLAYED;
+		}
+		synchronized (openFile) {
+			openFile.references++;
+		}
+		release(descriptors.put(key(pid, newDescriptor), openFile));
+		return Result.REPLAYED;
+	}
+	
+	private static void release(OpenFile openFile) throws IOException {
+		if (openFile == null) {
+			return;
+		}
+		synchronized (openFile) {
+			openFile.references--;
+			if (openFile.references == 0) {
+				openFile.file.close();
+			}
+		}
+	}
+	
+	/*
+	 * read and write: file information, descriptor, count, returned bytes
+	 */
+	private Result transfer(SyscallRecord record, Buffer buffer, boolean write) throws IOException {
+		long bytes = record.getReturn();
+		OpenFile openFile = getOrOpen(record.getPid(), record.getNumericArgument(1), record.getArgument(0));
+		if (openFile == null) {
+			return Result.SKIPPED;
+		}
+		synchronized (openFile) {
+			FileChannel channel = openFile.channel;
+			if (write && openFile.append) {
+				channel.position(channel.size());
+			}
+			long position = channel.position();
+			if (!write && position + bytes > channel.size()) {
+				openFile.file.setLength(position + bytes);
+			}
+			long remaining = bytes;
+			while (remaining > 0) {
+				ByteBuffer data = buffer.data;
+				data.clear();
+				data.limit((int) Math.min(remaining, data.capacity()));
+				int transferred = write ? channel.write(data) : channel.read(data);
+				if (transferred <= 0) {
+					break;
+				}
+				remaining -= transferred;
+			}
+		}
+		return Result.REPLAYED;
+	}
+	
+	/*
+	 * The standard streams and the files opened before the tracing started
+	 * are opened by the path of their file information, if it is a regular file.
+	 */
+	private OpenFile getOrOpen(int pid, long descriptor, String fileInformation) throws IOException {
+		OpenFile openFile = descriptors.get(key(pid, descriptor));
+		if (openFile != null) {
+			return openFile;
+		}
+		String[] information = parseFileInformation(fileInformation);
+		if (information == null || information[2].equals(UNKNOWN)
+				|| !information[4].startsWith(REGULAR_FILE_TYPE)) {
+			return null;
+		}
+		openFile = open(toScratchFile("/", information[2]), false);
+		descriptors.put(key(pid, descriptor), openFile);
+		return openFile;
+	}
+	
+	/*
+	 * (root>pwd>path>size>type>inode)
+	 */
+	private static String[] parseFileInformation(String fileInformation) {
+		if (!fileInformation.startsWith("(") || !fileInformation.endsWith(")")) {
+			return null;
+		}
+		String[] information = fileInformation.substring(1, fileInformation.length() - 1).split(">");
+		return information.length < 6 ? null : information;
+	}
+	
+	/*
+	 * llseek: descriptor, offset high, offset low, whence, resulting offset
+	 */
+	private Result seek(SyscallRecord record) throws IOException {
+		OpenFile openFile = descriptors.get(key(record.getPid(), record.getNumericArgument(0)));
+		if (openFile == null) {
+			return Result.SKIPPED;
+		}
+		long offset = record.getNumericArgument(1) << 32 | (record.getNumericArgument(2) & 0xffffffffL);
+		String whence = record.getArgument(3);
+		synchronized (openFile) {
+			FileChannel channel = openFile.channel;
+			long position;
+			if (whence.equals(SEEK_SET)) {
+				position = offset;
+			} else if (whence.equals(SEEK_CUR)) {
+				position = channel.position() + offset;
+			} else if (whence.equals(SEEK_END)) {
+				position = channel.size() + offset;
+			} else {
+				return Result.SKIPPED;
+			}
+			// the replayed file may be shorter or at another position than the traced one
+			if (position < 0) {
+				throw new IOException("Invalid offset " + position + " of " + record + ".");
+			}
+			channel.position(position);
+		}
+		return Result.REPLAYED;
+	}
+	
+	private Result lookUp(int pid, long descriptor) throws IOException {
+		OpenFile openFile = descriptors.get(key(pid, descriptor));
+		if (openFile == null) {
+			return Result.SKIPPED;
+		}
+		synchronized (openFile) {
+			openFile.channel.size();
+		}
+		return Result.REPLAYED;
+	}
+	
+	private static Result lookUp(File file) {
+		if (file.exists()) {
+			file.length();
+			file.lastModified();
+		}
+		return Result.REPLAYED;
+	}
+	
+	/*
+	 * The calls on a descriptor are fgetxattr (name, descriptor, ...),
+	 * fsetxattr, fremovexattr and flistxattr (descriptor, ...). The others
+	 * start with the pwd and the path.
+	 */
+	private Result lookUpAttributes(SyscallRecord record) throws IOException {
+		String call = record.getCall();
+		if (call.equals("fgetxattr")) {
+			return lookUp(record.getPid(), record.getNumericArgument(1));
+		} else if (call.startsWith("f")) {
+			return lookUp(record.getPid(), record.getNumericArgument(0));
+		}
+		return lookUp(toScratchFile(record.getArgument(0), record.getArgument(1)));
+	}
+	
+	private static Result makeDirectory(File directory) {
+		directory.mkdirs();
+		return Result.REPLAYED;
+	}
+	
+	private static Result delete(File file) {
+		file.delete();
+		return Result.REPLAYED;
+	}
+	
+	private static Result rename(File file, File newFile) {
+		File parent = newFile.getParentFile();
+		if (parent != null && !parent.isDirectory()) {
+			parent.mkdirs();
+		}
+		file.renameTo(newFile);
+		return Result.REPLAYED;
+	}
+	
+	/**
+	 * Returns the file of the scratch directory which replays the given traced
+	 * path, resolved against the traced working directory if it is relative. The
+	 * ".." components do not leave the scratch directory.
+	 */
+	File toScratchFile(String workingDirectory, String path) {
+		List<String> components = new ArrayList<String>();
+		if (!path.startsWith("/")) {
+			addComponents(components, workingDirectory);
+		}
+		addComponents(components, path);
+		File file = scratchDirectory;
+		for (String component : components) {
+			file = new File(file, component);
+		}
+		return file;
+	}
+	
+	private static void addComponents(List<String> components, String path) {
+		for (String component : path.split("/")) {
+			if (component.length() == 0 || component.equals(".")) {
+				continue;
+			}
+			if (component.equals("..")) {
+				if (!components.isEmpty()) {
+					components.remove(components.size() - 1);
+				}
+			} else {
+				components.add(component);
+			}
+		}
+	}
+	
+	private static long key(int pid, long descriptor) {
+		return (long) pid << 32 | (descriptor & 0xffffffffL);
+	}
+	
+	/**
+	 * Returns the number of traced descriptors which are open.
+	 */
+	int getNumberOfOpenDescriptors() {
+		return descriptors.size();
+	}
+	
+	/**
+	 * Closes all the open files.
+	 */
+	void closeAll() throws IOException {
+		for (OpenFile openFile : descriptors.values()) {
+			synchronized (openFile) {
+				if (openFile.references > 0) {
+					openFile.references = 0;
+					openFile.file.close();
+				}
+			}
+		}
+		descriptors.clear();
+	}
+}
@@ -0,0 +1,232 @@
+package exerciser.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+import static commons.util.NumberParser.parseDecimal;
+import static commons.util.NumberParser.parseLong;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The CPU and memory usages of a workload over time, like the ones collected
+ * by slave_data_collector.sh for a terasort or mrbench run. Each sample holds
+ * from the time it was taken until the next one, so the usages are a step
+ * function of the time since the start of the collection.</br>
+ * </br>
+ * The CPU usage is a percentage of a core, which is greater than 100 when the
+ * workload uses many cores, and the memory usage is a percentage of the total
+ * memory of the machine where it was collected.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class LoadProfile {
+	
+	private static final String CPU_FILE_EXTENSION = ".cpu";
+	private static final String MEMORY_FILE_EXTENSION = ".mem";
+	private static final String PROCESS_FILE_EXTENSION = ".proc";
+	private static final String HEADER_START = "process=";
+	private static final String STOP_TIME = "stop time=";
+	private static final String TIME_BETWEEN_CHECKS = "time between checks=";
+	private static final double MILLISECONDS_PER_SECOND = 1000;
+	
+	/**
+	 * The time, in milliseconds since the start, when each sample starts to hold.
+	 */
+	private final long[] times;
+	private final double[] cpuUsages;
+	private final double[] memoryUsages;
+	private final long duration;
+	private final double maximumCPUUsage;
+	
+	/**
+	 * @param periods The time, in milliseconds, that each sample holds. They must be positive.
+	 * @param cpuUsages The CPU usage of each sample. They must be non-negative.
+	 * @param memoryUsages The memory usage of each sample. They must be between 0 and 100.
+	 * @throws IllegalArgumentException If any of the arguments is null or empty, the arrays
+	 * have different lengths or any of the values is out of its range.
+	 */
+	public LoadProfile(long[] periods, double[] cpuUsages, double[] memoryUsages) {
+		checkNotNull(periods, "periods must be non-null.");
+		checkNotNull(cpuUsages, "cpuUsages must be non-null.");
+		checkNotNull(memoryUsages, "memoryUsages must be non-null.");
+		check(periods.length > 0, "periods must not be empty.");
+		check(periods.length == cpuUsages.length && periods.length == memoryUsages.length,
+				"periods, cpuUsages and memoryUsages must have the same length.");
+		
+		times = new long[periods.length];
+		long time = 0;
+		double maximum = 0;
+		for (int i = 0; i < periods.length; i++) {
+			check(periods[i] > 0, "periods must be positive.");
+			check(cpuUsages[i] >= 0, "cpuUsages must be non-negative.");
+			check(memoryUsages[i] >= 0 && memoryUsages[i] <= 100, "memoryUsages must be between 0 and 100.");
+			times[i] = time;
+			time += periods[i];
+			maximum = Math.max(maximum, cpuUsages[i]);
+		}
+		this.cpuUsages = cpuUsages.clone();
+		this.memoryUsages = memoryUsages.clone();
+		this.duration = time;
+		this.maximumCPUUsage = maximum;
+	}
+	
+	/**
+	 * Reads the profile from the data files written by the data collector. The
+	 * samples are read from the .cpu and .mem files and the time between them
+	 * from the .proc file, if it exists, or from the fixed time between checks
+	 * of their header. Only the first collection of the files is read.
+	 *
+	 * @param outputBaseFilename The radical given to the collector. It must be non-null.
+	 * @throws IOException If the files could not be read, have no samples or a sample
+	 * is not valid, or the time between checks is adaptive and there is no .proc file.
+	 * @throws IllegalArgumentException If outputBaseFilename is null.
+	 */
+	public static LoadProfile read(String outputBaseFilename) throws IOException {
+		checkNotNull(outputBaseFilename, "outputBaseFilename must be non-null.");
+		
+		List<String> cpuLines = new ArrayList<String>();
+		List<String> memoryLines = new ArrayList<String>();
+		String timeBetweenChecks = readSamples(outputBaseFilename + CPU_FILE_EXTENSION, cpuLines);
+		readSamples(outputBaseFilename + MEMORY_FILE_EXTENSION, memoryLines);
+		
+		// a collection which was interrupted may have written more samples to some of the files
+		int numberOfSamples = Math.min(cpuLines.size(), memoryLines.size());
+		long[] periods;
+		String processFile = outputBaseFilename + PROCESS_FILE_EXTENSION;
+		if (new File(processFile).exists()) {
+			List<String> processLines = new ArrayList<String>();
+			readSamples(processFile, processLines);
+			numberOfSamples = Math.min(numberOfSamples, processLines.size());
+			periods = readPeriods(processFile, processLines, numberOfSamples);
+		} else {
+			periods = new long[numberOfSamples];
+			Arrays.fill(periods, parseTimeBetweenChecks(outputBaseFilename, timeBetweenChecks));
+		}
+		if (numberOfSamples == 0) {
+			throw new IOException("There are no samples in " + outputBaseFilename + ".");
+		}
+		
+		double[] cpuUsages = new double[numberOfSamples];
+		double[] memoryUsages = new double[numberOfSamples];
+		for (int i = 0; i < numberOfSamples; i++) {
+			cpuUsages[i] = parseUsage(outputBaseFilename + CPU_FILE_EXTENSION, cpuLines.get(i));
+			memoryUsages[i] = Math.min(100, parseUsage(outputBaseFilename + MEMORY_FILE_EXTENSION,
+					memoryLines.get(i)));
+		}
+		return new LoadProfile(periods, cpuUsages, memoryUsages);
+	}
+	
+	/*
+	 * The header and ending lines have a '=', which the samples do not have.
+	 * Returns the time between checks of the header.
+	 */
+	private static String readSamples(String file, List<String> samples) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String timeBetweenChecks = null;
+			boolean started = false;
+			String line = reader.readLine();
+			while (line != null) {
+				if (line.startsWith(HEADER_START)) {
+					if (started) {
+						break;
+					}
+					started = true;
+				} else if (line.startsWith(STOP_TIME)) {
+					break;
+				} else if (line.startsWith(TIME_BETWEEN_CHECKS)) {
+					timeBetweenChecks = line.substring(TIME_BETWEEN_CHECKS.length()).trim();
+				} else if (line.indexOf('=') < 0 && line.trim().length() > 0) {
+					samples.add(line.trim());
+				}
+				line = reader.readLine();
+			}
+			return timeBetweenChecks;
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/*
+	 * The period is the last column of the .proc file.
+	 */
+	private static long[] readPeriods(String file, List<String> lines, int numberOfSamples)
+			throws IOException {
+		long[] periods = new long[numberOfSamples];
+		for (int i = 0; i < numberOfSamples; i++) {
+			String line = lines.get(i);
+			long period = parseLong(line, line.lastIndexOf(' ') + 1, line.length());
+			if (period <= 0) {
+				throw new IOException("Invalid sample in " + file + ": " + line);
+			}
+			periods[i] = period;
+		}
+		return periods;
+	}
+	
+	private static long parseTimeBetweenChecks(String outputBaseFilename, String timeBetweenChecks)
+			throws IOException {
+		double seconds = timeBetweenChecks == null ? Double.NaN
+				: parseDecimal(timeBetweenChecks, 0, timeBetweenChecks.length());
+		long period = Math.round(seconds * MILLISECONDS_PER_SECOND);
+		if (Double.isNaN(seconds) || period <= 0) {
+			throw new IOException("The time between checks of " + outputBaseFilename
+					+ " is not fixed and there is no " + PROCESS_FILE_EXTENSION + " file.");
+		}
+		return period;
+	}
+	
+	private static double parseUsage(String file, String line) throws IOException {
+		double usage = parseDecimal(line, 0, line.length());
+		if (Double.isNaN(usage)) {
+			throw new IOException("Invalid sample in " + file + ": " + line);
+		}
+		return usage;
+	}
+	
+	/**
+	 * Returns the time, in milliseconds, from the start of the first sample
+	 * until the end of the last one.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	public int getNumberOfSamples() {
+		return times.length;
+	}
+	
+	public double getMaximumCPUUsage() {
+		return maximumCPUUsage;
+	}
+	
+	/**
+	 * Returns the CPU usage at the given time, in milliseconds since the start.
+	 * After the end, it is the usage of the last sample.
+	 */
+	public double getCPUUsage(long time) {
+		return cpuUsages[sampleAt(time)];
+	}
+	
+	/**
+	 * Returns the memory usage at the given time, in milliseconds since the start.
+	 * After the end, it is the usage of the last sample.
+	 */
+	public double getMemoryUsage(long time) {
+		return memoryUsages[sampleAt(time)];
+	}
+	
+	private int sampleAt(long time) {
+		int index = Arrays.binarySearch(times, time);
+		if (index >= 0) {
+			return index;
+		}
+		return Math.max(0, -index - 2);
+	}
+}
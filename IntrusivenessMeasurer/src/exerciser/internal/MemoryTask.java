@@ -2,19 +2,14 @@ package exerciser.internal;
 
 import static commons.Preconditions.checkNonNegative;
 import static commons.Preconditions.checkNotNull;
-import static commons.util.FileUtil.checkFileExist;
-import static commons.util.FileUtil.checkFileIsExecutable;
-import static commons.util.StringUtil.concat;
 import static exerciser.TaskType.MEMORY;
 import static java.lang.String.valueOf;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+import commons.ControlGroup;
 import commons.OperatingSystem;
-import commons.SystemProcess;
 
 import exerciser.Task;
 import exerciser.TaskType;
@@ -23,28 +18,41 @@ import exerciser.TaskType;
  * This is an implementation of {@link Task} which exercises 
  * memory resources. It does it by allocating the given amount 
  * of bytes and freeing the memory passed the given time. 
- * It calls a binary to do the allocation and deallocation of the memory.
+ * It calls a binary to do the allocation and deallocation of the memory.</br>
+ * </br>
+ * When it is given a control file, the amount can be changed while the 
+ * task runs. It is written to the file, which the binary reads every 100 
+ * milliseconds, growing or shrinking the allocated memory, whose pages 
+ * are touched, in chunks of 1 MB.
  * 
  * @author Armstrong Mardilson da Silva Goes
  */
-public class MemoryTask implements Task {
-
-	private static Logger logger = LoggerFactory.getLogger(MemoryTask.class);
-	private OperatingSystem system;
+public class MemoryTask extends ExerciserTask {
+	
+	private long amountOfBytesToAllocate;
+	private int timeout;
 	
 	/**
-	 * The path to the binary which allocate and deallocate memory.
+	 * The file where the amount is written. It is null when the amount is fixed.
 	 */
-	private String memoryExerciser; 
+	private String controlFile;
 	
 	/**
-	 * The process which represents this {@link MemoryTask}. It can be null when there is no 
-	 * process running.
+	 * @param system The system where the task will run.
+	 * @param memoryExerciser The path to the binary which allocate and deallocate memory. It must be 
+	 * non-null and a executable file.
+	 * @param amountOfBytesToAllocate It must be non-negative.
+	 * @param timeout The time that the exerciser will wait until deallocate the memory. It must be 
+	 * non-negative.
+	 * @throws IOException If memoryExerciser is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null, or any of the numeric 
+	 * arguments is negative.
 	 */
-	private SystemProcess runningProcess;
-	
-	private int amountOfBytesToAllocate;
-	private int timeout;
+	public MemoryTask(OperatingSystem system, String memoryExerciser, int amountOfBytesToAllocate,
+			int timeout) throws IOException {
+		super(system, memoryExerciser);
+		setUp(amountOfBytesToAllocate, timeout);
+	}
 	
 	/**
 	 * @param system The system where the task will run.
@@ -53,52 +61,120 @@ public class MemoryTask implements Task {
 	 * @param amountOfBytesToAllocate It must be non-negative.
 	 * @param timeout The time that the exerciser will wait until deallocate the memory. It must be 
 	 * non-negative.
+	 * @param controlGroup The group where the binary will run.
 	 * @throws IOException If memoryExerciser is not executable.
 	 * @throws IllegalArgumentException If any of the arguments is null, or any of the numeric 
 	 * arguments is negative.
 	 */
 	public MemoryTask(OperatingSystem system, String memoryExerciser, int amountOfBytesToAllocate,
-			int timeout) throws IOException {
-		checkNotNull(system, "system must be non-null.");
-		checkNotNull(memoryExerciser, "memoryExerciser must be non-null.");
+			int timeout, ControlGroup controlGroup) throws IOException {
+		super(system, memoryExerciser, controlGroup);
+		setUp(amountOfBytesToAllocate, timeout);
+	}
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param memoryExerciser The path to the binary which allocate and deallocate memory. It must be 
+	 * non-null and a executable file.
+	 * @param controlFile The file where the amount is written. It must be non-null.
+	 * @param amountOfBytesToAllocate The initial amount. It must be non-negative.
+	 * @param timeout The time that the exerciser will wait until deallocate the memory. It must be 
+	 * non-negative.
+	 * @throws IOException If memoryExerciser is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null, or any of the numeric 
+	 * arguments is negative.
+	 */
+	public MemoryTask(OperatingSystem system, String memoryExerciser, String controlFile, 
+			long amountOfBytesToAllocate, int timeout) throws IOException {
+		super(system, memoryExerciser);
+		setUp(controlFile, amountOfBytesToAllocate, timeout);
+	}
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param memoryExerciser The path to the binary which allocate and deallocate memory. It must be 
+	 * non-null and a executable file.
+	 * @param controlFile The file where the amount is written. It must be non-null.
+	 * @param amountOfBytesToAllocate The initial amount. It must be non-negative.
+	 * @param timeout The time that the exerciser will wait until deallocate the memory. It must be 
+	 * non-negative.
+	 * @param controlGroup The group where the binary will run.
+	 * @throws IOException If memoryExerciser is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null, or any of the numeric 
+	 * arguments is negative.
+	 */
+	public MemoryTask(OperatingSystem system, String memoryExerciser, String controlFile, 
+			long amountOfBytesToAllocate, int timeout, ControlGroup controlGroup) throws IOException {
+		super(system, memoryExerciser, controlGroup);
+		setUp(controlFile, amountOfBytesToAllocate, timeout);
+	}
+	
+	private void setUp(String controlFile, long amountOfBytesToAllocate, int timeout) {
+		checkNotNull(controlFile, "controlFile must be non-null.");
+		setUp(amountOfBytesToAllocate, timeout);
+		this.controlFile = controlFile;
+	}
+	
+	private void setUp(long amountOfBytesToAllocate, int timeout) {
 		checkNonNegative(amountOfBytesToAllocate, "amountOfBytesToAllocate must be non-negative.");
 		checkNonNegative(timeout, "timeout must be non-negative.");
 		
-		checkFileExist(memoryExerciser);
-		checkFileIsExecutable(memoryExerciser);
-		
-		this.system = system;
-		this.memoryExerciser = memoryExerciser;
 		this.amountOfBytesToAllocate = amountOfBytesToAllocate;
 		this.timeout = timeout;
 	}
-
+	
 	@Override
 	public void run() throws IOException {
-		String command = concat(memoryExerciser, " ",
-						 valueOf(amountOfBytesToAllocate), " ", 
-						 valueOf(timeout));
-		logger.debug("executing command: {}", command);
-		runningProcess = system.execute(command);
-		runningProcess.execute();
+		if (controlFile != null) {
+			writeAmount();
+		}
+		super.run();
 	}
-
+	
 	@Override
-	public TaskType type() {
-		return MEMORY;
+	protected String[] getArguments() {
+		if (controlFile != null) {
+			return new String[] {valueOf(amountOfBytesToAllocate), valueOf(timeout), controlFile};
+		}
+		return new String[] {valueOf(amountOfBytesToAllocate), valueOf(timeout)};
 	}
-
-	@Override
-	public void terminate() throws IOException {
-		if (isRunning()) {
-			logger.debug("terminating process: {}", memoryExerciser);
-			runningProcess.terminate();		
-			runningProcess = null;
+	
+	public long getAmountOfBytesToAllocate() {
+		return amountOfBytesToAllocate;
+	}
+	
+	/**
+	 * Changes the amount of allocated memory. If the task is running, the exerciser 
+	 * allocates or frees the difference in at most 100 milliseconds.
+	 * 
+	 * @param amountOfBytesToAllocate It must be non-negative.
+	 * @throws IOException If the control file could not be written.
+	 * @throws IllegalArgumentException If amountOfBytesToAllocate is negative.
+	 * @throws IllegalStateException If the task was not given a control file.
+	 */
+	public void setAmountOfBytesToAllocate(long amountOfBytesToAllocate) throws IOException {
+		checkNonNegative(amountOfBytesToAllocate, "amountOfBytesToAllocate must be non-negative.");
+		if (controlFile == null) {
+			throw new IllegalStateException("The amount of a task without control file is fixed.");
 		}
+		this.amountOfBytesToAllocate = amountOfBytesToAllocate;
+		writeAmount();
 	}
-
+	
+	/*
+	 * Like the percentage of CpuTask, the amount is rewritten in place.
+	 */
+	private void writeAmount() throws IOException {
+		FileOutputStream stream = new FileOutputStream(controlFile);
+		try {
+			stream.write((amountOfBytesToAllocate + "\n").getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+	
 	@Override
-	public boolean isRunning() throws IOException {
-		return system.isRunning(memoryExerciser);
+	public TaskType type() {
+		return MEMORY;
 	}
 }
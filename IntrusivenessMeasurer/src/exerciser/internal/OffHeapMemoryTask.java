@@ -0,0 +1,442 @@
+package exerciser.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNonNegative;
+import static commons.Preconditions.checkNotNull;
+import static exerciser.TaskType.MEMORY;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import exerciser.Task;
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+
+/**
+ * This is an implementation of {@link Task} which exercises memory
+ * resources inside the JVM, without running a binary. The memory is
+ * allocated off the heap, in segments of up to 64 MB, so the amount is
+ * not limited by the heap or by the size of a buffer, and each page is
+ * written after it is allocated, so the memory is resident and not only
+ * reserved.</br>
+ * </br>
+ * The segments are direct buffers or, when a directory is given, buffers
+ * mapped from deleted files of the directory, which are not limited by the
+ * maximum direct memory of the JVM. On a tmpfs, like /dev/shm, the mapped
+ * pages are shared memory, which is never written to a device.</br>
+ * </br>
+ * The pages are touched at the given rate. After the amount is allocated, a
+ * fraction of it, the working set, may be written again and again, so its
+ * pages stay dirty and recently used. The memory is released a segment at a
+ * time, at the given rate, when the amount is reduced and after the timeout.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class OffHeapMemoryTask implements Task {
+	
+	/**
+	 * The value of the rates which does not limit the operations.
+	 */
+	public static final long UNLIMITED = 0;
+	
+	private static Logger logger = LoggerFactory.getLogger(OffHeapMemoryTask.class);
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final int PAGE_SIZE = 4096;
+	private static final long NANOSECONDS_PER_SECOND = 1000000000L;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000L;
+	
+	/**
+	 * The time the pacing may be late before it waits, so the waits are not
+	 * shorter than the timer resolution.
+	 */
+	private static final long MINIMUM_WAIT = NANOSECONDS_PER_MILLISECOND;
+	
+	private final String mappingDirectory;
+	private final int timeout;
+	private final long touchRate;
+	private final double workingSetFraction;
+	private final long releaseRate;
+	
+	private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+	private final AtomicLong touchedBytes = new AtomicLong();
+	private final AtomicLong rewrittenBytes = new AtomicLong();
+	private final Object targetLock = new Object();
+	
+	private volatile long amountOfBytesToAllocate;
+	private volatile boolean running;
+	private volatile boolean stopped;
+	private Thread worker;
+	
+	/**
+	 * The monitor which is notified when the task finishes. It can be null.
+	 */
+	private volatile TaskMonitor monitor;
+	
+	/**
+	 * The next page of the last segment to be touched.
+	 */
+	private int nextPage;
+	private long workingSetPosition;
+	private long nextOperationTime;
+	private byte value;
+	
+	/**
+	 * Creates a task whose segments are direct buffers.
+	 *
+	 * @param amountOfBytesToAllocate It must be non-negative.
+	 * @param timeout The time, in seconds, that the memory is kept allocated. It must be
+	 * non-negative.
+	 * @param touchRate The bytes per second whose pages are touched, or {@link #UNLIMITED}.
+	 * It must be non-negative.
+	 * @param workingSetFraction The fraction of the amount which is written again while it is
+	 * allocated. It must be between 0 and 1.
+	 * @param releaseRate The bytes per second which are released, or {@link #UNLIMITED}. It
+	 * must be non-negative.
+	 * @throws IllegalArgumentException If any of the arguments is out of its range.
+	 */
+	public OffHeapMemoryTask(long amountOfBytesToAllocate, int timeout, long touchRate,
+			double workingSetFraction, long releaseRate) {
+		this(null, amountOfBytesToAllocate, timeout, touchRate, workingSetFraction, releaseRate, false);
+	}
+	
+	/**
+	 * Creates a task whose segments are mapped from files of the given directory.
+	 *
+	 * @param mappingDirectory The directory where the files are created, and deleted right
+	 * after they are mapped. It must be non-null.
+	 * @param amountOfBytesToAllocate It must be non-negative.
+	 * @param timeout The time, in seconds, that the memory is kept allocated. It must be
+	 * non-negative.
+	 * @param touchRate The bytes per second whose pages are touched, or {@link #UNLIMITED}.
+	 * It must be non-negative.
+	 * @param workingSetFraction The fraction of the amount which is written again while it is
+	 * allocated. It must be between 0 and 1.
+	 * @param releaseRate The bytes per second which are released, or {@link #UNLIMITED}. It
+	 * must be non-negative.
+	 * @throws IllegalArgumentException If mappingDirectory is null or any of the numeric
+	 * arguments is out of its range.
+	 */
+	public OffHeapMemoryTask(String mappingDirectory, long amountOfBytesToAllocate, int timeout,
+			long touchRate, double workingSetFraction, long releaseRate) {
+		this(mappingDirectory, amountOfBytesToAllocate, timeout, touchRate, workingSetFraction,
+				releaseRate, true);
+	}
+	
+	private OffHeapMemoryTask(String mappingDirectory, long amountOfBytesToAllocate, int timeout,
+			long touchRate, double workingSetFraction, long releaseRate, boolean mapped) {
+		if (mapped) {
+			checkNotNull(mappingDirectory, "mappingDirectory must be non-null.");
+		}
+		checkNonNegative(amountOfBytesToAllocate, "amountOfBytesToAllocate must be non-negative.");
+		checkNonNegative(timeout, "timeout must be non-negative.");
+		checkNonNegative(touchRate, "touchRate must be non-negative.");
+		check(workingSetFraction >= 0 && workingSetFraction <= 1,
+				"workingSetFraction must be between 0 and 1.");
+		checkNonNegative(releaseRate, "releaseRate must be non-negative.");
+		
+		this.mappingDirectory = mappingDirectory;
+		this.amountOfBytesToAllocate = amountOfBytesToAllocate;
+		this.timeout = timeout;
+		this.touchRate = touchRate;
+		this.workingSetFraction = workingSetFraction;
+		this.releaseRate = releaseRate;
+	}
+	
+	/**
+	 * Starts the thread which allocates the memory. It returns right after starting it.
+	 *
+	 * @throws IOException If the task is already running.
+	 */
+	@Override
+	public synchronized void run() throws IOException {
+		if (isRunning()) {
+			throw new IOException("The task is already running.");
+		}
+		touchedBytes.set(0);
+		rewrittenBytes.set(0);
+		stopped = false;
+		running = true;
+		
+		final long deadline = System.nanoTime() + timeout * NANOSECONDS_PER_SECOND;
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				exercise(deadline);
+			}
+		}, "off-heap-memory-task");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	private void exercise(long deadline) {
+		nextOperationTime = System.nanoTime();
+		try {
+			while (!stopped && System.nanoTime() - deadline < 0) {
+				long target = amountOfBytesToAllocate;
+				if (allocatedBytes.get() > target) {
+					releaseSegment(releaseRate);
+				} else if (allocatedBytes.get() < target || nextPage < pagesOf(lastSegment())) {
+					touchPage(target);
+				} else if (workingSetFraction > 0 && target > 0) {
+					rewritePage();
+				} else {
+					waitForChange(deadline, target);
+				}
+			}
+			while (!stopped && !segments.isEmpty()) {
+				releaseSegment(releaseRate);
+			}
+		} catch (IOException e) {
+			logger.error("could not allocate memory", e);
+		} catch (OutOfMemoryError e) {
+			logger.error("could not allocate memory: {}", e.getMessage());
+		} catch (InterruptedException e) {
+			logger.debug("off-heap memory task interrupted");
+		} catch (RuntimeException e) {
+			logger.error("could not exercise the memory", e);
+		} finally {
+			while (!segments.isEmpty()) {
+				release(segments.remove(segments.size() - 1));
+			}
+			allocatedBytes.set(0);
+			touchedBytes.set(0);
+			nextPage = 0;
+			workingSetPosition = 0;
+			running = false;
+			TaskMonitor taskMonitor = monitor;
+			if (taskMonitor != null) {
+				taskMonitor.completed(this);
+			}
+		}
+	}
+	
+	/*
+	 * The segments are allocated when their first page is touched, so the
+	 * allocated memory does not grow much ahead of the resident memory.
+	 */
+	private void touchPage(long target) throws IOException, InterruptedException {
+		ByteBuffer segment = lastSegment();
+		if (segment == null || nextPage >= pagesOf(segment)) {
+			segment = allocate((int) Math.min(SEGMENT_SIZE, target - allocatedBytes.get()));
+			segments.add(segment);
+			allocatedBytes.addAndGet(segment.capacity());
+			nextPage = 0;
+		}
+		pace(PAGE_SIZE, touchRate);
+		segment.put(nextPage * PAGE_SIZE, value++);
+		nextPage++;
+		touchedBytes.addAndGet(Math.min(PAGE_SIZE, segment.capacity() - (nextPage - 1) * PAGE_SIZE));
+	}
+	
+	private ByteBuffer allocate(int size) throws IOException {
+		if (mappingDirectory == null) {
+			return ByteBuffer.allocateDirect(size);
+		}
+		File directory = new File(mappingDirectory);
+		directory.mkdirs();
+		File file = File.createTempFile("memory", ".segment", directory);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.setLength(size);
+			return randomAccessFile.getChannel().map(MapMode.READ_WRITE, 0, size);
+		} finally {
+			// the mapping is kept after the file is closed and deleted
+			randomAccessFile.close();
+			file.delete();
+		}
+	}
+	
+	/*
+	 * The working set is the first pages of the allocated memory, which are
+	 * written in a cycle. The segments are not all of the same size, since the
+	 * last one is shorter when the amount is not a multiple of the segment size
+	 * and it is kept when the amount grows, so the segment of a position is
+	 * found from their capacities.
+	 */
+	private void rewritePage() throws InterruptedException {
+		long workingSet = Math.max(PAGE_SIZE, (long) (workingSetFraction * allocatedBytes.get()));
+		if (workingSetPosition >= Math.min(workingSet, allocatedBytes.get())) {
+			workingSetPosition = 0;
+		}
+		pace(PAGE_SIZE, touchRate);
+		int index = 0;
+		long position = workingSetPosition;
+		while (position >= segments.get(index).capacity()) {
+			position -= segments.get(index).capacity();
+			index++;
+		}
+		segments.get(index).put((int) position, value++);
+		workingSetPosition += PAGE_SIZE;
+		rewrittenBytes.addAndGet(PAGE_SIZE);
+	}
+	
+	private void releaseSegment(long rate) throws InterruptedException {
+		ByteBuffer segment = segments.remove(segments.size() - 1);
+		long touched = Math.min(segment.capacity(), (long) nextPage * PAGE_SIZE);
+		allocatedBytes.addAndGet(-segment.capacity());
+		touchedBytes.addAndGet(-touched);
+		release(segment);
+		// the previous segments are always touched up to their end
+		ByteBuffer last = lastSegment();
+		nextPage = last == null ? 0 : pagesOf(last);
+		pace(segment.capacity(), rate);
+	}
+	
+	private void waitForChange(long deadline, long target) throws InterruptedException {
+		synchronized (targetLock) {
+			long wait = (deadline - System.nanoTime()) / NANOSECONDS_PER_MILLISECOND;
+			if (amountOfBytesToAllocate == target && wait > 0 && !stopped) {
+				targetLock.wait(wait);
+			}
+		}
+		nextOperationTime = System.nanoTime();
+	}
+	
+	/*
+	 * Each operation takes the next slot of an evenly spaced schedule, like
+	 * the operations of DiskTask, but the slots which are late are not skipped,
+	 * since a page must be touched even when the machine is slow.
+	 */
+	private void pace(long bytes, long rate) throws InterruptedException {
+		if (rate == UNLIMITED) {
+			return;
+		}
+		nextOperationTime += bytes * NANOSECONDS_PER_SECOND / rate;
+		long wait = nextOperationTime - System.nanoTime();
+		if (wait >= MINIMUM_WAIT) {
+			Thread.sleep(wait / NANOSECONDS_PER_MILLISECOND, (int) (wait % NANOSECONDS_PER_MILLISECOND));
+		}
+		if (stopped) {
+			throw new InterruptedException();
+		}
+	}
+	
+	private ByteBuffer lastSegment() {
+		return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+	}
+	
+	private static int pagesOf(ByteBuffer segment) {
+		return segment == null ? 0 : (segment.capacity() + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+	
+	/*
+	 * The memory of a direct or mapped buffer is only released when the buffer is
+	 * collected, unless its cleaner is called. The cleaner is not a public API: it
+	 * is called through sun.misc.Unsafe since Java 9 and through the buffer before
+	 * it. If none of them is available, the memory is released by the collector.
+	 */
+	private static void release(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Exception e) {
+			// before Java 9
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				Method clean = cleaner.getClass().getMethod("clean");
+				clean.setAccessible(true);
+				clean.invoke(cleaner);
+			}
+		} catch (Exception e) {
+			logger.debug("could not release a buffer: {}", e.getMessage());
+		}
+	}
+	
+	@Override
+	public TaskType type() {
+		return MEMORY;
+	}
+	
+	/**
+	 * Sets the monitor which is notified, from the thread of the task, each time 
+	 * it releases its memory and stops, or null to notify none.
+	 */
+	public void setMonitor(TaskMonitor monitor) {
+		this.monitor = monitor;
+	}
+	
+	@Override
+	public void terminate() throws IOException {
+		stopped = true;
+		Thread workerThread = worker;
+		if (workerThread == null) {
+			return;
+		}
+		synchronized (targetLock) {
+			targetLock.notifyAll();
+		}
+		workerThread.interrupt();
+		try {
+			workerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while terminating the task.");
+		}
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+	
+	public long getAmountOfBytesToAllocate() {
+		return amountOfBytesToAllocate;
+	}
+	
+	/**
+	 * Changes the amount of allocated memory. If the task is running, the difference
+	 * is allocated or released at the rates of the task.
+	 *
+	 * @param amountOfBytesToAllocate It must be non-negative.
+	 * @throws IllegalArgumentException If amountOfBytesToAllocate is negative.
+	 */
+	public void setAmountOfBytesToAllocate(long amountOfBytesToAllocate) {
+		checkNonNegative(amountOfBytesToAllocate, "amountOfBytesToAllocate must be non-negative.");
+		synchronized (targetLock) {
+			this.amountOfBytesToAllocate = amountOfBytesToAllocate;
+			targetLock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Returns the size of the allocated segments.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+	
+	/**
+	 * Returns the bytes of the allocated segments whose pages were touched, which
+	 * are resident unless they were swapped out.
+	 */
+	public long getTouchedBytes() {
+		return touchedBytes.get();
+	}
+	
+	/**
+	 * Returns the bytes of the working set written again since the task started.
+	 */
+	public long getRewrittenBytes() {
+		return rewrittenBytes.get();
+	}
+}
@@ -0,0 +1,419 @@
+package exerciser.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNonNegative;
+import static commons.Preconditions.checkNotNull;
+import static commons.util.FileUtil.toPath;
+import static exerciser.TaskType.PROFILE;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.ControlGroup;
+import commons.OperatingSystem;
+
+import exerciser.Task;
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+
+/**
+ * This is an implementation of {@link Task} which reproduces the CPU and
+ * memory usages of a {@link LoadProfile}, like the phases of a terasort or
+ * mrbench run, on the machine where it runs. It runs a {@link CpuTask} and a
+ * {@link MemoryTask} which follows a control file, and a control loop which
+ * changes their percentage and amount every 100 milliseconds to follow the
+ * profile.</br>
+ * </br>
+ * The profile may be compressed in time: with a compression of N, a profile
+ * which took an hour is reproduced in an hour divided by N. The memory usage
+ * of the profile is taken as a percentage of the given total memory, usually
+ * the memory of this machine.</br>
+ * </br>
+ * When it is given a {@link ControlGroup}, both exercisers run inside the group
+ * and the control loop is closed: the usages of the group are compared with the
+ * profile and, while the error is greater than the tolerance, the commands are
+ * corrected by a part of it, which compensates, for instance, the CPU used by
+ * the memory exerciser. Otherwise, the profile is just followed.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProfileTask implements Task {
+	
+	private static Logger logger = LoggerFactory.getLogger(ProfileTask.class);
+	private static final String CPU_CONTROL_FILE = "cpu.control";
+	private static final String MEMORY_CONTROL_FILE = "memory.control";
+	private static final long CONTROL_PERIOD = 100;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000;
+	private static final double NANOSECONDS_PER_MICROSECOND = 1000;
+	private static final double MILLISECONDS_PER_SECOND = 1000;
+	private static final double MAXIMUM_PERCENTAGE = 100;
+	
+	/**
+	 * The part of the error which is added to the correction in each period. A
+	 * part, instead of the whole error, keeps the loop stable while the measured
+	 * usages are noisy.
+	 */
+	private static final double CORRECTION_GAIN = 0.5;
+	
+	private LoadProfile profile;
+	private long totalMemory;
+	private double compression;
+	private double tolerance;
+	private int threads;
+	private CpuTask cpuTask;
+	private MemoryTask memoryTask;
+	
+	/**
+	 * The group where the exercisers run. It is null when they run as ordinary processes.
+	 */
+	private ControlGroup controlGroup;
+	
+	private double cpuCorrection;
+	private double memoryCorrection;
+	private double lastCPUTarget = -1;
+	private double lastMemoryTarget = -1;
+	private long lastCPUUsage;
+	private long lastTime;
+	
+	private long controlPeriods;
+	private long periodsOutOfTolerance;
+	private double cpuErrors;
+	private double memoryErrors;
+	
+	private volatile boolean running;
+	private volatile boolean stopped;
+	private Thread controller;
+	
+	/**
+	 * The monitor which is notified when the task finishes. It can be null.
+	 */
+	private volatile TaskMonitor monitor;
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param cpuExerciser The path to the binary which uses the CPU. It must be
+	 * non-null and a executable file.
+	 * @param memoryExerciser The path to the binary which allocates memory. It must be
+	 * non-null and a executable file.
+	 * @param controlDirectory The directory where the control files of the exercisers are
+	 * written. It must be non-null.
+	 * @param profile The usages to be reproduced. It must be non-null.
+	 * @param totalMemory The memory, in bytes, whose percentages are the memory usages of
+	 * the profile. It must be positive.
+	 * @param compression The number of times the profile is reproduced faster than it
+	 * was collected. It must be positive.
+	 * @param tolerance The error, in percentage points, which is not corrected. It must
+	 * be non-negative.
+	 * @throws IOException If any of the exercisers is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null or any of the numeric
+	 * arguments is out of its range.
+	 */
+	public ProfileTask(OperatingSystem system, String cpuExerciser, String memoryExerciser,
+			String controlDirectory, LoadProfile profile, long totalMemory, double compression,
+			double tolerance) throws IOException {
+		setUp(controlDirectory, profile, totalMemory, compression, tolerance);
+		int timeout = getTimeout();
+		cpuTask = new CpuTask(system, cpuExerciser, toPath(controlDirectory, CPU_CONTROL_FILE), threads, 0, 
+				timeout, new int[0]);
+		memoryTask = new MemoryTask(system, memoryExerciser, toPath(controlDirectory, MEMORY_CONTROL_FILE), 
+				0, timeout);
+	}
+	
+	/**
+	 * @param system The system where the task will run.
+	 * @param cpuExerciser The path to the binary which uses the CPU. It must be
+	 * non-null and a executable file.
+	 * @param memoryExerciser The path to the binary which allocates memory. It must be
+	 * non-null and a executable file.
+	 * @param controlDirectory The directory where the control files of the exercisers are
+	 * written. It must be non-null.
+	 * @param profile The usages to be reproduced. It must be non-null.
+	 * @param totalMemory The memory, in bytes, whose percentages are the memory usages of
+	 * the profile. It must be positive.
+	 * @param compression The number of times the profile is reproduced faster than it
+	 * was collected. It must be positive.
+	 * @param tolerance The error, in percentage points, which is not corrected. It must
+	 * be non-negative.
+	 * @param controlGroup The group where the exercisers will run, whose usages are
+	 * compared with the profile.
+	 * @throws IOException If any of the exercisers is not executable.
+	 * @throws IllegalArgumentException If any of the arguments is null or any of the numeric
+	 * arguments is out of its range.
+	 */
+	public ProfileTask(OperatingSystem system, String cpuExerciser, String memoryExerciser,
+			String controlDirectory, LoadProfile profile, long totalMemory, double compression,
+			double tolerance, ControlGroup controlGroup) throws IOException {
+		checkNotNull(controlGroup, "controlGroup must be non-null.");
+		setUp(controlDirectory, profile, totalMemory, compression, tolerance);
+		this.controlGroup = controlGroup;
+		int timeout = getTimeout();
+		cpuTask = new CpuTask(system, cpuExerciser, toPath(controlDirectory, CPU_CONTROL_FILE), threads, 0, 
+				timeout, new int[0], controlGroup);
+		memoryTask = new MemoryTask(system, memoryExerciser, toPath(controlDirectory, MEMORY_CONTROL_FILE), 
+				0, timeout, controlGroup);
+	}
+	
+	private void setUp(String controlDirectory, LoadProfile profile, long totalMemory, double compression, 
+			double tolerance) {
+		checkNotNull(controlDirectory, "controlDirectory must be non-null.");
+		checkNotNull(profile, "profile must be non-null.");
+		check(totalMemory > 0, "totalMemory must be positive.");
+		check(compression > 0, "compression must be positive.");
+		checkNonNegative(tolerance, "tolerance must be non-negative.");
+		
+		this.profile = profile;
+		this.totalMemory = totalMemory;
+		this.compression = compression;
+		this.tolerance = tolerance;
+		// each thread uses up to a core, so the threads can reach the greatest usage
+		this.threads = Math.max(1, (int) Math.ceil(profile.getMaximumCPUUsage() / MAXIMUM_PERCENTAGE));
+	}
+	
+	/*
+	 * The exercisers outlive the profile, since the control loop terminates them.
+	 */
+	private int getTimeout() {
+		return (int) Math.ceil(profile.getDuration() / compression / MILLISECONDS_PER_SECOND) + 1;
+	}
+	
+	/**
+	 * Starts the exercisers with the usages of the start of the profile and the
+	 * control loop. It returns right after starting them.
+	 *
+	 * @throws IOException If the task is already running or any of the exercisers
+	 * could not be started.
+	 */
+	@Override
+	public synchronized void run() throws IOException {
+		if (isRunning()) {
+			throw new IOException("The task is already running.");
+		}
+		cpuCorrection = 0;
+		memoryCorrection = 0;
+		lastCPUTarget = -1;
+		lastMemoryTarget = -1;
+		controlPeriods = 0;
+		periodsOutOfTolerance = 0;
+		cpuErrors = 0;
+		memoryErrors = 0;
+		stopped = false;
+		
+		final long start = System.nanoTime();
+		control(0);
+		cpuTask.run();
+		try {
+			memoryTask.run();
+		} catch (IOException e) {
+			cpuTask.terminate();
+			throw e;
+		}
+		
+		running = true;
+		controller = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				follow(start);
+			}
+		}, "profile-task-controller");
+		controller.setDaemon(true);
+		controller.start();
+	}
+	
+	private void follow(long start) {
+		long nextControl = start;
+		try {
+			while (!stopped) {
+				nextControl += CONTROL_PERIOD * NANOSECONDS_PER_MILLISECOND;
+				long wait = nextControl - System.nanoTime();
+				if (wait > 0) {
+					Thread.sleep(wait / NANOSECONDS_PER_MILLISECOND, (int) (wait % NANOSECONDS_PER_MILLISECOND));
+				}
+				long elapsed = System.nanoTime() - start;
+				if (toProfileTime(elapsed) >= profile.getDuration()) {
+					break;
+				}
+				control(elapsed);
+			}
+		} catch (InterruptedException e) {
+			logger.debug("profile task interrupted");
+		} catch (IOException e) {
+			logger.error("could not control the exercisers", e);
+		} finally {
+			finish();
+		}
+	}
+	
+	private void finish() {
+		try {
+			cpuTask.terminate();
+			memoryTask.terminate();
+		} catch (IOException e) {
+			logger.warn("could not terminate the exercisers: {}", e.getMessage());
+		}
+		logger.info("followed the profile for {} periods, {} out of tolerance. Mean error: "
+				+ "CPU {}, memory {}", new Object[] {controlPeriods, periodsOutOfTolerance,
+				getMeanCPUError(), getMeanMemoryError()});
+		running = false;
+		TaskMonitor taskMonitor = monitor;
+		if (taskMonitor != null) {
+			taskMonitor.completed(this);
+		}
+	}
+	
+	private long toProfileTime(long elapsed) {
+		return (long) (elapsed / NANOSECONDS_PER_MILLISECOND * compression);
+	}
+	
+	/**
+	 * Does a step of the control loop: measures the usages of the group, if there
+	 * is one, corrects the commands and sends the usages of the profile at the
+	 * given time, plus the corrections, to the exercisers.
+	 *
+	 * @param elapsed The time, in nanoseconds, since the task started.
+	 */
+	void control(long elapsed) throws IOException {
+		long profileTime = toProfileTime(elapsed);
+		double cpuTarget = profile.getCPUUsage(profileTime);
+		double memoryTarget = profile.getMemoryUsage(profileTime);
+		
+		if (controlGroup != null) {
+			correct(elapsed);
+		}
+		lastCPUTarget = cpuTarget;
+		lastMemoryTarget = memoryTarget;
+		
+		// the corrections are kept within the commands the exercisers can follow, so
+		// they do not wind up while the target cannot be reached
+		double maximumCPUCommand = threads * MAXIMUM_PERCENTAGE;
+		cpuCorrection = limit(cpuCorrection, -cpuTarget, maximumCPUCommand - cpuTarget);
+		memoryCorrection = limit(memoryCorrection, -memoryTarget, MAXIMUM_PERCENTAGE - memoryTarget);
+		
+		double cpuCommand = limit(cpuTarget + cpuCorrection, 0, maximumCPUCommand);
+		int percentage = (int) Math.round(cpuCommand / threads);
+		if (percentage != cpuTask.getPercentage()) {
+			cpuTask.setPercentage(percentage);
+		}
+		double memoryCommand = limit(memoryTarget + memoryCorrection, 0, MAXIMUM_PERCENTAGE);
+		long amount = Math.round(memoryCommand / MAXIMUM_PERCENTAGE * totalMemory);
+		if (amount != memoryTask.getAmountOfBytesToAllocate()) {
+			memoryTask.setAmountOfBytesToAllocate(amount);
+		}
+	}
+	
+	/*
+	 * The usages measured now are the result of the commands of the previous
+	 * period, so they are compared with its targets. The controllers which are
+	 * not enabled in the group are not corrected.
+	 */
+	private void correct(long elapsed) throws IOException {
+		controlGroup.read();
+		long cpuUsage = controlGroup.getCPUUsage();
+		long memoryUsage = controlGroup.getMemoryUsage();
+		
+		if (lastCPUTarget >= 0 && elapsed > lastTime) {
+			boolean outOfTolerance = false;
+			if (cpuUsage >= 0) {
+				double measured = MAXIMUM_PERCENTAGE * (cpuUsage - lastCPUUsage)
+						/ ((elapsed - lastTime) / NANOSECONDS_PER_MICROSECOND);
+				double error = lastCPUTarget - measured;
+				cpuErrors += Math.abs(error);
+				if (Math.abs(error) > tolerance) {
+					outOfTolerance = true;
+					cpuCorrection += CORRECTION_GAIN * error;
+				}
+			}
+			if (memoryUsage >= 0) {
+				double measured = MAXIMUM_PERCENTAGE * memoryUsage / totalMemory;
+				double error = lastMemoryTarget - measured;
+				memoryErrors += Math.abs(error);
+				if (Math.abs(error) > tolerance) {
+					outOfTolerance = true;
+					memoryCorrection += CORRECTION_GAIN * error;
+				}
+			}
+			controlPeriods++;
+			if (outOfTolerance) {
+				periodsOutOfTolerance++;
+			}
+		}
+		lastCPUUsage = cpuUsage;
+		lastTime = elapsed;
+	}
+	
+	private static double limit(double value, double minimum, double maximum) {
+		return Math.max(minimum, Math.min(maximum, value));
+	}
+	
+	@Override
+	public TaskType type() {
+		return PROFILE;
+	}
+	
+	/**
+	 * Sets the monitor which is notified, from the thread of the task, each time 
+	 * it stops following the profile, or null to notify none.
+	 */
+	public void setMonitor(TaskMonitor monitor) {
+		this.monitor = monitor;
+	}
+	
+	@Override
+	public void terminate() throws IOException {
+		stopped = true;
+		Thread controllerThread = controller;
+		if (controllerThread == null) {
+			return;
+		}
+		controllerThread.interrupt();
+		try {
+			controllerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while terminating the task.");
+		}
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Returns the number of threads of the CPU exerciser.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Returns the number of periods whose usages were compared with the profile.
+	 */
+	public long getControlPeriods() {
+		return controlPeriods;
+	}
+	
+	/**
+	 * Returns the number of periods whose CPU or memory error was greater than the tolerance.
+	 */
+	public long getPeriodsOutOfTolerance() {
+		return periodsOutOfTolerance;
+	}
+	
+	/**
+	 * Returns the mean absolute difference, in percentage points of a core, between
+	 * the CPU usage of the profile and the one of the group.
+	 */
+	public double getMeanCPUError() {
+		return controlPeriods == 0 ? 0 : cpuErrors / controlPeriods;
+	}
+	
+	/**
+	 * Returns the mean absolute difference, in percentage points of the total memory,
+	 * between the memory usage of the profile and the one of the group.
+	 */
+	public double getMeanMemoryError() {
+		return controlPeriods == 0 ? 0 : memoryErrors / controlPeriods;
+	}
+}
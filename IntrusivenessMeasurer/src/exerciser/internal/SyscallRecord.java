@@ -0,0 +1,89 @@
+package exerciser.internal;
+
+/**
+ * A system call of a trace written by syscalls_elapsed.stp, whose lines are
+ * "uid pid tid (execname)>function>begin>elapsed>argument>...>argument". The
+ * arguments are the ones printed by the probe of the call, usually ending with
+ * the returned value.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class SyscallRecord {
+	
+	private final int pid;
+	private final int tid;
+	private final String call;
+	private final long begin;
+	private final long elapsed;
+	private final String[] arguments;
+	
+	/**
+	 * @param call The name of the call, without the prefix of the kernel function, 
+	 * like "open" or "llseek".
+	 * @param begin The time the call began, in microseconds.
+	 * @param elapsed The time the call took, in microseconds.
+	 */
+	SyscallRecord(int pid, int tid, String call, long begin, long elapsed, String[] arguments) {
+		this.pid = pid;
+		this.tid = tid;
+		this.call = call;
+		this.begin = begin;
+		this.elapsed = elapsed;
+		this.arguments = arguments;
+	}
+	
+	int getPid() {
+		return pid;
+	}
+	
+	int getTid() {
+		return tid;
+	}
+	
+	String getCall() {
+		return call;
+	}
+	
+	long getBegin() {
+		return begin;
+	}
+	
+	long getElapsed() {
+		return elapsed;
+	}
+	
+	int getNumberOfArguments() {
+		return arguments.length;
+	}
+	
+	String getArgument(int index) {
+		return arguments[index];
+	}
+	
+	/**
+	 * Returns the argument as a number.
+	 * 
+	 * @throws NumberFormatException If the argument is not a number.
+	 */
+	long getNumericArgument(int index) {
+		return Long.parseLong(arguments[index]);
+	}
+	
+	/**
+	 * Returns the value returned by the call, which is the last argument.
+	 */
+	long getReturn() {
+		return getNumericArgument(arguments.length - 1);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(pid).append(' ').append(tid).append('>').append(call).append('>')
+				.append(begin).append('>').append(elapsed);
+		for (String argument : arguments) {
+			builder.append('>').append(argument);
+		}
+		return builder.toString();
+	}
+}
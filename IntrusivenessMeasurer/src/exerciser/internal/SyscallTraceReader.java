@@ -0,0 +1,175 @@
+package exerciser.internal;
+
+import static commons.Preconditions.checkNotNull;
+import static commons.util.FileUtil.checkFileExist;
+import static commons.util.FileUtil.checkFileIsReadable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the system calls of a trace written by syscalls_elapsed.stp, one
+ * line at a time, so traces of any size can be read. Only the system calls are
+ * returned: the lines of the probed kernel functions, like vfs_read or fget,
+ * and the lines which could not be parsed are skipped and counted.</br>
+ * </br>
+ * The fields of a line are separated by '>', except inside parentheses, since
+ * the file information printed by the probes, like
+ * "(/>/home/user>/home/user/file>1024>S_IFREG|0644>12)", uses '>' too.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class SyscallTraceReader implements Closeable {
+	
+	private static final String SYSTEM_START_PREFIX = "system start ";
+	private static final String[] SYSCALL_PREFIXES = {"SyS_", "sys_", "compat_sys_"};
+	private static final String NEW_PREFIX = "new";
+	private static final String LARGE_FILE_SUFFIX = "64";
+	private static final int NUMBER_OF_HEADER_FIELDS = 4;
+	
+	private final String filename;
+	private final BufferedReader reader;
+	private long systemStart = -1;
+	private int skippedLines;
+	
+	/**
+	 * @param filename The trace file. It must exist and be readable.
+	 * @throws IOException If the file does not exist or is not readable.
+	 * @throws IllegalArgumentException If filename is null.
+	 */
+	SyscallTraceReader(String filename) throws IOException {
+		checkNotNull(filename, "filename must not be null.");
+		checkFileExist(filename);
+		checkFileIsReadable(filename);
+		
+		this.filename = filename;
+		this.reader = new BufferedReader(new FileReader(filename));
+	}
+	
+	/**
+	 * Returns the next system call of the trace, or null if the trace ended.
+	 * 
+	 * @throws IOException If the file could not be read.
+	 */
+	SyscallRecord next() throws IOException {
+		String line = reader.readLine();
+		while (line != null) {
+			if (line.startsWith(SYSTEM_START_PREFIX)) {
+				systemStart = parseSystemStart(line);
+			} else {
+				SyscallRecord record = parse(line);
+				if (record != null) {
+					return record;
+				}
+				skippedLines++;
+			}
+			line = reader.readLine();
+		}
+		return null;
+	}
+	
+	private long parseSystemStart(String line) {
+		try {
+			return Long.parseLong(line.substring(SYSTEM_START_PREFIX.length()).trim());
+		} catch (NumberFormatException e) {
+			skippedLines++;
+			return systemStart;
+		}
+	}
+	
+	/*
+	 * Returns null if the line is not a system call or could not be parsed.
+	 */
+	static SyscallRecord parse(String line) {
+		List<String> fields = split(line);
+		if (fields.size() < NUMBER_OF_HEADER_FIELDS) {
+			return null;
+		}
+		String call = toCallName(fields.get(1));
+		if (call == null) {
+			return null;
+		}
+		String[] process = fields.get(0).split(" ");
+		if (process.length < 3) {
+			return null;
+		}
+		try {
+			int pid = Integer.parseInt(process[1]);
+			int tid = Integer.parseInt(process[2]);
+			long begin = Long.parseLong(fields.get(2));
+			long elapsed = Long.parseLong(fields.get(3));
+			List<String> arguments = fields.subList(NUMBER_OF_HEADER_FIELDS, fields.size());
+			return new SyscallRecord(pid, tid, call, begin, elapsed, 
+					arguments.toArray(new String[arguments.size()]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	private static List<String> split(String line) {
+		List<String> fields = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')' && depth > 0) {
+				depth--;
+			} else if (c == '>' && depth == 0) {
+				fields.add(line.substring(start, i));
+				start = i + 1;
+			}
+		}
+		fields.add(line.substring(start));
+		return fields;
+	}
+	
+	/*
+	 * The same call is probed by different kernel functions, like sys_newstat,
+	 * sys_stat64 and SyS_newstat, which are all named "stat".
+	 */
+	private static String toCallName(String function) {
+		for (String prefix : SYSCALL_PREFIXES) {
+			if (function.startsWith(prefix)) {
+				String call = function.substring(prefix.length());
+				if (call.startsWith(NEW_PREFIX)) {
+					call = call.substring(NEW_PREFIX.length());
+				}
+				if (call.endsWith(LARGE_FILE_SUFFIX)) {
+					call = call.substring(0, call.length() - LARGE_FILE_SUFFIX.length());
+				}
+				return call;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the time the tracing started, in microseconds, or -1 if the trace 
+	 * did not have it before the last returned call.
+	 */
+	long getSystemStart() {
+		return systemStart;
+	}
+	
+	/**
+	 * Returns the number of lines which were not system calls or could not be parsed.
+	 */
+	int getSkippedLines() {
+		return skippedLines;
+	}
+	
+	String getFilename() {
+		return filename;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
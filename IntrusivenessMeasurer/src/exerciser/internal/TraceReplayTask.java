@@ -0,0 +1,392 @@
+package exerciser.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+import static commons.util.FileUtil.checkFileExist;
+import static commons.util.FileUtil.checkFileIsReadable;
+import static exerciser.TaskType.REPLAY;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import commons.util.LatencyHistogram;
+
+import exerciser.Task;
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+import exerciser.internal.FileOperationReplayer.Result;
+
+/**
+ * This is an implementation of {@link Task} which reproduces the file
+ * operations of a workload traced by syscalls_elapsed.stp, the .syscall
+ * files written by master.sh, against a scratch directory.</br>
+ * </br>
+ * The trace is streamed by a dispatcher thread, which hands each call to the
+ * worker of its traced thread. Each worker has its own thread and a bounded
+ * queue, so the calls of a traced thread are replayed in order and the calls of
+ * different traced threads are replayed at the same time, like they were traced.
+ * The number of workers is bounded: when there are more traced threads than
+ * workers, the threads which appear later share the workers. A worker waits
+ * until the time the call began, relative to the start of the trace, and then
+ * issues the equivalent operations through a {@link FileOperationReplayer}.</br>
+ * </br>
+ * The timing accuracy is measured as the lag of each replayed call, the time
+ * between when it should have started and when it started, which grows when the
+ * replay can not keep up with the trace.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class TraceReplayTask implements Task {
+	
+	private static Logger logger = LoggerFactory.getLogger(TraceReplayTask.class);
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final long NANOSECONDS_PER_MICROSECOND = 1000;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000;
+	private static final long OFFER_TIMEOUT = 100;
+	
+	/**
+	 * Tells a worker there are no more calls.
+	 */
+	private static final SyscallRecord END = new SyscallRecord(0, 0, "end", 0, 0, new String[0]);
+	
+	private final String traceFile;
+	private final String scratchDirectory;
+	private final int maximumWorkers;
+	
+	private final LatencyHistogram lags = new LatencyHistogram();
+	private final AtomicLong replayedCalls = new AtomicLong();
+	private final AtomicLong skippedCalls = new AtomicLong();
+	private final AtomicLong failedCalls = new AtomicLong();
+	private final AtomicInteger runningThreads = new AtomicInteger();
+	
+	private volatile boolean stopped;
+	private FileOperationReplayer replayer;
+	private Thread dispatcher;
+	private Worker[] workers = new Worker[0];
+	private volatile int numberOfWorkers;
+	private volatile int skippedLines;
+	
+	/**
+	 * The monitor which is notified when the task finishes. It can be null.
+	 */
+	private volatile TaskMonitor monitor;
+	
+	/**
+	 * @param traceFile The .syscall file. It must exist and be readable.
+	 * @param scratchDirectory The directory where the operations are replayed. It must be
+	 * non-null.
+	 * @param maximumWorkers The maximum number of traced threads replayed at the same time.
+	 * It must be positive.
+	 * @throws IOException If traceFile does not exist or is not readable.
+	 * @throws IllegalArgumentException If any of the arguments is null or maximumWorkers is
+	 * not positive.
+	 */
+	public TraceReplayTask(String traceFile, String scratchDirectory, int maximumWorkers)
+			throws IOException {
+		checkNotNull(traceFile, "traceFile must be non-null.");
+		checkNotNull(scratchDirectory, "scratchDirectory must be non-null.");
+		check(maximumWorkers > 0, "maximumWorkers must be positive.");
+		checkFileExist(traceFile);
+		checkFileIsReadable(traceFile);
+		
+		this.traceFile = traceFile;
+		this.scratchDirectory = scratchDirectory;
+		this.maximumWorkers = maximumWorkers;
+	}
+	
+	/**
+	 * Starts replaying the trace. It returns right after starting the dispatcher.
+	 *
+	 * @throws IOException If the task is already running, the trace could not be
+	 * opened or the scratch directory could not be created.
+	 */
+	@Override
+	public synchronized void run() throws IOException {
+		if (isRunning()) {
+			throw new IOException("The task is already running.");
+		}
+		final SyscallTraceReader reader = new SyscallTraceReader(traceFile);
+		replayer = new FileOperationReplayer(scratchDirectory);
+		lags.reset();
+		replayedCalls.set(0);
+		skippedCalls.set(0);
+		failedCalls.set(0);
+		stopped = false;
+		workers = new Worker[maximumWorkers];
+		numberOfWorkers = 0;
+		
+		runningThreads.set(1);
+		dispatcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				dispatch(reader);
+			}
+		}, "trace-replay-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+	
+	private void dispatch(SyscallTraceReader reader) {
+		Map<Integer, Worker> workersByThread = new HashMap<Integer, Worker>();
+		long start = System.nanoTime();
+		long origin = -1;
+		try {
+			SyscallRecord record = reader.next();
+			while (record != null && !stopped) {
+				if (origin < 0) {
+					origin = reader.getSystemStart() >= 0 ? reader.getSystemStart() : record.getBegin();
+				}
+				long scheduledTime = start + (record.getBegin() - origin) * NANOSECONDS_PER_MICROSECOND;
+				if (!workerOf(record.getTid(), workersByThread).submit(record, scheduledTime)) {
+					failedCalls.incrementAndGet();
+				}
+				record = reader.next();
+			}
+		} catch (IOException e) {
+			logger.error("could not read " + traceFile, e);
+		} catch (InterruptedException e) {
+			logger.debug("replay of {} interrupted", traceFile);
+		} finally {
+			skippedLines = reader.getSkippedLines();
+			close(reader);
+			for (int i = 0; i < numberOfWorkers; i++) {
+				workers[i].end();
+			}
+			finish();
+		}
+	}
+	
+	/*
+	 * The workers are created as new traced threads appear, until the maximum.
+	 */
+	private Worker workerOf(int tid, Map<Integer, Worker> workersByThread) {
+		Worker worker = workersByThread.get(tid);
+		if (worker == null) {
+			if (numberOfWorkers < maximumWorkers) {
+				worker = new Worker(numberOfWorkers);
+				workers[numberOfWorkers++] = worker;
+				runningThreads.incrementAndGet();
+				worker.start();
+			} else {
+				worker = workers[workersByThread.size() % maximumWorkers];
+			}
+			workersByThread.put(tid, worker);
+		}
+		return worker;
+	}
+	
+	/**
+	 * A call and the time, from {@link System#nanoTime()}, it must be replayed.
+	 */
+	private static class ScheduledCall {
+		private final SyscallRecord record;
+		private final long time;
+		
+		ScheduledCall(SyscallRecord record, long time) {
+			this.record = record;
+			this.time = time;
+		}
+	}
+	
+	private class Worker extends Thread {
+		
+		private final BlockingQueue<ScheduledCall> calls = new ArrayBlockingQueue<ScheduledCall>(QUEUE_CAPACITY);
+		private final FileOperationReplayer.Buffer buffer = new FileOperationReplayer.Buffer();
+		private volatile boolean exited;
+		
+		Worker(int index) {
+			super("trace-replay-worker-" + index);
+			setDaemon(true);
+		}
+		
+		/*
+		 * A worker which exited does not take its calls anymore, so the calls
+		 * handed to it are dropped instead of waiting for room in its queue.
+		 * Returns whether the call was queued.
+		 */
+		boolean submit(SyscallRecord record, long scheduledTime) throws InterruptedException {
+			ScheduledCall call = new ScheduledCall(record, scheduledTime);
+			while (!exited) {
+				if (calls.offer(call, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/*
+		 * A worker which stopped does not take its calls anymore, so it is
+		 * interrupted instead of waiting for room in its queue.
+		 */
+		void end() {
+			try {
+				while (!calls.offer(new ScheduledCall(END, 0), OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					if (stopped || exited) {
+						interrupt();
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				interrupt();
+			}
+		}
+		
+		@Override
+		public void run() {
+			try {
+				ScheduledCall call = calls.take();
+				while (call.record != END && !stopped) {
+					waitUntil(call.time);
+					lags.record(Math.max(0, System.nanoTime() - call.time));
+					replay(call.record, buffer);
+					call = calls.take();
+				}
+			} catch (InterruptedException e) {
+				logger.debug("{} interrupted", getName());
+			} finally {
+				exited = true;
+				finish();
+			}
+		}
+	}
+	
+	private static void waitUntil(long time) throws InterruptedException {
+		long wait = time - System.nanoTime();
+		if (wait > 0) {
+			Thread.sleep(wait / NANOSECONDS_PER_MILLISECOND, (int) (wait % NANOSECONDS_PER_MILLISECOND));
+		}
+	}
+	
+	private void replay(SyscallRecord record, FileOperationReplayer.Buffer buffer) {
+		try {
+			if (replayer.replay(record, buffer) == Result.REPLAYED) {
+				replayedCalls.incrementAndGet();
+			} else {
+				skippedCalls.incrementAndGet();
+			}
+		} catch (IOException e) {
+			failedCalls.incrementAndGet();
+			logger.debug("could not replay {}: {}", record, e.getMessage());
+		} catch (RuntimeException e) {
+			// a call which the replay could not issue must not stop the worker
+			failedCalls.incrementAndGet();
+			logger.debug("could not replay " + record, e);
+		}
+	}
+	
+	private void finish() {
+		if (runningThreads.decrementAndGet() == 0) {
+			try {
+				replayer.closeAll();
+			} catch (IOException e) {
+				logger.warn("could not close the replayed files: {}", e.getMessage());
+			}
+			logger.info("replayed {} calls of {}, skipped {} and failed {}. Lag: mean {} ns, "
+					+ "99th percentile {} ns, maximum {} ns", new Object[] {replayedCalls.get(), traceFile,
+					skippedCalls.get(), failedCalls.get(), (long) lags.getMean(), lags.getPercentile(99),
+					lags.getMaximum()});
+			TaskMonitor taskMonitor = monitor;
+			if (taskMonitor != null) {
+				taskMonitor.completed(this);
+			}
+		}
+	}
+	
+	private static void close(SyscallTraceReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			logger.warn("could not close {}: {}", reader.getFilename(), e.getMessage());
+		}
+	}
+	
+	@Override
+	public TaskType type() {
+		return REPLAY;
+	}
+	
+	/**
+	 * Sets the monitor which is notified, from the thread of the task, each time 
+	 * the dispatcher and all of its workers finish, or null to notify none.
+	 */
+	public void setMonitor(TaskMonitor monitor) {
+		this.monitor = monitor;
+	}
+	
+	@Override
+	public void terminate() throws IOException {
+		stopped = true;
+		Thread dispatcherThread = dispatcher;
+		if (dispatcherThread == null) {
+			return;
+		}
+		dispatcherThread.interrupt();
+		join(dispatcherThread);
+		for (int i = 0; i < numberOfWorkers; i++) {
+			workers[i].interrupt();
+			join(workers[i]);
+		}
+	}
+	
+	private static void join(Thread thread) throws IOException {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while terminating the task.");
+		}
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return runningThreads.get() > 0;
+	}
+	
+	/**
+	 * Returns the lags, in nanoseconds, between the time each call of the trace should have
+	 * started, relative to the start of the replay, and the time it started.
+	 */
+	public LatencyHistogram getLags() {
+		return lags;
+	}
+	
+	/**
+	 * Returns the number of calls whose operations were issued.
+	 */
+	public long getReplayedCalls() {
+		return replayedCalls.get();
+	}
+	
+	/**
+	 * Returns the number of calls which were not replayed, because they are not replayed
+	 * by {@link FileOperationReplayer}, failed when they were traced or use an unknown
+	 * file descriptor.
+	 */
+	public long getSkippedCalls() {
+		return skippedCalls.get();
+	}
+	
+	/**
+	 * Returns the number of calls whose operations failed.
+	 */
+	public long getFailedCalls() {
+		return failedCalls.get();
+	}
+	
+	/**
+	 * Returns the number of lines of the trace which are not system calls or could not
+	 * be parsed. It is only complete after the replay finished.
+	 */
+	public int getSkippedLines() {
+		return skippedLines;
+	}
+}
@@ -3,6 +3,7 @@ package usermonitor;
 import static commons.Preconditions.checkNonNegative;
 import static commons.Preconditions.checkNotNull;
 
+import java.util.Collections;
 import java.util.List;
 
 public class CPUInfo {
@@ -10,18 +11,41 @@ public class CPUInfo {
 	private final double systemUsage;
 	private final double userUsage;
 	private final double idle;
+	private final double ioWait;
+	private final double steal;
+	private final List<CPUUsage> coreUsages;
+	private final double[] coreFrequencies;
 	
 	public CPUInfo(List<CPUConfiguration> cpus, double systemUsage, double userUsage,
 			double idle) {
+		this(cpus, systemUsage, userUsage, idle, 0, 0, Collections.<CPUUsage>emptyList(), new double[0]);
+	}
+	
+	/**
+	 * @param coreUsages The usage of each online CPU, in the order they are listed 
+	 * by the system. It may be empty if the source does not report it. 
+	 * @param coreFrequencies The current frequency of each CPU of cpus, in MHz. 
+	 */
+	public CPUInfo(List<CPUConfiguration> cpus, double systemUsage, double userUsage,
+			double idle, double ioWait, double steal, List<CPUUsage> coreUsages, 
+			double[] coreFrequencies) {
 		checkNotNull(cpus, "cpus must not be null.");
 		checkNonNegative(systemUsage, "systemUsage must not be negative.");
 		checkNonNegative(userUsage, "userUsage must not be negative.");
 		checkNonNegative(idle, "idleUsage must not be negative.");
+		checkNonNegative(ioWait, "ioWait must not be negative.");
+		checkNonNegative(steal, "steal must not be negative.");
+		checkNotNull(coreUsages, "coreUsages must not be null.");
+		checkNotNull(coreFrequencies, "coreFrequencies must not be null.");
 	
 		this.cpus = cpus;
 		this.systemUsage = systemUsage;
 		this.userUsage = userUsage;
 		this.idle = idle;
+		this.ioWait = ioWait;
+		this.steal = steal;
+		this.coreUsages = coreUsages;
+		this.coreFrequencies = coreFrequencies;
 	}
 
 	public List<CPUConfiguration> getCpus() {
@@ -39,4 +63,25 @@ public class CPUInfo {
 	public double getIdle() {
 		return idle;
 	}
+
+	public double getIOWait() {
+		return ioWait;
+	}
+
+	public double getSteal() {
+		return steal;
+	}
+
+	public List<CPUUsage> getCoreUsages() {
+		return coreUsages;
+	}
+
+	/**
+	 * Returns the current frequency of each CPU, in MHz, in the same order of 
+	 * {@link #getCpus()}. The frequency of {@link CPUConfiguration} is the one 
+	 * read when the configuration was read.
+	 */
+	public double[] getCoreFrequencies() {
+		return coreFrequencies;
+	}
 }
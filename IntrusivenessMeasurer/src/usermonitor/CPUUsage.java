@@ -0,0 +1,58 @@
+package usermonitor;
+
+import static commons.Preconditions.checkNonNegative;
+
+/**
+ * The usage of a CPU, or of all the CPUs of the machine, in a period of time. 
+ * All the values are percentages of the time of the period.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class CPUUsage {
+	private final double userUsage;
+	private final double systemUsage;
+	private final double idle;
+	private final double ioWait;
+	private final double steal;
+	
+	public CPUUsage(double userUsage, double systemUsage, double idle, double ioWait, double steal) {
+		checkNonNegative(userUsage, "userUsage must not be negative.");
+		checkNonNegative(systemUsage, "systemUsage must not be negative.");
+		checkNonNegative(idle, "idle must not be negative.");
+		checkNonNegative(ioWait, "ioWait must not be negative.");
+		checkNonNegative(steal, "steal must not be negative.");
+		
+		this.userUsage = userUsage;
+		this.systemUsage = systemUsage;
+		this.idle = idle;
+		this.ioWait = ioWait;
+		this.steal = steal;
+	}
+
+	public double getUserUsage() {
+		return userUsage;
+	}
+
+	public double getSystemUsage() {
+		return systemUsage;
+	}
+
+	public double getIdle() {
+		return idle;
+	}
+
+	/**
+	 * Returns the time the CPU was idle while there were pending I/O requests.
+	 */
+	public double getIOWait() {
+		return ioWait;
+	}
+
+	/**
+	 * Returns the time a virtual CPU waited for the hypervisor to run other 
+	 * virtual machines.
+	 */
+	public double getSteal() {
+		return steal;
+	}
+}
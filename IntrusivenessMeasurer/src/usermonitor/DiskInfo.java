@@ -0,0 +1,39 @@
+package usermonitor;
+
+import static commons.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The usage of the block devices of the machine.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class DiskInfo {
+	private final List<DiskUsage> devices;
+	
+	/**
+	 * @param devices The usage of each device, in the order they are listed by the system.
+	 */
+	public DiskInfo(List<DiskUsage> devices) {
+		checkNotNull(devices, "devices must not be null.");
+		this.devices = Collections.unmodifiableList(devices);
+	}
+
+	public List<DiskUsage> getDevices() {
+		return devices;
+	}
+	
+	/**
+	 * Returns the usage of the device with the given name or null if there is no such device.
+	 */
+	public DiskUsage getDevice(String device) {
+		for (DiskUsage usage : devices) {
+			if (usage.getDevice().equals(device)) {
+				return usage;
+			}
+		}
+		return null;
+	}
+}
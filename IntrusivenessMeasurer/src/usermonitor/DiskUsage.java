@@ -0,0 +1,93 @@
+package usermonitor;
+
+import static commons.Preconditions.checkNonNegative;
+import static commons.Preconditions.checkNotNull;
+
+/**
+ * The usage of a block device in a period of time.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class DiskUsage {
+	private final String device;
+	private final double readsPerSecond;
+	private final double writesPerSecond;
+	private final double readThroughput;
+	private final double writeThroughput;
+	private final double queueDepth;
+	private final double awaitTime;
+	private final double utilization;
+	
+	public DiskUsage(String device, double readsPerSecond, double writesPerSecond, 
+						double readThroughput, double writeThroughput, double queueDepth, 
+						double awaitTime, double utilization) {
+		checkNotNull(device, "device must not be null.");
+		checkNonNegative(readsPerSecond, "readsPerSecond must not be negative.");
+		checkNonNegative(writesPerSecond, "writesPerSecond must not be negative.");
+		checkNonNegative(readThroughput, "readThroughput must not be negative.");
+		checkNonNegative(writeThroughput, "writeThroughput must not be negative.");
+		checkNonNegative(queueDepth, "queueDepth must not be negative.");
+		checkNonNegative(awaitTime, "awaitTime must not be negative.");
+		checkNonNegative(utilization, "utilization must not be negative.");
+		
+		this.device = device;
+		this.readsPerSecond = readsPerSecond;
+		this.writesPerSecond = writesPerSecond;
+		this.readThroughput = readThroughput;
+		this.writeThroughput = writeThroughput;
+		this.queueDepth = queueDepth;
+		this.awaitTime = awaitTime;
+		this.utilization = utilization;
+	}
+
+	/**
+	 * Returns the name of the device, like sda or sda1.
+	 */
+	public String getDevice() {
+		return device;
+	}
+
+	public double getReadsPerSecond() {
+		return readsPerSecond;
+	}
+
+	public double getWritesPerSecond() {
+		return writesPerSecond;
+	}
+
+	/**
+	 * Returns the read throughput, in kB per second.
+	 */
+	public double getReadThroughput() {
+		return readThroughput;
+	}
+
+	/**
+	 * Returns the write throughput, in kB per second.
+	 */
+	public double getWriteThroughput() {
+		return writeThroughput;
+	}
+
+	/**
+	 * Returns the average number of requests in the device queue.
+	 */
+	public double getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * Returns the average time, in milliseconds, a request took to be 
+	 * served, including the time waiting in the queue.
+	 */
+	public double getAwaitTime() {
+		return awaitTime;
+	}
+
+	/**
+	 * Returns the percentage of the time the device had requests to serve.
+	 */
+	public double getUtilization() {
+		return utilization;
+	}
+}
@@ -2,16 +2,61 @@ package usermonitor;
 
 import static commons.Preconditions.checkNonNegative;
 
+/**
+ * The memory of the machine. The amounts are given in kB and the rates 
+ * in pages per second.</br>
+ * </br>
+ * The used memory is all the memory which is not free, including the page 
+ * cache and the buffers, which the kernel reclaims when the memory is needed. 
+ * The available memory is the kernel estimate of the memory which can be 
+ * allocated without swapping, so it is the real headroom of the machine.
+ */
 public class MemoryInfo {
-	private double totalMemory;
-	private double usedMemory;
+	private final double totalMemory;
+	private final double usedMemory;
+	private final double availableMemory;
+	private final double buffers;
+	private final double cachedMemory;
+	private final double totalSwap;
+	private final double freeSwap;
+	private final double majorFaultRate;
+	private final double swapInRate;
+	private final double swapOutRate;
 	
 	public MemoryInfo(double totalMemory, double usedMemory) {
+		this(totalMemory, usedMemory, totalMemory - usedMemory, 0, 0, 0, 0, 0, 0, 0);
+	}
+	
+	/**
+	 * @param availableMemory The memory which can be allocated without swapping.
+	 * @param majorFaultRate The page faults which required reading from the disk, per second.
+	 * @param swapInRate The pages read from the swap, per second.
+	 * @param swapOutRate The pages written to the swap, per second.
+	 */
+	public MemoryInfo(double totalMemory, double usedMemory, double availableMemory, double buffers, 
+						double cachedMemory, double totalSwap, double freeSwap, double majorFaultRate, 
+						double swapInRate, double swapOutRate) {
 		checkNonNegative(totalMemory, "totalMemory must be non-negative");
 		checkNonNegative(usedMemory, "usedMemory must be non-negative");
+		checkNonNegative(availableMemory, "availableMemory must be non-negative");
+		checkNonNegative(buffers, "buffers must be non-negative");
+		checkNonNegative(cachedMemory, "cachedMemory must be non-negative");
+		checkNonNegative(totalSwap, "totalSwap must be non-negative");
+		checkNonNegative(freeSwap, "freeSwap must be non-negative");
+		checkNonNegative(majorFaultRate, "majorFaultRate must be non-negative");
+		checkNonNegative(swapInRate, "swapInRate must be non-negative");
+		checkNonNegative(swapOutRate, "swapOutRate must be non-negative");
 
 		this.totalMemory = totalMemory;
 		this.usedMemory = usedMemory;
+		this.availableMemory = availableMemory;
+		this.buffers = buffers;
+		this.cachedMemory = cachedMemory;
+		this.totalSwap = totalSwap;
+		this.freeSwap = freeSwap;
+		this.majorFaultRate = majorFaultRate;
+		this.swapInRate = swapInRate;
+		this.swapOutRate = swapOutRate;
 	}
 
 	public double getTotalMemory() {
@@ -21,4 +66,39 @@ public class MemoryInfo {
 	public double getUsedMemory() {
 		return usedMemory;
 	}
+
+	public double getAvailableMemory() {
+		return availableMemory;
+	}
+
+	public double getBuffers() {
+		return buffers;
+	}
+
+	/**
+	 * Returns the memory used by the page cache.
+	 */
+	public double getCachedMemory() {
+		return cachedMemory;
+	}
+
+	public double getTotalSwap() {
+		return totalSwap;
+	}
+
+	public double getFreeSwap() {
+		return freeSwap;
+	}
+
+	public double getMajorFaultRate() {
+		return majorFaultRate;
+	}
+
+	public double getSwapInRate() {
+		return swapInRate;
+	}
+
+	public double getSwapOutRate() {
+		return swapOutRate;
+	}
 }
@@ -0,0 +1,212 @@
+package usermonitor;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+/**
+ * The values of all the sources of a {@link UserMonitor}, read back-to-back
+ * by {@link UserMonitor#snapshot(MonitorSnapshot)} under a single timestamp.
+ * The machine values are the ones of {@link SampleField}, and the usage of
+ * each core and of each block device is kept too.</br>
+ * </br>
+ * Unlike the info objects, a snapshot is mutable and is meant to be reused:
+ * it is created once by its owner and filled again on each read. The values
+ * are stored in primitive arrays, which grow only when the number of cores
+ * or devices grows, so filling a snapshot does not create any object.</br>
+ * </br>
+ * Note this class is not thread-safe.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class MonitorSnapshot {
+
+	/**
+	 * The usages of each core, as percentages of the time between two reads, its
+	 * current frequency, in MHz, and its thermal throttle events per second.
+	 */
+	public enum CoreField {
+		USER,
+		SYSTEM,
+		IDLE,
+		IO_WAIT,
+		STEAL,
+		FREQUENCY,
+		THROTTLE_RATE
+	}
+
+	/**
+	 * The usages of each block device, in the units of {@link DiskUsage}.
+	 */
+	public enum DeviceField {
+		READS_PER_SECOND,
+		WRITES_PER_SECOND,
+		READ_THROUGHPUT,
+		WRITE_THROUGHPUT,
+		QUEUE_DEPTH,
+		AWAIT_TIME,
+		UTILIZATION
+	}
+
+	private static final int NUMBER_OF_CORE_FIELDS = CoreField.values().length;
+	private static final int NUMBER_OF_DEVICE_FIELDS = DeviceField.values().length;
+
+	private long nanoTime;
+	private long timestamp;
+	final double[] values;
+
+	private int numberOfCores;
+	private double[] coreUsages;
+
+	private int numberOfDevices;
+	private String[] devices;
+	private double[] deviceUsages;
+
+	public MonitorSnapshot() {
+		this.values = new double[SampleField.values().length];
+		this.coreUsages = new double[0];
+		this.devices = new String[0];
+		this.deviceUsages = new double[0];
+	}
+
+	/**
+	 * Returns the value of {@link System#nanoTime()} when the snapshot was taken. It
+	 * is monotonic, so it must be used to compute the time between two snapshots.
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+
+	/**
+	 * Returns the wall-clock time when the snapshot was taken, in milliseconds,
+	 * which can be correlated with external events.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public void setTime(long nanoTime, long timestamp) {
+		this.nanoTime = nanoTime;
+		this.timestamp = timestamp;
+	}
+
+	public double getValue(SampleField field) {
+		return values[field.ordinal()];
+	}
+
+	public void setValue(SampleField field, double value) {
+		values[field.ordinal()] = value;
+	}
+
+	/**
+	 * Copies the machine values to the given array, indexed by {@link SampleField#ordinal()}.
+	 *
+	 * @throws IllegalArgumentException If values is null or has less values than {@link SampleField}.
+	 */
+	public void copyValues(double[] values) {
+		checkNotNull(values, "values must not be null.");
+		check(values.length >= this.values.length, "values must have one value for each field.");
+		System.arraycopy(this.values, 0, values, 0, this.values.length);
+	}
+
+	/**
+	 * Returns the number of cores whose usage was read. It is 0 if the
+	 * source reports only the usage of the whole machine.
+	 */
+	public int getNumberOfCores() {
+		return numberOfCores;
+	}
+
+	/**
+	 * @throws IllegalArgumentException If numberOfCores is negative.
+	 */
+	public void setNumberOfCores(int numberOfCores) {
+		check(numberOfCores >= 0, "numberOfCores must not be negative.");
+		if (numberOfCores * NUMBER_OF_CORE_FIELDS > coreUsages.length) {
+			coreUsages = new double[numberOfCores * NUMBER_OF_CORE_FIELDS];
+		}
+		this.numberOfCores = numberOfCores;
+	}
+
+	/**
+	 * @param core The position of the core, from 0 to {@link #getNumberOfCores()} - 1.
+	 */
+	public double getCoreUsage(int core, CoreField field) {
+		checkCore(core);
+		return coreUsages[core * NUMBER_OF_CORE_FIELDS + field.ordinal()];
+	}
+
+	public void setCoreUsage(int core, CoreField field, double usage) {
+		checkCore(core);
+		coreUsages[core * NUMBER_OF_CORE_FIELDS + field.ordinal()] = usage;
+	}
+
+	private void checkCore(int core) {
+		if (core < 0 || core >= numberOfCores) {
+			throw new IndexOutOfBoundsException("Invalid core: " + core);
+		}
+	}
+
+	/**
+	 * Returns the number of block devices whose usage was read.
+	 */
+	public int getNumberOfDevices() {
+		return numberOfDevices;
+	}
+
+	/**
+	 * Removes all the devices, before the devices of a new read are added.
+	 */
+	public void clearDevices() {
+		numberOfDevices = 0;
+	}
+
+	/**
+	 * Adds a device, whose usages are all 0.
+	 *
+	 * @return The position of the device.
+	 * @throws IllegalArgumentException If device is null.
+	 */
+	public int addDevice(String device) {
+		checkNotNull(device, "device must not be null.");
+		if (numberOfDevices == devices.length) {
+			int newLength = Math.max(4, 2 * devices.length);
+			String[] newDevices = new String[newLength];
+			System.arraycopy(devices, 0, newDevices, 0, numberOfDevices);
+			devices = newDevices;
+			double[] newDeviceUsages = new double[newLength * NUMBER_OF_DEVICE_FIELDS];
+			System.arraycopy(deviceUsages, 0, newDeviceUsages, 0, numberOfDevices * NUMBER_OF_DEVICE_FIELDS);
+			deviceUsages = newDeviceUsages;
+		}
+
+		int position = numberOfDevices++;
+		devices[position] = device;
+		for (int field = 0; field < NUMBER_OF_DEVICE_FIELDS; field++) {
+			deviceUsages[position * NUMBER_OF_DEVICE_FIELDS + field] = 0;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns the name of the device in the given position, like sda or sda1.
+	 */
+	public String getDevice(int device) {
+		checkDevice(device);
+		return devices[device];
+	}
+
+	public double getDeviceUsage(int device, DeviceField field) {
+		checkDevice(device);
+		return deviceUsages[device * NUMBER_OF_DEVICE_FIELDS + field.ordinal()];
+	}
+
+	public void setDeviceUsage(int device, DeviceField field, double usage) {
+		checkDevice(device);
+		deviceUsages[device * NUMBER_OF_DEVICE_FIELDS + field.ordinal()] = usage;
+	}
+
+	private void checkDevice(int device) {
+		if (device < 0 || device >= numberOfDevices) {
+			throw new IndexOutOfBoundsException("Invalid device: " + device);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package usermonitor;
+
+import static commons.Preconditions.checkNotNull;
+
+/**
+ * The pressure stall information of the CPU, the memory and the IO. It tells 
+ * how much the tasks of the user were delayed by the lack of each resource, 
+ * which is closer to the slowness perceived by the user than the usage of 
+ * the resource.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class PressureInfo {
+	private final ResourcePressure cpu;
+	private final ResourcePressure memory;
+	private final ResourcePressure io;
+	
+	public PressureInfo(ResourcePressure cpu, ResourcePressure memory, ResourcePressure io) {
+		checkNotNull(cpu, "cpu must not be null.");
+		checkNotNull(memory, "memory must not be null.");
+		checkNotNull(io, "io must not be null.");
+		
+		this.cpu = cpu;
+		this.memory = memory;
+		this.io = io;
+	}
+	
+	public ResourcePressure getPressure(PressureResource resource) {
+		switch (resource) {
+			case CPU:
+				return cpu;
+			case MEMORY:
+				return memory;
+			default:
+				return io;
+		}
+	}
+
+	public ResourcePressure getCPUPressure() {
+		return cpu;
+	}
+
+	public ResourcePressure getMemoryPressure() {
+		return memory;
+	}
+
+	public ResourcePressure getIOPressure() {
+		return io;
+	}
+}
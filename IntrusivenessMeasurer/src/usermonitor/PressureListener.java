@@ -0,0 +1,5 @@
+package usermonitor;
+
+public interface PressureListener {
+	void onPressure(PressureTrigger trigger);
+}
@@ -0,0 +1,26 @@
+package usermonitor;
+
+/**
+ * The resources whose pressure stall information is reported by the kernel, 
+ * each one in a file of /proc/pressure.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public enum PressureResource {
+	CPU("cpu"),
+	MEMORY("memory"),
+	IO("io");
+	
+	private final String filename;
+	
+	private PressureResource(String filename) {
+		this.filename = filename;
+	}
+	
+	/**
+	 * Returns the name of the file of this resource in /proc/pressure.
+	 */
+	public String getFilename() {
+		return filename;
+	}
+}
@@ -0,0 +1,25 @@
+package usermonitor;
+
+/**
+ * The kinds of stall reported by the pressure stall information, as described 
+ * in {@link ResourcePressure}.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public enum PressureStallType {
+	SOME("some"),
+	FULL("full");
+	
+	private final String name;
+	
+	private PressureStallType(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Returns the name of this type in the pressure files.
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,65 @@
+package usermonitor;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+/**
+ * A limit of the stall time of a resource. The limit is crossed when the tasks 
+ * are stalled by more than the threshold in any window of the given length.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class PressureTrigger {
+	
+	/**
+	 * The limits of the window length accepted by the kernel.
+	 */
+	public static final long MINIMUM_WINDOW = 500000;
+	public static final long MAXIMUM_WINDOW = 10000000;
+	
+	private final PressureResource resource;
+	private final PressureStallType type;
+	private final long threshold;
+	private final long window;
+	
+	/**
+	 * @param threshold The stall time, in microseconds. It must be positive and 
+	 * not greater than window.
+	 * @param window The length of the window, in microseconds. It must be between 
+	 * {@link #MINIMUM_WINDOW} and {@link #MAXIMUM_WINDOW}.
+	 * @throws IllegalArgumentException If resource or type is null or threshold or 
+	 * window is invalid.
+	 */
+	public PressureTrigger(PressureResource resource, PressureStallType type, long threshold, long window) {
+		checkNotNull(resource, "resource must not be null.");
+		checkNotNull(type, "type must not be null.");
+		check(window >= MINIMUM_WINDOW && window <= MAXIMUM_WINDOW, "window is out of the accepted range.");
+		check(threshold > 0 && threshold <= window, "threshold must be positive and not greater than window.");
+		
+		this.resource = resource;
+		this.type = type;
+		this.threshold = threshold;
+		this.window = window;
+	}
+
+	public PressureResource getResource() {
+		return resource;
+	}
+
+	public PressureStallType getType() {
+		return type;
+	}
+
+	public long getThreshold() {
+		return threshold;
+	}
+
+	public long getWindow() {
+		return window;
+	}
+	
+	@Override
+	public String toString() {
+		return resource.getFilename() + " " + type.getName() + " " + threshold + " " + window;
+	}
+}
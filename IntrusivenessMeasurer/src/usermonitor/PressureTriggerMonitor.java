@@ -0,0 +1,29 @@
+package usermonitor;
+
+import java.io.IOException;
+
+/**
+ * Notifies a {@link PressureListener} as soon as the pressure of a resource 
+ * crosses the limit given by a {@link PressureTrigger}, so the pressure does 
+ * not need to be polled.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public interface PressureTriggerMonitor {
+	
+	/**
+	 * Registers the trigger and starts waiting for notifications. The listener 
+	 * is called by a thread of the monitor, so it must return quickly.
+	 * 
+	 * @throws IOException If the trigger could not be registered.
+	 */
+	void start() throws IOException;
+	
+	/**
+	 * Unregisters the trigger. No notifications are delivered after this 
+	 * method returns.
+	 */
+	void stop();
+	
+	PressureTrigger getTrigger();
+}
@@ -0,0 +1,131 @@
+package usermonitor;
+
+import static commons.Preconditions.checkNonNegative;
+
+/**
+ * The resources used by a process, or by a process and its descendants. The CPU usage is a percentage of the time 
+ * of one CPU, like the one reported by ps, so it may be greater than 100 for 
+ * a process with many threads. The memory amounts are given in kB.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProcessInfo {
+	private final int pid;
+	private final double cpuUsage;
+	private final double memoryUsage;
+	private final long residentMemory;
+	private final long virtualMemory;
+	private final long minorFaults;
+	private final long majorFaults;
+	private final int numberOfThreads;
+	private final int numberOfProcesses;
+	private final long readBytes;
+	private final long writeBytes;
+	
+	public ProcessInfo(int pid, double cpuUsage, double memoryUsage, long residentMemory, 
+						long virtualMemory, long minorFaults, long majorFaults, int numberOfThreads) {
+		this(pid, cpuUsage, memoryUsage, residentMemory, virtualMemory, minorFaults, majorFaults, 
+				numberOfThreads, 1, 0, 0);
+	}
+	
+	/**
+	 * @param pid The pid of the process, or of the root of the process tree.
+	 * @param numberOfProcesses The number of processes whose resources are summed.
+	 * @param readBytes The bytes read from the storage since the process started.
+	 * @param writeBytes The bytes written to the storage since the process started.
+	 */
+	public ProcessInfo(int pid, double cpuUsage, double memoryUsage, long residentMemory, 
+						long virtualMemory, long minorFaults, long majorFaults, int numberOfThreads, 
+						int numberOfProcesses, long readBytes, long writeBytes) {
+		checkNonNegative(pid, "pid must not be negative.");
+		checkNonNegative(cpuUsage, "cpuUsage must not be negative.");
+		checkNonNegative(memoryUsage, "memoryUsage must not be negative.");
+		checkNonNegative(residentMemory, "residentMemory must not be negative.");
+		checkNonNegative(virtualMemory, "virtualMemory must not be negative.");
+		checkNonNegative(minorFaults, "minorFaults must not be negative.");
+		checkNonNegative(majorFaults, "majorFaults must not be negative.");
+		checkNonNegative(numberOfThreads, "numberOfThreads must not be negative.");
+		checkNonNegative(numberOfProcesses, "numberOfProcesses must not be negative.");
+		checkNonNegative(readBytes, "readBytes must not be negative.");
+		checkNonNegative(writeBytes, "writeBytes must not be negative.");
+		
+		this.pid = pid;
+		this.cpuUsage = cpuUsage;
+		this.memoryUsage = memoryUsage;
+		this.residentMemory = residentMemory;
+		this.virtualMemory = virtualMemory;
+		this.minorFaults = minorFaults;
+		this.majorFaults = majorFaults;
+		this.numberOfThreads = numberOfThreads;
+		this.numberOfProcesses = numberOfProcesses;
+		this.readBytes = readBytes;
+		this.writeBytes = writeBytes;
+	}
+
+	public int getPid() {
+		return pid;
+	}
+
+	/**
+	 * Returns the percentage of the time of one CPU used by the process 
+	 * since the last sample.
+	 */
+	public double getCPUUsage() {
+		return cpuUsage;
+	}
+
+	/**
+	 * Returns the resident memory as a percentage of the total memory of the machine.
+	 */
+	public double getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	public long getResidentMemory() {
+		return residentMemory;
+	}
+
+	public long getVirtualMemory() {
+		return virtualMemory;
+	}
+
+	/**
+	 * Returns the number of page faults which did not require loading a page 
+	 * from disk, since the process started.
+	 */
+	public long getMinorFaults() {
+		return minorFaults;
+	}
+
+	/**
+	 * Returns the number of page faults which required loading a page from 
+	 * disk, since the process started.
+	 */
+	public long getMajorFaults() {
+		return majorFaults;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	public int getNumberOfProcesses() {
+		return numberOfProcesses;
+	}
+
+	/**
+	 * Returns the bytes the process caused to be read from the storage since 
+	 * it started. Reads served by the page cache are not counted.
+	 */
+	public long getReadBytes() {
+		return readBytes;
+	}
+
+	/**
+	 * Returns the bytes the process caused to be written to the storage since 
+	 * it started.
+	 */
+	public long getWriteBytes() {
+		return writeBytes;
+	}
+}
@@ -0,0 +1,36 @@
+package usermonitor;
+
+import java.io.IOException;
+
+/**
+ * This class is responsible by get the resources used by a single 
+ * process of the user.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public interface ProcessMonitor {
+	
+	/**
+	 * Returns the pid of the monitored process.
+	 */
+	int getPid();
+	
+	/**
+	 * Returns true if the monitored process has not finished yet.
+	 */
+	boolean isRunning();
+	
+	/**
+	 * Creates a new ProcessInfo instance containing the resources used 
+	 * by the process. The CPU usage is the one since the last call to this 
+	 * method, or since the creation of the monitor.
+	 * 
+	 * @return the new ProcessInfo
+	 * @throws IOException if there is some error when getting the 
+	 * information from the system, for example because the process 
+	 * has finished. It is always thrown once the process has finished, 
+	 * even if it is a zombie, so a caller which takes samples until the 
+	 * process finishes does not need to call {@link #isRunning()}.
+	 */
+	ProcessInfo getProcessInfo() throws IOException;
+}
@@ -0,0 +1,88 @@
+package usermonitor;
+
+import static commons.Preconditions.checkNonNegative;
+
+/**
+ * The pressure stall information of a resource. The "some" values are the 
+ * percentages of the time in which at least one task was stalled waiting for 
+ * the resource, and the "full" values are the percentages of the time in which 
+ * all the non-idle tasks were stalled at the same time, so no work was done.</br>
+ * </br>
+ * The averages over 10, 60 and 300 seconds are the ones computed by the kernel. 
+ * The stalls are computed from the total stall times and are the ones since 
+ * the last read.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ResourcePressure {
+	private final double someAverage10;
+	private final double someAverage60;
+	private final double someAverage300;
+	private final double someStall;
+	private final double fullAverage10;
+	private final double fullAverage60;
+	private final double fullAverage300;
+	private final double fullStall;
+	
+	public ResourcePressure(double someAverage10, double someAverage60, double someAverage300, 
+							double someStall, double fullAverage10, double fullAverage60, 
+							double fullAverage300, double fullStall) {
+		checkNonNegative(someAverage10, "someAverage10 must not be negative.");
+		checkNonNegative(someAverage60, "someAverage60 must not be negative.");
+		checkNonNegative(someAverage300, "someAverage300 must not be negative.");
+		checkNonNegative(someStall, "someStall must not be negative.");
+		checkNonNegative(fullAverage10, "fullAverage10 must not be negative.");
+		checkNonNegative(fullAverage60, "fullAverage60 must not be negative.");
+		checkNonNegative(fullAverage300, "fullAverage300 must not be negative.");
+		checkNonNegative(fullStall, "fullStall must not be negative.");
+		
+		this.someAverage10 = someAverage10;
+		this.someAverage60 = someAverage60;
+		this.someAverage300 = someAverage300;
+		this.someStall = someStall;
+		this.fullAverage10 = fullAverage10;
+		this.fullAverage60 = fullAverage60;
+		this.fullAverage300 = fullAverage300;
+		this.fullStall = fullStall;
+	}
+
+	public double getSomeAverage10() {
+		return someAverage10;
+	}
+
+	public double getSomeAverage60() {
+		return someAverage60;
+	}
+
+	public double getSomeAverage300() {
+		return someAverage300;
+	}
+
+	/**
+	 * Returns the percentage of the time since the last read in which 
+	 * at least one task was stalled.
+	 */
+	public double getSomeStall() {
+		return someStall;
+	}
+
+	public double getFullAverage10() {
+		return fullAverage10;
+	}
+
+	public double getFullAverage60() {
+		return fullAverage60;
+	}
+
+	public double getFullAverage300() {
+		return fullAverage300;
+	}
+
+	/**
+	 * Returns the percentage of the time since the last read in which 
+	 * all the non-idle tasks were stalled.
+	 */
+	public double getFullStall() {
+		return fullStall;
+	}
+}
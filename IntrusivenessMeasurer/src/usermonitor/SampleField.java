@@ -0,0 +1,52 @@
+package usermonitor;
+
+/**
+ * The values stored for each sample of a {@link SampleHistory}. 
+ * The CPU usages are percentages and the memory values are given 
+ * in kB and pages per second, as in {@link CPUInfo} and 
+ * {@link MemoryInfo}. The pressure values are the stalls since the 
+ * previous sample, as in {@link ResourcePressure}, and are NaN if 
+ * the system does not report pressure stall information. The CPU 
+ * frequency is the average of the current frequencies of the online 
+ * CPUs, in MHz, and the throttle rate is the number of thermal throttle 
+ * events per second of all of them, which is NaN if the CPUs have no 
+ * throttle counters. The sampling period is the time between samples, 
+ * in milliseconds, when the sample was taken, which changes if the 
+ * sampling is adaptive.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public enum SampleField {
+	CPU_USER_USAGE,
+	CPU_SYSTEM_USAGE,
+	CPU_IDLE,
+	CPU_IO_WAIT,
+	CPU_STEAL,
+	TOTAL_MEMORY,
+	USED_MEMORY,
+	AVAILABLE_MEMORY,
+	MAJOR_FAULT_RATE,
+	SWAP_IN_RATE,
+	SWAP_OUT_RATE,
+	CPU_SOME_PRESSURE,
+	MEMORY_SOME_PRESSURE,
+	MEMORY_FULL_PRESSURE,
+	IO_SOME_PRESSURE,
+	IO_FULL_PRESSURE,
+	CPU_FREQUENCY,
+	CPU_THROTTLE_RATE,
+	SAMPLING_PERIOD;
+	
+	/**
+	 * Returns the names of the fields, in their order, which name the values of 
+	 * the records of a store of samples.
+	 */
+	public static String[] getNames() {
+		SampleField[] fields = values();
+		String[] names = new String[fields.length];
+		for (int field = 0; field < fields.length; field++) {
+			names[field] = fields[field].name();
+		}
+		return names;
+	}
+}
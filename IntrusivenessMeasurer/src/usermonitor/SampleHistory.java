@@ -0,0 +1,189 @@
+package usermonitor;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size history of the last samples taken from a {@link UserMonitor}. 
+ * Each sample has the {@link System#nanoTime()} and the wall-clock time when it 
+ * was taken and one value for each {@link SampleField}. The samples are ordered 
+ * and searched by the nano time, which is monotonic, since the wall clock may be 
+ * stepped back.</br>
+ * </br>
+ * The samples are stored in a ring of primitive values, allocated when the 
+ * history is created, so adding a sample does not create any object. The 
+ * history must be written by a single thread, but it can be read by many 
+ * threads at the same time without locking. A reader never blocks the writer: 
+ * it copies the samples it wants to a {@link SampleWindow} it owns and discards 
+ * the copied samples which were overwritten while it was copying them.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class SampleHistory {
+
+	private static final int NUMBER_OF_FIELDS = SampleField.values().length;
+	/**
+	 * Each slot has the nano time and the timestamp followed by the values.
+	 */
+	private static final int SLOT_SIZE = NUMBER_OF_FIELDS + 2;
+	private static final int TIMESTAMP_OFFSET = 1;
+	private static final int VALUES_OFFSET = 2;
+	
+	private final int capacity;
+	/**
+	 * There is one more slot than the capacity, which is the one being 
+	 * written, so the oldest sample can be read while a new one is added.
+	 */
+	private final int numberOfSlots;
+	private final AtomicLongArray slots;
+	/**
+	 * The number of samples written since the creation of the history. The 
+	 * sample n is stored in the slot n % numberOfSlots and is visible to the 
+	 * readers after written is incremented to n + 1.
+	 */
+	private final AtomicLong written;
+	
+	/**
+	 * @param capacity The number of samples kept by the history. It must be positive.
+	 * @throws IllegalArgumentException If capacity is not positive.
+	 */
+	public SampleHistory(int capacity) {
+		check(capacity > 0, "capacity must be positive.");
+		check(capacity < Integer.MAX_VALUE / SLOT_SIZE, "capacity is too large.");
+		this.capacity = capacity;
+		this.numberOfSlots = capacity + 1;
+		this.slots = new AtomicLongArray(numberOfSlots * SLOT_SIZE);
+		this.written = new AtomicLong();
+	}
+	
+	/**
+	 * Adds a new sample to the history, overwriting the oldest one if the history 
+	 * is full. This method must be called by a single thread.
+	 * 
+	 * @param nanoTime The value of {@link System#nanoTime()} when the sample was taken. 
+	 * The nano times must not decrease.
+	 * @param timestamp The wall-clock time when the sample was taken, in milliseconds.
+	 * @param values The value of each field, indexed by {@link SampleField#ordinal()}.
+	 */
+	public void add(long nanoTime, long timestamp, double[] values) {
+		check(values.length == NUMBER_OF_FIELDS, "values must have one value for each field.");
+		long sample = written.get();
+		int base = slotBase(sample);
+		slots.lazySet(base, nanoTime);
+		slots.lazySet(base + TIMESTAMP_OFFSET, timestamp);
+		for (int field = 0; field < NUMBER_OF_FIELDS; field++) {
+			slots.lazySet(base + VALUES_OFFSET + field, Double.doubleToRawLongBits(values[field]));
+		}
+		written.lazySet(sample + 1);
+	}
+	
+	/**
+	 * Adds the machine values of the given snapshot as a new sample, taken at the 
+	 * times of the snapshot. It is like {@link #add(long, long, double[])}.
+	 * 
+	 * @throws IllegalArgumentException If snapshot is null.
+	 */
+	public void add(MonitorSnapshot snapshot) {
+		checkNotNull(snapshot, "snapshot must not be null.");
+		add(snapshot.getNanoTime(), snapshot.getTimestamp(), snapshot.values);
+	}
+	
+	/**
+	 * Returns the number of samples added since the creation of the history.
+	 */
+	public long getNumberOfSamples() {
+		return written.get();
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Copies the newest sample to the given window.
+	 * 
+	 * @return false if there are no samples yet.
+	 */
+	public boolean copyLatest(SampleWindow window) {
+		return copyLast(1, window) == 1;
+	}
+	
+	/**
+	 * Copies the given number of newest samples, or all the samples if there are less, 
+	 * to the given window, from the oldest to the newest.
+	 * 
+	 * @param numberOfSamples It must not be greater than the capacity of the window.
+	 * @return The number of copied samples.
+	 * @throws IllegalArgumentException If window is null or numberOfSamples is greater 
+	 * than the capacity of the window.
+	 */
+	public int copyLast(int numberOfSamples, SampleWindow window) {
+		checkNotNull(window, "window must not be null.");
+		check(numberOfSamples <= window.getCapacity(), "the window is too small.");
+		
+		long end = written.get();
+		long start = Math.max(0, Math.max(end - numberOfSamples, end - capacity));
+		return copy(start, end, window);
+	}
+	
+	/**
+	 * Copies the samples taken at the given nano time or after it to the given window, 
+	 * from the oldest to the newest. If there are more samples than the capacity of 
+	 * the window, only the newest ones are copied.
+	 * 
+	 * @param nanoTime A value of {@link System#nanoTime()}.
+	 * @return The number of copied samples.
+	 * @throws IllegalArgumentException If window is null.
+	 */
+	public int copySince(long nanoTime, SampleWindow window) {
+		checkNotNull(window, "window must not be null.");
+		
+		long end = written.get();
+		long low = Math.max(0, Math.max(end - window.getCapacity(), end - capacity));
+		long high = end;
+		// finds the first sample which is not older than the given time
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+			if (slots.get(slotBase(middle)) - nanoTime < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return copy(low, end, window);
+	}
+
+	private int copy(long start, long end, SampleWindow window) {
+		int size = 0;
+		for (long sample = start; sample < end; sample++) {
+			int base = slotBase(sample);
+			window.nanoTimes[size] = slots.get(base);
+			window.timestamps[size] = slots.get(base + TIMESTAMP_OFFSET);
+			for (int field = 0; field < NUMBER_OF_FIELDS; field++) {
+				window.values[size * NUMBER_OF_FIELDS + field] = 
+									Double.longBitsToDouble(slots.get(base + VALUES_OFFSET + field));
+			}
+			size++;
+		}
+		
+		// the samples older than this one may have been overwritten while being copied
+		long firstValid = written.get() - capacity;
+		int discarded = (int) Math.max(0, Math.min(size, firstValid - start));
+		if (discarded > 0) {
+			window.discardOldest(discarded, size);
+		}
+		window.size = size - discarded;
+		return window.size;
+	}
+	
+	private int slotBase(long sample) {
+		return (int) (sample % numberOfSlots) * SLOT_SIZE;
+	}
+	
+	static int getNumberOfFields() {
+		return NUMBER_OF_FIELDS;
+	}
+}
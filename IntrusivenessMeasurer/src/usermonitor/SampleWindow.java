@@ -0,0 +1,89 @@
+package usermonitor;
+
+import static commons.Preconditions.check;
+
+/**
+ * A reusable copy of some consecutive samples of a {@link SampleHistory}, 
+ * ordered from the oldest to the newest. A window is owned by a single 
+ * reader, which can iterate over its samples while the history keeps 
+ * being written.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class SampleWindow {
+	
+	private final int capacity;
+	final long[] nanoTimes;
+	final long[] timestamps;
+	final double[] values;
+	int size;
+	
+	/**
+	 * @param capacity The maximum number of samples of the window. It must be positive.
+	 * @throws IllegalArgumentException If capacity is not positive.
+	 */
+	public SampleWindow(int capacity) {
+		check(capacity > 0, "capacity must be positive.");
+		this.capacity = capacity;
+		this.nanoTimes = new long[capacity];
+		this.timestamps = new long[capacity];
+		this.values = new double[capacity * SampleHistory.getNumberOfFields()];
+		this.size = 0;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the number of samples copied to the window.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the value of {@link System#nanoTime()} when the sample was taken, which 
+	 * must be used to compute the time between two samples.
+	 * 
+	 * @param sample The position of the sample in the window, from 0 (the oldest) 
+	 * to size() - 1 (the newest).
+	 */
+	public long getNanoTime(int sample) {
+		checkSample(sample);
+		return nanoTimes[sample];
+	}
+	
+	/**
+	 * Returns the wall-clock time when the sample was taken, in milliseconds.
+	 * 
+	 * @param sample The position of the sample in the window, from 0 (the oldest) 
+	 * to size() - 1 (the newest).
+	 */
+	public long getTimestamp(int sample) {
+		checkSample(sample);
+		return timestamps[sample];
+	}
+	
+	/**
+	 * @param sample The position of the sample in the window, from 0 (the oldest) 
+	 * to size() - 1 (the newest).
+	 */
+	public double getValue(int sample, SampleField field) {
+		checkSample(sample);
+		return values[sample * SampleHistory.getNumberOfFields() + field.ordinal()];
+	}
+	
+	void discardOldest(int discarded, int copied) {
+		int fields = SampleHistory.getNumberOfFields();
+		System.arraycopy(nanoTimes, discarded, nanoTimes, 0, copied - discarded);
+		System.arraycopy(timestamps, discarded, timestamps, 0, copied - discarded);
+		System.arraycopy(values, discarded * fields, values, 0, (copied - discarded) * fields);
+	}
+	
+	private void checkSample(int sample) {
+		if (sample < 0 || sample >= size) {
+			throw new IndexOutOfBoundsException("There is no sample " + sample + " in the window.");
+		}
+	}
+}
@@ -37,4 +37,43 @@ public interface UserMonitor extends Serializable {
 	 * a low level error.
 	 */
 	CPUInfo getCPUInfo() throws IOException;
+	
+	/**
+	 * Creates a new DiskInfo instance containing the usage of the 
+	 * block devices of the user since the last call to this method.
+	 * 
+	 * @return the new DiskInfo
+	 * @throws IOException if there is some error when getting the 
+	 * information from the system. These errors are possible because 
+	 * the method may read files to obtain the information. The read 
+	 * files may be corrupted, or the reading may be interrupted by 
+	 * a low level error.
+	 */
+	DiskInfo getDiskInfo() throws IOException;
+	
+	/**
+	 * Creates a new PressureInfo instance containing the pressure 
+	 * stall information of the CPU, memory and IO of the user.
+	 * 
+	 * @return the new PressureInfo
+	 * @throws IOException if there is some error when getting the 
+	 * information from the system, or if the system does not report 
+	 * pressure stall information.
+	 */
+	PressureInfo getPressureInfo() throws IOException;
+	
+	/**
+	 * Reads all the sources of the monitor back-to-back into the given 
+	 * snapshot, under a single timestamp. The snapshot is owned by the 
+	 * caller and can be reused, so taking snapshots periodically does not 
+	 * create garbage, unlike the get methods. The rates and usages are the 
+	 * ones since the last read of each source, either by this method or 
+	 * by the get methods.
+	 * 
+	 * @param snapshot The snapshot to be filled. Its previous values are replaced.
+	 * @throws IOException if there is some error when getting the 
+	 * information from the system. The snapshot may then be partially filled.
+	 * @throws IllegalArgumentException if snapshot is null.
+	 */
+	void snapshot(MonitorSnapshot snapshot) throws IOException;
 }
@@ -0,0 +1,35 @@
+package usermonitor;
+
+/**
+ * Samples a {@link UserMonitor} periodically in background and keeps the 
+ * last samples in a {@link SampleHistory}, so the machine state can be read 
+ * by many threads without reading the system files again.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public interface UserMonitorSampler {
+	
+	/**
+	 * Starts sampling in a dedicated thread. Calling this method again 
+	 * has no effect.
+	 */
+	void start();
+	
+	/**
+	 * Stops sampling and waits for the sample being taken, if there is one, 
+	 * to finish. The history is kept.
+	 */
+	void stop();
+	
+	/**
+	 * Samples at the fastest rate for a while, if the rate is adaptive, like 
+	 * when a task starts or the user reports discomfort. It has no effect if 
+	 * the rate is fixed.
+	 */
+	void requestFastSampling();
+	
+	/**
+	 * Returns the history where the samples are stored.
+	 */
+	SampleHistory getHistory();
+}
@@ -0,0 +1,142 @@
+package usermonitor.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the time between two samples from the variation of some watched
+ * values, like the CPU usage and the pressure stalls. While the values are
+ * stable, the period is doubled after each sample, up to the maximum period,
+ * so an idle machine is rarely sampled. When any value changes more than the
+ * change threshold between two samples, or when the fast sampling is requested,
+ * the period drops to the minimum one and is kept there for the fast sampling
+ * duration, so a burst is captured with a high resolution.</br>
+ * </br>
+ * The policy starts sampling fast, since the start of the sampling is usually
+ * the start of a task.</br>
+ * </br>
+ * Only {@link #requestFastSampling()} may be called by other threads than the
+ * sampling one.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class AdaptiveSamplingPolicy {
+	
+	/**
+	 * The default change threshold, in percentage points.
+	 */
+	public static final double DEFAULT_CHANGE_THRESHOLD = 10;
+	/**
+	 * The default fast sampling duration, in milliseconds.
+	 */
+	public static final long DEFAULT_FAST_SAMPLING_DURATION = 5000;
+	
+	private final long minimumPeriod;
+	private final long maximumPeriod;
+	private final double changeThreshold;
+	private final long fastSamplingDurationInNanos;
+	
+	private double[] previousValues;
+	private long period;
+	private long fastSamplingEnd;
+	private volatile boolean fastSamplingRequested;
+	
+	/**
+	 * Creates a policy with the {@link #DEFAULT_CHANGE_THRESHOLD} and the
+	 * {@link #DEFAULT_FAST_SAMPLING_DURATION}.
+	 *
+	 * @see #AdaptiveSamplingPolicy(long, long, double, long)
+	 */
+	public AdaptiveSamplingPolicy(long minimumPeriodInMillis, long maximumPeriodInMillis) {
+		this(minimumPeriodInMillis, maximumPeriodInMillis, DEFAULT_CHANGE_THRESHOLD,
+				DEFAULT_FAST_SAMPLING_DURATION);
+	}
+	
+	/**
+	 * @param minimumPeriodInMillis The period while sampling fast. It must be positive.
+	 * @param maximumPeriodInMillis The period while the values are stable. It must not be
+	 * less than the minimum period.
+	 * @param changeThreshold The variation of a value between two samples which switches
+	 * to the fast sampling. It must be positive.
+	 * @param fastSamplingDurationInMillis The time the fast sampling is kept after the
+	 * last change. It must not be negative.
+	 * @throws IllegalArgumentException If any of the arguments is invalid.
+	 */
+	public AdaptiveSamplingPolicy(long minimumPeriodInMillis, long maximumPeriodInMillis,
+								double changeThreshold, long fastSamplingDurationInMillis) {
+		check(minimumPeriodInMillis > 0, "minimumPeriodInMillis must be positive.");
+		check(maximumPeriodInMillis >= minimumPeriodInMillis,
+				"maximumPeriodInMillis must not be less than minimumPeriodInMillis.");
+		check(changeThreshold > 0, "changeThreshold must be positive.");
+		check(fastSamplingDurationInMillis >= 0, "fastSamplingDurationInMillis must not be negative.");
+		
+		this.minimumPeriod = minimumPeriodInMillis;
+		this.maximumPeriod = maximumPeriodInMillis;
+		this.changeThreshold = changeThreshold;
+		this.fastSamplingDurationInNanos = TimeUnit.MILLISECONDS.toNanos(fastSamplingDurationInMillis);
+		this.period = minimumPeriodInMillis;
+		this.fastSamplingEnd = System.nanoTime() + fastSamplingDurationInNanos;
+	}
+	
+	/**
+	 * Returns the current period, in milliseconds.
+	 */
+	public long getPeriod() {
+		return period;
+	}
+	
+	public long getMinimumPeriod() {
+		return minimumPeriod;
+	}
+	
+	public long getMaximumPeriod() {
+		return maximumPeriod;
+	}
+	
+	/**
+	 * Switches to the fast sampling when the next sample is taken, like when
+	 * a task starts or the user reports discomfort.
+	 */
+	public void requestFastSampling() {
+		fastSamplingRequested = true;
+	}
+	
+	/**
+	 * Computes the period until the next sample from the watched values of the
+	 * last sample. The NaN values, which could not be read, are not compared.
+	 *
+	 * @param values The watched values. There must be the same number of values
+	 * in all the calls.
+	 * @return The new period, in milliseconds.
+	 * @throws IllegalArgumentException If values is null or has a different number
+	 * of values than in the previous call.
+	 */
+	public long nextPeriod(double[] values) {
+		checkNotNull(values, "values must not be null.");
+		
+		boolean changed = fastSamplingRequested;
+		fastSamplingRequested = false;
+		if (previousValues == null) {
+			previousValues = new double[values.length];
+		} else {
+			check(values.length == previousValues.length, "values must have the same length of the previous values.");
+			for (int value = 0; value < values.length && !changed; value++) {
+				changed = Math.abs(values[value] - previousValues[value]) > changeThreshold;
+			}
+		}
+		System.arraycopy(values, 0, previousValues, 0, values.length);
+		
+		long now = System.nanoTime();
+		if (changed) {
+			fastSamplingEnd = now + fastSamplingDurationInNanos;
+			period = minimumPeriod;
+		} else if (now - fastSamplingEnd < 0) {
+			period = minimumPeriod;
+		} else {
+			period = Math.min(maximumPeriod, 2 * period);
+		}
+		return period;
+	}
+}
@@ -0,0 +1,310 @@
+package usermonitor.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import usermonitor.CPUConfiguration;
+
+import commons.util.NumberParser;
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the CPU configurations, like CPU frequency, cache size and model name, 
+ * from a file in the /proc/cpuinfo format. The configurations do not change while 
+ * the machine runs, so the file is parsed only once and the read configurations 
+ * are kept in an immutable list, shared by all the callers. The file is parsed 
+ * again only when the set of online CPUs changes, which is checked by reading the 
+ * small /sys/devices/system/cpu/online file. If there is no such file, the 
+ * configurations are never parsed again.</br>
+ * </br>
+ * The expected pattern of the CPU configuration file is the following:</br>  
+ * </br>
+ * (cpu 0)</br>
+ * [ignored lines]</br>
+ * CPU_MODEL_NAME_LINE_HEADER : model name</br>
+ * [ignored lines]</br>
+ * CPU_FREQUENCY_LINE_HEADER : CPU frequency</br> 
+ * [ignored lines]</br>
+ * CPU_CACHE_SIZE_LINE_HEADER : cache size CACHE_SIZE_UNIT_STRING</br>
+ * [ignored lines]</br>
+ * </br>
+ * (cpu 1)</br>
+ * ...</br>
+ * (cpu n)</br>
+ * ...</br>
+ * </br>
+ * The read lines may be in different order. A CPU ends at a blank line and the
+ * data ends at the end of the file or at a second blank line.</br>
+ * </br>
+ * The whole file is read into a reused buffer and parsed in a single pass over
+ * its lines, so the cost of a parse grows linearly with the size of the file,
+ * which has about 1.5 kB per CPU. The model names equal to the previous one,
+ * which are the most, share the same String.</br>
+ * </br>
+ * The expected pattern of the online CPUs file is a comma separated list of 
+ * CPU numbers and ranges of CPU numbers, like "0-3,6,8-9".
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class CPUConfigurationReader {
+
+	private static final Logger logger = LoggerFactory.getLogger(CPUConfigurationReader.class);
+	
+	/**
+	 * The line that contains the cpu model name must start with this header.
+	 */
+	private static final byte[] CPU_MODEL_NAME_LINE_HEADER = "model name".getBytes();
+	/**
+	 * The line that contains the cpu frequency must start with this header.
+	 */
+	private static final byte[] CPU_FREQUENCY_LINE_HEADER = "cpu MHz".getBytes();
+	/**
+	 * The line that contains the cpu cache size must start with this header.
+	 */
+	private static final byte[] CPU_CACHE_SIZE_LINE_HEADER = "cache size".getBytes();
+
+	private static final byte[] CACHE_SIZE_UNIT_STRING = "KB".getBytes();
+	/**
+	 * The cpuinfo file of a machine with 32 CPUs fits in the initial buffer.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+	
+	private final ProcFileReader cpuConfigurationFile;
+	/**
+	 * It is null if there is no online CPUs file.
+	 */
+	private final ProcFileReader onlineCPUsFile;
+	
+	private List<CPUConfiguration> configurations;
+	private int[] onlineCPUs;
+	private byte[] onlineCPUsContent = new byte[0];
+	
+	CPUConfigurationReader(String cpuConfigurationFilename, String onlineCPUsFilename) throws IOException {
+		cpuConfigurationFile = new ProcFileReader(cpuConfigurationFilename, INITIAL_BUFFER_SIZE);
+		if (onlineCPUsFilename == null) {
+			onlineCPUsFile = null;
+		} else if (new File(onlineCPUsFilename).exists()) {
+			onlineCPUsFile = new ProcFileReader(onlineCPUsFilename);
+		} else {
+			logger.info("{} was not found. The cpu configurations will be read only once.", 
+						onlineCPUsFilename);
+			onlineCPUsFile = null;
+		}
+	}
+	
+	/**
+	 * Returns the configurations of the online CPUs. The returned list is the same 
+	 * between calls while the set of online CPUs does not change.
+	 * 
+	 * @throws IOException If any of the files could not be read or has an invalid format.
+	 */
+	List<CPUConfiguration> read() throws IOException {
+		if (configurations != null && !onlineCPUsChanged()) {
+			return configurations;
+		}
+		// if the reading fails, it is tried again in the next call
+		configurations = null;
+		List<CPUConfiguration> readConfigurations = readCPUsFromCPUInfoFile();
+		onlineCPUs = readOnlineCPUs(readConfigurations.size());
+		configurations = readConfigurations;
+		logger.debug("read {} cpu configurations.", configurations.size());
+		return configurations;
+	}
+	
+	/**
+	 * Returns the numbers of the online CPUs, in the same order of the configurations 
+	 * returned by the last call to {@link #read()}.
+	 */
+	int[] getOnlineCPUs() {
+		return onlineCPUs;
+	}
+	
+	private boolean onlineCPUsChanged() throws IOException {
+		if (onlineCPUsFile == null) {
+			return false;
+		}
+		int length = onlineCPUsFile.read();
+		byte[] data = onlineCPUsFile.getData();
+		boolean changed = length != onlineCPUsContent.length;
+		for (int i = 0; !changed && i < length; i++) {
+			changed = data[i] != onlineCPUsContent[i];
+		}
+		if (changed) {
+			onlineCPUsContent = Arrays.copyOf(data, length);
+			logger.info("the set of online cpus has changed.");
+		}
+		return changed;
+	}
+	
+	private int[] readOnlineCPUs(int numberOfConfigurations) throws IOException {
+		if (onlineCPUsFile == null) {
+			int[] cpus = new int[numberOfConfigurations];
+			for (int i = 0; i < cpus.length; i++) {
+				cpus[i] = i;
+			}
+			return cpus;
+		}
+		if (onlineCPUsContent.length == 0) {
+			onlineCPUsChanged();
+		}
+		return parseCPUList(onlineCPUsContent);
+	}
+	
+	private static int[] parseCPUList(byte[] list) throws IOException {
+		int[] cpus = new int[16];
+		int numberOfCPUs = 0;
+		int end = list.length;
+		while (end > 0 && Character.isWhitespace(list[end - 1])) {
+			end--;
+		}
+		
+		for (int start = 0; start < end; start++) {
+			int rangeEnd = indexOf(list, ',', start, end);
+			if (rangeEnd > start) {
+				int separator = indexOf(list, '-', start, rangeEnd);
+				long first = NumberParser.parseLong(list, start, separator);
+				long last = separator == rangeEnd ? first : NumberParser.parseLong(list, separator + 1, rangeEnd);
+				if (first == -1 || last < first || last > Integer.MAX_VALUE) {
+					throw new IOException("Invalid format of online CPUs file.");
+				}
+				for (long cpu = first; cpu <= last; cpu++) {
+					if (numberOfCPUs == cpus.length) {
+						cpus = Arrays.copyOf(cpus, 2 * cpus.length);
+					}
+					cpus[numberOfCPUs++] = (int) cpu;
+				}
+			}
+			start = rangeEnd;
+		}
+		return Arrays.copyOf(cpus, numberOfCPUs);
+	}
+	
+	private static int indexOf(byte[] data, char character, int from, int to) {
+		while (from < to && data[from] != character) {
+			from++;
+		}
+		return from;
+	}
+	
+	private List<CPUConfiguration> readCPUsFromCPUInfoFile() throws IOException {
+		cpuConfigurationFile.read();
+		ArrayList<CPUConfiguration> cpus = new ArrayList<CPUConfiguration>();
+		String lastModelName = null;
+		do {
+			CPUConfiguration cpu = readCPUFromFile(lastModelName);
+			cpus.add(cpu);
+			lastModelName = cpu.getModelName();
+		}
+		while (thereAreCPUsToRead());
+		return Collections.unmodifiableList(cpus);
+	}
+	
+	/**
+	 * Reads the lines of a CPU, up to the blank line which ends it or the end of the file.
+	 */
+	private CPUConfiguration readCPUFromFile(String lastModelName) throws IOException {
+		double cpuFrequency = -1;
+		String modelName = null;
+		double cacheSize = -1;
+		
+		while (cpuConfigurationFile.nextLine() && !cpuConfigurationFile.isBlankLine()) {
+			int value = valueStart(CPU_MODEL_NAME_LINE_HEADER);
+			if (value != -1) {
+				modelName = readModelName(value, lastModelName);
+				continue;
+			}
+			value = valueStart(CPU_FREQUENCY_LINE_HEADER);
+			if (value != -1) {
+				cpuFrequency = readNumber(value, cpuConfigurationFile.getLineEnd());
+				continue;
+			}
+			value = valueStart(CPU_CACHE_SIZE_LINE_HEADER);
+			if (value != -1) {
+				cacheSize = readNumber(value, unitStart(value));
+			}
+		}
+		
+		if (cpuFrequency == -1 || cacheSize == -1 || modelName == null) {
+			throw new IOException("Could not find necessary data.");
+		}
+		return new CPUConfiguration(cpuFrequency, modelName, cacheSize);
+	}
+	
+	/**
+	 * Returns the position of the value of the current line, after the separator, 
+	 * if the line has the given header, or -1 otherwise.
+	 */
+	private int valueStart(byte[] header) {
+		if (!cpuConfigurationFile.lineStartsWith(header)) {
+			return -1;
+		}
+		int end = cpuConfigurationFile.getLineEnd();
+		int separator = cpuConfigurationFile.skipSpaces(cpuConfigurationFile.getLineStart() + header.length, end);
+		if (separator == end || cpuConfigurationFile.getData()[separator] != ':') {
+			return -1;
+		}
+		return cpuConfigurationFile.skipSpaces(separator + 1, end);
+	}
+	
+	private String readModelName(int start, String lastModelName) {
+		byte[] data = cpuConfigurationFile.getData();
+		int end = cpuConfigurationFile.getLineEnd();
+		while (end > start && (data[end - 1] == ' ' || data[end - 1] == '\t')) {
+			end--;
+		}
+		if (lastModelName != null && lastModelName.length() == end - start) {
+			boolean equal = true;
+			for (int i = 0; equal && i < end - start; i++) {
+				equal = lastModelName.charAt(i) == data[start + i];
+			}
+			if (equal) {
+				return lastModelName;
+			}
+		}
+		return new String(data, start, end - start);
+	}
+	
+	/**
+	 * Returns the position of the cache size unit in the current line, or the line end
+	 * if there is no unit.
+	 */
+	private int unitStart(int from) {
+		byte[] data = cpuConfigurationFile.getData();
+		int end = cpuConfigurationFile.getLineEnd();
+		for (int i = from; i <= end - CACHE_SIZE_UNIT_STRING.length; i++) {
+			int matched = 0;
+			while (matched < CACHE_SIZE_UNIT_STRING.length && data[i + matched] == CACHE_SIZE_UNIT_STRING[matched]) {
+				matched++;
+			}
+			if (matched == CACHE_SIZE_UNIT_STRING.length) {
+				return i;
+			}
+		}
+		return end;
+	}
+	
+	private double readNumber(int from, int to) throws IOException {
+		int end = cpuConfigurationFile.tokenEnd(from, to);
+		double number = cpuConfigurationFile.parseDecimal(from, end);
+		if (Double.isNaN(number) || cpuConfigurationFile.skipSpaces(end, to) != to) {
+			throw new IOException("Invalid format of CPU info file.");
+		}
+		return number;
+	}
+	
+	/**
+	 * The current line is the blank line which ended the last CPU, if there is one.
+	 * Another blank line or the end of the file ends the data.
+	 */
+	private boolean thereAreCPUsToRead() {
+		int next = cpuConfigurationFile.getLineEnd() + 1;
+		return next < cpuConfigurationFile.getLength() && cpuConfigurationFile.getData()[next] != '\n';
+	}
+}
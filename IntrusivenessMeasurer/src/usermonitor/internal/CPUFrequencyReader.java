@@ -0,0 +1,255 @@
+package usermonitor.internal;
+
+import static commons.util.FileUtil.toPath;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import usermonitor.CPUConfiguration;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the current frequency of each online CPU from the cpufreq sysfs files, 
+ * {cpu sysfs directory}/cpu{n}/cpufreq/scaling_cur_freq, which report the 
+ * frequency in kHz. The files are small and kept open, so reading them is much 
+ * cheaper than parsing the whole /proc/cpuinfo file. For the CPUs without cpufreq 
+ * support, like the ones of most virtual machines, the frequency of the CPU 
+ * configuration is reported.</br>
+ * </br>
+ * The thermal throttling of each CPU is read from the counter 
+ * {cpu sysfs directory}/cpu{n}/thermal_throttle/core_throttle_count, which the x86 
+ * kernels increment each time the core is throttled because of its temperature. 
+ * Like the rates of {@link VirtualMemoryStatsReader}, the throttle rates are the 
+ * ones of the time elapsed between two reads. They are NaN for the CPUs without 
+ * the counter. The counter belongs to the core, so the hardware threads of a core 
+ * report the same events. The total rate counts each core once, identified by the 
+ * topology/core_id and topology/physical_package_id files of its CPUs. No objects 
+ * are created while reading.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class CPUFrequencyReader {
+
+	private static final String CPU_DIRECTORY_PREFIX = "cpu";
+	private static final String CPUFREQ_DIRECTORY = "cpufreq";
+	private static final String CURRENT_FREQUENCY_FILE = "scaling_cur_freq";
+	private static final String THERMAL_THROTTLE_DIRECTORY = "thermal_throttle";
+	private static final String CORE_THROTTLE_COUNT_FILE = "core_throttle_count";
+	private static final String TOPOLOGY_DIRECTORY = "topology";
+	private static final String CORE_ID_FILE = "core_id";
+	private static final String PACKAGE_ID_FILE = "physical_package_id";
+	private static final double KHZ_PER_MHZ = 1000;
+	private static final double NANOSECONDS_PER_SECOND = 1000000000.0;
+	private static final int BUFFER_SIZE = 64;
+	
+	/**
+	 * It is null if the sysfs files are not read, and then the frequencies are the 
+	 * ones of the CPU configurations and the throttle rates are NaN.
+	 */
+	private final String cpuSysfsDirectory;
+	
+	private List<CPUConfiguration> configurations;
+	private ProcFileReader[] frequencyFiles = new ProcFileReader[0];
+	private double[] frequencies = new double[0];
+	private ProcFileReader[] throttleFiles = new ProcFileReader[0];
+	private long[] throttleCounts = new long[0];
+	private double[] throttleRates = new double[0];
+	/**
+	 * Whether the throttle rate of each CPU is added to the total, which is false 
+	 * for the other hardware threads of a core.
+	 */
+	private boolean[] countedThrottleRates = new boolean[0];
+	private int numberOfThrottleFiles;
+	private long lastReadTime;
+	
+	CPUFrequencyReader(String cpuSysfsDirectory) {
+		this.cpuSysfsDirectory = cpuSysfsDirectory;
+	}
+	
+	/**
+	 * Opens the frequency and throttle files of the given CPUs, if they were not 
+	 * opened for the given configurations yet. The throttle counters are read 
+	 * when they are opened, so the first rates are the ones since then.
+	 * 
+	 * @param onlineCPUs The numbers of the online CPUs.
+	 * @param configurations The configurations of the online CPUs, in the same order.
+	 */
+	void configure(int[] onlineCPUs, List<CPUConfiguration> configurations) throws IOException {
+		// the configurations list only changes when the set of online CPUs changes
+		if (configurations == this.configurations) {
+			return;
+		}
+		close();
+		
+		int numberOfCPUs = Math.min(onlineCPUs.length, configurations.size());
+		frequencyFiles = new ProcFileReader[numberOfCPUs];
+		frequencies = new double[numberOfCPUs];
+		throttleFiles = new ProcFileReader[numberOfCPUs];
+		throttleCounts = new long[numberOfCPUs];
+		throttleRates = new double[numberOfCPUs];
+		countedThrottleRates = new boolean[numberOfCPUs];
+		numberOfThrottleFiles = 0;
+		Set<String> countedCores = new HashSet<String>();
+		lastReadTime = System.nanoTime();
+		for (int i = 0; i < numberOfCPUs; i++) {
+			frequencies[i] = configurations.get(i).getCpuFrequency();
+			if (cpuSysfsDirectory == null) {
+				throttleRates[i] = Double.NaN;
+				continue;
+			}
+			String cpuDirectory = toPath(cpuSysfsDirectory, CPU_DIRECTORY_PREFIX + onlineCPUs[i]);
+			String filename = toPath(cpuDirectory, CPUFREQ_DIRECTORY, CURRENT_FREQUENCY_FILE);
+			if (new File(filename).canRead()) {
+				frequencyFiles[i] = new ProcFileReader(filename, BUFFER_SIZE);
+			}
+			
+			filename = toPath(cpuDirectory, THERMAL_THROTTLE_DIRECTORY, CORE_THROTTLE_COUNT_FILE);
+			if (new File(filename).canRead()) {
+				throttleFiles[i] = new ProcFileReader(filename, BUFFER_SIZE);
+				throttleCounts[i] = readCounter(throttleFiles[i]);
+				numberOfThrottleFiles++;
+				countedThrottleRates[i] = countedCores.add(getCoreKey(cpuDirectory, onlineCPUs[i]));
+			} else {
+				throttleRates[i] = Double.NaN;
+			}
+		}
+		this.configurations = configurations;
+	}
+	
+	/**
+	 * Reads the current frequencies and updates the throttle rates.
+	 * 
+	 * @throws IOException If any of the files could not be read or has an invalid format.
+	 */
+	void read() throws IOException {
+		for (int i = 0; i < frequencyFiles.length; i++) {
+			ProcFileReader file = frequencyFiles[i];
+			if (file != null) {
+				frequencies[i] = readCounter(file) / KHZ_PER_MHZ;
+			}
+		}
+		
+		long readTime = System.nanoTime();
+		double elapsedSeconds = (readTime - lastReadTime) / NANOSECONDS_PER_SECOND;
+		lastReadTime = readTime;
+		for (int i = 0; i < throttleFiles.length; i++) {
+			ProcFileReader file = throttleFiles[i];
+			if (file != null) {
+				long count = readCounter(file);
+				long delta = count - throttleCounts[i];
+				if (elapsedSeconds > 0) {
+					throttleRates[i] = delta > 0 ? delta / elapsedSeconds : 0;
+				}
+				throttleCounts[i] = count;
+			}
+		}
+	}
+	
+	/*
+	 * The CPUs without topology files are taken as cores of their own.
+	 */
+	private static String getCoreKey(String cpuDirectory, int cpu) throws IOException {
+		String coreIdFilename = toPath(cpuDirectory, TOPOLOGY_DIRECTORY, CORE_ID_FILE);
+		String packageIdFilename = toPath(cpuDirectory, TOPOLOGY_DIRECTORY, PACKAGE_ID_FILE);
+		if (!new File(coreIdFilename).canRead() || !new File(packageIdFilename).canRead()) {
+			return CPU_DIRECTORY_PREFIX + cpu;
+		}
+		return readTopologyId(packageIdFilename) + ":" + readTopologyId(coreIdFilename);
+	}
+	
+	private static long readTopologyId(String filename) throws IOException {
+		ProcFileReader file = new ProcFileReader(filename, BUFFER_SIZE);
+		try {
+			return readCounter(file);
+		} finally {
+			file.close();
+		}
+	}
+	
+	private static long readCounter(ProcFileReader file) throws IOException {
+		file.read();
+		long value = file.parseLong(0, file.tokenEnd(0, file.getLength()));
+		if (value < 0) {
+			throw new IOException("Invalid format of " + file.getFilename() + ".");
+		}
+		return value;
+	}
+	
+	/**
+	 * Returns the number of online CPUs whose frequencies are read.
+	 */
+	int getNumberOfCPUs() {
+		return frequencies.length;
+	}
+	
+	/**
+	 * Returns the current frequency of the CPU in the given position of the online CPUs, in MHz.
+	 */
+	double getFrequency(int cpu) {
+		return frequencies[cpu];
+	}
+	
+	/**
+	 * Returns the average of the current frequencies of the online CPUs, in MHz, 
+	 * or NaN if there are no CPUs.
+	 */
+	double getAverageFrequency() {
+		if (frequencies.length == 0) {
+			return Double.NaN;
+		}
+		double sum = 0;
+		for (double frequency : frequencies) {
+			sum += frequency;
+		}
+		return sum / frequencies.length;
+	}
+	
+	/**
+	 * Returns a copy of the current frequencies of the online CPUs, in MHz.
+	 */
+	double[] getFrequencies() {
+		return frequencies.clone();
+	}
+	
+	/**
+	 * Returns the throttle events per second of the CPU in the given position of the 
+	 * online CPUs, or NaN if the CPU has no throttle counter.
+	 */
+	double getThrottleRate(int cpu) {
+		return throttleRates[cpu];
+	}
+	
+	/**
+	 * Returns the throttle events per second of all the cores of the online CPUs, 
+	 * counting each core once, or NaN if none of them has a throttle counter.
+	 */
+	double getTotalThrottleRate() {
+		if (numberOfThrottleFiles == 0) {
+			return Double.NaN;
+		}
+		double sum = 0;
+		for (int i = 0; i < throttleFiles.length; i++) {
+			if (throttleFiles[i] != null && countedThrottleRates[i]) {
+				sum += throttleRates[i];
+			}
+		}
+		return sum;
+	}
+	
+	private void close() throws IOException {
+		for (ProcFileReader file : frequencyFiles) {
+			if (file != null) {
+				file.close();
+			}
+		}
+		for (ProcFileReader file : throttleFiles) {
+			if (file != null) {
+				file.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package usermonitor.internal;
+
+/**
+ * The formats of CPU usage file which {@link DefaultUserMonitor} can read.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public enum CPUUsageFormat {
+	
+	/**
+	 * The output of a typical call to top program, produced by an external process.
+	 * See {@link TopCPUUsageReader}.
+	 */
+	TOP,
+	
+	/**
+	 * The kernel CPU counters, read directly from /proc/stat.
+	 * See {@link ProcStatReader}.
+	 */
+	PROC_STAT
+}
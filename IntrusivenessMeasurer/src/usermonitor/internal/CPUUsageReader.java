@@ -0,0 +1,41 @@
+package usermonitor.internal;
+
+import java.io.IOException;
+
+/**
+ * Reads the CPU usage from a file. The usage of the whole machine is stored 
+ * in the CPU 0 of the reader and the usage of each core, if the file reports it, 
+ * in the CPUs 1 to {@link #getNumberOfCores()}. 
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+interface CPUUsageReader {
+	
+	int USER = 0;
+	int SYSTEM = 1;
+	int IDLE = 2;
+	int IO_WAIT = 3;
+	int STEAL = 4;
+	int NUMBER_OF_FIELDS = 5;
+	
+	/**
+	 * Reads the file and updates the usages.
+	 * 
+	 * @throws IOException If the file could not be read or has an invalid format.
+	 */
+	void read() throws IOException;
+	
+	/**
+	 * Returns the number of cores whose usage was read. It is 0 if the file 
+	 * reports only the usage of the whole machine.
+	 */
+	int getNumberOfCores();
+	
+	/**
+	 * Returns the percentage of time spent by the given CPU in the given field. 
+	 * 
+	 * @param cpu 0 for the whole machine or the position of the core, starting from 1.
+	 * @param field One of the field constants.
+	 */
+	double getUsage(int cpu, int field);
+}
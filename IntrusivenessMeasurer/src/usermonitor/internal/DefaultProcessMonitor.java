@@ -0,0 +1,129 @@
+package usermonitor.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import usermonitor.ProcessInfo;
+import usermonitor.ProcessMonitor;
+
+/**
+ * This implementation of ProcessMonitor reads the data directly from the files 
+ * of the process under /proc, described in {@link ProcessStatReader}, so no 
+ * other process is started to take a sample.</br>
+ * </br>
+ * The CPU usage is computed from the difference between the CPU times of the 
+ * process in two samples, divided by the time between them. The memory usage 
+ * is the resident memory divided by the MemTotal of /proc/meminfo, which is 
+ * read only once.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class DefaultProcessMonitor implements ProcessMonitor {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultProcessMonitor.class);
+	
+	private static final String DEFAULT_PROC_DIRECTORY = "/proc";
+	private static final String DEFAULT_MEMORY_INFO_FILE = "/proc/meminfo";
+	/**
+	 * The kernel always exports the CPU times to the user space in units of 
+	 * USER_HZ, which is 100 on all the architectures supported by Linux.
+	 */
+	private static final double CLOCK_TICKS_PER_SECOND = 100;
+	private static final double NANOSECONDS_PER_SECOND = 1000000000.0;
+	
+	private final int pid;
+	private final ProcessStatReader processFiles;
+	private final double totalMemory;
+	
+	private long lastCPUTime;
+	private long lastSampleTime;
+	
+	/**
+	 * Constructs a new DefaultProcessMonitor which reads the files of the process 
+	 * with the given pid under /proc.
+	 * 
+	 * @throws IOException If the process does not exist or its files could not be read.
+	 */
+	public DefaultProcessMonitor(int pid) throws IOException {
+		this(pid, DEFAULT_PROC_DIRECTORY, DEFAULT_MEMORY_INFO_FILE);
+	}
+	
+	/**
+	 * @param pid The pid of the process to be monitored.
+	 * @param procDirectory The directory which contains a directory for each process, 
+	 * named with its pid.
+	 * @param memoryInfoFilename The file which contains the total memory of the machine, 
+	 * in the format described in {@link MemoryInfoReader}.
+	 * @throws IOException If the process does not exist or its files could not be read.
+	 * @throws IllegalArgumentException If pid is not positive or any of the names is null.
+	 */
+	public DefaultProcessMonitor(int pid, String procDirectory, String memoryInfoFilename) throws IOException {
+		check(pid > 0, "pid must be positive.");
+		checkNotNull(procDirectory, "procDirectory must not be null.");
+		checkNotNull(memoryInfoFilename, "memoryInfoFilename must not be null.");
+		
+		this.pid = pid;
+		this.processFiles = new ProcessStatReader(procDirectory + File.separator + pid);
+		
+		// the total memory is read only once, so the file is not kept open
+		MemoryInfoReader memoryInfoFile = new MemoryInfoReader(memoryInfoFilename);
+		try {
+			memoryInfoFile.read();
+			this.totalMemory = memoryInfoFile.getTotalMemory();
+		} finally {
+			memoryInfoFile.close();
+		}
+		
+		processFiles.read();
+		lastCPUTime = processFiles.getCPUTime();
+		lastSampleTime = System.nanoTime();
+		
+		logger.info("Started monitoring process {}.", pid);
+	}
+	
+	@Override
+	public int getPid() {
+		return pid;
+	}
+	
+	@Override
+	public boolean isRunning() {
+		try {
+			processFiles.read();
+			return !processFiles.isZombie();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	@Override
+	public ProcessInfo getProcessInfo() throws IOException {
+		processFiles.read();
+		if (processFiles.isZombie()) {
+			throw new IOException("Process " + pid + " has finished.");
+		}
+		long sampleTime = System.nanoTime();
+		long cpuTime = processFiles.getCPUTime();
+		
+		double elapsedSeconds = (sampleTime - lastSampleTime) / NANOSECONDS_PER_SECOND;
+		double cpuUsage = 0;
+		if (elapsedSeconds > 0 && cpuTime > lastCPUTime) {
+			cpuUsage = 100 * (cpuTime - lastCPUTime) / CLOCK_TICKS_PER_SECOND / elapsedSeconds;
+		}
+		lastCPUTime = cpuTime;
+		lastSampleTime = sampleTime;
+		
+		long residentMemory = processFiles.getResidentMemory();
+		double memoryUsage = totalMemory > 0 ? 100 * residentMemory / totalMemory : 0;
+		return new ProcessInfo(pid, cpuUsage, memoryUsage, residentMemory, 
+								processFiles.getVirtualMemory(), processFiles.getMinorFaults(), 
+								processFiles.getMajorFaults(), processFiles.getNumberOfThreads(), 1, 
+								processFiles.getReadBytes(), processFiles.getWriteBytes());
+	}
+}
@@ -3,13 +3,37 @@ package usermonitor.internal;
 import static commons.Preconditions.checkNotNull;
 import static commons.util.FileUtil.checkFileExist;
 import static commons.util.FileUtil.checkFileIsReadable;
-import static commons.util.FileUtil.getNextLineOfData;
-import static commons.util.FileUtil.jumpLines;
-import static commons.util.FileUtil.readUntilFindBlankLine;
-import static commons.util.StringUtil.isNumeric;
+import static usermonitor.internal.CPUUsageReader.IDLE;
+import static usermonitor.internal.CPUUsageReader.IO_WAIT;
+import static usermonitor.internal.CPUUsageReader.STEAL;
+import static usermonitor.internal.CPUUsageReader.SYSTEM;
+import static usermonitor.internal.CPUUsageReader.USER;
+import static usermonitor.internal.DiskStatsReader.AWAIT_TIME;
+import static usermonitor.internal.DiskStatsReader.QUEUE_DEPTH;
+import static usermonitor.internal.DiskStatsReader.READS_PER_SECOND;
+import static usermonitor.internal.DiskStatsReader.READ_THROUGHPUT;
+import static usermonitor.internal.DiskStatsReader.UTILIZATION;
+import static usermonitor.internal.DiskStatsReader.WRITES_PER_SECOND;
+import static usermonitor.internal.DiskStatsReader.WRITE_THROUGHPUT;
+import static usermonitor.internal.MemoryInfoReader.AVAILABLE_MEMORY;
+import static usermonitor.internal.MemoryInfoReader.BUFFERS;
+import static usermonitor.internal.MemoryInfoReader.CACHED_MEMORY;
+import static usermonitor.internal.MemoryInfoReader.FREE_SWAP;
+import static usermonitor.internal.MemoryInfoReader.TOTAL_SWAP;
+import static usermonitor.internal.PressureReader.FULL_AVERAGE_10;
+import static usermonitor.internal.PressureReader.FULL_AVERAGE_300;
+import static usermonitor.internal.PressureReader.FULL_AVERAGE_60;
+import static usermonitor.internal.PressureReader.FULL_STALL;
+import static usermonitor.internal.PressureReader.SOME_AVERAGE_10;
+import static usermonitor.internal.PressureReader.SOME_AVERAGE_300;
+import static usermonitor.internal.PressureReader.SOME_AVERAGE_60;
+import static usermonitor.internal.PressureReader.SOME_STALL;
+import static usermonitor.internal.VirtualMemoryStatsReader.MAJOR_FAULT_RATE;
+import static usermonitor.internal.VirtualMemoryStatsReader.SWAP_IN_RATE;
+import static usermonitor.internal.VirtualMemoryStatsReader.SWAP_OUT_RATE;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,9 +42,22 @@ import org.slf4j.LoggerFactory;
 
 import usermonitor.CPUConfiguration;
 import usermonitor.CPUInfo;
+import usermonitor.CPUUsage;
+import usermonitor.DiskInfo;
+import usermonitor.DiskUsage;
 import usermonitor.MemoryInfo;
+import usermonitor.MonitorSnapshot;
+import usermonitor.MonitorSnapshot.CoreField;
+import usermonitor.MonitorSnapshot.DeviceField;
+import usermonitor.PressureInfo;
+import usermonitor.PressureResource;
+import usermonitor.ResourcePressure;
+import usermonitor.SampleField;
 import usermonitor.UserMonitor;
 
+import commons.Configuration;
+import commons.exception.NotExistentPropertyException;
+
 /**
  * This implementation of UserMonitor reads the data from the files passed in the 
  * constructor to create the user info objects.
@@ -30,84 +67,98 @@ import usermonitor.UserMonitor;
 public class DefaultUserMonitor implements UserMonitor {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultUserMonitor.class);
-	private final RandomAccessFile memoryInfoFile;
-	private final RandomAccessFile cpuConfigurationFile;
-	private final RandomAccessFile cpuUsageFile;
+	private final MemoryInfoReader memoryInfoFile;
+	/**
+	 * It is null if the virtual memory stats are not read.
+	 */
+	private final VirtualMemoryStatsReader virtualMemoryStatsFile;
+	private final CPUConfigurationReader cpuConfigurationFile;
+	private final CPUUsageReader cpuUsageFile;
+	private final CPUFrequencyReader cpuFrequencyFiles;
+	/**
+	 * It is null if the disk stats are not read.
+	 */
+	private final DiskStatsReader diskStatsFile;
+	/**
+	 * The readers of each {@link PressureResource}, by ordinal, or null if the 
+	 * system does not report pressure stall information or it is not read.
+	 */
+	private final PressureReader[] pressureFiles;
 	
 	/**
-	 * The line that contains the total memory information must start with this header.
+	 * The name of the property which holds the memory info file.
 	 */
-	private static final String TOTAL_MEMORY_LINE_HEADER = "MemTotal:";
+	public static final String MEMORY_INFO_FILE = "memory_info_file";
 	/**
-	 * The line that contains the free memory information must start with this header.
+	 * The name of the property which holds the CPU configuration file.
 	 */
-	private static final String FREE_MEMORY_LINE_HEADER = "MemFree:";
+	public static final String CPU_CONFIGURATION_FILE = "cpu_configuration_file";
 	/**
-	 * The line that contains the cpu model name must start with this header.
+	 * The name of the property which holds the CPU usage file.
 	 */
-	private static final String CPU_MODEL_NAME_LINE_HEADER = "model name";
+	public static final String CPU_USAGE_FILE = "cpu_usage_file";
 	/**
-	 * The line that contains the cpu frequency must start with this header.
+	 * The name of the property which holds the {@link CPUUsageFormat} of the CPU usage file.
 	 */
-	private static final String CPU_FREQUENCY_LINE_HEADER = "cpu MHz";
+	public static final String CPU_USAGE_FORMAT = "cpu_usage_format";
 	/**
-	 * The line that contains the cpu cache size must start with this header.
+	 * The name of the property which holds the file that lists the online CPUs.
 	 */
-	private static final String CPU_CACHE_SIZE_LINE_HEADER = "cache size";
-
-	private static final String CACHE_SIZE_UNIT_STRING = "KB";
+	public static final String CPU_ONLINE_FILE = "cpu_online_file";
+	/**
+	 * The name of the property which holds the sysfs directory of the CPUs.
+	 */
+	public static final String CPU_SYSFS_DIRECTORY = "cpu_sysfs_directory";
+	/**
+	 * The name of the property which holds the disk stats file.
+	 */
+	public static final String DISK_STATS_FILE = "disk_stats_file";
+	/**
+	 * The name of the property which holds the directory of the pressure stall information files.
+	 */
+	public static final String PRESSURE_DIRECTORY = "pressure_directory";
+	/**
+	 * The name of the property which holds the virtual memory stats file.
+	 */
+	public static final String VIRTUAL_MEMORY_STATS_FILE = "virtual_memory_stats_file";
+	
+	private static final String DEFAULT_MEMORY_INFO_FILE = "/proc/meminfo";
+	private static final String DEFAULT_CPU_CONFIGURATION_FILE = "/proc/cpuinfo";
+	private static final String DEFAULT_CPU_USAGE_FILE = "/proc/stat";
+	private static final String DEFAULT_CPU_USAGE_FORMAT = CPUUsageFormat.PROC_STAT.name();
+	private static final String DEFAULT_CPU_ONLINE_FILE = "/sys/devices/system/cpu/online";
+	private static final String DEFAULT_CPU_SYSFS_DIRECTORY = "/sys/devices/system/cpu";
+	private static final String DEFAULT_DISK_STATS_FILE = "/proc/diskstats";
+	private static final String DEFAULT_PRESSURE_DIRECTORY = "/proc/pressure";
+	private static final String DEFAULT_VIRTUAL_MEMORY_STATS_FILE = "/proc/vmstat";
+	
 	
 	/**
 	 * Constructs a new DefaultUserMonitor instance which will read from the 
 	 * passed files.</br>
 	 * 
 	 * The file whose name is memoryInfoFileName is used to get the total memory amount and the free memory 
-	 * amount. The expected file pattern is the following:</br>
-	 * </br>
-	 * [ignored lines]</br>
-	 * TOTAL_MEMORY_LINE_HEADER : total memory kB</br>
-	 * [ignored lines]</br>
-	 * FREE_MEMORY_LINE_HEADER : free memory kB</br>
-	 * [ignored lines]</br>
-	 * </br>
-	 * The free memory may be in upper lines than the total memory.</br>
+	 * amount, and the available, buffers, cache and swap amounts if they are reported. The expected file 
+	 * pattern is the one described in {@link MemoryInfoReader}.</br>
 	 * </br>
 	 * 
 	 * The file whose name is cpuConfigurationFileName is used to get the CPU configurations, like CPU frequency, 
-	 * cache size and model name. The expected file pattern is the following:</br>  
-	 * </br>
-	 * (cpu 0)</br>
-	 * [ignored lines]</br>
-	 * CPU_MODEL_NAME_LINE_HEADER : model name</br>
-	 * [ignored lines]</br>
-	 * CPU_FREQUENCY_LINE_HEADER : CPU frequency</br> 
-	 * [ignored lines]</br>
-	 * CPU_CACHE_SIZE_LINE_HEADER : cache size CACHE_SIZE_UNIT_STRING</br>
-	 * [ignored lines]</br>
-	 * </br>
-	 * (cpu 1)</br>
-	 * [ignored lines]</br>
-	 * CPU_MODEL_NAME_LINE_HEADER : model name</br>
-	 * [ignored lines]</br>
-	 * CPU_FREQUENCY_LINE_HEADER : CPU frequency</br> 
-	 * [ignored lines]</br>
-	 * CPU_CACHE_SIZE_LINE_HEADER : cache size CACHE_SIZE_UNIT_STRING</br>
-	 * [ignored lines]</br>
-	 * </br>
-	 * ...</br>
-	 * (cpu n)</br>
-	 * ...</br>
-	 * </br>
-	 * The read lines may be in different order.</br>
+	 * cache size and model name. The expected file pattern is the one described in 
+	 * {@link CPUConfigurationReader}. The configurations are read only once.</br>
 	 * </br>
 	 * 
 	 * The file whose name is cpuUsageFileName is used to get the CPU system usage, user usage and idle CPU.
-	 * This file's pattern is the pattern of a typical call to top program. The expected pattern is the following:</br>
+	 * This file's pattern is the pattern of a typical call to top program, described in 
+	 * {@link TopCPUUsageReader}.</br>
 	 * </br>
-	 * [ignored line]</br>
-	 * [ignored line]</br>
-	 * Cpu(s):  {CPU user usage}%us,  {CPU system usage}%sy,  ignored, {CPU idle}%id,  ignored, ignored, ...</br>
-	 * [ignored lines]</br>
+	 * 
+	 * Only the passed files are read. The files of the system which complement them, like the 
+	 * online CPUs, cpufreq and thermal throttle files under /sys/devices/system/cpu, /proc/vmstat, 
+	 * /proc/diskstats and /proc/pressure, are not, since they do not describe the same machine 
+	 * as the passed files. So the frequencies are the ones of the CPU configurations, the 
+	 * throttle, paging and swapping rates are NaN, and {@link #getDiskInfo()} and 
+	 * {@link #getPressureInfo()} throw IOException. These files are read by the monitors 
+	 * constructed by {@link #DefaultUserMonitor(Configuration)}.</br>
 	 * 
 	 * @param memoryInfoFilename The name of the file that contains the informations about memory.
 	 * @param cpuConfigurationFilename The name of the file that contains the informations about CPU configuration.
@@ -118,13 +169,83 @@ public class DefaultUserMonitor implements UserMonitor {
 	 */
 	public DefaultUserMonitor(String memoryInfoFilename, 
 							String cpuConfigurationFilename, String cpuUsageFilename) throws IOException {
+		this(memoryInfoFilename, cpuConfigurationFilename, cpuUsageFilename, CPUUsageFormat.TOP);
+	}
+	
+	/**
+	 * Constructs a new DefaultUserMonitor instance which will read from the files 
+	 * given by the properties of the passed {@link Configuration}. The memory usage 
+	 * is complemented by the paging and swapping rates of the virtual memory stats 
+	 * file, in the format described in {@link VirtualMemoryStatsReader}. The CPU 
+	 * configurations are read again when the set of online CPUs listed in the online 
+	 * CPUs file changes, and the current frequency and the thermal throttling of each CPU 
+	 * are read from the CPU sysfs directory, as described in {@link CPUFrequencyReader}. 
+	 * The disk usage is read from the disk stats file, in the format described in 
+	 * {@link DiskStatsReader}, and the pressure stall information from the files of the 
+	 * pressure directory, in the format described in {@link PressureReader}. These files 
+	 * exist since Linux 4.20, if the kernel was built with PSI support. A missing property 
+	 * takes its default value:</br>
+	 * </br>
+	 * MEMORY_INFO_FILE=/proc/meminfo</br>
+	 * CPU_CONFIGURATION_FILE=/proc/cpuinfo</br>
+	 * CPU_USAGE_FILE=/proc/stat</br>
+	 * CPU_USAGE_FORMAT=PROC_STAT</br>
+	 * CPU_ONLINE_FILE=/sys/devices/system/cpu/online</br>
+	 * CPU_SYSFS_DIRECTORY=/sys/devices/system/cpu</br>
+	 * DISK_STATS_FILE=/proc/diskstats</br>
+	 * PRESSURE_DIRECTORY=/proc/pressure</br>
+	 * VIRTUAL_MEMORY_STATS_FILE=/proc/vmstat</br>
+	 * 
+	 * @throws IOException If any of the files does not exist or could not be read.
+	 * @throws IllegalArgumentException If configuration is null or CPU_USAGE_FORMAT 
+	 * is not the name of a {@link CPUUsageFormat}.
+	 */
+	public DefaultUserMonitor(Configuration configuration) throws IOException {
+		this(getProperty(configuration, MEMORY_INFO_FILE, DEFAULT_MEMORY_INFO_FILE),
+			getProperty(configuration, CPU_CONFIGURATION_FILE, DEFAULT_CPU_CONFIGURATION_FILE),
+			getProperty(configuration, CPU_USAGE_FILE, DEFAULT_CPU_USAGE_FILE),
+			CPUUsageFormat.valueOf(getProperty(configuration, CPU_USAGE_FORMAT, DEFAULT_CPU_USAGE_FORMAT)),
+			getProperty(configuration, CPU_ONLINE_FILE, DEFAULT_CPU_ONLINE_FILE),
+			getProperty(configuration, CPU_SYSFS_DIRECTORY, DEFAULT_CPU_SYSFS_DIRECTORY),
+			getProperty(configuration, DISK_STATS_FILE, DEFAULT_DISK_STATS_FILE),
+			getProperty(configuration, PRESSURE_DIRECTORY, DEFAULT_PRESSURE_DIRECTORY),
+			getProperty(configuration, VIRTUAL_MEMORY_STATS_FILE, DEFAULT_VIRTUAL_MEMORY_STATS_FILE));
+	}
+	
+	/**
+	 * Constructs a new DefaultUserMonitor instance which will read from the 
+	 * passed files. It is like {@link #DefaultUserMonitor(String, String, String)}, 
+	 * but the CPU usage file is read in the given {@link CPUUsageFormat}. In the 
+	 * {@link CPUUsageFormat#PROC_STAT} format, the usages are the ones between two calls 
+	 * to {@link #getCPUInfo()}, and the usage of each core is reported too. Like that 
+	 * constructor, it only reads the passed files.
+	 * 
+	 * @throws IllegalArgumentException if one or more of the arguments is null or any of the 
+	 * passed files is not-readable.
+	 */
+	public DefaultUserMonitor(String memoryInfoFilename, String cpuConfigurationFilename, 
+							String cpuUsageFilename, CPUUsageFormat cpuUsageFormat) throws IOException {
+		this(memoryInfoFilename, cpuConfigurationFilename, cpuUsageFilename, cpuUsageFormat, 
+			null, null, null, null, null);
+	}
+	
+	/*
+	 * The online CPUs file, the CPU sysfs directory, the disk stats file, the pressure 
+	 * directory and the virtual memory stats file are not read if they are null.
+	 */
+	private DefaultUserMonitor(String memoryInfoFilename, String cpuConfigurationFilename, 
+							String cpuUsageFilename, CPUUsageFormat cpuUsageFormat, 
+							String cpuOnlineFilename, String cpuSysfsDirectory, 
+							String diskStatsFilename, String pressureDirectory, 
+							String virtualMemoryStatsFilename) throws IOException {
 		checkNotNull(memoryInfoFilename, "memoryInfoFileName must not be null.");
 		checkNotNull(cpuConfigurationFilename, "cpuInfoFileName must not be null.");
 		checkNotNull(cpuUsageFilename, "cpuUsageFileName must not be null.");
+		checkNotNull(cpuUsageFormat, "cpuUsageFormat must not be null.");
 		
 		logger.info("Started using {} as memory info file.", memoryInfoFilename);
 		logger.info("Started using {} as cpu configuration file.", cpuConfigurationFilename);
-		logger.info("Started using {} as cpu usage file.", cpuUsageFilename);
+		logger.info("Started using {} as cpu usage file, in the {} format.", cpuUsageFilename, cpuUsageFormat);
 		
 		checkFileExist(cpuConfigurationFilename);
 		checkFileIsReadable(cpuConfigurationFilename);
@@ -135,129 +256,277 @@ public class DefaultUserMonitor implements UserMonitor {
 		checkFileExist(memoryInfoFilename);
 		checkFileIsReadable(memoryInfoFilename);
 		
-		memoryInfoFile = new RandomAccessFile(memoryInfoFilename, "r");	
-		cpuConfigurationFile = new RandomAccessFile(cpuConfigurationFilename, "r");
-		cpuUsageFile = new RandomAccessFile(cpuUsageFilename, "r");
+		if (diskStatsFilename != null) {
+			logger.info("Started using {} as disk stats file.", diskStatsFilename);
+			checkFileExist(diskStatsFilename);
+			checkFileIsReadable(diskStatsFilename);
+		}
+		
+		if (virtualMemoryStatsFilename != null) {
+			logger.info("Started using {} as virtual memory stats file.", virtualMemoryStatsFilename);
+			checkFileExist(virtualMemoryStatsFilename);
+			checkFileIsReadable(virtualMemoryStatsFilename);
+		}
+		
+		memoryInfoFile = new MemoryInfoReader(memoryInfoFilename);
+		virtualMemoryStatsFile = virtualMemoryStatsFilename == null ? null 
+								: new VirtualMemoryStatsReader(virtualMemoryStatsFilename);
+		cpuConfigurationFile = new CPUConfigurationReader(cpuConfigurationFilename, cpuOnlineFilename);
+		cpuFrequencyFiles = new CPUFrequencyReader(cpuSysfsDirectory);
+		cpuUsageFile = createCPUUsageReader(cpuUsageFilename, cpuUsageFormat);
+		diskStatsFile = diskStatsFilename == null ? null : new DiskStatsReader(diskStatsFilename);
+		pressureFiles = createPressureReaders(pressureDirectory);
 	}
 	
-	@Override
-	public MemoryInfo getMemoryInfo() throws IOException {
-		double totalMemory = -1;
-		double freeMemory = -1;
-		
-		while (totalMemory == -1 || freeMemory == -1) {
-			String line = getNextLineOfData(memoryInfoFile);
-			String[] tokens = line.split("\\s+");
-
-			if (tokens[0].trim().equals(TOTAL_MEMORY_LINE_HEADER)) {
-				// FIXME resolve this duplication
-				if (!isNumeric(tokens[1])) {
-					throw new IOException("Invalid format of memory info file.");
-				}
-				totalMemory = new Double(tokens[1]);
-			} else if (tokens[0].trim().equals(FREE_MEMORY_LINE_HEADER)) {
-				if (!isNumeric(tokens[1])) {
-					throw new IOException("Invalid format of memory info file.");
-				}
-				freeMemory = new Double(tokens[1]);		
+	private static PressureReader[] createPressureReaders(String pressureDirectory) throws IOException {
+		if (pressureDirectory == null) {
+			return null;
+		}
+		PressureResource[] resources = PressureResource.values();
+		for (PressureResource resource : resources) {
+			if (!new File(pressureDirectory, resource.getFilename()).canRead()) {
+				logger.info("Pressure stall information is not available in {}.", pressureDirectory);
+				return null;
 			}
 		}
 		
-		rewindMemoryInfoFile();
-		return new MemoryInfo(totalMemory, totalMemory - freeMemory);
+		logger.info("Started using {} as pressure directory.", pressureDirectory);
+		PressureReader[] readers = new PressureReader[resources.length];
+		for (PressureResource resource : resources) {
+			readers[resource.ordinal()] = new PressureReader(pressureDirectory + File.separator 
+															+ resource.getFilename());
+		}
+		return readers;
 	}
-
-	private void rewindMemoryInfoFile() throws IOException {
-		memoryInfoFile.seek(0);
+	
+	private static String getProperty(Configuration configuration, String name, String defaultValue) {
+		checkNotNull(configuration, "configuration must not be null.");
+		try {
+			return configuration.hasProperty(name) ? configuration.getProperty(name) : defaultValue;
+		} catch (NotExistentPropertyException e) {
+			return defaultValue;
+		}
+	}
+	
+	private static CPUUsageReader createCPUUsageReader(String cpuUsageFilename, 
+							CPUUsageFormat cpuUsageFormat) throws IOException {
+		switch (cpuUsageFormat) {
+			case PROC_STAT:
+				return new ProcStatReader(cpuUsageFilename);
+			default:
+				return new TopCPUUsageReader(cpuUsageFilename);
+		}
 	}
 	
 	@Override
-	public CPUInfo getCPUInfo() throws IOException {
-		String[] tokens = getTokensFromCPUUsageLine(readCPUUsageLine());
-
-		if (!isNumeric(tokens[1].split("%")[0]) || !isNumeric(tokens[2].split("%")[0])
-						|| !isNumeric(tokens[4].split("%")[0])) {
-			throw new IOException("Invalid format of CPU usage file.");
+	public MemoryInfo getMemoryInfo() throws IOException {
+		memoryInfoFile.read();
+		if (virtualMemoryStatsFile != null) {
+			virtualMemoryStatsFile.read();
 		}
-
-		List<CPUConfiguration> configurations = readCPUsFromCPUInfoFile();
-		rewindCPUFiles();
-		return new CPUInfo(configurations, new Double(tokens[2].split("%")[0]), 
-							new Double(tokens[1].split("%")[0]), 
-							new Double(tokens[4].split("%")[0]));
+		double totalMemory = memoryInfoFile.getTotalMemory();
+		return new MemoryInfo(totalMemory, totalMemory - memoryInfoFile.getFreeMemory(), 
+								memoryInfoFile.getValue(AVAILABLE_MEMORY), 
+								memoryInfoFile.getValue(BUFFERS), 
+								memoryInfoFile.getValue(CACHED_MEMORY), 
+								memoryInfoFile.getValue(TOTAL_SWAP), 
+								memoryInfoFile.getValue(FREE_SWAP), 
+								getRate(MAJOR_FAULT_RATE), 
+								getRate(SWAP_IN_RATE), 
+								getRate(SWAP_OUT_RATE));
 	}
-
-	private String readCPUUsageLine() throws IOException {
-		jumpLines(cpuUsageFile, 2);
-		return cpuUsageFile.readLine();
+	
+	private double getRate(int rate) {
+		return virtualMemoryStatsFile == null ? Double.NaN : virtualMemoryStatsFile.getRate(rate);
+	}
+	
+	@Override
+	public CPUInfo getCPUInfo() throws IOException {
+		cpuUsageFile.read();
+		List<CPUConfiguration> configurations = cpuConfigurationFile.read();
+		cpuFrequencyFiles.configure(cpuConfigurationFile.getOnlineCPUs(), configurations);
+		cpuFrequencyFiles.read();
+		
+		int machine = 0;
+		return new CPUInfo(configurations, cpuUsageFile.getUsage(machine, SYSTEM), 
+							cpuUsageFile.getUsage(machine, USER), 
+							cpuUsageFile.getUsage(machine, IDLE),
+							cpuUsageFile.getUsage(machine, IO_WAIT),
+							cpuUsageFile.getUsage(machine, STEAL),
+							readCoreUsages(),
+							cpuFrequencyFiles.getFrequencies());
 	}
 	
-	private String[] getTokensFromCPUUsageLine(String line) throws IOException {
-		String[] tokens = line.split("\\s+");
-		if (tokens.length < 5) {
-			throw new IOException("Invalid format of CPU usage file.");
+	private List<CPUUsage> readCoreUsages() {
+		int numberOfCores = cpuUsageFile.getNumberOfCores();
+		List<CPUUsage> coreUsages = new ArrayList<CPUUsage>(numberOfCores);
+		for (int core = 1; core <= numberOfCores; core++) {
+			coreUsages.add(new CPUUsage(cpuUsageFile.getUsage(core, USER), 
+										cpuUsageFile.getUsage(core, SYSTEM), 
+										cpuUsageFile.getUsage(core, IDLE), 
+										cpuUsageFile.getUsage(core, IO_WAIT), 
+										cpuUsageFile.getUsage(core, STEAL)));
 		}
-		return tokens;
+		return coreUsages;
 	}
-
-	private List<CPUConfiguration> readCPUsFromCPUInfoFile() throws IOException {
-		ArrayList<CPUConfiguration> cpus = new ArrayList<CPUConfiguration>();
-		do {
-			cpus.add(readCPUFromFile());
+	
+	/**
+	 * The devices which were never used since the boot are not reported.
+	 */
+	@Override
+	public DiskInfo getDiskInfo() throws IOException {
+		if (diskStatsFile == null) {
+			throw new IOException("Disk stats are not available.");
+		}
+		diskStatsFile.read();
+		
+		List<DiskUsage> devices = new ArrayList<DiskUsage>();
+		for (int device = 0; device < diskStatsFile.getNumberOfDevices(); device++) {
+			if (diskStatsFile.wasUsed(device)) {
+				devices.add(new DiskUsage(diskStatsFile.getDevice(device), 
+										diskStatsFile.getUsage(device, READS_PER_SECOND), 
+										diskStatsFile.getUsage(device, WRITES_PER_SECOND), 
+										diskStatsFile.getUsage(device, READ_THROUGHPUT), 
+										diskStatsFile.getUsage(device, WRITE_THROUGHPUT), 
+										diskStatsFile.getUsage(device, QUEUE_DEPTH), 
+										diskStatsFile.getUsage(device, AWAIT_TIME), 
+										diskStatsFile.getUsage(device, UTILIZATION)));
+			}
 		}
-		while (thereAreCPUsToRead());
-		return cpus;
+		return new DiskInfo(devices);
 	}
 	
-	private void rewindCPUFiles() throws IOException {
-		cpuUsageFile.seek(0);
-		cpuConfigurationFile.seek(0);
+	@Override
+	public PressureInfo getPressureInfo() throws IOException {
+		if (pressureFiles == null) {
+			throw new IOException("Pressure stall information is not available.");
+		}
+		
+		return new PressureInfo(readPressure(PressureResource.CPU), 
+								readPressure(PressureResource.MEMORY), 
+								readPressure(PressureResource.IO));
 	}
 	
-	private CPUConfiguration readCPUFromFile() throws IOException {
+	/**
+	 * All the files are read before the snapshot is filled, so the values are as 
+	 * close in time as possible. The CPU configurations are not part of the 
+	 * snapshot, since they rarely change, and the pressure values are NaN if the 
+	 * system does not report pressure stall information. The rates of the virtual 
+	 * memory stats are NaN and there are no devices if those files are not read. The frequency and the 
+	 * throttle rate of each core are the ones of the online CPU in the same 
+	 * position, and are NaN if the numbers of cores and online CPUs differ.
+	 */
+	@Override
+	public void snapshot(MonitorSnapshot snapshot) throws IOException {
+		checkNotNull(snapshot, "snapshot must not be null.");
 		
-		double cpuFrequency = -1;
-		String modelName = null;
-		double cacheSize = -1;
-
-		// while there are fields to read ...
-		while (cpuFrequency == -1 || cacheSize == -1 || modelName == null) {
-			String line = getNextLineOfData(cpuConfigurationFile);
-			String[] tokens = line.split(":");
-
-			if (tokens[0].trim().equals(CPU_MODEL_NAME_LINE_HEADER)) {
-				modelName = tokens[1].trim();
-			} else if (tokens[0].trim().equals(CPU_FREQUENCY_LINE_HEADER)) {
-				checkCPUFrequencyToken(tokens[1]);
-				cpuFrequency = new Double(tokens[1].trim());		
-			} else if (tokens[0].trim().equals(CPU_CACHE_SIZE_LINE_HEADER)) {
-				checkCacheSizeToken(tokens[1]);
-				cacheSize = new Double(tokens[1].split(CACHE_SIZE_UNIT_STRING)[0].trim());
+		snapshot.setTime(System.nanoTime(), System.currentTimeMillis());
+		cpuUsageFile.read();
+		List<CPUConfiguration> configurations = cpuConfigurationFile.read();
+		cpuFrequencyFiles.configure(cpuConfigurationFile.getOnlineCPUs(), configurations);
+		cpuFrequencyFiles.read();
+		memoryInfoFile.read();
+		if (virtualMemoryStatsFile != null) {
+			virtualMemoryStatsFile.read();
+		}
+		if (diskStatsFile != null) {
+			diskStatsFile.read();
+		}
+		if (pressureFiles != null) {
+			for (PressureReader file : pressureFiles) {
+				file.read();
 			}
 		}
 		
-		// read the unnecessary data, to prepare to read the next cpu
-		readUntilFindBlankLine(cpuConfigurationFile);
-		return new CPUConfiguration(cpuFrequency, modelName, cacheSize);
-	}
-
-	private boolean thereAreCPUsToRead() throws IOException {
-		String line = cpuConfigurationFile.readLine();
-		boolean thereAre = line != null && !line.equals("");
-		// reset the file to the position it was before doing the checking
-		cpuConfigurationFile.seek(cpuConfigurationFile.getFilePointer() - (line == null ? 0 : line.length()));
-		return thereAre;
+		fillCPUUsages(snapshot);
+		fillMemory(snapshot);
+		fillDevices(snapshot);
+		fillPressure(snapshot);
 	}
 	
-	private void checkCPUFrequencyToken(String token) throws IOException {
-		if (!isNumeric(token.trim())) {
-			throw new IOException("Invalid format of CPU info file.");
+	private void fillCPUUsages(MonitorSnapshot snapshot) {
+		int machine = 0;
+		snapshot.setValue(SampleField.CPU_USER_USAGE, cpuUsageFile.getUsage(machine, USER));
+		snapshot.setValue(SampleField.CPU_SYSTEM_USAGE, cpuUsageFile.getUsage(machine, SYSTEM));
+		snapshot.setValue(SampleField.CPU_IDLE, cpuUsageFile.getUsage(machine, IDLE));
+		snapshot.setValue(SampleField.CPU_IO_WAIT, cpuUsageFile.getUsage(machine, IO_WAIT));
+		snapshot.setValue(SampleField.CPU_STEAL, cpuUsageFile.getUsage(machine, STEAL));
+		
+		int numberOfCores = cpuUsageFile.getNumberOfCores();
+		snapshot.setNumberOfCores(numberOfCores);
+		for (int core = 0; core < numberOfCores; core++) {
+			snapshot.setCoreUsage(core, CoreField.USER, cpuUsageFile.getUsage(core + 1, USER));
+			snapshot.setCoreUsage(core, CoreField.SYSTEM, cpuUsageFile.getUsage(core + 1, SYSTEM));
+			snapshot.setCoreUsage(core, CoreField.IDLE, cpuUsageFile.getUsage(core + 1, IDLE));
+			snapshot.setCoreUsage(core, CoreField.IO_WAIT, cpuUsageFile.getUsage(core + 1, IO_WAIT));
+			snapshot.setCoreUsage(core, CoreField.STEAL, cpuUsageFile.getUsage(core + 1, STEAL));
+		}
+		
+		snapshot.setValue(SampleField.CPU_FREQUENCY, cpuFrequencyFiles.getAverageFrequency());
+		snapshot.setValue(SampleField.CPU_THROTTLE_RATE, cpuFrequencyFiles.getTotalThrottleRate());
+		boolean sameCPUs = numberOfCores == cpuFrequencyFiles.getNumberOfCPUs();
+		for (int core = 0; core < numberOfCores; core++) {
+			snapshot.setCoreUsage(core, CoreField.FREQUENCY, 
+								sameCPUs ? cpuFrequencyFiles.getFrequency(core) : Double.NaN);
+			snapshot.setCoreUsage(core, CoreField.THROTTLE_RATE, 
+								sameCPUs ? cpuFrequencyFiles.getThrottleRate(core) : Double.NaN);
 		}
 	}
-
-	private void checkCacheSizeToken(String token) throws IOException {
-		if (!isNumeric(token.split(CACHE_SIZE_UNIT_STRING)[0].trim())) {
-			throw new IOException("Invalid format of CPU info file.");
+	
+	private void fillMemory(MonitorSnapshot snapshot) {
+		double totalMemory = memoryInfoFile.getTotalMemory();
+		snapshot.setValue(SampleField.TOTAL_MEMORY, totalMemory);
+		snapshot.setValue(SampleField.USED_MEMORY, totalMemory - memoryInfoFile.getFreeMemory());
+		snapshot.setValue(SampleField.AVAILABLE_MEMORY, memoryInfoFile.getValue(AVAILABLE_MEMORY));
+		snapshot.setValue(SampleField.MAJOR_FAULT_RATE, getRate(MAJOR_FAULT_RATE));
+		snapshot.setValue(SampleField.SWAP_IN_RATE, getRate(SWAP_IN_RATE));
+		snapshot.setValue(SampleField.SWAP_OUT_RATE, getRate(SWAP_OUT_RATE));
+	}
+	
+	private void fillDevices(MonitorSnapshot snapshot) {
+		snapshot.clearDevices();
+		if (diskStatsFile == null) {
+			return;
+		}
+		for (int device = 0; device < diskStatsFile.getNumberOfDevices(); device++) {
+			if (diskStatsFile.wasUsed(device)) {
+				int position = snapshot.addDevice(diskStatsFile.getDevice(device));
+				snapshot.setDeviceUsage(position, DeviceField.READS_PER_SECOND, 
+										diskStatsFile.getUsage(device, READS_PER_SECOND));
+				snapshot.setDeviceUsage(position, DeviceField.WRITES_PER_SECOND, 
+										diskStatsFile.getUsage(device, WRITES_PER_SECOND));
+				snapshot.setDeviceUsage(position, DeviceField.READ_THROUGHPUT, 
+										diskStatsFile.getUsage(device, READ_THROUGHPUT));
+				snapshot.setDeviceUsage(position, DeviceField.WRITE_THROUGHPUT, 
+										diskStatsFile.getUsage(device, WRITE_THROUGHPUT));
+				snapshot.setDeviceUsage(position, DeviceField.QUEUE_DEPTH, 
+										diskStatsFile.getUsage(device, QUEUE_DEPTH));
+				snapshot.setDeviceUsage(position, DeviceField.AWAIT_TIME, 
+										diskStatsFile.getUsage(device, AWAIT_TIME));
+				snapshot.setDeviceUsage(position, DeviceField.UTILIZATION, 
+										diskStatsFile.getUsage(device, UTILIZATION));
+			}
 		}
 	}
+	
+	private void fillPressure(MonitorSnapshot snapshot) {
+		snapshot.setValue(SampleField.CPU_SOME_PRESSURE, getStall(PressureResource.CPU, SOME_STALL));
+		snapshot.setValue(SampleField.MEMORY_SOME_PRESSURE, getStall(PressureResource.MEMORY, SOME_STALL));
+		snapshot.setValue(SampleField.MEMORY_FULL_PRESSURE, getStall(PressureResource.MEMORY, FULL_STALL));
+		snapshot.setValue(SampleField.IO_SOME_PRESSURE, getStall(PressureResource.IO, SOME_STALL));
+		snapshot.setValue(SampleField.IO_FULL_PRESSURE, getStall(PressureResource.IO, FULL_STALL));
+	}
+	
+	private double getStall(PressureResource resource, int stall) {
+		return pressureFiles == null ? Double.NaN : pressureFiles[resource.ordinal()].getValue(stall);
+	}
+	
+	private ResourcePressure readPressure(PressureResource resource) throws IOException {
+		PressureReader file = pressureFiles[resource.ordinal()];
+		file.read();
+		return new ResourcePressure(file.getValue(SOME_AVERAGE_10), file.getValue(SOME_AVERAGE_60), 
+									file.getValue(SOME_AVERAGE_300), file.getValue(SOME_STALL), 
+									file.getValue(FULL_AVERAGE_10), file.getValue(FULL_AVERAGE_60), 
+									file.getValue(FULL_AVERAGE_300), file.getValue(FULL_STALL));
+	}
 }
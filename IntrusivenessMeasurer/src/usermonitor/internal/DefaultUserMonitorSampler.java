@@ -0,0 +1,290 @@
+package usermonitor.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import usermonitor.MonitorSnapshot;
+import usermonitor.SampleField;
+import usermonitor.SampleHistory;
+import usermonitor.UserMonitor;
+import usermonitor.UserMonitorSampler;
+
+import commons.TimeSeriesStore;
+
+/**
+ * This implementation of UserMonitorSampler takes a {@link UserMonitor#snapshot(MonitorSnapshot)}
+ * periodically in a single daemon thread, reusing the same snapshot for all the samples.
+ * A sample which could not be taken because of an {@link IOException} is logged and
+ * skipped, and the sampling goes on.</br>
+ * </br>
+ * The samples are taken at a fixed rate or at a rate chosen by an {@link AdaptiveSamplingPolicy},
+ * which watches the CPU busy time, the IO wait, the percentage of memory in use and the
+ * pressure stalls. The period in effect when each sample was taken is stored in its
+ * {@link SampleField#SAMPLING_PERIOD}.</br>
+ * </br>
+ * The samples may be persisted too, by appending them to a {@link TimeSeriesStore}
+ * whose records have one value for each {@link SampleField}, named by
+ * {@link SampleField#getNames()}. The store is not closed by the sampler.</br>
+ * </br>
+ * The samples of the history are ordered by the {@link MonitorSnapshot#getNanoTime()}
+ * of their snapshots, which is monotonic, and keep their wall-clock timestamps, which
+ * are the ones appended to the store.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class DefaultUserMonitorSampler implements UserMonitorSampler {
+	
+	private static final Logger logger = LoggerFactory.getLogger(DefaultUserMonitorSampler.class);
+	private static final String THREAD_NAME = "user-monitor-sampler";
+	private static final long STOP_TIMEOUT_IN_SECONDS = 10;
+	private static final int NUMBER_OF_WATCHED_VALUES = 6;
+	
+	private final UserMonitor monitor;
+	/**
+	 * The policy which chooses the period, or null if the rate is fixed.
+	 */
+	private final AdaptiveSamplingPolicy policy;
+	private final SampleHistory history;
+	/**
+	 * Reused by each sample. It is only accessed by the sampling thread.
+	 */
+	private final MonitorSnapshot snapshot;
+	/**
+	 * The store of the samples, or null if they are not persisted.
+	 */
+	private final TimeSeriesStore store;
+	private final double[] values;
+	private final double[] watchedValues;
+	private volatile long periodInMillis;
+	private ScheduledThreadPoolExecutor executor;
+	private SamplingTask task;
+	
+	/**
+	 * @param monitor The monitor to be sampled.
+	 * @param periodInMillis The time between two samples. It must be positive.
+	 * @param capacity The number of samples kept in the history. It must be positive.
+	 * @throws IllegalArgumentException If monitor is null or any of the numbers is not positive.
+	 */
+	public DefaultUserMonitorSampler(UserMonitor monitor, long periodInMillis, int capacity) {
+		this(monitor, periodInMillis, capacity, null);
+	}
+	
+	/**
+	 * Creates a sampler which appends each sample to the given store, besides
+	 * adding it to the history.
+	 *
+	 * @param store The store of the samples, or null if they must not be persisted. Its
+	 * records must have one value for each {@link SampleField}.
+	 * @throws IllegalArgumentException If monitor is null, any of the numbers is not positive
+	 * or the records of the store do not have one value for each {@link SampleField}.
+	 */
+	public DefaultUserMonitorSampler(UserMonitor monitor, long periodInMillis, int capacity,
+									TimeSeriesStore store) {
+		this(monitor, null, periodInMillis, capacity, store);
+	}
+	
+	/**
+	 * Creates a sampler whose rate is chosen by the given policy.
+	 *
+	 * @param policy The policy which chooses the time between two samples.
+	 * @param store The store of the samples, or null if they must not be persisted. Its
+	 * records must have one value for each {@link SampleField}.
+	 * @throws IllegalArgumentException If monitor or policy is null, capacity is not positive
+	 * or the records of the store do not have one value for each {@link SampleField}.
+	 */
+	public DefaultUserMonitorSampler(UserMonitor monitor, AdaptiveSamplingPolicy policy, int capacity,
+									TimeSeriesStore store) {
+		this(monitor, checkPolicy(policy), policy.getPeriod(), capacity, store);
+	}
+	
+	private DefaultUserMonitorSampler(UserMonitor monitor, AdaptiveSamplingPolicy policy, long periodInMillis,
+									int capacity, TimeSeriesStore store) {
+		checkNotNull(monitor, "monitor must not be null.");
+		check(periodInMillis > 0, "periodInMillis must be positive.");
+		check(store == null || store.getNumberOfValues() == SampleField.values().length,
+				"store must have one value for each field.");
+		
+		this.monitor = monitor;
+		this.policy = policy;
+		this.periodInMillis = periodInMillis;
+		this.history = new SampleHistory(capacity);
+		this.snapshot = new MonitorSnapshot();
+		this.store = store;
+		this.values = new double[SampleField.values().length];
+		this.watchedValues = new double[NUMBER_OF_WATCHED_VALUES];
+	}
+	
+	private static AdaptiveSamplingPolicy checkPolicy(AdaptiveSamplingPolicy policy) {
+		checkNotNull(policy, "policy must not be null.");
+		return policy;
+	}
+	
+	@Override
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		
+		if (policy == null) {
+			logger.info("Started sampling every {} ms.", periodInMillis);
+		} else {
+			logger.info("Started sampling every {} to {} ms.", policy.getMinimumPeriod(),
+						policy.getMaximumPeriod());
+		}
+		executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// the next sample is dropped when the sampler stops, instead of being waited for
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		task = new SamplingTask(executor);
+		executor.execute(task);
+	}
+	
+	@Override
+	public synchronized void stop() {
+		if (executor == null) {
+			return;
+		}
+		
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(STOP_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+				logger.warn("The sampler did not stop in {} seconds.", STOP_TIMEOUT_IN_SECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		task = null;
+		logger.info("Stopped sampling.");
+	}
+	
+	/**
+	 * If the sampler is adaptive and is not sampling fast, a sample is taken
+	 * right away, instead of waiting for the current period to finish.
+	 */
+	@Override
+	public synchronized void requestFastSampling() {
+		if (policy == null) {
+			return;
+		}
+		
+		policy.requestFastSampling();
+		if (executor != null && periodInMillis > policy.getMinimumPeriod()) {
+			final SamplingTask currentTask = task;
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						currentTask.sampleNow();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				logger.debug("The sampler is stopping.");
+			}
+		}
+	}
+	
+	@Override
+	public SampleHistory getHistory() {
+		return history;
+	}
+	
+	/**
+	 * Returns the current time between two samples, in milliseconds.
+	 */
+	public long getPeriod() {
+		return periodInMillis;
+	}
+	
+	void sample() {
+		try {
+			monitor.snapshot(snapshot);
+			snapshot.setValue(SampleField.SAMPLING_PERIOD, periodInMillis);
+			history.add(snapshot);
+			if (store != null) {
+				snapshot.copyValues(values);
+				store.append(snapshot.getTimestamp(), values);
+			}
+			if (policy != null) {
+				periodInMillis = policy.nextPeriod(getWatchedValues());
+			}
+		} catch (IOException e) {
+			logger.warn("Could not take a sample: {}", e.getMessage());
+		} catch (RuntimeException e) {
+			// an exception thrown by the sampling task would cancel the next samples
+			logger.error("Could not take a sample.", e);
+		}
+	}
+	
+	/**
+	 * The values are percentages, so a single change threshold fits all of them.
+	 */
+	private double[] getWatchedValues() {
+		double totalMemory = snapshot.getValue(SampleField.TOTAL_MEMORY);
+		watchedValues[0] = 100 - snapshot.getValue(SampleField.CPU_IDLE);
+		watchedValues[1] = snapshot.getValue(SampleField.CPU_IO_WAIT);
+		watchedValues[2] = totalMemory > 0
+				? 100 * (totalMemory - snapshot.getValue(SampleField.AVAILABLE_MEMORY)) / totalMemory : 0;
+		watchedValues[3] = snapshot.getValue(SampleField.CPU_SOME_PRESSURE);
+		watchedValues[4] = snapshot.getValue(SampleField.MEMORY_SOME_PRESSURE);
+		watchedValues[5] = snapshot.getValue(SampleField.IO_SOME_PRESSURE);
+		return watchedValues;
+	}
+	
+	/**
+	 * Takes a sample and schedules the next one after the current period. The
+	 * samples are scheduled from the time the previous one was due, so the time
+	 * spent taking them does not delay the next ones. It is only run by the
+	 * sampling thread.
+	 */
+	private class SamplingTask implements Runnable {
+		private final ScheduledThreadPoolExecutor executor;
+		private ScheduledFuture<?> nextSample;
+		private long nextSampleTime = System.nanoTime();
+		
+		SamplingTask(ScheduledThreadPoolExecutor executor) {
+			this.executor = executor;
+		}
+		
+		@Override
+		public void run() {
+			sample();
+			
+			long now = System.nanoTime();
+			nextSampleTime += TimeUnit.MILLISECONDS.toNanos(periodInMillis);
+			if (nextSampleTime - now < 0) {
+				nextSampleTime = now;
+			}
+			try {
+				nextSample = executor.schedule(this, nextSampleTime - now, TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException e) {
+				// the sampler was stopped
+			}
+		}
+		
+		void sampleNow() {
+			if (nextSample != null && !nextSample.cancel(false)) {
+				// the next sample was already taken
+				return;
+			}
+			nextSampleTime = System.nanoTime();
+			run();
+		}
+	}
+}
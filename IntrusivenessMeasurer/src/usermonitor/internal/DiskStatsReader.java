@@ -0,0 +1,226 @@
+package usermonitor.internal;
+
+import java.io.IOException;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the usage of the block devices from a file in the /proc/diskstats format. 
+ * The file has one line for each device, with counters accumulated since the boot:</br>
+ * </br>
+ * major minor name reads reads_merged sectors_read read_time writes writes_merged 
+ * sectors_written write_time in_progress io_time weighted_io_time [ignored fields]</br>
+ * </br>
+ * The times are given in milliseconds and the sectors have 512 bytes. Lines with 
+ * less fields, which old kernels write for partitions, are ignored.</br>
+ * </br>
+ * Like {@link ProcStatReader}, the reader keeps the counters of the previous read and 
+ * the usages are the ones of the time elapsed between two reads. The file is read 
+ * once when the reader is created, so the first usages are the ones since then. The 
+ * counters are stored by the position of the device in the file and no objects are 
+ * created while reading, unless the list of devices changes.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class DiskStatsReader {
+
+	static final int READS_PER_SECOND = 0;
+	static final int WRITES_PER_SECOND = 1;
+	static final int READ_THROUGHPUT = 2;
+	static final int WRITE_THROUGHPUT = 3;
+	static final int QUEUE_DEPTH = 4;
+	static final int AWAIT_TIME = 5;
+	static final int UTILIZATION = 6;
+	static final int NUMBER_OF_FIELDS = 7;
+	
+	private static final int READS_COUNTER = 0;
+	private static final int SECTORS_READ_COUNTER = 2;
+	private static final int READ_TIME_COUNTER = 3;
+	private static final int WRITES_COUNTER = 4;
+	private static final int SECTORS_WRITTEN_COUNTER = 6;
+	private static final int WRITE_TIME_COUNTER = 7;
+	private static final int IO_TIME_COUNTER = 9;
+	private static final int WEIGHTED_IO_TIME_COUNTER = 10;
+	private static final int NUMBER_OF_COUNTERS = 11;
+	
+	private static final double KB_PER_SECTOR = 0.5;
+	private static final double MILLISECONDS_PER_SECOND = 1000;
+	private static final double NANOSECONDS_PER_SECOND = 1000000000.0;
+	
+	private final ProcFileReader file;
+	
+	private byte[][] deviceNames = new byte[0][];
+	private String[] devices = new String[0];
+	private long[] counters = new long[0];
+	private long[] previousCounters = new long[0];
+	private double[] usages = new double[0];
+	private int numberOfDevices;
+	private long lastReadTime;
+	
+	DiskStatsReader(String diskStatsFilename) throws IOException {
+		file = new ProcFileReader(diskStatsFilename);
+		lastReadTime = System.nanoTime();
+		read();
+	}
+	
+	/**
+	 * Reads the file and updates the usages.
+	 * 
+	 * @throws IOException If the file could not be read or a counter is not numeric.
+	 */
+	void read() throws IOException {
+		file.read();
+		long readTime = System.nanoTime();
+		double elapsedSeconds = (readTime - lastReadTime) / NANOSECONDS_PER_SECOND;
+		lastReadTime = readTime;
+		
+		int device = 0;
+		while (file.nextLine()) {
+			int end = file.getLineEnd();
+			int majorEnd = file.tokenEnd(file.skipSpaces(file.getLineStart(), end), end);
+			int minorEnd = file.tokenEnd(file.skipSpaces(majorEnd, end), end);
+			int nameStart = file.skipSpaces(minorEnd, end);
+			int nameEnd = file.tokenEnd(nameStart, end);
+			if (nameStart == nameEnd) {
+				continue;
+			}
+			
+			ensureCapacity(device + 1);
+			if (!readCounters(device, nameEnd, end)) {
+				continue;
+			}
+			if (updateDeviceName(device, nameStart, nameEnd)) {
+				// a new device in this position, whose previous counters are unknown
+				System.arraycopy(counters, device * NUMBER_OF_COUNTERS, previousCounters, 
+									device * NUMBER_OF_COUNTERS, NUMBER_OF_COUNTERS);
+			}
+			updateUsages(device, elapsedSeconds);
+			device++;
+		}
+		numberOfDevices = device;
+	}
+	
+	private boolean readCounters(int device, int position, int end) throws IOException {
+		int base = device * NUMBER_OF_COUNTERS;
+		for (int counter = 0; counter < NUMBER_OF_COUNTERS; counter++) {
+			int start = file.skipSpaces(position, end);
+			if (start == end) {
+				return false;
+			}
+			position = file.tokenEnd(start, end);
+			long value = file.parseLong(start, position);
+			if (value < 0) {
+				throw new IOException("Invalid format of disk stats file.");
+			}
+			counters[base + counter] = value;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return true if the device in the given position is not the same of the last read.
+	 */
+	private boolean updateDeviceName(int device, int nameStart, int nameEnd) {
+		byte[] name = deviceNames[device];
+		byte[] data = file.getData();
+		if (name != null && name.length == nameEnd - nameStart) {
+			boolean same = true;
+			for (int i = 0; i < name.length && same; i++) {
+				same = name[i] == data[nameStart + i];
+			}
+			if (same) {
+				return false;
+			}
+		}
+		name = new byte[nameEnd - nameStart];
+		System.arraycopy(data, nameStart, name, 0, name.length);
+		deviceNames[device] = name;
+		devices[device] = new String(name);
+		return true;
+	}
+	
+	private void updateUsages(int device, double elapsedSeconds) {
+		int base = device * NUMBER_OF_COUNTERS;
+		long reads = delta(base + READS_COUNTER);
+		long writes = delta(base + WRITES_COUNTER);
+		long sectorsRead = delta(base + SECTORS_READ_COUNTER);
+		long sectorsWritten = delta(base + SECTORS_WRITTEN_COUNTER);
+		long requestTime = delta(base + READ_TIME_COUNTER) + delta(base + WRITE_TIME_COUNTER);
+		long ioTime = delta(base + IO_TIME_COUNTER);
+		long weightedIOTime = delta(base + WEIGHTED_IO_TIME_COUNTER);
+		
+		System.arraycopy(counters, base, previousCounters, base, NUMBER_OF_COUNTERS);
+		
+		// no time elapsed since the last read, so the last usages are kept
+		if (elapsedSeconds <= 0) {
+			return;
+		}
+		
+		double elapsedMilliseconds = elapsedSeconds * MILLISECONDS_PER_SECOND;
+		int usageBase = device * NUMBER_OF_FIELDS;
+		usages[usageBase + READS_PER_SECOND] = reads / elapsedSeconds;
+		usages[usageBase + WRITES_PER_SECOND] = writes / elapsedSeconds;
+		usages[usageBase + READ_THROUGHPUT] = sectorsRead * KB_PER_SECTOR / elapsedSeconds;
+		usages[usageBase + WRITE_THROUGHPUT] = sectorsWritten * KB_PER_SECTOR / elapsedSeconds;
+		usages[usageBase + QUEUE_DEPTH] = weightedIOTime / elapsedMilliseconds;
+		usages[usageBase + AWAIT_TIME] = reads + writes > 0 ? (double) requestTime / (reads + writes) : 0;
+		usages[usageBase + UTILIZATION] = Math.min(100, 100 * ioTime / elapsedMilliseconds);
+	}
+	
+	/**
+	 * The counters of a device are reset when it is removed and added again.
+	 */
+	private long delta(int counter) {
+		long delta = counters[counter] - previousCounters[counter];
+		return delta < 0 ? 0 : delta;
+	}
+	
+	private void ensureCapacity(int devices) {
+		if (devices <= this.devices.length) {
+			return;
+		}
+		int newDevices = Math.max(devices, 2 * this.devices.length);
+		byte[][] newDeviceNames = new byte[newDevices][];
+		System.arraycopy(deviceNames, 0, newDeviceNames, 0, deviceNames.length);
+		deviceNames = newDeviceNames;
+		String[] newDeviceStrings = new String[newDevices];
+		System.arraycopy(this.devices, 0, newDeviceStrings, 0, this.devices.length);
+		this.devices = newDeviceStrings;
+		counters = grow(counters, newDevices * NUMBER_OF_COUNTERS);
+		previousCounters = grow(previousCounters, newDevices * NUMBER_OF_COUNTERS);
+		double[] newUsages = new double[newDevices * NUMBER_OF_FIELDS];
+		System.arraycopy(usages, 0, newUsages, 0, usages.length);
+		usages = newUsages;
+	}
+	
+	private static long[] grow(long[] array, int length) {
+		long[] newArray = new long[length];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+	
+	int getNumberOfDevices() {
+		return numberOfDevices;
+	}
+	
+	String getDevice(int device) {
+		return devices[device];
+	}
+	
+	/**
+	 * Returns true if the device has served any request since the boot. Devices 
+	 * which were never used, like most of the loop and ram devices, are not 
+	 * interesting to report.
+	 */
+	boolean wasUsed(int device) {
+		int base = device * NUMBER_OF_COUNTERS;
+		return counters[base + READS_COUNTER] + counters[base + WRITES_COUNTER] > 0;
+	}
+	
+	/**
+	 * @param field One of the field constants of this class.
+	 */
+	double getUsage(int device, int field) {
+		return usages[device * NUMBER_OF_FIELDS + field];
+	}
+}
@@ -0,0 +1,137 @@
+package usermonitor.internal;
+
+import java.io.IOException;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the memory amounts from a file in the /proc/meminfo format, in a single
+ * pass. The file is read with a single positional read into a reused buffer
+ * and the values are parsed in place, so a call to {@link #read()} does not
+ * create any object.</br>
+ * </br>
+ * The expected file pattern is the following:</br>
+ * </br>
+ * [ignored lines]</br>
+ * TOTAL_MEMORY_LINE_HEADER total memory kB</br>
+ * [ignored lines]</br>
+ * FREE_MEMORY_LINE_HEADER free memory kB</br>
+ * [ignored lines]</br>
+ * </br>
+ * The lines may be in any order. A blank line ends the data. The total and
+ * free memory lines are mandatory. The lines of the available memory, buffers,
+ * cached memory, total swap and free swap are read too, if they exist. Kernels
+ * older than 3.14 do not report the available memory, which is then estimated
+ * as the free memory plus the buffers and the cached memory.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class MemoryInfoReader {
+
+	static final int TOTAL_MEMORY = 0;
+	static final int FREE_MEMORY = 1;
+	static final int AVAILABLE_MEMORY = 2;
+	static final int BUFFERS = 3;
+	static final int CACHED_MEMORY = 4;
+	static final int TOTAL_SWAP = 5;
+	static final int FREE_SWAP = 6;
+	private static final int NUMBER_OF_VALUES = 7;
+	
+	/**
+	 * The line that contains each value must start with the header in the 
+	 * position of the value.
+	 */
+	private static final byte[][] LINE_HEADERS = {
+		"MemTotal:".getBytes(),
+		"MemFree:".getBytes(),
+		"MemAvailable:".getBytes(),
+		"Buffers:".getBytes(),
+		"Cached:".getBytes(),
+		"SwapTotal:".getBytes(),
+		"SwapFree:".getBytes()
+	};
+
+	private final ProcFileReader file;
+	private final double[] values;
+	private int numberOfReadValues;
+
+	MemoryInfoReader(String memoryInfoFilename) throws IOException {
+		this.file = new ProcFileReader(memoryInfoFilename);
+		this.values = new double[NUMBER_OF_VALUES];
+	}
+
+	/**
+	 * Reads the file and updates the memory amounts.
+	 *
+	 * @throws IOException If the file could not be read, if the total or the 
+	 * free memory is missing or if any of the amounts is not numeric.
+	 */
+	void read() throws IOException {
+		for (int value = 0; value < NUMBER_OF_VALUES; value++) {
+			values[value] = -1;
+		}
+		numberOfReadValues = 0;
+
+		file.read();
+		while (numberOfReadValues < NUMBER_OF_VALUES && file.nextLine() && !file.isBlankLine()) {
+			for (int value = 0; value < NUMBER_OF_VALUES; value++) {
+				if (values[value] == -1 && file.lineStartsWith(LINE_HEADERS[value])) {
+					values[value] = readValue(LINE_HEADERS[value]);
+					if (values[value] != -1) {
+						numberOfReadValues++;
+					}
+					break;
+				}
+			}
+		}
+		
+		if (values[TOTAL_MEMORY] == -1 || values[FREE_MEMORY] == -1) {
+			throw new IOException("Could not find necessary data.");
+		}
+		for (int value = BUFFERS; value < NUMBER_OF_VALUES; value++) {
+			if (values[value] == -1) {
+				values[value] = 0;
+			}
+		}
+		if (values[AVAILABLE_MEMORY] == -1) {
+			values[AVAILABLE_MEMORY] = Math.min(values[TOTAL_MEMORY], 
+								values[FREE_MEMORY] + values[BUFFERS] + values[CACHED_MEMORY]);
+		}
+	}
+
+	private double readValue(byte[] header) throws IOException {
+		int end = file.getLineEnd();
+		int valueStart = file.skipSpaces(file.getLineStart() + header.length, end);
+		// the header must be a whole token
+		if (valueStart == file.getLineStart() + header.length) {
+			return -1;
+		}
+		double value = file.parseDecimal(valueStart, file.tokenEnd(valueStart, end));
+		if (Double.isNaN(value)) {
+			throw new IOException("Invalid format of memory info file.");
+		}
+		return value;
+	}
+
+	double getTotalMemory() {
+		return values[TOTAL_MEMORY];
+	}
+
+	double getFreeMemory() {
+		return values[FREE_MEMORY];
+	}
+	
+	/**
+	 * @param value One of the value constants of this class.
+	 */
+	double getValue(int value) {
+		return values[value];
+	}
+	
+	/**
+	 * Closes the file. The reader must not be read after it is closed.
+	 */
+	void close() throws IOException {
+		file.close();
+	}
+}
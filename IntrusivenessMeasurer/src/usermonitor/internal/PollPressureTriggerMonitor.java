@@ -0,0 +1,158 @@
+package usermonitor.internal;
+
+import static commons.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import usermonitor.PressureListener;
+import usermonitor.PressureTrigger;
+import usermonitor.PressureTriggerMonitor;
+
+/**
+ * This implementation of PressureTriggerMonitor registers the trigger with the 
+ * psi_trigger helper program, monitors/bin/psi_trigger, which is built from 
+ * monitors/src by running make in the monitors directory of the project. 
+ * The kernel notifies the crossing of a pressure limit through poll(), which can 
+ * not be done with the Java standard library, so the helper waits for the 
+ * notifications and writes a line for each one. A daemon thread reads these 
+ * lines and calls the listener.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class PollPressureTriggerMonitor implements PressureTriggerMonitor {
+	
+	private static final Logger logger = LoggerFactory.getLogger(PollPressureTriggerMonitor.class);
+	
+	private static final String DEFAULT_PRESSURE_DIRECTORY = "/proc/pressure";
+	private static final String STARTED_LINE = "started";
+	private static final String PRESSURE_LINE = "pressure";
+	private static final String ERROR_LINE = "error";
+	private static final long STOP_TIMEOUT_IN_MILLIS = 1000;
+	
+	private final String helperFilename;
+	private final String pressureFilename;
+	private final PressureTrigger trigger;
+	private final PressureListener listener;
+	
+	private Process helper;
+	private Thread notifier;
+	private volatile boolean stopped;
+	
+	/**
+	 * Constructs a new PollPressureTriggerMonitor which registers the trigger in 
+	 * the files of /proc/pressure.
+	 */
+	public PollPressureTriggerMonitor(String helperFilename, PressureTrigger trigger, 
+										PressureListener listener) {
+		this(helperFilename, DEFAULT_PRESSURE_DIRECTORY, trigger, listener);
+	}
+	
+	/**
+	 * @param helperFilename The psi_trigger program.
+	 * @param pressureDirectory The directory of the pressure stall information files.
+	 * @param trigger The limit of pressure.
+	 * @param listener The listener notified each time the limit is crossed.
+	 * @throws IllegalArgumentException If any of the arguments is null.
+	 */
+	public PollPressureTriggerMonitor(String helperFilename, String pressureDirectory, 
+										PressureTrigger trigger, PressureListener listener) {
+		checkNotNull(helperFilename, "helperFilename must not be null.");
+		checkNotNull(pressureDirectory, "pressureDirectory must not be null.");
+		checkNotNull(trigger, "trigger must not be null.");
+		checkNotNull(listener, "listener must not be null.");
+		
+		this.helperFilename = helperFilename;
+		this.pressureFilename = pressureDirectory + File.separator + trigger.getResource().getFilename();
+		this.trigger = trigger;
+		this.listener = listener;
+	}
+	
+	@Override
+	public synchronized void start() throws IOException {
+		if (helper != null) {
+			return;
+		}
+		
+		stopped = false;
+		helper = Runtime.getRuntime().exec(new String[] {helperFilename, pressureFilename, 
+										trigger.getType().getName(), String.valueOf(trigger.getThreshold()), 
+										String.valueOf(trigger.getWindow())});
+		final BufferedReader output = new BufferedReader(new InputStreamReader(helper.getInputStream()));
+		checkStarted(output);
+		
+		logger.info("Started waiting for pressure {}.", trigger);
+		notifier = new Thread("pressure-trigger-" + trigger.getResource().getFilename()) {
+			@Override
+			public void run() {
+				notifyPressure(output);
+			}
+		};
+		notifier.setDaemon(true);
+		notifier.start();
+	}
+	
+	private void checkStarted(BufferedReader output) throws IOException {
+		String line = output.readLine();
+		if (STARTED_LINE.equals(line)) {
+			return;
+		}
+		
+		String message = ERROR_LINE.equals(line) ? output.readLine() : line;
+		helper.destroy();
+		helper = null;
+		throw new IOException("Could not register the pressure trigger " + trigger + ": " + message);
+	}
+	
+	private void notifyPressure(BufferedReader output) {
+		try {
+			String line;
+			while ((line = output.readLine()) != null && !stopped) {
+				if (PRESSURE_LINE.equals(line)) {
+					try {
+						listener.onPressure(trigger);
+					} catch (RuntimeException e) {
+						logger.error("The pressure listener failed.", e);
+					}
+				} else if (ERROR_LINE.equals(line)) {
+					logger.warn("The pressure trigger {} failed: {}", trigger, output.readLine());
+				}
+			}
+		} catch (IOException e) {
+			if (!stopped) {
+				logger.warn("Could not read the pressure notifications.", e);
+			}
+		}
+		if (!stopped) {
+			logger.warn("Stopped waiting for pressure {}.", trigger);
+		}
+	}
+	
+	@Override
+	public synchronized void stop() {
+		if (helper == null) {
+			return;
+		}
+		
+		stopped = true;
+		helper.destroy();
+		try {
+			notifier.join(STOP_TIMEOUT_IN_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		helper = null;
+		notifier = null;
+		logger.info("Stopped waiting for pressure {}.", trigger);
+	}
+	
+	@Override
+	public PressureTrigger getTrigger() {
+		return trigger;
+	}
+}
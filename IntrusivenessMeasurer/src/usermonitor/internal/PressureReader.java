@@ -0,0 +1,148 @@
+package usermonitor.internal;
+
+import java.io.IOException;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the pressure stall information of a resource from a file in the 
+ * /proc/pressure/{cpu,memory,io} format:</br>
+ * </br>
+ * some avg10=value avg60=value avg300=value total=value</br>
+ * full avg10=value avg60=value avg300=value total=value</br>
+ * </br>
+ * The averages are percentages and the totals are the accumulated stall times, 
+ * in microseconds. The full line is missing in the cpu file of kernels older 
+ * than 5.13, in which case the full values are 0.</br>
+ * </br>
+ * Like {@link ProcStatReader}, the reader keeps the totals of the previous read 
+ * and the stalls are the percentages of the time elapsed between two reads. The 
+ * file is read once when the reader is created, so the first stalls are the ones 
+ * since then. No objects are created while reading.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class PressureReader {
+	
+	static final int SOME_AVERAGE_10 = 0;
+	static final int SOME_AVERAGE_60 = 1;
+	static final int SOME_AVERAGE_300 = 2;
+	static final int SOME_STALL = 3;
+	static final int FULL_AVERAGE_10 = 4;
+	static final int FULL_AVERAGE_60 = 5;
+	static final int FULL_AVERAGE_300 = 6;
+	static final int FULL_STALL = 7;
+	static final int NUMBER_OF_FIELDS = 8;
+	
+	private static final byte[] SOME_LINE_HEADER = "some ".getBytes();
+	private static final byte[] FULL_LINE_HEADER = "full ".getBytes();
+	private static final int NUMBER_OF_AVERAGES = 3;
+	private static final double NANOSECONDS_PER_MICROSECOND = 1000;
+	
+	private final ProcFileReader file;
+	private final double[] values;
+	private long previousSomeTotal;
+	private long previousFullTotal;
+	private long lastReadTime;
+	
+	PressureReader(String pressureFilename) throws IOException {
+		this.file = new ProcFileReader(pressureFilename, 256);
+		this.values = new double[NUMBER_OF_FIELDS];
+		lastReadTime = System.nanoTime();
+		read();
+		values[SOME_STALL] = 0;
+		values[FULL_STALL] = 0;
+	}
+	
+	/**
+	 * Reads the file and updates the values.
+	 * 
+	 * @throws IOException If the file could not be read or it is not in the 
+	 * expected format.
+	 */
+	void read() throws IOException {
+		file.read();
+		long readTime = System.nanoTime();
+		double elapsedMicroseconds = (readTime - lastReadTime) / NANOSECONDS_PER_MICROSECOND;
+		lastReadTime = readTime;
+		
+		boolean someRead = false;
+		long fullTotal = previousFullTotal;
+		values[FULL_AVERAGE_10] = 0;
+		values[FULL_AVERAGE_60] = 0;
+		values[FULL_AVERAGE_300] = 0;
+		while (file.nextLine()) {
+			if (file.lineStartsWith(SOME_LINE_HEADER)) {
+				long someTotal = readLine(SOME_AVERAGE_10);
+				values[SOME_STALL] = stall(someTotal - previousSomeTotal, elapsedMicroseconds);
+				previousSomeTotal = someTotal;
+				someRead = true;
+			} else if (file.lineStartsWith(FULL_LINE_HEADER)) {
+				fullTotal = readLine(FULL_AVERAGE_10);
+			}
+		}
+		if (!someRead) {
+			throw new IOException("Invalid format of pressure file.");
+		}
+		values[FULL_STALL] = stall(fullTotal - previousFullTotal, elapsedMicroseconds);
+		previousFullTotal = fullTotal;
+	}
+	
+	/**
+	 * Reads the averages of the current line to the fields starting at the given one.
+	 * 
+	 * @return The total stall time.
+	 */
+	private long readLine(int firstAverage) throws IOException {
+		int end = file.getLineEnd();
+		int position = file.getLineStart() + SOME_LINE_HEADER.length;
+		for (int average = 0; average < NUMBER_OF_AVERAGES; average++) {
+			int start = file.skipSpaces(position, end);
+			position = file.tokenEnd(start, end);
+			double value = file.parseDecimal(valueStart(start, position), position);
+			if (Double.isNaN(value)) {
+				throw new IOException("Invalid format of pressure file.");
+			}
+			values[firstAverage + average] = value;
+		}
+		int start = file.skipSpaces(position, end);
+		position = file.tokenEnd(start, end);
+		long total = file.parseLong(valueStart(start, position), position);
+		if (total < 0) {
+			throw new IOException("Invalid format of pressure file.");
+		}
+		return total;
+	}
+	
+	/**
+	 * Returns the position right after the '=' of a key=value token, or the end 
+	 * of the token if there is no '='.
+	 */
+	private int valueStart(int tokenStart, int tokenEnd) {
+		byte[] data = file.getData();
+		for (int i = tokenStart; i < tokenEnd; i++) {
+			if (data[i] == '=') {
+				return i + 1;
+			}
+		}
+		return tokenEnd;
+	}
+	
+	/**
+	 * The stall may be slightly greater than the elapsed time, because the 
+	 * kernel updates the totals while the tasks are stalled.
+	 */
+	private static double stall(long stallMicroseconds, double elapsedMicroseconds) {
+		if (stallMicroseconds <= 0 || elapsedMicroseconds <= 0) {
+			return 0;
+		}
+		return Math.min(100, 100 * stallMicroseconds / elapsedMicroseconds);
+	}
+	
+	/**
+	 * @param field One of the field constants of this class.
+	 */
+	double getValue(int field) {
+		return values[field];
+	}
+}
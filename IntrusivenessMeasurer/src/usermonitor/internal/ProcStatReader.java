@@ -0,0 +1,210 @@
+package usermonitor.internal;
+
+import java.io.IOException;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the CPU usage from a file in the /proc/stat format. The file reports, 
+ * for the whole machine and for each online CPU, the time spent in each CPU 
+ * state since the boot, in jiffies:</br>
+ * </br>
+ * cpu  user nice system idle iowait irq softirq steal [ignored fields]</br>
+ * cpu0 user nice system idle iowait irq softirq steal [ignored fields]</br>
+ * ...</br>
+ * cpun user nice system idle iowait irq softirq steal [ignored fields]</br>
+ * [ignored lines]</br>
+ * </br>
+ * The reader keeps the counters of the previous read and the usages are the 
+ * percentages of the time elapsed between the two reads. The first read 
+ * reports the usage since the boot. Old kernels which do not report iowait 
+ * and steal are accepted.</br>
+ * </br>
+ * The counters of each CPU are stored by the CPU number, so CPUs going offline 
+ * and online between two reads do not mix their counters. No objects are 
+ * created while reading, unless the number of CPUs grows.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class ProcStatReader implements CPUUsageReader {
+
+	private static final byte[] CPU_LINE_HEADER = "cpu".getBytes();
+	
+	private static final int USER_COUNTER = 0;
+	private static final int NICE_COUNTER = 1;
+	private static final int SYSTEM_COUNTER = 2;
+	private static final int IDLE_COUNTER = 3;
+	private static final int IO_WAIT_COUNTER = 4;
+	private static final int IRQ_COUNTER = 5;
+	private static final int SOFT_IRQ_COUNTER = 6;
+	private static final int STEAL_COUNTER = 7;
+	private static final int NUMBER_OF_COUNTERS = 8;
+	/**
+	 * user, nice, system and idle are reported by every kernel version.
+	 */
+	private static final int MINIMUM_NUMBER_OF_COUNTERS = 4;
+	/**
+	 * The CPU numbers are bounded well above the CPUs a kernel supports, so a 
+	 * corrupted number is rejected instead of growing the counters to its size.
+	 */
+	private static final long MAXIMUM_CPU_NUMBER = 1 << 16;
+	
+	private final ProcFileReader file;
+	
+	/**
+	 * The counters of the whole machine are in the slot 0 and the counters 
+	 * of the CPU n in the slot n + 1.
+	 */
+	private long[] counters = new long[0];
+	private long[] previousCounters = new long[0];
+	private double[] slotUsages = new double[0];
+	
+	/**
+	 * The slots of the CPUs found in the last read, in the order they were read.
+	 */
+	private int[] coreSlots = new int[0];
+	private int numberOfCores;
+	
+	ProcStatReader(String statFilename) throws IOException {
+		file = new ProcFileReader(statFilename);
+	}
+	
+	@Override
+	public void read() throws IOException {
+		file.read();
+		numberOfCores = 0;
+		boolean machineRead = false;
+		
+		while (file.nextLine() && file.lineStartsWith(CPU_LINE_HEADER)) {
+			int slot = readSlot();
+			ensureCapacity(slot + 1);
+			readCounters(slot);
+			updateUsages(slot);
+			if (slot == 0) {
+				machineRead = true;
+			} else {
+				addCore(slot);
+			}
+		}
+		
+		if (!machineRead) {
+			throw new IOException("Invalid format of CPU stat file.");
+		}
+	}
+	
+	private int readSlot() throws IOException {
+		int start = file.getLineStart() + CPU_LINE_HEADER.length;
+		int end = file.tokenEnd(start, file.getLineEnd());
+		if (start == end) {
+			return 0;
+		}
+		long cpu = file.parseLong(start, end);
+		if (cpu < 0 || cpu >= MAXIMUM_CPU_NUMBER) {
+			throw new IOException("Invalid format of CPU stat file.");
+		}
+		return (int) cpu + 1;
+	}
+
+	private void readCounters(int slot) throws IOException {
+		int base = slot * NUMBER_OF_COUNTERS;
+		int end = file.getLineEnd();
+		int position = file.tokenEnd(file.getLineStart(), end);
+		int counter = 0;
+		
+		while (counter < NUMBER_OF_COUNTERS) {
+			int start = file.skipSpaces(position, end);
+			if (start == end) {
+				break;
+			}
+			position = file.tokenEnd(start, end);
+			long value = file.parseLong(start, position);
+			if (value < 0) {
+				throw new IOException("Invalid format of CPU stat file.");
+			}
+			counters[base + counter++] = value;
+		}
+		
+		if (counter < MINIMUM_NUMBER_OF_COUNTERS) {
+			throw new IOException("Invalid format of CPU stat file.");
+		}
+		while (counter < NUMBER_OF_COUNTERS) {
+			counters[base + counter++] = 0;
+		}
+	}
+	
+	private void updateUsages(int slot) {
+		int base = slot * NUMBER_OF_COUNTERS;
+		long user = delta(base + USER_COUNTER) + delta(base + NICE_COUNTER);
+		long system = delta(base + SYSTEM_COUNTER) + delta(base + IRQ_COUNTER) 
+							+ delta(base + SOFT_IRQ_COUNTER);
+		long idle = delta(base + IDLE_COUNTER);
+		long ioWait = delta(base + IO_WAIT_COUNTER);
+		long steal = delta(base + STEAL_COUNTER);
+		long total = user + system + idle + ioWait + steal;
+		
+		System.arraycopy(counters, base, previousCounters, base, NUMBER_OF_COUNTERS);
+		
+		// no time elapsed since the last read, so the last usages are kept
+		if (total == 0) {
+			return;
+		}
+		
+		int usageBase = slot * NUMBER_OF_FIELDS;
+		slotUsages[usageBase + USER] = percentage(user, total);
+		slotUsages[usageBase + SYSTEM] = percentage(system, total);
+		slotUsages[usageBase + IDLE] = percentage(idle, total);
+		slotUsages[usageBase + IO_WAIT] = percentage(ioWait, total);
+		slotUsages[usageBase + STEAL] = percentage(steal, total);
+	}
+
+	/**
+	 * The counters must not decrease, but a counter may be reset when a CPU is 
+	 * hot plugged. In this case the elapsed time is unknown and ignored.
+	 */
+	private long delta(int counter) {
+		long delta = counters[counter] - previousCounters[counter];
+		return delta < 0 ? 0 : delta;
+	}
+	
+	private static double percentage(long value, long total) {
+		return 100.0 * value / total;
+	}
+
+	private void addCore(int slot) {
+		if (numberOfCores == coreSlots.length) {
+			int[] newCoreSlots = new int[Math.max(1, coreSlots.length * 2)];
+			System.arraycopy(coreSlots, 0, newCoreSlots, 0, coreSlots.length);
+			coreSlots = newCoreSlots;
+		}
+		coreSlots[numberOfCores++] = slot;
+	}
+	
+	private void ensureCapacity(int slots) {
+		if ((long) slots * NUMBER_OF_COUNTERS <= counters.length) {
+			return;
+		}
+		long newSlots = Math.max(slots, 2L * counters.length / NUMBER_OF_COUNTERS);
+		counters = grow(counters, (int) (newSlots * NUMBER_OF_COUNTERS));
+		previousCounters = grow(previousCounters, (int) (newSlots * NUMBER_OF_COUNTERS));
+		double[] newSlotUsages = new double[(int) (newSlots * NUMBER_OF_FIELDS)];
+		System.arraycopy(slotUsages, 0, newSlotUsages, 0, slotUsages.length);
+		slotUsages = newSlotUsages;
+	}
+	
+	private static long[] grow(long[] array, int length) {
+		long[] newArray = new long[length];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	@Override
+	public int getNumberOfCores() {
+		return numberOfCores;
+	}
+
+	@Override
+	public double getUsage(int cpu, int field) {
+		int slot = cpu == 0 ? 0 : coreSlots[cpu - 1];
+		return slotUsages[slot * NUMBER_OF_FIELDS + field];
+	}
+}
@@ -0,0 +1,232 @@
+package usermonitor.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import usermonitor.ProcessInfo;
+import usermonitor.ProcessMonitor;
+
+/**
+ * Collects the CPU and memory usages of a process and its descendants until it finishes, writing them 
+ * to the data files used by the data collector scripts. It replaces the ps calls 
+ * of slave_data_collector.sh, which forked several processes for each sample.</br>
+ * </br>
+ * If the output base filename is "aaaa", the CPU usages are written to aaaa.cpu, the 
+ * memory usages to aaaa.mem and the other resources to aaaa.proc. Each file has the 
+ * following pattern:</br>
+ * </br>
+ * process=PID</br>
+ * start time=dd-MM-yyyy-HH-mm-ss</br>
+ * time between checks=TIME_BETWEEN_CHECKS</br>
+ * one line for each sample</br>
+ * stop time=dd-MM-yyyy-HH-mm-ss</br>
+ * </br>
+ * The lines of the .cpu file have the CPU usage in the time since the previous 
+ * sample, as a percentage of one CPU, so it exceeds 100 when several CPUs are used. 
+ * Unlike the one reported by ps -o %cpu, it is not averaged over the lifetime of 
+ * the process. The lines of the .mem file have the resident memory as a percentage 
+ * of the total memory, like ps -o %mem. The lines of the .proc file have the resident memory, the virtual 
+ * memory, the minor and major page faults, the number of threads, the number of 
+ * processes, the bytes read from and written to the storage and the time between 
+ * checks in milliseconds when the sample was taken, in the order given by the 
+ * PROCESS_FILE_COLUMNS line of its header.</br>
+ * </br>
+ * The time between checks is fixed, or adaptive if it is given as MIN:MAX. An 
+ * {@link AdaptiveSamplingPolicy} then samples every MIN seconds while the CPU or 
+ * memory usage of the process is changing and after a process of the tree starts, 
+ * and slows down to MAX seconds while they are stable.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProcessDataCollector {
+	
+	private static final Logger logger = LoggerFactory.getLogger(ProcessDataCollector.class);
+	
+	private static final String CPU_FILE_EXTENSION = ".cpu";
+	private static final String MEMORY_FILE_EXTENSION = ".mem";
+	private static final String PROCESS_FILE_EXTENSION = ".proc";
+	private static final String PROCESS_FILE_COLUMNS = "columns=rss vsz minor_faults major_faults threads processes read_bytes write_bytes period";
+	private static final String DATE_FORMAT = "dd-MM-yyyy-HH-mm-ss";
+	private static final double MILLISECONDS_PER_SECOND = 1000;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000L;
+	private static final String ADAPTIVE_SEPARATOR = ":";
+	
+	private final ProcessMonitor monitor;
+	private final String timeBetweenChecks;
+	private final long timeBetweenChecksInMillis;
+	/**
+	 * The policy which chooses the time between checks, or null if it is fixed.
+	 */
+	private final AdaptiveSamplingPolicy policy;
+	private final String outputBaseFilename;
+	
+	/**
+	 * @param monitor The monitor of the process whose data is collected.
+	 * @param timeBetweenChecks The time between two samples, in seconds. It may 
+	 * have a fractional part, like the argument of sleep. If it is MIN:MAX, the time 
+	 * is adaptive, between MIN and MAX seconds.
+	 * @param outputBaseFilename The name used to construct the output file names.
+	 * @throws IllegalArgumentException If any of the arguments is null or 
+	 * timeBetweenChecks is not a positive number or a valid MIN:MAX pair.
+	 */
+	public ProcessDataCollector(ProcessMonitor monitor, String timeBetweenChecks, String outputBaseFilename) {
+		checkNotNull(monitor, "monitor must not be null.");
+		checkNotNull(timeBetweenChecks, "timeBetweenChecks must not be null.");
+		checkNotNull(outputBaseFilename, "outputBaseFilename must not be null.");
+		
+		this.monitor = monitor;
+		this.timeBetweenChecks = timeBetweenChecks;
+		int separator = timeBetweenChecks.indexOf(ADAPTIVE_SEPARATOR);
+		if (separator < 0) {
+			this.timeBetweenChecksInMillis = parseTimeBetweenChecks(timeBetweenChecks);
+			this.policy = null;
+		} else {
+			this.policy = new AdaptiveSamplingPolicy(parseTimeBetweenChecks(timeBetweenChecks.substring(0, separator)), 
+													parseTimeBetweenChecks(timeBetweenChecks.substring(separator + 1)));
+			this.timeBetweenChecksInMillis = policy.getPeriod();
+		}
+		this.outputBaseFilename = outputBaseFilename;
+	}
+	
+	private static long parseTimeBetweenChecks(String timeBetweenChecks) {
+		try {
+			long millis = Math.round(Double.parseDouble(timeBetweenChecks) * MILLISECONDS_PER_SECOND);
+			check(millis > 0, "timeBetweenChecks must be positive.");
+			return millis;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("timeBetweenChecks must be a number.");
+		}
+	}
+	
+	/**
+	 * Collects the data until the process finishes.
+	 * 
+	 * @throws IOException If the output files could not be written.
+	 * @throws InterruptedException If the thread is interrupted while waiting for 
+	 * the next sample.
+	 */
+	public void collect() throws IOException, InterruptedException {
+		PrintWriter cpuFile = openFile(CPU_FILE_EXTENSION);
+		PrintWriter memoryFile = openFile(MEMORY_FILE_EXTENSION);
+		PrintWriter processFile = openFile(PROCESS_FILE_EXTENSION);
+		
+		try {
+			logger.info("Collecting data of process {}.", monitor.getPid());
+			writeHeader(cpuFile);
+			writeHeader(memoryFile);
+			writeHeader(processFile);
+			processFile.println(PROCESS_FILE_COLUMNS);
+			flush(cpuFile, memoryFile, processFile);
+			
+			long nextSampleTime = System.nanoTime();
+			long period = timeBetweenChecksInMillis;
+			int numberOfProcesses = 0;
+			double[] watchedValues = new double[2];
+			while (true) {
+				ProcessInfo info;
+				try {
+					// the files of the process are read only once per sample
+					info = monitor.getProcessInfo();
+				} catch (IOException e) {
+					// the process finished
+					break;
+				}
+				
+				cpuFile.println(formatUsage(info.getCPUUsage()));
+				memoryFile.println(formatUsage(info.getMemoryUsage()));
+				processFile.println(info.getResidentMemory() + " " + info.getVirtualMemory() + " " 
+							+ info.getMinorFaults() + " " + info.getMajorFaults() + " " 
+							+ info.getNumberOfThreads() + " " + info.getNumberOfProcesses() + " " 
+							+ info.getReadBytes() + " " + info.getWriteBytes() + " " + period);
+				flush(cpuFile, memoryFile, processFile);
+				
+				if (policy != null) {
+					// a new process of the tree is usually a new task
+					if (info.getNumberOfProcesses() > numberOfProcesses && numberOfProcesses > 0) {
+						policy.requestFastSampling();
+					}
+					numberOfProcesses = info.getNumberOfProcesses();
+					watchedValues[0] = info.getCPUUsage();
+					watchedValues[1] = info.getMemoryUsage();
+					period = policy.nextPeriod(watchedValues);
+				}
+				
+				// the samples are taken at the chosen rate, regardless of the time spent taking them,
+				// on the monotonic clock, so a step of the wall clock does not delay them
+				nextSampleTime += period * NANOSECONDS_PER_MILLISECOND;
+				long now = System.nanoTime();
+				long sleepTime = nextSampleTime - now;
+				if (sleepTime > 0) {
+					Thread.sleep(sleepTime / NANOSECONDS_PER_MILLISECOND, 
+								(int) (sleepTime % NANOSECONDS_PER_MILLISECOND));
+				} else {
+					nextSampleTime = now;
+				}
+			}
+			logger.info("Process {} stopped.", monitor.getPid());
+			
+			writeEnding(cpuFile);
+			writeEnding(memoryFile);
+			writeEnding(processFile);
+			flush(cpuFile, memoryFile, processFile);
+		} finally {
+			cpuFile.close();
+			memoryFile.close();
+			processFile.close();
+		}
+	}
+	
+	private PrintWriter openFile(String extension) throws IOException {
+		return new PrintWriter(new FileWriter(outputBaseFilename + extension, true));
+	}
+	
+	private void writeHeader(PrintWriter file) {
+		file.println("process=" + monitor.getPid());
+		file.println("start time=" + formatDate());
+		file.println("time between checks=" + timeBetweenChecks);
+	}
+	
+	private void writeEnding(PrintWriter file) {
+		file.println("stop time=" + formatDate());
+	}
+	
+	private static void flush(PrintWriter... files) throws IOException {
+		for (PrintWriter file : files) {
+			file.flush();
+			if (file.checkError()) {
+				throw new IOException("Could not write data file.");
+			}
+		}
+	}
+	
+	private static String formatDate() {
+		return new SimpleDateFormat(DATE_FORMAT).format(new Date());
+	}
+	
+	private static String formatUsage(double usage) {
+		return String.format(Locale.US, "%.1f", usage);
+	}
+	
+	/**
+	 * usage: ProcessDataCollector PROCESS_PID TIME_BETWEEN_CHECKS OUTPUT_BASE_FILENAME
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length != 3) {
+			System.err.println("usage: ProcessDataCollector PROCESS_PID TIME_BETWEEN_CHECKS OUTPUT_BASE_FILENAME");
+			System.exit(1);
+		}
+		
+		ProcessMonitor monitor = new ProcessTreeMonitor(Integer.parseInt(args[0]));
+		new ProcessDataCollector(monitor, args[1], args[2]).collect();
+	}
+}
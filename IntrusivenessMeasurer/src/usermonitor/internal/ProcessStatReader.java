@@ -0,0 +1,263 @@
+package usermonitor.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the resources used by a process from its /proc/[pid]/stat, 
+ * /proc/[pid]/status and /proc/[pid]/io files. The files are kept open and read into reused 
+ * buffers, so a call to {@link #read()} does not create any object. Since the 
+ * files are opened when the reader is created, a reader never reads the files 
+ * of another process which reused the pid after the monitored one finished.</br>
+ * </br>
+ * The stat file has a single line of fields separated by blank spaces. The 
+ * second field is the command name between parentheses, which may contain 
+ * blank spaces too, so the fields are counted from the last ')':</br>
+ * </br>
+ * pid (comm) state ppid pgrp session tty_nr tpgid flags minflt cminflt majflt 
+ * cmajflt utime stime cutime cstime priority nice num_threads itrealvalue 
+ * starttime vsize rss ...</br>
+ * </br>
+ * The CPU times are given in clock ticks and vsize in bytes. The resident 
+ * memory is read from the VmRSS line of the status file, which is given in kB, 
+ * like the other memory amounts of this project.</br>
+ * </br>
+ * The bytes the process caused to be read from and written to the storage are 
+ * read from the read_bytes and write_bytes lines of the io file. This file can 
+ * only be read for the processes of the same user, so these amounts are 0 when 
+ * it can not be opened.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class ProcessStatReader implements Closeable {
+	
+	private static final String STAT_FILE = "stat";
+	private static final String STATUS_FILE = "status";
+	private static final String IO_FILE = "io";
+	private static final int STAT_BUFFER_SIZE = 1024;
+	
+	/**
+	 * The position of each field, counting from the state, which is the 
+	 * first field after the command name.
+	 */
+	private static final int STATE = 0;
+	private static final int PARENT_PID = 1;
+	private static final int MINOR_FAULTS = 7;
+	private static final int MAJOR_FAULTS = 9;
+	private static final int USER_TIME = 11;
+	private static final int SYSTEM_TIME = 12;
+	private static final int CHILDREN_USER_TIME = 13;
+	private static final int CHILDREN_SYSTEM_TIME = 14;
+	private static final int NUMBER_OF_THREADS = 17;
+	private static final int VIRTUAL_MEMORY = 20;
+	private static final int NUMBER_OF_FIELDS = VIRTUAL_MEMORY + 1;
+	
+	private static final byte[] RESIDENT_MEMORY_LINE_HEADER = "VmRSS:".getBytes();
+	private static final byte[] READ_BYTES_LINE_HEADER = "read_bytes:".getBytes();
+	private static final byte[] WRITE_BYTES_LINE_HEADER = "write_bytes:".getBytes();
+	private static final char ZOMBIE_STATE = 'Z';
+	private static final int BYTES_PER_KB = 1024;
+	
+	private final ProcFileReader statFile;
+	private final ProcFileReader statusFile;
+	private final ProcFileReader ioFile;
+	
+	private final long[] fields;
+	private char state;
+	private long residentMemory;
+	private long readBytes;
+	private long writeBytes;
+	
+	/**
+	 * @param processDirectory The /proc/[pid] directory of the process.
+	 * @throws IOException If the files of the process could not be opened, 
+	 * for example because the process does not exist.
+	 */
+	ProcessStatReader(String processDirectory) throws IOException {
+		this.statFile = new ProcFileReader(processDirectory + File.separator + STAT_FILE, STAT_BUFFER_SIZE);
+		try {
+			this.statusFile = new ProcFileReader(processDirectory + File.separator + STATUS_FILE);
+		} catch (IOException e) {
+			statFile.close();
+			throw e;
+		}
+		this.ioFile = openIOFile(processDirectory + File.separator + IO_FILE);
+		this.fields = new long[NUMBER_OF_FIELDS];
+	}
+	
+	private static ProcFileReader openIOFile(String ioFilename) {
+		try {
+			return new ProcFileReader(ioFilename);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Reads the files of the process and updates the values.
+	 * 
+	 * @throws IOException If the files could not be read, for example because 
+	 * the process has finished, or if they are not in the expected format.
+	 */
+	void read() throws IOException {
+		readStat();
+		readStatus();
+		if (ioFile != null) {
+			readIO();
+		}
+	}
+	
+	private void readStat() throws IOException {
+		int length = statFile.read();
+		byte[] data = statFile.getData();
+		
+		int commandEnd = length - 1;
+		while (commandEnd >= 0 && data[commandEnd] != ')') {
+			commandEnd--;
+		}
+		if (commandEnd < 0) {
+			throw new IOException("Invalid format of process stat file.");
+		}
+		
+		int position = commandEnd + 1;
+		for (int field = 0; field < NUMBER_OF_FIELDS; field++) {
+			int start = statFile.skipSpaces(position, length);
+			position = statFile.tokenEnd(start, length);
+			if (start == position) {
+				throw new IOException("Invalid format of process stat file.");
+			}
+			if (field == STATE) {
+				state = (char) data[start];
+			} else {
+				fields[field] = statFile.parseLong(start, position);
+			}
+		}
+		
+		// the fields which are not used, like nice, may be negative
+		if (fields[PARENT_PID] < 0 || fields[MINOR_FAULTS] < 0 || fields[MAJOR_FAULTS] < 0 || fields[USER_TIME] < 0 
+				|| fields[SYSTEM_TIME] < 0 || fields[CHILDREN_USER_TIME] < 0 || fields[CHILDREN_SYSTEM_TIME] < 0 
+				|| fields[NUMBER_OF_THREADS] < 0 || fields[VIRTUAL_MEMORY] < 0) {
+			throw new IOException("Invalid format of process stat file.");
+		}
+	}
+	
+	private void readStatus() throws IOException {
+		statusFile.read();
+		// kernel threads have no VmRSS line
+		residentMemory = 0;
+		while (statusFile.nextLine()) {
+			if (statusFile.lineStartsWith(RESIDENT_MEMORY_LINE_HEADER)) {
+				int end = statusFile.getLineEnd();
+				int valueStart = statusFile.skipSpaces(statusFile.getLineStart() 
+											+ RESIDENT_MEMORY_LINE_HEADER.length, end);
+				residentMemory = statusFile.parseLong(valueStart, statusFile.tokenEnd(valueStart, end));
+				if (residentMemory < 0) {
+					throw new IOException("Invalid format of process status file.");
+				}
+				return;
+			}
+		}
+	}
+	
+	int getParentPid() {
+		return (int) fields[PARENT_PID];
+	}
+	
+	private void readIO() throws IOException {
+		ioFile.read();
+		readBytes = 0;
+		writeBytes = 0;
+		while (ioFile.nextLine()) {
+			if (ioFile.lineStartsWith(READ_BYTES_LINE_HEADER)) {
+				readBytes = readIOValue(READ_BYTES_LINE_HEADER);
+			} else if (ioFile.lineStartsWith(WRITE_BYTES_LINE_HEADER)) {
+				writeBytes = readIOValue(WRITE_BYTES_LINE_HEADER);
+			}
+		}
+	}
+	
+	private long readIOValue(byte[] header) throws IOException {
+		int end = ioFile.getLineEnd();
+		int valueStart = ioFile.skipSpaces(ioFile.getLineStart() + header.length, end);
+		long value = ioFile.parseLong(valueStart, ioFile.tokenEnd(valueStart, end));
+		if (value < 0) {
+			throw new IOException("Invalid format of process io file.");
+		}
+		return value;
+	}
+	
+	boolean isZombie() {
+		return state == ZOMBIE_STATE;
+	}
+	
+	/**
+	 * Returns the time the process has been scheduled in user and kernel 
+	 * modes, in clock ticks.
+	 */
+	long getCPUTime() {
+		return fields[USER_TIME] + fields[SYSTEM_TIME];
+	}
+	
+	/**
+	 * Returns the time the children of the process which finished and were waited 
+	 * for by it, and their own waited-for children, have been scheduled in user and 
+	 * kernel modes, in clock ticks.
+	 */
+	long getChildrenCPUTime() {
+		return fields[CHILDREN_USER_TIME] + fields[CHILDREN_SYSTEM_TIME];
+	}
+	
+	long getMinorFaults() {
+		return fields[MINOR_FAULTS];
+	}
+	
+	long getMajorFaults() {
+		return fields[MAJOR_FAULTS];
+	}
+	
+	int getNumberOfThreads() {
+		return (int) fields[NUMBER_OF_THREADS];
+	}
+	
+	long getVirtualMemory() {
+		return fields[VIRTUAL_MEMORY] / BYTES_PER_KB;
+	}
+	
+	long getResidentMemory() {
+		return residentMemory;
+	}
+	
+	/**
+	 * Returns the bytes the process caused to be read from the storage, 
+	 * since it started.
+	 */
+	long getReadBytes() {
+		return readBytes;
+	}
+	
+	/**
+	 * Returns the bytes the process caused to be written to the storage, 
+	 * since it started.
+	 */
+	long getWriteBytes() {
+		return writeBytes;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			statFile.close();
+		} finally {
+			try {
+				statusFile.close();
+			} finally {
+				if (ioFile != null) {
+					ioFile.close();
+				}
+			}
+		}
+	}
+}
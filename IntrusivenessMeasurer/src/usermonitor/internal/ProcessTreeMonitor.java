@@ -0,0 +1,460 @@
+package usermonitor.internal;
+
+import static commons.Preconditions.check;
+import static commons.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import usermonitor.ProcessInfo;
+import usermonitor.ProcessMonitor;
+
+import commons.util.NumberParser;
+import commons.util.ProcFileReader;
+
+/**
+ * This implementation of ProcessMonitor sums the resources used by a process and 
+ * by all its descendants, like the child JVMs started by a Hadoop benchmark, 
+ * including the bytes read from and written to the storage. The files of each 
+ * process are read like in {@link DefaultProcessMonitor}.</br>
+ * </br>
+ * The descendants are discovered once in a given number of samples, not in every 
+ * sample. The children of each known process are read from the 
+ * /proc/[pid]/task/[tid]/children files when the kernel provides them. Otherwise, 
+ * the parent of every process under /proc is read from its stat file. Between two 
+ * discoveries, only the files of the known processes are read, and the processes 
+ * which finished are forgotten when their files can no longer be read.</br>
+ * </br>
+ * The CPU time of each process includes the time of its children which finished 
+ * and were waited for, which the kernel adds to the cutime and cstime of the parent. 
+ * So the time a descendant used between its last sample and its end, and the time 
+ * of the descendants which finished before they were discovered, is counted when 
+ * they are waited for by a process of the tree. The CPU time used by a descendant 
+ * before it is discovered is counted in the sample in which it is discovered. The 
+ * faults and the storage bytes of the descendants which finished are kept, so these 
+ * cumulative amounts never decrease.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProcessTreeMonitor implements ProcessMonitor {
+	
+	private static final Logger logger = LoggerFactory.getLogger(ProcessTreeMonitor.class);
+	
+	private static final String DEFAULT_PROC_DIRECTORY = "/proc";
+	private static final String DEFAULT_MEMORY_INFO_FILE = "/proc/meminfo";
+	private static final int DEFAULT_DISCOVERY_INTERVAL = 5;
+	private static final String TASK_DIRECTORY = "task";
+	private static final String CHILDREN_FILE = "children";
+	private static final String STAT_FILE = "stat";
+	private static final int PID_FILE_BUFFER_SIZE = 1024;
+	
+	/**
+	 * See {@link DefaultProcessMonitor}.
+	 */
+	private static final double CLOCK_TICKS_PER_SECOND = 100;
+	private static final double NANOSECONDS_PER_SECOND = 1000000000.0;
+	
+	private final int pid;
+	private final String procDirectory;
+	private final double totalMemory;
+	private final int discoveryInterval;
+	private final boolean childrenFilesSupported;
+	
+	/**
+	 * The processes of the tree, including the root, by pid.
+	 */
+	private final Map<Integer, TreeMember> members;
+	private final TreeMember root;
+	private int samplesSinceDiscovery;
+	private long lastSampleTime;
+	
+	/**
+	 * The amounts of the descendants which finished, as of their last sample.
+	 */
+	private long finishedMinorFaults;
+	private long finishedMajorFaults;
+	private long finishedReadBytes;
+	private long finishedWriteBytes;
+	
+	private static class TreeMember {
+		private final int pid;
+		private final ProcessStatReader files;
+		
+		/**
+		 * The CPU time of the process and of its waited-for children at the last sample.
+		 */
+		private long lastCPUTime;
+		private int parentPid;
+		
+		TreeMember(int pid, ProcessStatReader files, long lastCPUTime) {
+			this.pid = pid;
+			this.files = files;
+			this.lastCPUTime = lastCPUTime;
+		}
+		
+		long getCPUTime() {
+			return files.getCPUTime() + files.getChildrenCPUTime();
+		}
+	}
+	
+	/**
+	 * Constructs a new ProcessTreeMonitor for the process with the given pid and its 
+	 * descendants, which discovers the descendants once in every 5 samples.
+	 * 
+	 * @throws IOException If the process does not exist or its files could not be read.
+	 */
+	public ProcessTreeMonitor(int pid) throws IOException {
+		this(pid, DEFAULT_PROC_DIRECTORY, DEFAULT_MEMORY_INFO_FILE, DEFAULT_DISCOVERY_INTERVAL);
+	}
+	
+	/**
+	 * @param pid The pid of the root of the process tree.
+	 * @param procDirectory The directory which contains a directory for each process, 
+	 * named with its pid.
+	 * @param memoryInfoFilename The file which contains the total memory of the machine, 
+	 * in the format described in {@link MemoryInfoReader}.
+	 * @param discoveryInterval The number of samples between two discoveries of descendants. 
+	 * It must be positive.
+	 * @throws IOException If the process does not exist or its files could not be read.
+	 * @throws IllegalArgumentException If pid or discoveryInterval is not positive or any of 
+	 * the names is null.
+	 */
+	public ProcessTreeMonitor(int pid, String procDirectory, String memoryInfoFilename, 
+								int discoveryInterval) throws IOException {
+		check(pid > 0, "pid must be positive.");
+		checkNotNull(procDirectory, "procDirectory must not be null.");
+		checkNotNull(memoryInfoFilename, "memoryInfoFilename must not be null.");
+		check(discoveryInterval > 0, "discoveryInterval must be positive.");
+		
+		this.pid = pid;
+		this.procDirectory = procDirectory;
+		this.discoveryInterval = discoveryInterval;
+		this.members = new LinkedHashMap<Integer, TreeMember>();
+		
+		// the total memory is read only once, so the file is not kept open
+		MemoryInfoReader memoryInfoFile = new MemoryInfoReader(memoryInfoFilename);
+		try {
+			memoryInfoFile.read();
+			this.totalMemory = memoryInfoFile.getTotalMemory();
+		} finally {
+			memoryInfoFile.close();
+		}
+		
+		ProcessStatReader rootFiles = new ProcessStatReader(getProcessDirectory(pid));
+		rootFiles.read();
+		this.root = new TreeMember(pid, rootFiles, 0);
+		root.lastCPUTime = root.getCPUTime();
+		members.put(pid, root);
+		
+		this.childrenFilesSupported = new File(getProcessDirectory(pid) + File.separator + TASK_DIRECTORY 
+								+ File.separator + pid + File.separator + CHILDREN_FILE).exists();
+		
+		// the CPU time used by the processes which already exist is not counted
+		discover();
+		Iterator<TreeMember> iterator = members.values().iterator();
+		while (iterator.hasNext()) {
+			TreeMember member = iterator.next();
+			if (member != root && !readMember(member)) {
+				iterator.remove();
+			} else {
+				member.lastCPUTime = member.getCPUTime();
+			}
+		}
+		lastSampleTime = System.nanoTime();
+		
+		logger.info("Started monitoring process tree of {}, with {} processes.", pid, members.size());
+	}
+	
+	@Override
+	public int getPid() {
+		return pid;
+	}
+	
+	@Override
+	public boolean isRunning() {
+		try {
+			root.files.read();
+			return !root.files.isZombie();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	@Override
+	public ProcessInfo getProcessInfo() throws IOException {
+		root.files.read();
+		if (root.files.isZombie()) {
+			throw new IOException("Process " + pid + " has finished.");
+		}
+		if (++samplesSinceDiscovery >= discoveryInterval) {
+			discover();
+		}
+		
+		long sampleTime = System.nanoTime();
+		long cpuTime = 0;
+		long residentMemory = 0;
+		long virtualMemory = 0;
+		long minorFaults = 0;
+		long majorFaults = 0;
+		int numberOfThreads = 0;
+		int numberOfProcesses = 0;
+		long readBytes = 0;
+		long writeBytes = 0;
+		
+		Map<Integer, TreeMember> finished = null;
+		Iterator<TreeMember> iterator = members.values().iterator();
+		while (iterator.hasNext()) {
+			TreeMember member = iterator.next();
+			if (member != root && !readMember(member)) {
+				iterator.remove();
+				if (finished == null) {
+					finished = new HashMap<Integer, TreeMember>();
+				}
+				finished.put(member.pid, member);
+				finishedMinorFaults += member.files.getMinorFaults();
+				finishedMajorFaults += member.files.getMajorFaults();
+				finishedReadBytes += member.files.getReadBytes();
+				finishedWriteBytes += member.files.getWriteBytes();
+				continue;
+			}
+			
+			ProcessStatReader files = member.files;
+			long memberCPUTime = member.getCPUTime();
+			cpuTime += Math.max(0, memberCPUTime - member.lastCPUTime);
+			member.lastCPUTime = memberCPUTime;
+			minorFaults += files.getMinorFaults();
+			majorFaults += files.getMajorFaults();
+			readBytes += files.getReadBytes();
+			writeBytes += files.getWriteBytes();
+			// a zombie is kept until it is waited for, so its CPU time is not lost
+			if (!files.isZombie()) {
+				residentMemory += files.getResidentMemory();
+				virtualMemory += files.getVirtualMemory();
+				numberOfThreads += files.getNumberOfThreads();
+				numberOfProcesses++;
+			}
+		}
+		if (finished != null) {
+			cpuTime = Math.max(0, cpuTime - getCountedCPUTime(finished));
+		}
+		
+		double elapsedSeconds = (sampleTime - lastSampleTime) / NANOSECONDS_PER_SECOND;
+		lastSampleTime = sampleTime;
+		double cpuUsage = elapsedSeconds > 0 ? 100 * cpuTime / CLOCK_TICKS_PER_SECOND / elapsedSeconds : 0;
+		double memoryUsage = totalMemory > 0 ? 100 * residentMemory / totalMemory : 0;
+		return new ProcessInfo(pid, cpuUsage, memoryUsage, residentMemory, virtualMemory, 
+								finishedMinorFaults + minorFaults, finishedMajorFaults + majorFaults, 
+								numberOfThreads, numberOfProcesses, finishedReadBytes + readBytes, 
+								finishedWriteBytes + writeBytes);
+	}
+	
+	/*
+	 * The whole CPU time of a finished descendant was added to the children time 
+	 * of the process which waited for it. If that process is in the tree, directly 
+	 * or through other descendants which finished, the time counted in the last 
+	 * samples of the descendant was counted again in this sample.
+	 */
+	private long getCountedCPUTime(Map<Integer, TreeMember> finished) {
+		long counted = 0;
+		for (TreeMember member : finished.values()) {
+			int parent = member.parentPid;
+			// bounded, in case a finished pid was reused by another finished descendant
+			for (int i = 0; i < finished.size() && !members.containsKey(parent); i++) {
+				TreeMember finishedParent = finished.get(parent);
+				if (finishedParent == null) {
+					break;
+				}
+				parent = finishedParent.parentPid;
+			}
+			if (members.containsKey(parent)) {
+				counted += member.lastCPUTime;
+			}
+		}
+		return counted;
+	}
+	
+	/**
+	 * Reads the files of a descendant, closing them if it has finished and was 
+	 * waited for. A zombie is still read.
+	 * 
+	 * @return false if the descendant has finished.
+	 */
+	private boolean readMember(TreeMember member) {
+		try {
+			member.files.read();
+			member.parentPid = member.files.getParentPid();
+			return true;
+		} catch (IOException e) {
+			// the process has finished
+		}
+		close(member);
+		return false;
+	}
+	
+	private void discover() {
+		samplesSinceDiscovery = 0;
+		if (childrenFilesSupported) {
+			discoverFromChildrenFiles();
+		} else {
+			discoverFromParentPids();
+		}
+	}
+	
+	private void discoverFromChildrenFiles() {
+		List<Integer> toVisit = new ArrayList<Integer>(members.keySet());
+		for (int i = 0; i < toVisit.size(); i++) {
+			String[] tasks = new File(getProcessDirectory(toVisit.get(i)), TASK_DIRECTORY).list();
+			if (tasks == null) {
+				continue;
+			}
+			for (String task : tasks) {
+				String childrenFilename = getProcessDirectory(toVisit.get(i)) + File.separator + TASK_DIRECTORY 
+										+ File.separator + task + File.separator + CHILDREN_FILE;
+				for (int child : readPids(childrenFilename)) {
+					if (!members.containsKey(child) && addMember(child)) {
+						toVisit.add(child);
+					}
+				}
+			}
+		}
+	}
+	
+	private void discoverFromParentPids() {
+		String[] processes = new File(procDirectory).list();
+		if (processes == null) {
+			return;
+		}
+		
+		Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+		for (String process : processes) {
+			int candidate = parsePid(process);
+			if (candidate <= 0 || members.containsKey(candidate)) {
+				continue;
+			}
+			int parent = readParentPid(candidate);
+			if (parent > 0) {
+				List<Integer> siblings = children.get(parent);
+				if (siblings == null) {
+					siblings = new ArrayList<Integer>();
+					children.put(parent, siblings);
+				}
+				siblings.add(candidate);
+			}
+		}
+		
+		List<Integer> toVisit = new ArrayList<Integer>(members.keySet());
+		for (int i = 0; i < toVisit.size(); i++) {
+			List<Integer> found = children.get(toVisit.get(i));
+			if (found == null) {
+				continue;
+			}
+			for (int child : found) {
+				if (addMember(child)) {
+					toVisit.add(child);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Starts monitoring a new descendant. All its CPU time is counted in the next sample.
+	 * 
+	 * @return false if the descendant has already finished.
+	 */
+	private boolean addMember(int child) {
+		try {
+			ProcessStatReader files = new ProcessStatReader(getProcessDirectory(child));
+			members.put(child, new TreeMember(child, files, 0));
+			logger.debug("Found process {} in the tree of {}.", child, pid);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	private int readParentPid(int process) {
+		ProcFileReader statFile = null;
+		try {
+			statFile = new ProcFileReader(getProcessDirectory(process) + File.separator + STAT_FILE, 
+											PID_FILE_BUFFER_SIZE);
+			int length = statFile.read();
+			byte[] data = statFile.getData();
+			int position = length - 1;
+			while (position >= 0 && data[position] != ')') {
+				position--;
+			}
+			if (position < 0) {
+				return -1;
+			}
+			// the state is followed by the parent pid
+			int stateStart = statFile.skipSpaces(position + 1, length);
+			int parentStart = statFile.skipSpaces(statFile.tokenEnd(stateStart, length), length);
+			return (int) statFile.parseLong(parentStart, statFile.tokenEnd(parentStart, length));
+		} catch (IOException e) {
+			// the process has finished
+			return -1;
+		} finally {
+			closeQuietly(statFile);
+		}
+	}
+	
+	private List<Integer> readPids(String filename) {
+		List<Integer> pids = new ArrayList<Integer>();
+		ProcFileReader file = null;
+		try {
+			file = new ProcFileReader(filename, PID_FILE_BUFFER_SIZE);
+			int length = file.read();
+			int position = file.skipSpaces(0, length);
+			while (position < length) {
+				int end = file.tokenEnd(position, length);
+				long child = file.parseLong(position, end);
+				if (child > 0) {
+					pids.add((int) child);
+				}
+				position = end + 1;
+				position = file.skipSpaces(position, length);
+			}
+		} catch (IOException e) {
+			// the task has finished
+		} finally {
+			closeQuietly(file);
+		}
+		return pids;
+	}
+	
+	private static int parsePid(String name) {
+		long pid = NumberParser.parseLong(name, 0, name.length());
+		return pid > Integer.MAX_VALUE ? -1 : (int) pid;
+	}
+	
+	private String getProcessDirectory(int process) {
+		return procDirectory + File.separator + process;
+	}
+	
+	private static void close(TreeMember member) {
+		try {
+			member.files.close();
+		} catch (IOException e) {
+			logger.warn("Could not close the files of a finished process.", e);
+		}
+	}
+	
+	private static void closeQuietly(ProcFileReader file) {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+}
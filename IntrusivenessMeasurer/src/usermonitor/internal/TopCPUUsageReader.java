@@ -0,0 +1,97 @@
+package usermonitor.internal;
+
+import java.io.IOException;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the CPU usage from a file whose pattern is the pattern of a typical call 
+ * to top program. Only the usage of the whole machine is read. The expected pattern 
+ * is the following:</br>
+ * </br>
+ * [ignored line]</br>
+ * [ignored line]</br>
+ * Cpu(s):  {CPU user usage}%us,  {CPU system usage}%sy,  ignored, {CPU idle}%id,  ignored, ignored, ...</br>
+ * [ignored lines]</br>
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class TopCPUUsageReader implements CPUUsageReader {
+
+	private static final int IGNORED_LINES = 2;
+	private static final int USER_TOKEN = 1;
+	private static final int SYSTEM_TOKEN = 2;
+	private static final int IDLE_TOKEN = 4;
+	
+	private final ProcFileReader cpuUsageFile;
+	private final double[] usage = new double[NUMBER_OF_FIELDS];
+	
+	TopCPUUsageReader(String cpuUsageFilename) throws IOException {
+		cpuUsageFile = new ProcFileReader(cpuUsageFilename);
+	}
+	
+	@Override
+	public void read() throws IOException {
+		cpuUsageFile.read();
+		readCPUUsageLine();
+		
+		int end = cpuUsageFile.getLineEnd();
+		int position = cpuUsageFile.skipSpaces(cpuUsageFile.getLineStart(), end);
+		int token = 0;
+		double user = Double.NaN;
+		double system = Double.NaN;
+		double idle = Double.NaN;
+		while (position < end && token <= IDLE_TOKEN) {
+			int tokenEnd = cpuUsageFile.tokenEnd(position, end);
+			if (token == USER_TOKEN) {
+				user = parseUsage(position, tokenEnd);
+			} else if (token == SYSTEM_TOKEN) {
+				system = parseUsage(position, tokenEnd);
+			} else if (token == IDLE_TOKEN) {
+				idle = parseUsage(position, tokenEnd);
+			}
+			token++;
+			position = cpuUsageFile.skipSpaces(tokenEnd, end);
+		}
+		
+		if (token <= IDLE_TOKEN || Double.isNaN(user) || Double.isNaN(system) || Double.isNaN(idle)) {
+			throw new IOException("Invalid format of CPU usage file.");
+		}
+		usage[USER] = user;
+		usage[SYSTEM] = system;
+		usage[IDLE] = idle;
+	}
+
+	private void readCPUUsageLine() throws IOException {
+		for (int i = 0; i < IGNORED_LINES; i++) {
+			if (!cpuUsageFile.nextLine()) {
+				throw new IOException("Could not jump lines from the file.");
+			}
+		}
+		if (!cpuUsageFile.nextLine() || cpuUsageFile.isBlankLine()) {
+			throw new IOException("Could not find necessary data.");
+		}
+	}
+	
+	/**
+	 * The usage is the part of the token before the '%'.
+	 */
+	private double parseUsage(int start, int end) {
+		byte[] data = cpuUsageFile.getData();
+		int usageEnd = start;
+		while (usageEnd < end && data[usageEnd] != '%') {
+			usageEnd++;
+		}
+		return cpuUsageFile.parseDecimal(start, usageEnd);
+	}
+	
+	@Override
+	public int getNumberOfCores() {
+		return 0;
+	}
+
+	@Override
+	public double getUsage(int cpu, int field) {
+		return usage[field];
+	}
+}
@@ -0,0 +1,109 @@
+package usermonitor.internal;
+
+import java.io.IOException;
+
+import commons.util.ProcFileReader;
+
+/**
+ * Reads the paging activity from a file in the /proc/vmstat format, which has 
+ * one counter per line, accumulated since the boot:</br>
+ * </br>
+ * [ignored lines]</br>
+ * pswpin pages read from the swap</br>
+ * pswpout pages written to the swap</br>
+ * [ignored lines]</br>
+ * pgmajfault page faults which required reading from the disk</br>
+ * [ignored lines]</br>
+ * </br>
+ * Like {@link ProcStatReader}, the reader keeps the counters of the previous read 
+ * and the rates are the ones of the time elapsed between two reads. The file is 
+ * read once when the reader is created, so the first rates are the ones since then. 
+ * A missing counter is read as 0. No objects are created while reading.
+ * 
+ * @author Armstrong Mardilson da Silva Goes
+ */
+class VirtualMemoryStatsReader {
+	
+	static final int MAJOR_FAULT_RATE = 0;
+	static final int SWAP_IN_RATE = 1;
+	static final int SWAP_OUT_RATE = 2;
+	private static final int NUMBER_OF_COUNTERS = 3;
+	
+	/**
+	 * The line of each counter starts with the header in the position of its rate.
+	 */
+	private static final byte[][] LINE_HEADERS = {
+		"pgmajfault ".getBytes(),
+		"pswpin ".getBytes(),
+		"pswpout ".getBytes()
+	};
+	private static final double NANOSECONDS_PER_SECOND = 1000000000.0;
+	
+	private final ProcFileReader file;
+	private final long[] counters;
+	private final long[] previousCounters;
+	private final double[] rates;
+	private long lastReadTime;
+	
+	VirtualMemoryStatsReader(String virtualMemoryStatsFilename) throws IOException {
+		this.file = new ProcFileReader(virtualMemoryStatsFilename);
+		this.counters = new long[NUMBER_OF_COUNTERS];
+		this.previousCounters = new long[NUMBER_OF_COUNTERS];
+		this.rates = new double[NUMBER_OF_COUNTERS];
+		
+		lastReadTime = System.nanoTime();
+		read();
+		for (int counter = 0; counter < NUMBER_OF_COUNTERS; counter++) {
+			rates[counter] = 0;
+		}
+	}
+	
+	/**
+	 * Reads the file and updates the rates.
+	 * 
+	 * @throws IOException If the file could not be read or a counter is not numeric.
+	 */
+	void read() throws IOException {
+		file.read();
+		long readTime = System.nanoTime();
+		double elapsedSeconds = (readTime - lastReadTime) / NANOSECONDS_PER_SECOND;
+		lastReadTime = readTime;
+		
+		for (int counter = 0; counter < NUMBER_OF_COUNTERS; counter++) {
+			counters[counter] = 0;
+		}
+		while (file.nextLine()) {
+			for (int counter = 0; counter < NUMBER_OF_COUNTERS; counter++) {
+				if (file.lineStartsWith(LINE_HEADERS[counter])) {
+					counters[counter] = readCounter(LINE_HEADERS[counter]);
+					break;
+				}
+			}
+		}
+		
+		for (int counter = 0; counter < NUMBER_OF_COUNTERS; counter++) {
+			long delta = counters[counter] - previousCounters[counter];
+			if (elapsedSeconds > 0) {
+				rates[counter] = delta > 0 ? delta / elapsedSeconds : 0;
+			}
+			previousCounters[counter] = counters[counter];
+		}
+	}
+	
+	private long readCounter(byte[] header) throws IOException {
+		int end = file.getLineEnd();
+		int start = file.skipSpaces(file.getLineStart() + header.length, end);
+		long value = file.parseLong(start, file.tokenEnd(start, end));
+		if (value < 0) {
+			throw new IOException("Invalid format of virtual memory stats file.");
+		}
+		return value;
+	}
+	
+	/**
+	 * @param rate One of the rate constants of this class.
+	 */
+	double getRate(int rate) {
+		return rates[rate];
+	}
+}
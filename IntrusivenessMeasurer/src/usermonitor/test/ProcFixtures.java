@@ -0,0 +1,270 @@
+package usermonitor.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import usermonitor.internal.DefaultUserMonitor;
+
+/**
+ * Writes synthetic /proc and sysfs files, with the formats read by
+ * {@link DefaultUserMonitor}, into a directory. The sizes of the files
+ * are the ones of real machines with the given number of CPUs, so the
+ * tests and the benchmarks exercise the parsers with realistic inputs,
+ * like the cpuinfo file of a machine with 512 CPUs.
+ *
+ * @author Armstrong Mardilson da Silva Goes
+ */
+public class ProcFixtures {
+	
+	public static final String MEMORY_INFO_FILE = "meminfo";
+	public static final String CPU_CONFIGURATION_FILE = "cpuinfo";
+	public static final String CPU_USAGE_FILE = "stat";
+	public static final String CPU_ONLINE_FILE = "online";
+	public static final String CPU_SYSFS_DIRECTORY = "cpu";
+	public static final String DISK_STATS_FILE = "diskstats";
+	public static final String VIRTUAL_MEMORY_STATS_FILE = "vmstat";
+	public static final String PRESSURE_DIRECTORY = "pressure";
+	
+	private static final int NUMBER_OF_DISKS = 4;
+	private static final int PARTITIONS_PER_DISK = 3;
+	
+	private final File directory;
+	
+	public ProcFixtures(File directory) throws IOException {
+		this.directory = directory;
+		if (!directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Could not create " + directory + ".");
+		}
+	}
+	
+	public String getPath(String filename) {
+		return new File(directory, filename).getPath();
+	}
+	
+	/**
+	 * Returns the properties of a {@link DefaultUserMonitor} which reads the fixture files.
+	 */
+	public Properties getMonitorProperties() {
+		Properties properties = new Properties();
+		properties.put(DefaultUserMonitor.MEMORY_INFO_FILE, getPath(MEMORY_INFO_FILE));
+		properties.put(DefaultUserMonitor.CPU_CONFIGURATION_FILE, getPath(CPU_CONFIGURATION_FILE));
+		properties.put(DefaultUserMonitor.CPU_USAGE_FILE, getPath(CPU_USAGE_FILE));
+		properties.put(DefaultUserMonitor.CPU_ONLINE_FILE, getPath(CPU_ONLINE_FILE));
+		properties.put(DefaultUserMonitor.CPU_SYSFS_DIRECTORY, getPath(CPU_SYSFS_DIRECTORY));
+		properties.put(DefaultUserMonitor.DISK_STATS_FILE, getPath(DISK_STATS_FILE));
+		properties.put(DefaultUserMonitor.PRESSURE_DIRECTORY, getPath(PRESSURE_DIRECTORY));
+		properties.put(DefaultUserMonitor.VIRTUAL_MEMORY_STATS_FILE, getPath(VIRTUAL_MEMORY_STATS_FILE));
+		return properties;
+	}
+	
+	/**
+	 * Writes all the files of a machine with the given number of CPUs, whose
+	 * meminfo file has the given number of lines.
+	 */
+	public void writeMachine(int numberOfCPUs, int memoryInfoLines) throws IOException {
+		writeCPUConfigurationFile(numberOfCPUs);
+		writeCPUUsageFile(numberOfCPUs);
+		writeCPUOnlineFile(numberOfCPUs, false);
+		writeCPUFrequencyFiles(numberOfCPUs);
+		writeMemoryInfoFile(memoryInfoLines);
+		writeDiskStatsFile();
+		writeVirtualMemoryStatsFile();
+		writePressureFiles();
+	}
+	
+	/**
+	 * Writes a cpuinfo file with one block for each CPU, like the ones of the
+	 * machines with two Xeon sockets. The frequency of the CPU n is 2700 + n % 100 MHz
+	 * and the cache size is 39424 KB.
+	 */
+	public void writeCPUConfigurationFile(int numberOfCPUs) throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int cpu = 0; cpu < numberOfCPUs; cpu++) {
+			content.append("processor\t: ").append(cpu).append('\n');
+			content.append("vendor_id\t: GenuineIntel\n");
+			content.append("cpu family\t: 6\n");
+			content.append("model\t\t: 85\n");
+			content.append("model name\t: Intel(R) Xeon(R) Platinum 8280 CPU @ 2.70GHz\n");
+			content.append("stepping\t: 7\n");
+			content.append("microcode\t: 0x5003302\n");
+			content.append("cpu MHz\t\t: ").append(2700 + cpu % 100).append(".000\n");
+			content.append("cache size\t: 39424 KB\n");
+			content.append("physical id\t: ").append(cpu / 56).append('\n');
+			content.append("siblings\t: 56\n");
+			content.append("core id\t\t: ").append(cpu % 28).append('\n');
+			content.append("cpu cores\t: 28\n");
+			content.append("apicid\t\t: ").append(cpu).append('\n');
+			content.append("fpu\t\t: yes\n");
+			content.append("fpu_exception\t: yes\n");
+			content.append("cpuid level\t: 22\n");
+			content.append("wp\t\t: yes\n");
+			content.append("flags\t\t: fpu vme de pse tsc msr pae mce cx8 apic sep mtrr pge mca cmov pat ")
+					.append("pse36 clflush dts acpi mmx fxsr sse sse2 ss ht tm pbe syscall nx pdpe1gb ")
+					.append("rdtscp lm constant_tsc art arch_perfmon pebs bts rep_good nopl xtopology ")
+					.append("nonstop_tsc cpuid aperfmperf pni pclmulqdq dtes64 monitor ds_cpl vmx smx ")
+					.append("est tm2 ssse3 sdbg fma cx16 xtpr pdcm pcid dca sse4_1 sse4_2 x2apic movbe ")
+					.append("popcnt tsc_deadline_timer aes xsave avx f16c rdrand lahf_lm abm ")
+					.append("3dnowprefetch cpuid_fault epb cat_l3 cdp_l3 invpcid_single ssbd mba ibrs ")
+					.append("ibpb stibp ibrs_enhanced tpr_shadow vnmi flexpriority ept vpid fsgsbase ")
+					.append("tsc_adjust bmi1 hle avx2 smep bmi2 erms invpcid rtm cqm mpx rdt_a avx512f ")
+					.append("avx512dq rdseed adx smap clflushopt clwb intel_pt avx512cd avx512bw ")
+					.append("avx512vl xsaveopt xsavec xgetbv1 xsaves cqm_llc cqm_occup_llc ")
+					.append("cqm_mbm_total cqm_mbm_local dtherm ida arat pln pts pku ospke ")
+					.append("avx512_vnni md_clear flush_l1d arch_capabilities\n");
+			content.append("bugs\t\t: spectre_v1 spectre_v2 spec_store_bypass swapgs taa itlb_multihit\n");
+			content.append("bogomips\t: 5400.00\n");
+			content.append("clflush size\t: 64\n");
+			content.append("cache_alignment\t: 64\n");
+			content.append("address sizes\t: 46 bits physical, 48 bits virtual\n");
+			content.append("power management:\n");
+			content.append('\n');
+		}
+		write(CPU_CONFIGURATION_FILE, content);
+	}
+	
+	public void writeCPUUsageFile(int numberOfCPUs) throws IOException {
+		StringBuilder content = new StringBuilder();
+		content.append("cpu  ").append(numberOfCPUs * 10000L).append(" 120 ").append(numberOfCPUs * 3000L)
+				.append(' ').append(numberOfCPUs * 80000L).append(" 900 0 150 0 0 0\n");
+		for (int cpu = 0; cpu < numberOfCPUs; cpu++) {
+			content.append("cpu").append(cpu).append(" 10000 1 3000 80000 9 0 1 0 0 0\n");
+		}
+		content.append("intr 123456789");
+		for (int interrupt = 0; interrupt < 256; interrupt++) {
+			content.append(' ').append(interrupt % 7);
+		}
+		content.append('\n');
+		content.append("ctxt 987654321\n");
+		content.append("btime 1600000000\n");
+		content.append("processes 123456\n");
+		content.append("procs_running 2\n");
+		content.append("procs_blocked 0\n");
+		content.append("softirq 1234567 0 1 2 3 4 5 6 7 8 9\n");
+		write(CPU_USAGE_FILE, content);
+	}
+	
+	/**
+	 * @param alternate Whether to write the list with a trailing blank line,
+	 * which is the same set of CPUs in a different file content.
+	 */
+	public void writeCPUOnlineFile(int numberOfCPUs, boolean alternate) throws IOException {
+		StringBuilder content = new StringBuilder();
+		content.append("0-").append(numberOfCPUs - 1).append('\n');
+		if (alternate) {
+			content.append('\n');
+		}
+		write(CPU_ONLINE_FILE, content);
+	}
+	
+	/**
+	 * Writes the cpufreq and thermal_throttle files of each CPU.
+	 */
+	public void writeCPUFrequencyFiles(int numberOfCPUs) throws IOException {
+		for (int cpu = 0; cpu < numberOfCPUs; cpu++) {
+			File cpufreq = new File(directory, CPU_SYSFS_DIRECTORY + File.separator + "cpu" + cpu
+									+ File.separator + "cpufreq");
+			cpufreq.mkdirs();
+			write(new File(cpufreq, "scaling_cur_freq"), new StringBuilder().append(2700000 + cpu).append('\n'));
+			File thermalThrottle = new File(cpufreq.getParentFile(), "thermal_throttle");
+			thermalThrottle.mkdirs();
+			write(new File(thermalThrottle, "core_throttle_count"), new StringBuilder().append(cpu % 3).append('\n'));
+		}
+	}
+	
+	/**
+	 * Writes a meminfo file with the given number of lines. The lines which are
+	 * not read by the monitor are added before the swap lines, so the
+	 * whole file is scanned.
+	 */
+	public void writeMemoryInfoFile(int numberOfLines) throws IOException {
+		StringBuilder content = new StringBuilder();
+		content.append("MemTotal:       394937196 kB\n");
+		content.append("MemFree:        201387244 kB\n");
+		content.append("MemAvailable:   351258964 kB\n");
+		content.append("Buffers:          2107288 kB\n");
+		content.append("Cached:         143265876 kB\n");
+		for (int line = 7; line < numberOfLines; line++) {
+			content.append("Padding").append(line).append(":     ").append(line * 1024).append(" kB\n");
+		}
+		content.append("SwapTotal:       8388604 kB\n");
+		content.append("SwapFree:        8388604 kB\n");
+		write(MEMORY_INFO_FILE, content);
+	}
+	
+	public void writeDiskStatsFile() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int loop = 0; loop < 8; loop++) {
+			content.append("   7       ").append(loop).append(" loop").append(loop)
+					.append(" 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0\n");
+		}
+		for (int disk = 0; disk < NUMBER_OF_DISKS; disk++) {
+			String name = "sd" + (char) ('a' + disk);
+			content.append("   8      ").append(disk * 16).append(' ').append(name)
+					.append(" 1217352 358101 77302282 352146 1846272 2084617 118216904 3087914 0 1380432 ")
+					.append("3519776 0 0 0 0 207842 79714\n");
+			for (int partition = 1; partition <= PARTITIONS_PER_DISK; partition++) {
+				content.append("   8      ").append(disk * 16 + partition).append(' ').append(name)
+						.append(partition).append(" 405784 119367 25767427 117382 615424 694872 ")
+						.append("39405634 1029304 0 460144 1146630 0 0 0 0 0 0\n");
+			}
+		}
+		write(DISK_STATS_FILE, content);
+	}
+	
+	public void writeVirtualMemoryStatsFile() throws IOException {
+		StringBuilder content = new StringBuilder();
+		content.append("nr_free_pages 50346811\n");
+		for (int line = 0; line < 150; line++) {
+			content.append("nr_counter_").append(line).append(' ').append(line * 31).append('\n');
+		}
+		content.append("pswpin 120\n");
+		content.append("pswpout 310\n");
+		content.append("pgfault 987654321\n");
+		content.append("pgmajfault 12345\n");
+		for (int line = 0; line < 100; line++) {
+			content.append("pg_counter_").append(line).append(' ').append(line * 17).append('\n');
+		}
+		write(VIRTUAL_MEMORY_STATS_FILE, content);
+	}
+	
+	public void writePressureFiles() throws IOException {
+		new File(directory, PRESSURE_DIRECTORY).mkdirs();
+		String some = "some avg10=0.00 avg60=0.12 avg300=0.08 total=123456\n";
+		String full = "full avg10=0.00 avg60=0.05 avg300=0.02 total=65432\n";
+		write(PRESSURE_DIRECTORY + File.separator + "cpu", new StringBuilder(some).append(full));
+		write(PRESSURE_DIRECTORY + File.separator + "memory", new StringBuilder(some).append(full));
+		write(PRESSURE_DIRECTORY + File.separator + "io", new StringBuilder(some).append(full));
+	}
+	
+	/**
+	 * Deletes the directory and all the fixture files.
+	 */
+	public void delete() {
+		delete(directory);
+	}
+	
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+	
+	private void write(String filename, StringBuilder content) throws IOException {
+		write(new File(directory, filename), content);
+	}
+	
+	private static void write(File file, StringBuilder content) throws IOException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(content.toString().getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+}
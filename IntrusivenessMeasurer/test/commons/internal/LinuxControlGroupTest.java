@@ -0,0 +1,198 @@
+package commons.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.ControlGroup;
+import commons.test.FileBasedTest;
+
+public class LinuxControlGroupTest extends FileBasedTest {
+	
+	private static final String parentDirectory = toPath(getTestDataDirectory(), "cgroup");
+	private static final String groupName = "task";
+	private static final String groupDirectory = toPath(parentDirectory, groupName);
+	
+	private LinuxControlGroup group;
+	
+	@Before
+	public void setUp() throws Exception {
+		new File(parentDirectory).mkdirs();
+		write(toPath(parentDirectory, "cgroup.subtree_control"), "");
+		group = new LinuxControlGroup(parentDirectory, groupName);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		group.close();
+	}
+	
+	@Test
+	public void testConstructorCreatesGroupAndEnablesControllers() throws IOException {
+		assertTrue(new File(groupDirectory).isDirectory());
+		assertEquals(groupDirectory, group.getPath());
+		// a controller is enabled per write, so the fake file only keeps the last one
+		assertEquals("+io", read(toPath(parentDirectory, "cgroup.subtree_control")));
+	}
+	
+	@Test(expected = IOException.class)
+	public void constructorCannotReceiveNotExistentParentDirectory() throws IOException {
+		new LinuxControlGroup(toPath(getTestDataDirectory(), "notExistentDirectory"), groupName);
+	}
+	
+	@Test
+	public void testRead() throws IOException {
+		writeUsage(1500, 1000, 500, 4096, "8:0 rbytes=100 wbytes=200 rios=1 wios=2 dbytes=0 dios=0\n"
+				+ "8:16 rbytes=1000 wbytes=2000 rios=3 wios=4 dbytes=0 dios=0\n");
+		
+		group.read();
+		
+		assertEquals(1500, group.getCPUUsage());
+		assertEquals(1000, group.getUserCPUUsage());
+		assertEquals(500, group.getSystemCPUUsage());
+		assertEquals(4096, group.getMemoryUsage());
+		assertEquals(1100, group.getReadBytes());
+		assertEquals(2200, group.getWrittenBytes());
+		
+		writeUsage(3000, 2000, 1000, 8192, "8:0 rbytes=300 wbytes=400 rios=1 wios=2 dbytes=0 dios=0\n");
+		
+		group.read();
+		
+		assertEquals(3000, group.getCPUUsage());
+		assertEquals(2000, group.getUserCPUUsage());
+		assertEquals(1000, group.getSystemCPUUsage());
+		assertEquals(8192, group.getMemoryUsage());
+		assertEquals(300, group.getReadBytes());
+		assertEquals(400, group.getWrittenBytes());
+	}
+	
+	@Test
+	public void testReadWithoutControllers() throws IOException {
+		write(toPath(groupDirectory, "cpu.stat"), "usage_usec 10\nuser_usec 6\nsystem_usec 4\n");
+		
+		group.read();
+		
+		assertEquals(10, group.getCPUUsage());
+		assertEquals(-1, group.getMemoryUsage());
+		assertEquals(-1, group.getReadBytes());
+		assertEquals(-1, group.getWrittenBytes());
+		
+		write(toPath(groupDirectory, "memory.current"), "2048\n");
+		write(toPath(groupDirectory, "io.stat"), "");
+		
+		group.read();
+		
+		assertEquals(2048, group.getMemoryUsage());
+		assertEquals(0, group.getReadBytes());
+		assertEquals(0, group.getWrittenBytes());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testReadCorruptedCPUStat() throws IOException {
+		write(toPath(groupDirectory, "cpu.stat"), "usage_usec ten\n");
+		group.read();
+	}
+	
+	@Test
+	public void testLimits() throws IOException {
+		createControlFiles("cpu.max", "memory.high", "io.max");
+		
+		group.limitCPU(50000, 100000);
+		assertEquals("50000 100000", read(toPath(groupDirectory, "cpu.max")));
+		group.limitCPU(ControlGroup.UNLIMITED, 100000);
+		assertEquals("max 100000", read(toPath(groupDirectory, "cpu.max")));
+		
+		group.limitMemory(1048576);
+		assertEquals("1048576", read(toPath(groupDirectory, "memory.high")));
+		group.limitMemory(ControlGroup.UNLIMITED);
+		assertEquals("max", read(toPath(groupDirectory, "memory.high")));
+		
+		group.limitIO("8:0", 1024, ControlGroup.UNLIMITED);
+		assertEquals("8:0 rbps=1024 wbps=max", read(toPath(groupDirectory, "io.max")));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testLimitWithoutController() throws IOException {
+		group.limitMemory(1048576);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void limitCPUCannotReceiveNonPositiveQuota() throws IOException {
+		createControlFiles("cpu.max");
+		group.limitCPU(0, 100000);
+	}
+	
+	@Test
+	public void testIsPopulated() throws IOException {
+		write(toPath(groupDirectory, "cgroup.events"), "populated 1\nfrozen 0\n");
+		assertTrue(group.isPopulated());
+		
+		write(toPath(groupDirectory, "cgroup.events"), "populated 0\nfrozen 0\n");
+		assertFalse(group.isPopulated());
+	}
+	
+	@Test
+	public void testKill() throws IOException {
+		createControlFiles("cgroup.kill");
+		group.kill();
+		assertEquals("1", read(toPath(groupDirectory, "cgroup.kill")));
+	}
+	
+	@Test
+	public void testConfine() throws Exception {
+		String procs = toPath(groupDirectory, "cgroup.procs");
+		createControlFiles("cgroup.procs");
+		String[] command = group.confine(new String[] {"true"});
+		
+		assertArrayEquals(new String[] {"/bin/sh", "-c", "echo $$ > \"$0\" && exec \"$@\"", procs, "true"},
+				command);
+		
+		Process process = Runtime.getRuntime().exec(command);
+		assertEquals(0, process.waitFor());
+		assertTrue(read(procs).trim().matches("[0-9]+"));
+	}
+	
+	@Test
+	public void testDelete() throws IOException {
+		group.delete();
+		assertFalse(new File(groupDirectory).exists());
+	}
+	
+	private void writeUsage(long usage, long user, long system, long memory, String ioStat)
+			throws IOException {
+		write(toPath(groupDirectory, "cpu.stat"), "usage_usec " + usage + "\nuser_usec " + user
+				+ "\nsystem_usec " + system + "\nnr_periods 0\nnr_throttled 0\nthrottled_usec 0\n");
+		write(toPath(groupDirectory, "memory.current"), memory + "\n");
+		write(toPath(groupDirectory, "io.stat"), ioStat);
+	}
+	
+	private void createControlFiles(String ... names) throws IOException {
+		for (String name : names) {
+			write(toPath(groupDirectory, name), "");
+		}
+	}
+	
+	private static void write(String file, String content) throws IOException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(content.getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+	
+	private static String read(String file) throws IOException {
+		return FileUtils.fileRead(file);
+	}
+}
@@ -0,0 +1,210 @@
+package commons.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import commons.TimeSeriesCursor;
+import commons.test.FileBasedTest;
+
+public class MappedTimeSeriesStoreTest extends FileBasedTest {
+
+	@SuppressWarnings("static-access")
+	private final String dataDirectory = super.testDataDirectory;
+	private final String testStoreDirectory = dataDirectory + File.separator + "store";
+	private final int numberOfValues = 3;
+	// a header and 10 records of 3 values
+	private final int smallSegmentSize = 24 + 10 * 32;
+	
+	private MappedTimeSeriesStore store;
+	
+	@After
+	public void tearDown() throws IOException {
+		if (store != null) {
+			store.close();
+		}
+	}
+	
+	@Test
+	public void testAppendAndScan() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues);
+		appendRecords(0, 5);
+		
+		TimeSeriesCursor cursor = store.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+		for (int record = 0; record < 5; record++) {
+			assertTrue(cursor.next());
+			assertRecord(cursor, record);
+		}
+		assertFalse(cursor.next());
+		cursor.close();
+	}
+	
+	@Test
+	public void testScanTimeRangeAcrossSegments() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues, smallSegmentSize);
+		appendRecords(0, 35);
+		
+		assertEquals(4, new File(testStoreDirectory).list().length);
+		TimeSeriesCursor cursor = store.scan(timestamp(8), timestamp(22));
+		for (int record = 8; record <= 22; record++) {
+			assertTrue(cursor.next());
+			assertRecord(cursor, record);
+		}
+		assertFalse(cursor.next());
+		cursor.close();
+	}
+	
+	@Test
+	public void testScanEmptyRange() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues, smallSegmentSize);
+		appendRecords(0, 15);
+		
+		TimeSeriesCursor cursor = store.scan(timestamp(20), timestamp(30));
+		assertFalse(cursor.next());
+		cursor.close();
+	}
+	
+	@Test
+	public void testCursorSeesRecordsAppendedAfterItWasOpened() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues);
+		appendRecords(0, 2);
+		TimeSeriesCursor cursor = store.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertTrue(cursor.next());
+		assertTrue(cursor.next());
+		
+		appendRecords(2, 1);
+		
+		assertTrue(cursor.next());
+		assertRecord(cursor, 2);
+		cursor.close();
+	}
+	
+	@Test
+	public void testReopenedStoreAppendsToLastSegment() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues, smallSegmentSize);
+		appendRecords(0, 15);
+		store.close();
+		
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues, smallSegmentSize);
+		appendRecords(15, 10);
+		
+		assertEquals(3, new File(testStoreDirectory).list().length);
+		TimeSeriesCursor cursor = store.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+		for (int record = 0; record < 25; record++) {
+			assertTrue(cursor.next());
+			assertRecord(cursor, record);
+		}
+		assertFalse(cursor.next());
+		cursor.close();
+	}
+	
+	@Test
+	public void testAppendWithDecreasingTimestamp() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues);
+		appendRecords(5, 1);
+		
+		// the clock was stepped back
+		appendRecords(3, 1);
+		appendRecords(6, 1);
+		
+		TimeSeriesCursor cursor = store.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertTrue(cursor.next());
+		assertRecord(cursor, 5);
+		assertTrue(cursor.next());
+		assertEquals(timestamp(5), cursor.getTimestamp());
+		assertEquals(30, cursor.getValue(0), 0);
+		assertTrue(cursor.next());
+		assertRecord(cursor, 6);
+		assertFalse(cursor.next());
+		cursor.close();
+	}
+	
+	@Test
+	public void testReopenedStoreKeepsTheLastTimestamp() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues);
+		appendRecords(5, 1);
+		store.close();
+		
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues);
+		appendRecords(4, 1);
+		
+		TimeSeriesCursor cursor = store.scan(timestamp(5), timestamp(5));
+		assertTrue(cursor.next());
+		assertTrue(cursor.next());
+		assertEquals(timestamp(5), cursor.getTimestamp());
+		assertEquals(40, cursor.getValue(0), 0);
+		cursor.close();
+	}
+	
+	@Test
+	public void testAppendAndScanWithFieldNames() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, new String[] {"a", "b", "c"});
+		appendRecords(0, 1);
+		store.close();
+		
+		store = new MappedTimeSeriesStore(testStoreDirectory, new String[] {"a", "b", "c"});
+		TimeSeriesCursor cursor = store.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertTrue(cursor.next());
+		assertRecord(cursor, 0);
+		cursor.close();
+	}
+	
+	@Test
+	public void testAppendToStoreWithOtherFieldNames() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, new String[] {"a", "b", "c"});
+		appendRecords(0, 1);
+		store.close();
+		
+		// the same number of values, in another order
+		store = new MappedTimeSeriesStore(testStoreDirectory, new String[] {"b", "a", "c"});
+		try {
+			appendRecords(1, 1);
+			fail("the records of other fields must not be appended");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("other fields"));
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void testScanStoreWithOtherNumberOfValues() throws IOException {
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues);
+		appendRecords(0, 1);
+		store.close();
+		
+		store = new MappedTimeSeriesStore(testStoreDirectory, numberOfValues + 1);
+		store.scan(Long.MIN_VALUE, Long.MAX_VALUE).next();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructorWithTooSmallSegment() throws IOException {
+		new MappedTimeSeriesStore(testStoreDirectory, numberOfValues, 40);
+	}
+	
+	private void appendRecords(int first, int numberOfRecords) throws IOException {
+		double[] values = new double[numberOfValues];
+		for (int record = first; record < first + numberOfRecords; record++) {
+			for (int value = 0; value < numberOfValues; value++) {
+				values[value] = record * 10 + value;
+			}
+			store.append(timestamp(record), values);
+		}
+	}
+	
+	private long timestamp(int record) {
+		return 1000000 + record * 100;
+	}
+	
+	private void assertRecord(TimeSeriesCursor cursor, int record) {
+		assertEquals(timestamp(record), cursor.getTimestamp());
+		for (int value = 0; value < numberOfValues; value++) {
+			assertEquals(record * 10 + value, cursor.getValue(value), 0);
+		}
+	}
+}
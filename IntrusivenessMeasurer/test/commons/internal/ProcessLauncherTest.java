@@ -0,0 +1,159 @@
+package commons.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.test.FileBasedTest;
+
+public class ProcessLauncherTest extends FileBasedTest {
+	
+	private static final String outputFile = toPath(getTestDataDirectory(), "launcher.out");
+	private static final long timeLimit = 10;
+	
+	private ProcessLauncher launcher;
+	
+	@Before
+	public void setUp() {
+		new File(outputFile).delete();
+		launcher = new ProcessLauncher();
+	}
+	
+	@Test
+	public void testOutputIsWrittenToTheFile() throws Exception {
+		Process process = launcher.launch(new String[] {"sh", "-c", "echo out; echo err 1>&2"}, outputFile)
+				.get(timeLimit, TimeUnit.SECONDS);
+		
+		assertEquals(0, process.waitFor());
+		waitForTheOutput();
+		assertEquals("out\nerr\n", FileUtils.fileRead(outputFile));
+	}
+	
+	@Test
+	public void testArgumentsAreNotSplit() throws Exception {
+		Process process = launcher.launch(new String[] {"echo", "one argument"}, outputFile)
+				.get(timeLimit, TimeUnit.SECONDS);
+		
+		assertEquals(0, process.waitFor());
+		waitForTheOutput();
+		assertEquals("one argument\n", FileUtils.fileRead(outputFile));
+	}
+	
+	@Test
+	public void testOutputIsAppended() throws Exception {
+		launcher.launch(new String[] {"echo", "first"}, outputFile).get(timeLimit, TimeUnit.SECONDS).waitFor();
+		waitForTheOutput();
+		launcher.launch(new String[] {"echo", "second"}, outputFile).get(timeLimit, TimeUnit.SECONDS).waitFor();
+		waitForTheOutput();
+		
+		assertEquals("first\nsecond\n", FileUtils.fileRead(outputFile));
+	}
+	
+	@Test
+	public void testLargeOutputIsDrained() throws Exception {
+		// much more than a pipe holds, so the process would block if it was not drained
+		Process process = launcher.launch(new String[] {"sh", "-c", "head -c 1048576 /dev/zero"}, null)
+				.get(timeLimit, TimeUnit.SECONDS);
+		
+		long limit = System.currentTimeMillis() + timeLimit * 1000;
+		while (isRunning(process) && System.currentTimeMillis() < limit) {
+			Thread.sleep(10);
+		}
+		assertFalse(isRunning(process));
+		assertEquals(0, process.exitValue());
+		waitForTheOutput();
+	}
+	
+	@Test
+	public void testSpawnLatencies() throws Exception {
+		launcher.launch(new String[] {"true"}, null).get(timeLimit, TimeUnit.SECONDS).waitFor();
+		launcher.launch(new String[] {"true"}, null).get(timeLimit, TimeUnit.SECONDS).waitFor();
+		
+		assertEquals(2, launcher.getSpawnLatencies().getCount());
+		assertTrue(launcher.getSpawnLatencies().getMaximum() > 0);
+	}
+	
+	@Test
+	public void testProcessWhichCannotBeStarted() throws Exception {
+		Future<Process> process = launcher.launch(new String[] {toPath(getTestDataDirectory(), "notExistentFile")},
+				outputFile);
+		
+		try {
+			process.get(timeLimit, TimeUnit.SECONDS);
+			fail("the process must not be started");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals(0, launcher.getSpawnLatencies().getCount());
+		assertEquals(0, launcher.getNumberOfDrainedProcesses());
+	}
+	
+	@Test
+	public void testLinuxProcessIsStartedByTheLauncher() throws Exception {
+		LinuxProcess process = new LinuxProcess("sleep 0.2", launcher, null);
+		// it is not searched by name before it is executed
+		assertFalse(process.isRunning());
+		process.execute();
+		
+		assertTrue(process.isRunning());
+		long limit = System.currentTimeMillis() + timeLimit * 1000;
+		while (process.isRunning() && System.currentTimeMillis() < limit) {
+			Thread.sleep(10);
+		}
+		assertFalse(process.isRunning());
+		assertEquals(1, launcher.getSpawnLatencies().getCount());
+	}
+	
+	@Test
+	public void testLinuxProcessWhichCannotBeStartedIsNotRunning() throws Exception {
+		LinuxProcess process = new LinuxProcess(toPath(getTestDataDirectory(), "notExistentFile"), launcher, null);
+		process.execute();
+		
+		// it is taken as running until the launcher tries to start it
+		long limit = System.currentTimeMillis() + timeLimit * 1000;
+		while (process.isRunning() && System.currentTimeMillis() < limit) {
+			Thread.sleep(10);
+		}
+		assertFalse(process.isRunning());
+		process.terminate();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void launchCannotReceiveNullCommand() {
+		launcher.launch(null, null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void launchCannotReceiveEmptyCommand() {
+		launcher.launch(new String[0], null);
+	}
+	
+	private static boolean isRunning(Process process) {
+		try {
+			process.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
+		}
+	}
+	
+	private void waitForTheOutput() throws InterruptedException {
+		long limit = System.currentTimeMillis() + timeLimit * 1000;
+		while (launcher.getNumberOfDrainedProcesses() > 0 && System.currentTimeMillis() < limit) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, launcher.getNumberOfDrainedProcesses());
+	}
+}
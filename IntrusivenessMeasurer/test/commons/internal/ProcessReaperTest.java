@@ -0,0 +1,97 @@
+package commons.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.ExitListener;
+import commons.SystemProcess;
+
+public class ProcessReaperTest {
+	
+	private static final long timeLimit = 5;
+	
+	private ProcessReaper reaper;
+	private BlockingQueue<SystemProcess> exited;
+	private ExitListener listener;
+	
+	@Before
+	public void setUp() {
+		reaper = new ProcessReaper();
+		exited = new LinkedBlockingQueue<SystemProcess>();
+		listener = new ExitListener() {
+			@Override
+			public void exited(SystemProcess process) {
+				exited.add(process);
+			}
+		};
+	}
+	
+	@Test
+	public void testListenersAreCalledInTheOrderTheProcessesExit() throws Exception {
+		SystemProcess first = createMock(SystemProcess.class);
+		SystemProcess second = createMock(SystemProcess.class);
+		expect(first.isRunning()).andReturn(true).times(2);
+		expect(first.isRunning()).andReturn(false);
+		expect(second.isRunning()).andReturn(false);
+		replay(first, second);
+		
+		reaper.watch(first, listener);
+		reaper.watch(second, listener);
+		
+		assertSame(second, exited.poll(timeLimit, TimeUnit.SECONDS));
+		assertSame(first, exited.poll(timeLimit, TimeUnit.SECONDS));
+		assertEquals(0, reaper.getNumberOfWatchedProcesses());
+	}
+	
+	@Test
+	public void testProcessWhichCanNotBeCheckedIsNotWatched() throws Exception {
+		SystemProcess process = createMock(SystemProcess.class);
+		expect(process.isRunning()).andThrow(new IOException());
+		expect(process.getName()).andReturn("exerciser").anyTimes();
+		replay(process);
+		
+		reaper.watch(process, listener);
+		
+		assertSame(process, exited.poll(timeLimit, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testReaperRestartsAfterAllProcessesExited() throws Exception {
+		SystemProcess process = createMock(SystemProcess.class);
+		expect(process.isRunning()).andReturn(false).times(2);
+		replay(process);
+		
+		reaper.watch(process, listener);
+		assertSame(process, exited.poll(timeLimit, TimeUnit.SECONDS));
+		// the thread may still be finishing
+		reaper.watch(process, listener);
+		assertSame(process, exited.poll(timeLimit, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testRealProcess() throws Exception {
+		LinuxProcess process = new LinuxProcess(new String[] {"sleep", "0.2"}, new ProcessLauncher(), null);
+		process.execute();
+		
+		reaper.watch(process, listener);
+		
+		assertSame(process, exited.poll(timeLimit, TimeUnit.SECONDS));
+		assertEquals(false, process.isRunning());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void watchCannotReceiveNullListener() {
+		reaper.watch(createMock(SystemProcess.class), null);
+	}
+}
@@ -0,0 +1,108 @@
+package commons.internal;
+
+import static commons.util.FileUtil.toPath;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.internal.ProcessTable.Snapshot;
+import commons.test.FileBasedTest;
+
+public class ProcessTableTest extends FileBasedTest {
+	
+	private static final String procDirectory = toPath(getTestDataDirectory(), "proc");
+	private static final long longInterval = 60000;
+	
+	@Before
+	public void setUp() throws IOException {
+		createProcess(1, "systemd\n", "/sbin/init\0splash\0");
+		createProcess(42, "memory\n", "/home/user/exercisers/bin/memory\0" + "1000\0" + "10\0");
+		createProcess(43, "memory\n", "exercisers/bin/memory\0" + "2000\0" + "10\0");
+		// a kernel thread
+		createProcess(2, "kthreadd\n", "");
+		new File(toPath(procDirectory, "self")).mkdirs();
+		write(toPath(procDirectory, "uptime"), "100.0 200.0\n");
+	}
+	
+	@Test
+	public void testSnapshot() throws IOException {
+		Snapshot snapshot = new ProcessTable(procDirectory, longInterval).getSnapshot();
+		
+		assertEquals(4, snapshot.getNumberOfProcesses());
+		assertEquals(asList(42, 43), snapshot.getPids("memory"));
+		assertEquals(asList(42), snapshot.getPids("/home/user/exercisers/bin/memory"));
+		assertEquals(asList(43), snapshot.getPids("exercisers/bin/memory"));
+		assertEquals(asList(1), snapshot.getPids("init"));
+		assertEquals(asList(1), snapshot.getPids("systemd"));
+		assertTrue(snapshot.contains("kthreadd"));
+		// the names are not matched partially
+		assertFalse(snapshot.contains("bin/memory"));
+		assertFalse(snapshot.contains("splash"));
+		assertEquals(0, snapshot.getPids("self").size());
+	}
+	
+	@Test
+	public void testSnapshotIsReusedDuringTheRefreshInterval() throws IOException {
+		ProcessTable table = new ProcessTable(procDirectory, longInterval);
+		Snapshot snapshot = table.getSnapshot();
+		createProcess(50, "cpu\n", "cpu\0");
+		
+		assertSame(snapshot, table.getSnapshot());
+		assertFalse(table.getSnapshot().contains("cpu"));
+		assertEquals(1, table.getNumberOfScans());
+	}
+	
+	@Test
+	public void testSnapshotIsRefreshedAfterTheRefreshInterval() throws IOException {
+		ProcessTable table = new ProcessTable(procDirectory, 0);
+		Snapshot snapshot = table.getSnapshot();
+		createProcess(50, "cpu\n", "cpu\0");
+		
+		assertNotSame(snapshot, table.getSnapshot());
+		assertTrue(table.getSnapshot().contains("cpu"));
+		assertEquals(3, table.getNumberOfScans());
+	}
+	
+	@Test
+	public void testRealProcessTable() throws IOException {
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		int pid = Integer.parseInt(name.substring(0, name.indexOf('@')));
+		
+		Snapshot snapshot = new ProcessTable("/proc", longInterval).getSnapshot();
+		
+		assertTrue(snapshot.getNumberOfProcesses() > 0);
+		assertTrue(snapshot.getPids("java").contains(pid));
+	}
+	
+	@Test(expected = IOException.class)
+	public void snapshotCannotBeReadFromNotExistentDirectory() throws IOException {
+		new ProcessTable(toPath(getTestDataDirectory(), "notExistentDirectory"), longInterval).getSnapshot();
+	}
+	
+	private static void createProcess(int pid, String comm, String cmdline) throws IOException {
+		String processDirectory = toPath(procDirectory, String.valueOf(pid));
+		new File(processDirectory).mkdirs();
+		write(toPath(processDirectory, "comm"), comm);
+		write(toPath(processDirectory, "cmdline"), cmdline);
+	}
+	
+	private static void write(String file, String content) throws IOException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(content.getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+}
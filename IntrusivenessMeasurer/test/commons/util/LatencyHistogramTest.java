@@ -0,0 +1,85 @@
+package commons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+	
+	private LatencyHistogram histogram;
+	
+	@Before
+	public void setUp() {
+		histogram = new LatencyHistogram();
+	}
+	
+	@Test
+	public void testEmptyHistogram() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getMaximum());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+	
+	@Test
+	public void testSmallValuesAreExact() {
+		for (long value = 1; value <= 50; value++) {
+			histogram.record(value);
+		}
+		assertEquals(50, histogram.getCount());
+		assertEquals(25.5, histogram.getMean(), 0);
+		assertEquals(50, histogram.getMaximum());
+		assertEquals(25, histogram.getPercentile(50));
+		assertEquals(50, histogram.getPercentile(100));
+		assertEquals(1, histogram.getPercentile(0));
+	}
+	
+	@Test
+	public void testPercentilesOfLargeValues() {
+		for (long value = 1; value <= 100000; value++) {
+			histogram.record(value * 1000);
+		}
+		assertWithinError(50000000, histogram.getPercentile(50));
+		assertWithinError(99000000, histogram.getPercentile(99));
+		assertWithinError(99900000, histogram.getPercentile(99.9));
+		assertEquals(100000000, histogram.getPercentile(100));
+		assertEquals(100000000, histogram.getMaximum());
+	}
+	
+	@Test
+	public void testBucketsCoverAllValues() {
+		long[] values = {0, 63, 64, 65, 127, 128, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+		for (long value : values) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			long highest = LatencyHistogram.highestValueOf(bucket);
+			assertTrue(highest >= value);
+			assertWithinError(value, highest);
+		}
+	}
+	
+	@Test
+	public void testReset() {
+		histogram.record(1000);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMaximum());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void recordCannotReceiveNegativeValue() {
+		histogram.record(-1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void getPercentileCannotReceivePercentileGreaterThan100() {
+		histogram.getPercentile(100.1);
+	}
+	
+	private static void assertWithinError(long expected, long actual) {
+		assertTrue(actual + " is not close to " + expected, 
+				Math.abs(actual - expected) <= expected / 32.0 + 1);
+	}
+}
@@ -0,0 +1,88 @@
+package commons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NumberParserTest {
+	
+	private static final double testDeltaError = 0.0000001;
+	
+	@Test
+	public void testParseLong() {
+		assertEquals(0, parseLong("0"));
+		assertEquals(12345, parseLong("12345"));
+		assertEquals(7, parseLong("007"));
+		assertEquals(Long.MAX_VALUE, parseLong(String.valueOf(Long.MAX_VALUE)));
+	}
+	
+	@Test
+	public void testParseLongInRange() {
+		byte[] data = "cpu0 123 456".getBytes();
+		assertEquals(123, NumberParser.parseLong(data, 5, 8));
+		assertEquals(456, NumberParser.parseLong(data, 9, 12));
+		assertEquals(0, NumberParser.parseLong("cpu0", 3, 4));
+	}
+	
+	@Test
+	public void testParseLongRejectsInvalidNumbers() {
+		assertEquals(-1, parseLong(""));
+		assertEquals(-1, parseLong("-1"));
+		assertEquals(-1, parseLong("1.5"));
+		assertEquals(-1, parseLong("12a"));
+		assertEquals(-1, parseLong(" 12"));
+		assertEquals(-1, parseLong("9223372036854775808"));
+		assertEquals(-1, parseLong("99999999999999999999"));
+	}
+	
+	@Test
+	public void testParseDecimal() {
+		assertEquals(96, parseDecimal("96"), testDeltaError);
+		assertEquals(96.6, parseDecimal("96.6"), testDeltaError);
+		assertEquals(0.5, parseDecimal(".5"), testDeltaError);
+		assertEquals(5, parseDecimal("5."), testDeltaError);
+		assertEquals(2700.123, parseDecimal("2700.123"), testDeltaError);
+		assertEquals(12345678901234567890.5, parseDecimal("12345678901234567890.5"), 1);
+	}
+	
+	@Test
+	public void testParseDecimalIsCorrectlyRounded() {
+		assertEquals(Double.parseDouble("0.1"), parseDecimal("0.1"), 0);
+		assertEquals(Double.parseDouble("55.01"), parseDecimal("55.01"), 0);
+		assertEquals(Double.parseDouble("394937196"), parseDecimal("394937196"), 0);
+	}
+	
+	@Test
+	public void testParseDecimalRejectsInvalidNumbers() {
+		assertTrue(Double.isNaN(parseDecimal("")));
+		assertTrue(Double.isNaN(parseDecimal(".")));
+		assertTrue(Double.isNaN(parseDecimal("--..")));
+		assertTrue(Double.isNaN(parseDecimal("-1")));
+		assertTrue(Double.isNaN(parseDecimal("1.2.3")));
+		assertTrue(Double.isNaN(parseDecimal("1word0")));
+		assertTrue(Double.isNaN(parseDecimal("12 ")));
+	}
+	
+	@Test
+	public void testParseDecimalFromChars() {
+		assertEquals(96.6, NumberParser.parseDecimal("x96.6%", 1, 5), testDeltaError);
+		assertTrue(Double.isNaN(NumberParser.parseDecimal("--..", 0, 4)));
+	}
+	
+	@Test
+	public void testIsNumeric() {
+		assertTrue(StringUtil.isNumeric("12.5"));
+		assertFalse(StringUtil.isNumeric("--.."));
+		assertFalse(StringUtil.isNumeric(""));
+	}
+	
+	private static long parseLong(String number) {
+		return NumberParser.parseLong(number.getBytes(), 0, number.length());
+	}
+	
+	private static double parseDecimal(String number) {
+		return NumberParser.parseDecimal(number.getBytes(), 0, number.length());
+	}
+}
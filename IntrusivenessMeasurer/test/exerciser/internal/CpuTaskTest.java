@@ -0,0 +1,180 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.ControlGroup;
+import commons.ExitListener;
+import commons.OperatingSystem;
+import commons.SystemProcess;
+import commons.test.FileBasedTest;
+
+import exerciser.TaskType;
+
+public class CpuTaskTest extends FileBasedTest {
+
+	private OperatingSystem testSystem;
+	private SystemProcess generatedProcess;
+	private ControlGroup controlGroup;
+	private static final String exerciser = toPath(getTestDataDirectory(), "exerciser");
+	private static final String controlFile = toPath(getTestDataDirectory(), "cpu.control");
+	private static final int threads = 2;
+	private static final int percentage = 50;
+	private static final int timeout = 10;
+	private static final int[] cores = {0, 3};
+	private static final String[] expectedArguments = {exerciser, "2", "50", "10", controlFile, "0", "3"};
+	private static final String[] confinedCommand = {"/bin/sh", "-c", "confine", exerciser};
+	
+	private CpuTask task;
+	
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(exerciser);
+		file.createNewFile();
+		file.setExecutable(true);
+		
+		testSystem = createStrictMock(OperatingSystem.class);
+		generatedProcess = createStrictMock(SystemProcess.class);
+		controlGroup = createStrictMock(ControlGroup.class);
+		
+		task = new CpuTask(testSystem, exerciser, controlFile, threads, percentage, timeout, cores);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNonPositiveThreads() throws IOException {
+		task = new CpuTask(testSystem, exerciser, controlFile, 0, percentage, timeout, cores);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceivePercentageGreaterThan100() throws IOException {
+		task = new CpuTask(testSystem, exerciser, controlFile, threads, 101, timeout, cores);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNegativeCore() throws IOException {
+		task = new CpuTask(testSystem, exerciser, controlFile, threads, percentage, timeout, new int[] {-1});
+	}
+	
+	@Test
+	public void testType() {
+		assertEquals(TaskType.CPU, task.type());
+	}
+	
+	@Test
+	public void testRunAndTerminate() throws IOException {
+		// starting the process
+		expect(testSystem.execute(aryEq(expectedArguments))).andReturn(generatedProcess);
+		
+		expectLastCall();
+		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), isA(ExitListener.class));
+		
+		// stopping the process
+		expect(generatedProcess.isRunning()).andReturn(true);
+		
+		expectLastCall();
+		generatedProcess.terminate();
+		
+		replayMocks();
+		
+		task.run();
+		assertEquals("50\n", FileUtils.fileRead(controlFile));
+		task.terminate();
+		
+		verifyMocks();
+	}
+	
+	@Test
+	public void testRunWithoutPinning() throws IOException {
+		task = new CpuTask(testSystem, exerciser, controlFile, threads, percentage, timeout, new int[0]);
+		
+		expect(testSystem.execute(aryEq(new String[] {exerciser, "2", "50", "10", controlFile}))).andReturn(generatedProcess);
+		
+		expectLastCall();
+		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), isA(ExitListener.class));
+		
+		replayMocks();
+		
+		task.run();
+		
+		verifyMocks();
+	}
+	
+	@Test
+	public void testSetPercentage() throws IOException {
+		task.setPercentage(80);
+		assertEquals(80, task.getPercentage());
+		assertEquals("80\n", FileUtils.fileRead(controlFile));
+		
+		task.setPercentage(0);
+		assertEquals(0, task.getPercentage());
+		assertEquals("0\n", FileUtils.fileRead(controlFile));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void setPercentageCannotReceiveNegativePercentage() throws IOException {
+		task.setPercentage(-1);
+	}
+	
+	@Test
+	public void testRunAndTerminateInControlGroup() throws IOException {
+		task = new CpuTask(testSystem, exerciser, controlFile, threads, percentage, timeout, cores, 
+				controlGroup);
+		
+		// starting the process
+		expect(controlGroup.getPath()).andReturn(getTestDataDirectory());
+		expect(controlGroup.confine(aryEq(expectedArguments))).andReturn(confinedCommand);
+		expect(testSystem.execute(aryEq(confinedCommand))).andReturn(generatedProcess);
+		
+		expectLastCall();
+		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), isA(ExitListener.class));
+		
+		// getting running information
+		expect(controlGroup.isPopulated()).andReturn(true);
+		
+		// stopping the process
+		expect(controlGroup.isPopulated()).andReturn(true);
+		
+		expectLastCall();
+		controlGroup.kill();
+		
+		// getting running information
+		expect(controlGroup.isPopulated()).andReturn(false);
+		
+		replayMocks();
+		
+		task.run();
+		assertTrue(task.isRunning());
+		task.terminate();
+		assertFalse(task.isRunning());
+		
+		verifyMocks();
+	}
+	
+	private void replayMocks() {
+		replay(testSystem, generatedProcess, controlGroup);
+	}
+	
+	private void verifyMocks() {
+		verify(testSystem, generatedProcess, controlGroup);
+	}
+}
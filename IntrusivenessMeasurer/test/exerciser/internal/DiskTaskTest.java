@@ -0,0 +1,151 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import commons.test.FileBasedTest;
+
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+import exerciser.internal.DiskTask.Pattern;
+
+public class DiskTaskTest extends FileBasedTest {
+	
+	private static final String file = toPath(getTestDataDirectory(), "disk-task");
+	private static final int blockSize = 4096;
+	private static final long fileSize = 64 * blockSize;
+	private static final int timeout = 10;
+	
+	private DiskTask task;
+	
+	@After
+	public void tearDown() throws IOException {
+		if (task != null) {
+			task.terminate();
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveFileSmallerThanBlock() {
+		task = new DiskTask(file, blockSize - 1, Pattern.SEQUENTIAL_WRITE, blockSize, 1, 
+				DiskTask.UNLIMITED, 0, false, timeout);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNonPositiveQueueDepth() {
+		task = new DiskTask(file, fileSize, Pattern.SEQUENTIAL_WRITE, blockSize, 0, 
+				DiskTask.UNLIMITED, 0, false, timeout);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveBypassCacheForReads() {
+		task = new DiskTask(file, fileSize, Pattern.RANDOM_READ, blockSize, 1, 
+				DiskTask.UNLIMITED, 0, true, timeout);
+	}
+	
+	@Test
+	public void testFileWhichCannotBeFilled() throws Exception {
+		// every write to /dev/full fails because there is no space left
+		task = new DiskTask("/dev/full", fileSize, Pattern.SEQUENTIAL_READ, blockSize, 1, 
+				DiskTask.UNLIMITED, 0, false, timeout);
+		
+		try {
+			task.run();
+			fail("the file must not be filled");
+		} catch (IOException e) {
+			assertFalse(task.isRunning());
+		}
+	}
+	
+	@Test
+	public void testSequentialWrite() throws Exception {
+		task = new DiskTask(file, fileSize, Pattern.SEQUENTIAL_WRITE, blockSize, 2, 
+				DiskTask.UNLIMITED, 16, false, timeout);
+		assertEquals(TaskType.DISK, task.type());
+		assertFalse(task.isRunning());
+		
+		task.run();
+		assertTrue(task.isRunning());
+		Thread.sleep(100);
+		task.terminate();
+		
+		assertFalse(task.isRunning());
+		assertTrue(task.getTransferredBytes() > 0);
+		assertEquals(task.getTransferredBytes(), task.getLatencies().getCount() * blockSize);
+		assertTrue(task.getThroughput() > 0);
+		assertEquals(fileSize, new File(file).length());
+	}
+	
+	@Test
+	public void testRandomReadFillsTheFile() throws Exception {
+		task = new DiskTask(file, fileSize, Pattern.RANDOM_READ, blockSize, 4, 
+				DiskTask.UNLIMITED, 0, false, timeout);
+		
+		task.run();
+		assertEquals(fileSize, new File(file).length());
+		Thread.sleep(100);
+		task.terminate();
+		
+		assertTrue(task.getLatencies().getCount() > 0);
+		assertTrue(task.getLatencies().getPercentile(99) <= task.getLatencies().getMaximum());
+	}
+	
+	@Test
+	public void testTargetThroughput() throws Exception {
+		long targetThroughput = 100 * blockSize;
+		task = new DiskTask(file, fileSize, Pattern.SEQUENTIAL_READ, blockSize, 4, 
+				targetThroughput, 0, false, timeout);
+		
+		task.run();
+		Thread.sleep(500);
+		task.terminate();
+		
+		// about 50 blocks in 500 ms
+		long blocks = task.getTransferredBytes() / blockSize;
+		assertTrue(blocks + " blocks", blocks >= 25 && blocks <= 55);
+		assertTrue(task.getThroughput() <= targetThroughput * 1.1);
+	}
+	
+	@Test
+	public void testTimeout() throws Exception {
+		task = new DiskTask(file, fileSize, Pattern.RANDOM_WRITE, blockSize, 1, 
+				DiskTask.UNLIMITED, 1, true, 0);
+		
+		task.run();
+		for (int i = 0; i < 100 && task.isRunning(); i++) {
+			Thread.sleep(10);
+		}
+		
+		assertFalse(task.isRunning());
+		assertEquals(0, task.getTransferredBytes());
+	}
+	
+	@Test
+	public void testMonitorIsNotifiedWhenTheWorkersFinish() throws Exception {
+		TaskMonitor monitor = createStrictMock(TaskMonitor.class);
+		task = new DiskTask(file, fileSize, Pattern.SEQUENTIAL_WRITE, blockSize, 2, 
+				DiskTask.UNLIMITED, 0, false, 0);
+		task.setMonitor(monitor);
+		
+		monitor.completed(task);
+		replay(monitor);
+		
+		task.run();
+		// the workers are joined, so the last one has already notified the monitor
+		task.terminate();
+		
+		verify(monitor);
+	}
+}
@@ -0,0 +1,151 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.test.FileBasedTest;
+
+import exerciser.internal.FileOperationReplayer.Buffer;
+import exerciser.internal.FileOperationReplayer.Result;
+
+public class FileOperationReplayerTest extends FileBasedTest {
+	
+	private static final String scratchDirectory = toPath(getTestDataDirectory(), "scratch");
+	private static final String fileInformation = "(/>/home/user>/home/user/output>0>S_IFREG|0644>12)";
+	private static final int O_WRONLY_CREAT_TRUNC = 01101;
+	private static final int O_RDONLY = 0;
+	
+	private FileOperationReplayer replayer;
+	private Buffer buffer;
+	
+	@Before
+	public void setUp() throws IOException {
+		replayer = new FileOperationReplayer(scratchDirectory);
+		buffer = new Buffer();
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		replayer.closeAll();
+	}
+	
+	@Test
+	public void testWriteAndRead() throws IOException {
+		File output = new File(toPath(scratchDirectory, "home", "user", "output"));
+		
+		assertReplayed("open", "/home/user", "output", O_WRONLY_CREAT_TRUNC, 438, 3);
+		assertReplayed("write", fileInformation, 3, 8192, 8192);
+		assertReplayed("write", fileInformation, 3, 100, 100);
+		assertReplayed("close", 3, 0);
+		assertEquals(8292, output.length());
+		assertEquals(0, replayer.getNumberOfOpenDescriptors());
+		
+		assertReplayed("open", "/home", "user/output", O_RDONLY, 0, 4);
+		assertReplayed("llseek", 4, 0, 8000, "SEEK_SET", 8000);
+		assertReplayed("read", fileInformation, 4, 4096, 292);
+		assertReplayed("fstat", 4, 0);
+		assertReplayed("close", 4, 0);
+		assertEquals(8292, output.length());
+	}
+	
+	@Test
+	public void testReadGrowsMissingFile() throws IOException {
+		assertReplayed("open", "/data", "input", O_RDONLY, 0, 3);
+		assertReplayed("read", "(/>/data>/data/input>0>S_IFREG|0644>1)", 3, 65536, 65536);
+		assertReplayed("read", "(/>/data>/data/input>0>S_IFREG|0644>1)", 3, 65536, 1000);
+		
+		assertEquals(66536, new File(toPath(scratchDirectory, "data", "input")).length());
+	}
+	
+	@Test
+	public void testDuplicatedDescriptorsShareTheFile() throws IOException {
+		assertReplayed("open", "/home/user", "output", O_WRONLY_CREAT_TRUNC, 438, 3);
+		assertReplayed("dup", 3, 5);
+		assertReplayed("dup2", 3, 1, 1);
+		assertEquals(3, replayer.getNumberOfOpenDescriptors());
+		
+		assertReplayed("close", 3, 0);
+		assertReplayed("write", fileInformation, 5, 10, 10);
+		assertReplayed("close", 5, 0);
+		assertReplayed("write", fileInformation, 1, 10, 10);
+		assertReplayed("close", 1, 0);
+		
+		assertEquals(20, new File(toPath(scratchDirectory, "home", "user", "output")).length());
+		assertEquals(0, replayer.getNumberOfOpenDescriptors());
+	}
+	
+	@Test
+	public void testDescriptorsOpenedBeforeTheTrace() throws IOException {
+		assertReplayed("write", fileInformation, 9, 10, 10);
+		assertEquals(10, new File(toPath(scratchDirectory, "home", "user", "output")).length());
+		
+		assertSkipped("write", "(/>/home/user>pipe:[1234]>0>S_IFIFO|0600>3)", 1, 10, 10);
+		assertSkipped("close", 12, 0);
+	}
+	
+	@Test
+	public void testFailedCallsAreNotReplayed() throws IOException {
+		assertSkipped("open", "/home/user", "missing", O_RDONLY, 0, -2);
+		assertFalse(new File(toPath(scratchDirectory, "home", "user", "missing")).exists());
+	}
+	
+	@Test
+	public void testDirectoryCalls() throws IOException {
+		assertReplayed("mkdir", "/tmp", "job/attempt", 493, 0);
+		assertTrue(new File(toPath(scratchDirectory, "tmp", "job", "attempt")).isDirectory());
+		
+		assertReplayed("open", "/tmp/job", "attempt/part", O_WRONLY_CREAT_TRUNC, 438, 3);
+		assertReplayed("close", 3, 0);
+		assertReplayed("rename", "/tmp/job", "attempt/part", "part-0", 0);
+		assertReplayed("stat", "/tmp/job", "part-0", 0);
+		assertReplayed("getxattr", "/tmp/job", "part-0", 0);
+		assertTrue(new File(toPath(scratchDirectory, "tmp", "job", "part-0")).exists());
+		
+		assertReplayed("unlink", "/tmp/job", "part-0", 0);
+		assertReplayed("rmdir", "/tmp", "job/attempt", 0);
+		assertFalse(new File(toPath(scratchDirectory, "tmp", "job", "attempt")).exists());
+	}
+	
+	@Test
+	public void testPathsDoNotLeaveTheScratchDirectory() {
+		assertEquals(new File(toPath(scratchDirectory, "etc", "passwd")), 
+				replayer.toScratchFile("/home", "../../../etc/./passwd"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testSeekBeforeTheStartOfTheFile() throws IOException {
+		assertReplayed("open", "/home/user", "output", O_WRONLY_CREAT_TRUNC, 438, 3);
+		// the traced file was longer than the replayed one
+		replay("llseek", 3, -1, -100, "SEEK_END", 900);
+	}
+	
+	@Test(expected = IOException.class)
+	public void testInvalidCall() throws IOException {
+		replay("close", "three", 0);
+	}
+	
+	private void assertReplayed(String call, Object ... arguments) throws IOException {
+		assertEquals(Result.REPLAYED, replay(call, arguments));
+	}
+	
+	private void assertSkipped(String call, Object ... arguments) throws IOException {
+		assertEquals(Result.SKIPPED, replay(call, arguments));
+	}
+	
+	private Result replay(String call, Object ... arguments) throws IOException {
+		String[] values = new String[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			values[i] = String.valueOf(arguments[i]);
+		}
+		return replayer.replay(new SyscallRecord(100, 101, call, 0, 1, values), buffer);
+	}
+}
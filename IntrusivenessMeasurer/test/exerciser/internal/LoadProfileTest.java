@@ -0,0 +1,107 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import commons.test.FileBasedTest;
+
+public class LoadProfileTest extends FileBasedTest {
+	
+	private static final String baseFilename = toPath(getTestDataDirectory(), "terasort");
+	private static final double delta = 0.0001;
+	
+	@Test
+	public void testGetUsages() {
+		LoadProfile profile = new LoadProfile(new long[] {1000, 2000, 1000}, new double[] {10, 250, 50}, 
+				new double[] {5, 20, 15});
+		
+		assertEquals(3, profile.getNumberOfSamples());
+		assertEquals(4000, profile.getDuration());
+		assertEquals(250, profile.getMaximumCPUUsage(), delta);
+		
+		assertEquals(10, profile.getCPUUsage(0), delta);
+		assertEquals(10, profile.getCPUUsage(999), delta);
+		assertEquals(250, profile.getCPUUsage(1000), delta);
+		assertEquals(20, profile.getMemoryUsage(2999), delta);
+		assertEquals(50, profile.getCPUUsage(3000), delta);
+		assertEquals(15, profile.getMemoryUsage(10000), delta);
+	}
+	
+	@Test
+	public void testReadWithFixedTimeBetweenChecks() throws IOException {
+		write(".cpu", "process=100\nstart time=01-01-2014-10-00-00\ntime between checks=0.5\n"
+				+ "0.0\n98.5\n187.0\nstop time=01-01-2014-10-00-02\n"
+				+ "process=200\nstart time=02-01-2014-10-00-00\ntime between checks=0.5\n12.0\n");
+		write(".mem", "process=100\nstart time=01-01-2014-10-00-00\ntime between checks=0.5\n"
+				+ "1.2\n10.4\n");
+		
+		LoadProfile profile = LoadProfile.read(baseFilename);
+		
+		assertEquals(2, profile.getNumberOfSamples());
+		assertEquals(1000, profile.getDuration());
+		assertEquals(0, profile.getCPUUsage(0), delta);
+		assertEquals(98.5, profile.getCPUUsage(500), delta);
+		assertEquals(10.4, profile.getMemoryUsage(500), delta);
+	}
+	
+	@Test
+	public void testReadWithAdaptiveTimeBetweenChecks() throws IOException {
+		String header = "process=100\nstart time=01-01-2014-10-00-00\ntime between checks=1:10\n";
+		write(".cpu", header + "50.0\n50.0\n200.0\nstop time=01-01-2014-10-00-21\n");
+		write(".mem", header + "3.0\n3.0\n8.0\nstop time=01-01-2014-10-00-21\n");
+		write(".proc", header + "columns=rss vsz minor_faults major_faults threads processes read_bytes "
+				+ "write_bytes period\n100 200 0 0 1 1 0 0 1000\n100 200 0 0 1 1 0 0 10000\n"
+				+ "300 400 0 0 4 2 0 0 10000\nstop time=01-01-2014-10-00-21\n");
+		
+		LoadProfile profile = LoadProfile.read(baseFilename);
+		
+		assertEquals(3, profile.getNumberOfSamples());
+		assertEquals(21000, profile.getDuration());
+		assertEquals(50, profile.getCPUUsage(10999), delta);
+		assertEquals(200, profile.getCPUUsage(11000), delta);
+		assertEquals(8, profile.getMemoryUsage(11000), delta);
+	}
+	
+	@Test(expected = IOException.class)
+	public void adaptiveTimeBetweenChecksNeedsTheProcessFile() throws IOException {
+		write(".cpu", "process=100\ntime between checks=1:10\n50.0\n");
+		write(".mem", "process=100\ntime between checks=1:10\n3.0\n");
+		
+		LoadProfile.read(baseFilename);
+	}
+	
+	@Test(expected = IOException.class)
+	public void readCannotReceiveInvalidSample() throws IOException {
+		write(".cpu", "process=100\ntime between checks=1\n50.0\nerror\n");
+		write(".mem", "process=100\ntime between checks=1\n3.0\n3.0\n");
+		
+		LoadProfile.read(baseFilename);
+	}
+	
+	@Test(expected = IOException.class)
+	public void readCannotReceiveFilesWithoutSamples() throws IOException {
+		write(".cpu", "process=100\ntime between checks=1\n");
+		write(".mem", "process=100\ntime between checks=1\n");
+		
+		LoadProfile.read(baseFilename);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveMemoryUsageGreaterThan100() {
+		new LoadProfile(new long[] {1000}, new double[] {10}, new double[] {101});
+	}
+	
+	private static void write(String extension, String content) throws IOException {
+		FileOutputStream stream = new FileOutputStream(baseFilename + extension);
+		try {
+			stream.write(content.getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+}
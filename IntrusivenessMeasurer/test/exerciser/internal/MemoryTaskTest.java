@@ -1,36 +1,49 @@
 package exerciser.internal;
 
 import static commons.util.FileUtil.toPath;
-import static commons.util.StringUtil.concat;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createStrictMock;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 
+import org.codehaus.plexus.util.FileUtils;
+import org.easymock.Capture;
 import org.junit.Before;
 import org.junit.Test;
 
+import commons.ControlGroup;
+import commons.ExitListener;
 import commons.OperatingSystem;
 import commons.SystemProcess;
 import commons.test.FileBasedTest;
 
+import exerciser.TaskMonitor;
+
 public class MemoryTaskTest extends FileBasedTest {
 
 	private OperatingSystem testSystem;
 	private SystemProcess generatedProcess;
+	private ControlGroup controlGroup;
 	private static final String exerciser = toPath(getTestDataDirectory(), "exerciser");
 	private static final String notExistentFile = toPath(getTestDataDirectory(), "notExistentFile");
 	private static final String notExecutableFile = toPath(getTestDataDirectory(), "notExecutableFile");
 	private static final int amountOfBytesToAllocate = 1000;
 	private static final int timeout = 10;
-	private static final String expectedCommand = concat(exerciser, " ", String.valueOf(amountOfBytesToAllocate), " ", String.valueOf(timeout));
+	private static final String[] expectedArguments = {exerciser, String.valueOf(amountOfBytesToAllocate), String.valueOf(timeout)};
+	private static final String controlFile = toPath(getTestDataDirectory(), "memory.control");
+	private static final long largeAmountOfBytes = 6L * 1024 * 1024 * 1024;
+	private static final String[] confinedCommand = {"/bin/sh", "-c", "confine", exerciser};
 	
 	private MemoryTask task;
 	
@@ -41,6 +54,7 @@ public class MemoryTaskTest extends FileBasedTest {
 		
 		testSystem = createStrictMock(OperatingSystem.class);
 		generatedProcess = createStrictMock(SystemProcess.class);
+		controlGroup = createStrictMock(ControlGroup.class);
 		
 		task = new MemoryTask(testSystem, exerciser, amountOfBytesToAllocate, timeout);
 	}
@@ -70,13 +84,14 @@ public class MemoryTaskTest extends FileBasedTest {
 	@Test
 	public void testRunAndTerminate() throws IOException {
 		// starting the process
-		expect(testSystem.execute(eq(expectedCommand))).andReturn(generatedProcess);
+		expect(testSystem.execute(aryEq(expectedArguments))).andReturn(generatedProcess);
 		
 		expectLastCall();
 		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), isA(ExitListener.class));
 		
 		// stopping the process
-		expect(testSystem.isRunning(exerciser)).andReturn(true);
+		expect(generatedProcess.isRunning()).andReturn(true);
 		
 		expectLastCall();
 		generatedProcess.terminate();
@@ -92,22 +107,82 @@ public class MemoryTaskTest extends FileBasedTest {
 	@Test
 	public void testIsRunning() throws IOException {
 		// starting the process
-		expect(testSystem.execute(eq(expectedCommand))).andReturn(generatedProcess);
+		expect(testSystem.execute(aryEq(expectedArguments))).andReturn(generatedProcess);
 		
 		expectLastCall();
 		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), isA(ExitListener.class));
 		
 		// getting running information
-		expect(testSystem.isRunning(exerciser)).andReturn(true);
+		expect(generatedProcess.isRunning()).andReturn(true);
 		
 		// stopping the process
-		expect(testSystem.isRunning(exerciser)).andReturn(true);
+		expect(generatedProcess.isRunning()).andReturn(true);
 		
 		expectLastCall();
 		generatedProcess.terminate();
 		
+		replayMocks();
+		
+		task.run();
+		assertTrue(task.isRunning());
+		task.terminate();
+		assertFalse(task.isRunning());
+		
+		verifyMocks();
+	}
+
+	@Test
+	public void testMonitorIsNotifiedWhenTheExerciserExits() throws IOException {
+		TaskMonitor monitor = createStrictMock(TaskMonitor.class);
+		Capture<ExitListener> listener = new Capture<ExitListener>();
+		task.setMonitor(monitor);
+		
+		// starting the process
+		expect(testSystem.execute(aryEq(expectedArguments))).andReturn(generatedProcess);
+		
+		expectLastCall();
+		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), capture(listener));
+		
+		// exiting
+		expectLastCall();
+		monitor.completed(task);
+		
+		replayMocks();
+		replay(monitor);
+		
+		task.run();
+		listener.getValue().exited(generatedProcess);
+		
+		verifyMocks();
+		verify(monitor);
+	}
+	
+	@Test
+	public void testRunAndTerminateInControlGroup() throws IOException {
+		task = new MemoryTask(testSystem, exerciser, amountOfBytesToAllocate, timeout, controlGroup);
+		
+		// starting the process
+		expect(controlGroup.getPath()).andReturn(getTestDataDirectory());
+		expect(controlGroup.confine(aryEq(expectedArguments))).andReturn(confinedCommand);
+		expect(testSystem.execute(aryEq(confinedCommand))).andReturn(generatedProcess);
+		
+		expectLastCall();
+		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), isA(ExitListener.class));
+		
+		// getting running information
+		expect(controlGroup.isPopulated()).andReturn(true);
+		
+		// stopping the process
+		expect(controlGroup.isPopulated()).andReturn(true);
+		
+		expectLastCall();
+		controlGroup.kill();
+		
 		// getting running information
-		expect(testSystem.isRunning(exerciser)).andReturn(false);
+		expect(controlGroup.isPopulated()).andReturn(false);
 		
 		replayMocks();
 		
@@ -118,12 +193,57 @@ public class MemoryTaskTest extends FileBasedTest {
 		
 		verifyMocks();
 	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNullControlGroup() throws IOException {
+		task = new MemoryTask(testSystem, exerciser, amountOfBytesToAllocate, timeout, null);
+	}
 
+	@Test
+	public void testRunWithControlFile() throws IOException {
+		task = new MemoryTask(testSystem, exerciser, controlFile, largeAmountOfBytes, timeout);
+		
+		expect(testSystem.execute(aryEq(new String[] {exerciser, "6442450944", "10", controlFile}))).andReturn(generatedProcess);
+		
+		expectLastCall();
+		generatedProcess.execute();
+		testSystem.watch(eq(generatedProcess), isA(ExitListener.class));
+		
+		replayMocks();
+		
+		task.run();
+		assertEquals("6442450944\n", FileUtils.fileRead(controlFile));
+		
+		verifyMocks();
+	}
+	
+	@Test
+	public void testSetAmountOfBytesToAllocate() throws IOException {
+		task = new MemoryTask(testSystem, exerciser, controlFile, amountOfBytesToAllocate, timeout);
+		
+		task.setAmountOfBytesToAllocate(largeAmountOfBytes);
+		assertEquals(largeAmountOfBytes, task.getAmountOfBytesToAllocate());
+		assertEquals("6442450944\n", FileUtils.fileRead(controlFile));
+		
+		task.setAmountOfBytesToAllocate(0);
+		assertEquals("0\n", FileUtils.fileRead(controlFile));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void amountWithoutControlFileCannotBeChanged() throws IOException {
+		task.setAmountOfBytesToAllocate(amountOfBytesToAllocate);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNullControlFile() throws IOException {
+		task = new MemoryTask(testSystem, exerciser, null, largeAmountOfBytes, timeout);
+	}
+	
 	private void replayMocks() {
-		replay(testSystem, generatedProcess);
+		replay(testSystem, generatedProcess, controlGroup);
 	}
 	
 	private void verifyMocks() {
-		verify(testSystem, generatedProcess);
+		verify(testSystem, generatedProcess, controlGroup);
 	}
 }
@@ -0,0 +1,180 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static exerciser.internal.OffHeapMemoryTask.UNLIMITED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import commons.test.FileBasedTest;
+
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+
+public class OffHeapMemoryTaskTest extends FileBasedTest {
+	
+	private static final long megabyte = 1024 * 1024;
+	private static final String mappingDirectory = toPath(getTestDataDirectory(), "segments");
+	private static final long timeLimit = 5000;
+	
+	private OffHeapMemoryTask task;
+	
+	@After
+	public void tearDown() throws IOException {
+		if (task != null) {
+			task.terminate();
+		}
+	}
+	
+	@Test
+	public void testType() {
+		task = new OffHeapMemoryTask(megabyte, 10, UNLIMITED, 0, UNLIMITED);
+		assertEquals(TaskType.MEMORY, task.type());
+	}
+	
+	@Test
+	public void testAllocateAndRelease() throws Exception {
+		// more than a segment, which is not a multiple of the page size
+		long amount = 70 * megabyte + 100;
+		task = new OffHeapMemoryTask(amount, 10, UNLIMITED, 0, UNLIMITED);
+		
+		task.run();
+		assertTrue(task.isRunning());
+		waitForTouchedBytes(amount);
+		assertEquals(amount, task.getAllocatedBytes());
+		
+		task.setAmountOfBytesToAllocate(3 * megabyte);
+		waitForTouchedBytes(3 * megabyte);
+		assertEquals(3 * megabyte, task.getAllocatedBytes());
+		
+		task.terminate();
+		assertFalse(task.isRunning());
+		assertEquals(0, task.getAllocatedBytes());
+	}
+	
+	@Test
+	public void testTouchRate() throws Exception {
+		long amount = 4 * megabyte;
+		task = new OffHeapMemoryTask(amount, 10, 20 * megabyte, 0, UNLIMITED);
+		
+		long start = System.currentTimeMillis();
+		task.run();
+		waitForTouchedBytes(amount);
+		
+		assertTrue(System.currentTimeMillis() - start >= 180);
+	}
+	
+	@Test
+	public void testWorkingSetIsRewritten() throws Exception {
+		task = new OffHeapMemoryTask(2 * megabyte, 10, UNLIMITED, 0.5, UNLIMITED);
+		
+		task.run();
+		waitForTouchedBytes(2 * megabyte);
+		long deadline = System.currentTimeMillis() + timeLimit;
+		while (task.getRewrittenBytes() < 4 * megabyte && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		assertTrue(task.getRewrittenBytes() >= 4 * megabyte);
+	}
+	
+	@Test
+	public void testWorkingSetIsRewrittenAfterGrowingFromUnalignedAmount() throws Exception {
+		// the short segment of the first amount is kept between two full segments
+		long amount = 64 * megabyte + 4096;
+		task = new OffHeapMemoryTask(amount, 10, UNLIMITED, 1, UNLIMITED);
+		
+		task.run();
+		waitForTouchedBytes(amount);
+		task.setAmountOfBytesToAllocate(2 * amount);
+		waitForTouchedBytes(2 * amount);
+		long deadline = System.currentTimeMillis() + timeLimit;
+		while (task.getRewrittenBytes() < 4 * amount && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		assertTrue(task.isRunning());
+		assertEquals(2 * amount, task.getAllocatedBytes());
+		assertTrue(task.getRewrittenBytes() >= 4 * amount);
+	}
+	
+	@Test
+	public void testReleaseAfterTimeout() throws Exception {
+		task = new OffHeapMemoryTask(megabyte, 0, UNLIMITED, 0, UNLIMITED);
+		
+		task.run();
+		waitForEnd();
+		
+		assertEquals(0, task.getAllocatedBytes());
+		assertEquals(0, task.getTouchedBytes());
+	}
+	
+	@Test
+	public void testMonitorIsNotifiedWhenTheMemoryIsReleased() throws Exception {
+		TaskMonitor monitor = createStrictMock(TaskMonitor.class);
+		task = new OffHeapMemoryTask(megabyte, 10, UNLIMITED, 0, UNLIMITED);
+		task.setMonitor(monitor);
+		
+		monitor.completed(task);
+		replay(monitor);
+		
+		task.run();
+		waitForTouchedBytes(megabyte);
+		task.terminate();
+		
+		assertFalse(task.isRunning());
+		verify(monitor);
+	}
+	
+	@Test
+	public void testMappedSegments() throws Exception {
+		task = new OffHeapMemoryTask(mappingDirectory, 2 * megabyte, 10, UNLIMITED, 0, UNLIMITED);
+		
+		task.run();
+		waitForTouchedBytes(2 * megabyte);
+		
+		// the files are deleted right after they are mapped
+		assertEquals(0, new File(mappingDirectory).list().length);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveWorkingSetFractionGreaterThan1() {
+		task = new OffHeapMemoryTask(megabyte, 10, UNLIMITED, 1.5, UNLIMITED);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNullMappingDirectory() {
+		task = new OffHeapMemoryTask(null, megabyte, 10, UNLIMITED, 0, UNLIMITED);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void setAmountOfBytesToAllocateCannotReceiveNegativeAmount() {
+		task = new OffHeapMemoryTask(megabyte, 10, UNLIMITED, 0, UNLIMITED);
+		task.setAmountOfBytesToAllocate(-1);
+	}
+	
+	private void waitForTouchedBytes(long bytes) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeLimit;
+		while (task.getTouchedBytes() != bytes && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(bytes, task.getTouchedBytes());
+	}
+	
+	private void waitForEnd() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeLimit;
+		while (task.isRunning() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(task.isRunning());
+	}
+}
@@ -0,0 +1,222 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import commons.ControlGroup;
+import commons.ExitListener;
+import commons.OperatingSystem;
+import commons.SystemProcess;
+import commons.test.FileBasedTest;
+
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+
+public class ProfileTaskTest extends FileBasedTest {
+	
+	private OperatingSystem testSystem;
+	private SystemProcess cpuProcess;
+	private SystemProcess memoryProcess;
+	private ControlGroup controlGroup;
+	private static final String cpuExerciser = toPath(getTestDataDirectory(), "cpu");
+	private static final String memoryExerciser = toPath(getTestDataDirectory(), "memory");
+	private static final String cpuControlFile = toPath(getTestDataDirectory(), "cpu.control");
+	private static final String memoryControlFile = toPath(getTestDataDirectory(), "memory.control");
+	private static final long totalMemory = 1000000000;
+	private static final double compression = 4;
+	private static final double tolerance = 5;
+	private static final long nanosecondsPerMillisecond = 1000000;
+	// 40 seconds compressed 4 times, plus a second
+	private static final String[] expectedCPUCommand = {cpuExerciser, "3", "50", "11", cpuControlFile};
+	private static final String[] expectedMemoryCommand = {memoryExerciser, "100000000", "11", memoryControlFile};
+	
+	private LoadProfile profile;
+	private ProfileTask task;
+	
+	@Before
+	public void setUp() throws Exception {
+		createExecutableFile(cpuExerciser);
+		createExecutableFile(memoryExerciser);
+		
+		testSystem = createStrictMock(OperatingSystem.class);
+		cpuProcess = createStrictMock(SystemProcess.class);
+		memoryProcess = createStrictMock(SystemProcess.class);
+		controlGroup = createStrictMock(ControlGroup.class);
+		
+		profile = new LoadProfile(new long[] {10000, 20000, 10000}, new double[] {150, 250, 30}, 
+				new double[] {10, 40, 20});
+		task = new ProfileTask(testSystem, cpuExerciser, memoryExerciser, getTestDataDirectory(), profile, 
+				totalMemory, compression, tolerance);
+	}
+	
+	private static void createExecutableFile(String name) throws IOException {
+		File file = new File(name);
+		file.createNewFile();
+		file.setExecutable(true);
+	}
+	
+	@Test
+	public void testType() {
+		assertEquals(TaskType.PROFILE, task.type());
+	}
+	
+	@Test
+	public void testThreadsReachTheGreatestUsage() {
+		assertEquals(3, task.getThreads());
+	}
+	
+	@Test
+	public void testFollowCompressedProfile() throws IOException {
+		task.control(0);
+		assertEquals("50\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("100000000\n", FileUtils.fileRead(memoryControlFile));
+		
+		// 2.5 seconds are 10 seconds of the profile
+		task.control(2500 * nanosecondsPerMillisecond);
+		assertEquals("83\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("400000000\n", FileUtils.fileRead(memoryControlFile));
+		
+		task.control(7500 * nanosecondsPerMillisecond);
+		assertEquals("10\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("200000000\n", FileUtils.fileRead(memoryControlFile));
+		assertEquals(0, task.getControlPeriods());
+	}
+	
+	@Test
+	public void testCorrectErrorsGreaterThanTolerance() throws IOException {
+		task = new ProfileTask(testSystem, cpuExerciser, memoryExerciser, getTestDataDirectory(), profile, 
+				totalMemory, compression, tolerance, controlGroup);
+		
+		expectMeasurement(0, 0);
+		// 100% of a core in 100 milliseconds, 50 points below the target, and the memory of the target
+		expectMeasurement(100000, 100000000);
+		// the target, but 10 points of memory above it
+		expectMeasurement(250000, 200000000);
+		
+		replay(controlGroup);
+		
+		task.control(0);
+		task.control(100 * nanosecondsPerMillisecond);
+		assertEquals("58\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("100000000\n", FileUtils.fileRead(memoryControlFile));
+		task.control(200 * nanosecondsPerMillisecond);
+		assertEquals("58\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("50000000\n", FileUtils.fileRead(memoryControlFile));
+		
+		assertEquals(2, task.getControlPeriods());
+		assertEquals(2, task.getPeriodsOutOfTolerance());
+		assertEquals(25, task.getMeanCPUError(), 0.0001);
+		assertEquals(5, task.getMeanMemoryError(), 0.0001);
+		
+		verify(controlGroup);
+	}
+	
+	@Test
+	public void testUsageAboveATargetNearZero() throws IOException {
+		profile = new LoadProfile(new long[] {10000, 10000}, new double[] {10, 100}, new double[] {5, 40});
+		task = new ProfileTask(testSystem, cpuExerciser, memoryExerciser, getTestDataDirectory(), profile, 
+				totalMemory, compression, tolerance, controlGroup);
+		
+		expectMeasurement(0, 0);
+		// a whole core and 20% of the memory, far above the targets
+		expectMeasurement(100000, 200000000);
+		expectMeasurement(200000, 200000000);
+		// idle until the next phase, 10 points of CPU below the last target
+		expectMeasurement(200000, 50000000);
+		
+		replay(controlGroup);
+		
+		task.control(0);
+		task.control(100 * nanosecondsPerMillisecond);
+		assertEquals("0\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("0\n", FileUtils.fileRead(memoryControlFile));
+		task.control(200 * nanosecondsPerMillisecond);
+		assertEquals("0\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("0\n", FileUtils.fileRead(memoryControlFile));
+		
+		// the corrections did not wind up below the commands the exercisers can follow
+		task.control(2500 * nanosecondsPerMillisecond);
+		assertEquals("95\n", FileUtils.fileRead(cpuControlFile));
+		assertEquals("350000000\n", FileUtils.fileRead(memoryControlFile));
+		
+		verify(controlGroup);
+	}
+	
+	private void expectMeasurement(long cpuUsage, long memoryUsage) throws IOException {
+		controlGroup.read();
+		expect(controlGroup.getCPUUsage()).andReturn(cpuUsage);
+		expect(controlGroup.getMemoryUsage()).andReturn(memoryUsage);
+	}
+	
+	@Test
+	public void testRunAndTerminate() throws IOException {
+		TaskMonitor monitor = createStrictMock(TaskMonitor.class);
+		task.setMonitor(monitor);
+		
+		// starting the exercisers
+		expect(testSystem.execute(aryEq(expectedCPUCommand))).andReturn(cpuProcess);
+		
+		expectLastCall();
+		cpuProcess.execute();
+		testSystem.watch(eq(cpuProcess), isA(ExitListener.class));
+		
+		expect(testSystem.execute(aryEq(expectedMemoryCommand))).andReturn(memoryProcess);
+		
+		expectLastCall();
+		memoryProcess.execute();
+		testSystem.watch(eq(memoryProcess), isA(ExitListener.class));
+		
+		// stopping the exercisers
+		expect(cpuProcess.isRunning()).andReturn(true);
+		
+		expectLastCall();
+		cpuProcess.terminate();
+		
+		expect(memoryProcess.isRunning()).andReturn(true);
+		
+		expectLastCall();
+		memoryProcess.terminate();
+		
+		// finishing
+		expectLastCall();
+		monitor.completed(task);
+		
+		replay(testSystem, cpuProcess, memoryProcess, monitor);
+		
+		task.run();
+		assertTrue(task.isRunning());
+		task.terminate();
+		assertFalse(task.isRunning());
+		
+		verify(testSystem, cpuProcess, memoryProcess, monitor);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNonPositiveCompression() throws IOException {
+		task = new ProfileTask(testSystem, cpuExerciser, memoryExerciser, getTestDataDirectory(), profile, 
+				totalMemory, 0, tolerance);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNullControlGroup() throws IOException {
+		task = new ProfileTask(testSystem, cpuExerciser, memoryExerciser, getTestDataDirectory(), profile, 
+				totalMemory, compression, tolerance, null);
+	}
+}
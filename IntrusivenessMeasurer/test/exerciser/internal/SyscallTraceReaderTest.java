@@ -0,0 +1,90 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import commons.test.FileBasedTest;
+
+public class SyscallTraceReaderTest extends FileBasedTest {
+	
+	private static final String traceFile = toPath(getTestDataDirectory(), "benchmark.syscall");
+	
+	private SyscallTraceReader reader;
+	
+	@After
+	public void tearDown() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+	
+	@Test
+	public void testNext() throws IOException {
+		writeTrace("system start 1000000\n"
+				+ "0 4242 4243 (java)>sys_open>1000010>15>/home/user>input/part-0>32768>438>7\n"
+				+ "0 4242 4243 (java)>do_filp_open>1000012>10>(/>/home/user>/home/user/input/part-0>4096>S_IFREG|0644>12)>input/part-0>32768>438>36\n"
+				+ "0 4242 4244 (java)>SyS_read>1000030>40>(/>/home/user>/home/user/input/part-0>4096>S_IFREG|0644>12)>7>4096>4096\n"
+				+ "0 4242 4243 (java)>sys_newfstat>1000080>2>7>0\n"
+				+ "corrupted>line\n"
+				+ "system finish 1000100\n");
+		reader = new SyscallTraceReader(traceFile);
+		
+		SyscallRecord open = reader.next();
+		assertEquals(1000000, reader.getSystemStart());
+		assertEquals(4242, open.getPid());
+		assertEquals(4243, open.getTid());
+		assertEquals("open", open.getCall());
+		assertEquals(1000010, open.getBegin());
+		assertEquals(15, open.getElapsed());
+		assertEquals(5, open.getNumberOfArguments());
+		assertEquals("/home/user", open.getArgument(0));
+		assertEquals("input/part-0", open.getArgument(1));
+		assertEquals(32768, open.getNumericArgument(2));
+		assertEquals(7, open.getReturn());
+		
+		SyscallRecord read = reader.next();
+		assertEquals("read", read.getCall());
+		assertEquals(4244, read.getTid());
+		assertEquals(4, read.getNumberOfArguments());
+		assertEquals("(/>/home/user>/home/user/input/part-0>4096>S_IFREG|0644>12)", read.getArgument(0));
+		assertEquals(7, read.getNumericArgument(1));
+		assertEquals(4096, read.getReturn());
+		
+		SyscallRecord fstat = reader.next();
+		assertEquals("fstat", fstat.getCall());
+		
+		assertNull(reader.next());
+		// the kernel function, the corrupted line and the finish line
+		assertEquals(3, reader.getSkippedLines());
+	}
+	
+	@Test
+	public void testCallNames() {
+		assertEquals("stat", SyscallTraceReader.parse("0 1 1 (a)>sys_stat64>1>1>/>f>0").getCall());
+		assertEquals("llseek", SyscallTraceReader.parse("0 1 1 (a)>sys_llseek>1>1>3>0>10>SEEK_SET>10").getCall());
+		assertEquals("dup2", SyscallTraceReader.parse("0 1 1 (a)>SyS_dup2>1>1>3>9>9").getCall());
+		assertNull(SyscallTraceReader.parse("0 1 1 (a)>vfs_getattr>1>1>(/>/>/f>0>S_IFREG|0644>1)>0"));
+		assertNull(SyscallTraceReader.parse("0 1 1 (a)>sys_open>begin>1>/>f>0>0>3"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void constructorCannotReceiveNotExistentFile() throws IOException {
+		reader = new SyscallTraceReader(toPath(getTestDataDirectory(), "notExistentFile"));
+	}
+	
+	private static void writeTrace(String content) throws IOException {
+		FileOutputStream stream = new FileOutputStream(traceFile);
+		try {
+			stream.write(content.getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+}
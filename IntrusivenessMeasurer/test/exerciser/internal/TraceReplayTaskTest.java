@@ -0,0 +1,164 @@
+package exerciser.internal;
+
+import static commons.util.FileUtil.toPath;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import commons.test.FileBasedTest;
+
+import exerciser.TaskMonitor;
+import exerciser.TaskType;
+
+public class TraceReplayTaskTest extends FileBasedTest {
+	
+	private static final String traceFile = toPath(getTestDataDirectory(), "benchmark.syscall");
+	private static final String scratchDirectory = toPath(getTestDataDirectory(), "scratch");
+	private static final long timeLimit = 5000;
+	
+	private TraceReplayTask task;
+	
+	@After
+	public void tearDown() throws IOException {
+		if (task != null) {
+			task.terminate();
+		}
+	}
+	
+	@Test
+	public void testReplay() throws Exception {
+		StringBuilder trace = new StringBuilder("system start 0\n");
+		// two threads writing their own files, 10 ms apart
+		for (int thread = 0; thread < 2; thread++) {
+			int tid = 11 + thread;
+			int descriptor = 3 + thread;
+			String file = "part-" + thread;
+			String information = "(/>/job>/job/" + file + ">0>S_IFREG|0644>" + tid + ")";
+			trace.append("0 10 " + tid + " (java)>sys_open>1000>5>/job>" + file + ">577>438>" + descriptor + "\n");
+			for (int write = 0; write < 10; write++) {
+				trace.append("0 10 " + tid + " (java)>sys_write>" + (2000 + write * 10000) + ">5>" 
+						+ information + ">" + descriptor + ">1024>1024\n");
+			}
+			trace.append("0 10 " + tid + " (java)>sys_close>100000>5>" + descriptor + ">0\n");
+		}
+		trace.append("0 10 11 (java)>vfs_getattr>100001>1>(/>/job>/job>0>S_IFDIR|0755>2)>0\n");
+		trace.append("0 10 11 (java)>sys_open>100002>1>/job>missing>0>0>-2\n");
+		writeTrace(trace.toString());
+		
+		task = new TraceReplayTask(traceFile, scratchDirectory, 4);
+		assertEquals(TaskType.REPLAY, task.type());
+		task.run();
+		assertTrue(task.isRunning());
+		waitForReplay();
+		
+		assertEquals(24, task.getReplayedCalls());
+		assertEquals(1, task.getSkippedCalls());
+		assertEquals(0, task.getFailedCalls());
+		assertEquals(1, task.getSkippedLines());
+		assertEquals(25, task.getLags().getCount());
+		assertEquals(10240, new File(toPath(scratchDirectory, "job", "part-0")).length());
+		assertEquals(10240, new File(toPath(scratchDirectory, "job", "part-1")).length());
+	}
+	
+	@Test
+	public void testThreadsShareBoundedWorkers() throws Exception {
+		StringBuilder trace = new StringBuilder();
+		for (int tid = 1; tid <= 5; tid++) {
+			trace.append("0 10 " + tid + " (java)>sys_mkdir>" + tid + ">1>/job>" + tid + ">493>0\n");
+		}
+		writeTrace(trace.toString());
+		
+		task = new TraceReplayTask(traceFile, scratchDirectory, 2);
+		task.run();
+		waitForReplay();
+		
+		assertEquals(5, task.getReplayedCalls());
+		for (int tid = 1; tid <= 5; tid++) {
+			assertTrue(new File(toPath(scratchDirectory, "job", String.valueOf(tid))).isDirectory());
+		}
+	}
+	
+	@Test
+	public void testFailedCallsDoNotStopTheReplay() throws Exception {
+		StringBuilder trace = new StringBuilder();
+		trace.append("0 10 11 (java)>sys_open>0>1>/job>part>577>438>3\n");
+		// more calls than the queue of the worker holds, which all seek before the start of the file
+		for (int call = 1; call <= 2000; call++) {
+			trace.append("0 10 11 (java)>sys_llseek>" + call + ">1>3>-1>-100>SEEK_CUR>900\n");
+		}
+		trace.append("0 10 11 (java)>sys_close>2001>1>3>0\n");
+		writeTrace(trace.toString());
+		
+		task = new TraceReplayTask(traceFile, scratchDirectory, 1);
+		task.run();
+		waitForReplay();
+		
+		assertEquals(2, task.getReplayedCalls());
+		assertEquals(2000, task.getFailedCalls());
+	}
+	
+	@Test
+	public void testTerminate() throws Exception {
+		writeTrace("0 10 11 (java)>sys_mkdir>0>1>/job>first>493>0\n"
+				+ "0 10 11 (java)>sys_mkdir>60000000>1>/job>later>493>0\n");
+		
+		task = new TraceReplayTask(traceFile, scratchDirectory, 1);
+		task.run();
+		task.terminate();
+		
+		assertFalse(task.isRunning());
+		assertFalse(new File(toPath(scratchDirectory, "job", "later")).exists());
+	}
+	
+	@Test
+	public void testMonitorIsNotifiedWhenTheReplayEnds() throws Exception {
+		writeTrace("0 10 11 (java)>sys_mkdir>0>1>/job>first>493>0\n"
+				+ "0 10 12 (java)>sys_mkdir>1000>1>/job>second>493>0\n");
+		TaskMonitor monitor = createStrictMock(TaskMonitor.class);
+		task = new TraceReplayTask(traceFile, scratchDirectory, 2);
+		task.setMonitor(monitor);
+		
+		monitor.completed(task);
+		replay(monitor);
+		
+		task.run();
+		waitForReplay();
+		// the threads are joined, so the last one has already notified the monitor
+		task.terminate();
+		
+		verify(monitor);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void constructorCannotReceiveNonPositiveMaximumWorkers() throws IOException {
+		writeTrace("");
+		task = new TraceReplayTask(traceFile, scratchDirectory, 0);
+	}
+	
+	private void waitForReplay() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeLimit;
+		while (task.isRunning() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(task.isRunning());
+	}
+	
+	private static void writeTrace(String content) throws IOException {
+		FileOutputStream stream = new FileOutputStream(traceFile);
+		try {
+			stream.write(content.getBytes());
+		} finally {
+			stream.close();
+		}
+	}
+}
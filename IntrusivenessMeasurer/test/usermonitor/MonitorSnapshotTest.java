@@ -0,0 +1,58 @@
+package usermonitor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import usermonitor.MonitorSnapshot.CoreField;
+import usermonitor.MonitorSnapshot.DeviceField;
+
+public class MonitorSnapshotTest {
+
+	@Test
+	public void testAddDevicesBeyondInitialCapacity() {
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		
+		for (int device = 0; device < 10; device++) {
+			int position = snapshot.addDevice("sd" + device);
+			snapshot.setDeviceUsage(position, DeviceField.UTILIZATION, device);
+		}
+		
+		assertEquals(10, snapshot.getNumberOfDevices());
+		for (int device = 0; device < 10; device++) {
+			assertEquals("sd" + device, snapshot.getDevice(device));
+			assertEquals(device, snapshot.getDeviceUsage(device, DeviceField.UTILIZATION), 0);
+		}
+	}
+	
+	@Test
+	public void testAddedDeviceHasNoUsage() {
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		snapshot.setDeviceUsage(snapshot.addDevice("sda"), DeviceField.READS_PER_SECOND, 10);
+		snapshot.clearDevices();
+		
+		snapshot.addDevice("sdb");
+		
+		assertEquals(1, snapshot.getNumberOfDevices());
+		assertEquals(0, snapshot.getDeviceUsage(0, DeviceField.READS_PER_SECOND), 0);
+	}
+	
+	@Test
+	public void testSetCoreUsages() {
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		snapshot.setNumberOfCores(4);
+		snapshot.setCoreUsage(3, CoreField.STEAL, 5);
+		
+		assertEquals(5, snapshot.getCoreUsage(3, CoreField.STEAL), 0);
+		assertEquals(0, snapshot.getCoreUsage(3, CoreField.USER), 0);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetUsageOfMissingCore() {
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		snapshot.setNumberOfCores(8);
+		snapshot.setNumberOfCores(2);
+		
+		snapshot.getCoreUsage(2, CoreField.USER);
+	}
+}
@@ -0,0 +1,170 @@
+package usermonitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SampleHistoryTest {
+
+	private final int historyCapacity = 4;
+	private final int numberOfFields = SampleField.values().length;
+	private final int concurrencyTestNumberOfSamples = 200000;
+	private final int concurrencyTestWindowCapacity = 3;
+	private final long wallClockTime = 1400000000000L;
+	
+	private SampleHistory history;
+	private SampleWindow window;
+	
+	@Before
+	public void setUp() {
+		history = new SampleHistory(historyCapacity);
+		window = new SampleWindow(historyCapacity);
+	}
+	
+	@Test
+	public void testCopyLatestFromEmptyHistory() {
+		assertFalse(history.copyLatest(window));
+		assertEquals(0, window.size());
+		assertEquals(0, history.copyLast(historyCapacity, window));
+	}
+	
+	@Test
+	public void testCopyLast() {
+		addSamples(1, 3);
+		
+		assertTrue(history.copyLatest(window));
+		assertSample(0, 3);
+		
+		assertEquals(2, history.copyLast(2, window));
+		assertSample(0, 2);
+		assertSample(1, 3);
+		
+		assertEquals(3, history.copyLast(historyCapacity, window));
+		assertSample(0, 1);
+		assertSample(2, 3);
+	}
+	
+	@Test
+	public void testCopyLastAfterOverwritingOldestSamples() {
+		addSamples(1, 10);
+		
+		assertEquals(10, history.getNumberOfSamples());
+		assertEquals(historyCapacity, history.copyLast(historyCapacity, window));
+		for (int sample = 0; sample < historyCapacity; sample++) {
+			assertSample(sample, 7 + sample);
+		}
+	}
+	
+	@Test
+	public void testCopySince() {
+		addSamples(1, 6);
+		
+		assertEquals(2, history.copySince(5, window));
+		assertSample(0, 5);
+		assertSample(1, 6);
+		
+		// the samples older than the history are gone
+		assertEquals(historyCapacity, history.copySince(0, window));
+		assertSample(0, 3);
+		
+		assertEquals(0, history.copySince(7, window));
+	}
+	
+	@Test
+	public void testCopySinceToSmallerWindow() {
+		SampleWindow smallWindow = new SampleWindow(2);
+		addSamples(1, 4);
+		
+		assertEquals(2, history.copySince(1, smallWindow));
+		assertEquals(3, smallWindow.getNanoTime(0));
+		assertEquals(4, smallWindow.getNanoTime(1));
+	}
+	
+	@Test
+	public void testCopySinceWhenWallClockIsSteppedBack() {
+		double[] values = new double[numberOfFields];
+		history.add(1, wallClockTime, values);
+		history.add(2, wallClockTime + 1000, values);
+		history.add(3, wallClockTime - 1000, values);
+		
+		assertEquals(2, history.copySince(2, window));
+		assertEquals(wallClockTime + 1000, window.getTimestamp(0));
+		assertEquals(wallClockTime - 1000, window.getTimestamp(1));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testCopyLastMoreSamplesThanWindowCapacity() {
+		history.copyLast(historyCapacity + 1, window);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddSampleWithMissingValues() {
+		history.add(1, 1, new double[numberOfFields - 1]);
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetValueOfSampleNotInWindow() {
+		addSamples(1, 1);
+		history.copyLatest(window);
+		window.getValue(1, SampleField.CPU_IDLE);
+	}
+	
+	@Test
+	public void testReadWhileWriting() throws InterruptedException {
+		final AtomicBoolean inconsistent = new AtomicBoolean();
+		final AtomicBoolean done = new AtomicBoolean();
+		
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				SampleWindow readerWindow = new SampleWindow(concurrencyTestWindowCapacity);
+				while (!done.get()) {
+					history.copyLast(concurrencyTestWindowCapacity, readerWindow);
+					for (int sample = 0; sample < readerWindow.size(); sample++) {
+						long nanoTime = readerWindow.getNanoTime(sample);
+						if (readerWindow.getTimestamp(sample) != wallClockTime + nanoTime) {
+							inconsistent.set(true);
+						}
+						for (SampleField field : SampleField.values()) {
+							if (readerWindow.getValue(sample, field) != nanoTime) {
+								inconsistent.set(true);
+							}
+						}
+						if (sample > 0 && readerWindow.getNanoTime(sample - 1) != nanoTime - 1) {
+							inconsistent.set(true);
+						}
+					}
+				}
+			}
+		};
+		reader.start();
+		addSamples(1, concurrencyTestNumberOfSamples);
+		done.set(true);
+		reader.join();
+		
+		assertFalse(inconsistent.get());
+	}
+	
+	private void addSamples(int first, int last) {
+		double[] values = new double[numberOfFields];
+		for (int sample = first; sample <= last; sample++) {
+			for (int field = 0; field < numberOfFields; field++) {
+				values[field] = sample;
+			}
+			history.add(sample, wallClockTime + sample, values);
+		}
+	}
+	
+	private void assertSample(int position, long expected) {
+		assertEquals(expected, window.getNanoTime(position));
+		assertEquals(wallClockTime + expected, window.getTimestamp(position));
+		for (SampleField field : SampleField.values()) {
+			assertEquals(expected, window.getValue(position, field), 0);
+		}
+	}
+}
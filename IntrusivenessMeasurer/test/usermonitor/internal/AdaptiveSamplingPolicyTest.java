@@ -0,0 +1,75 @@
+package usermonitor.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptiveSamplingPolicyTest {
+
+	private final long minimumPeriod = 50;
+	private final long maximumPeriod = 1000;
+	private final double changeThreshold = 10;
+	private final long noFastSamplingDuration = 0;
+	private final long longFastSamplingDuration = 60000;
+	
+	@Test
+	public void testPeriodGrowsWhileValuesAreStable() {
+		AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(minimumPeriod, maximumPeriod, 
+																changeThreshold, noFastSamplingDuration);
+		assertEquals(minimumPeriod, policy.getPeriod());
+		
+		assertEquals(100, policy.nextPeriod(new double[] {20, 5}));
+		assertEquals(200, policy.nextPeriod(new double[] {25, 5}));
+		assertEquals(400, policy.nextPeriod(new double[] {20, 10}));
+		assertEquals(800, policy.nextPeriod(new double[] {20, 10}));
+		assertEquals(maximumPeriod, policy.nextPeriod(new double[] {20, 10}));
+		assertEquals(maximumPeriod, policy.nextPeriod(new double[] {20, 10}));
+	}
+	
+	@Test
+	public void testFastSamplingOnChange() {
+		AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(minimumPeriod, maximumPeriod, 
+																changeThreshold, noFastSamplingDuration);
+		policy.nextPeriod(new double[] {20, 5});
+		policy.nextPeriod(new double[] {20, 5});
+		
+		assertEquals(minimumPeriod, policy.nextPeriod(new double[] {20, 50}));
+		assertEquals(2 * minimumPeriod, policy.nextPeriod(new double[] {20, 50}));
+	}
+	
+	@Test
+	public void testFastSamplingIsKeptForTheFastSamplingDuration() {
+		AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(minimumPeriod, maximumPeriod, 
+																changeThreshold, longFastSamplingDuration);
+		
+		for (int sample = 0; sample < 10; sample++) {
+			assertEquals(minimumPeriod, policy.nextPeriod(new double[] {20, 5}));
+		}
+	}
+	
+	@Test
+	public void testRequestFastSampling() {
+		AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(minimumPeriod, maximumPeriod, 
+																changeThreshold, noFastSamplingDuration);
+		policy.nextPeriod(new double[] {20, 5});
+		policy.nextPeriod(new double[] {20, 5});
+		
+		policy.requestFastSampling();
+		
+		assertEquals(minimumPeriod, policy.nextPeriod(new double[] {20, 5}));
+	}
+	
+	@Test
+	public void testNaNValuesAreNotCompared() {
+		AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(minimumPeriod, maximumPeriod, 
+																changeThreshold, noFastSamplingDuration);
+		policy.nextPeriod(new double[] {20, Double.NaN});
+		
+		assertEquals(200, policy.nextPeriod(new double[] {20, 50}));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaximumPeriodLessThanMinimumPeriod() {
+		new AdaptiveSamplingPolicy(maximumPeriod, minimumPeriod);
+	}
+}
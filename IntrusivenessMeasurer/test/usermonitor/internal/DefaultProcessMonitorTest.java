@@ -0,0 +1,166 @@
+package usermonitor.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import usermonitor.ProcessInfo;
+
+import commons.test.FileBasedTest;
+
+public class DefaultProcessMonitorTest extends FileBasedTest {
+
+	private final double testDeltaError = 0.005;
+	
+	@SuppressWarnings("static-access")
+	private final String dataDirectory = super.testDataDirectory;
+	private final String testProcDirectory = dataDirectory + File.separator + "proc";
+	private final String testMemoryFileName = dataDirectory + File.separator + "memory";
+	private final String testProcRealDirectory = "/proc";
+	private final String testMemoryRealFileName = "/proc/meminfo";
+	
+	private final int testPid = 1234;
+	private final String testProcessDirectory = testProcDirectory + File.separator + testPid;
+	private final String testCommand = "(java -a b)";
+	
+	private final long testTotalMemory = 2000;
+	private final long testResidentMemory = 500;
+	private final long testVirtualMemory = 4096;
+	private final long testMinorFaults = 70;
+	private final long testMajorFaults = 3;
+	private final int testNumberOfThreads = 12;
+	
+	private final long performanceTestLimitTime = 100;
+	private final int performanceTestNumberOfRepetitions = 1000;
+	
+	@Before
+	public void setUp() throws IOException {
+		new File(testProcessDirectory).mkdirs();
+		writeFile(testMemoryFileName, "MemTotal: " + testTotalMemory + " kB\nMemFree: 100 kB\n");
+		writeStatFile('S', 10, 5);
+		writeStatusFile("Name:\tjava\nVmSize:\t4 kB\nVmRSS:\t" + testResidentMemory + " kB\nThreads:\t12\n");
+	}
+	
+	@Test
+	public void testGetProcessInfo() throws IOException {
+		DefaultProcessMonitor monitor = new DefaultProcessMonitor(testPid, testProcDirectory, testMemoryFileName);
+		ProcessInfo info = monitor.getProcessInfo();
+		
+		assertEquals(testPid, info.getPid());
+		assertEquals(0, info.getCPUUsage(), testDeltaError);
+		assertEquals(25, info.getMemoryUsage(), testDeltaError);
+		assertEquals(testResidentMemory, info.getResidentMemory());
+		assertEquals(testVirtualMemory / 1024, info.getVirtualMemory());
+		assertEquals(testMinorFaults, info.getMinorFaults());
+		assertEquals(testMajorFaults, info.getMajorFaults());
+		assertEquals(testNumberOfThreads, info.getNumberOfThreads());
+		assertEquals(0, info.getReadBytes());
+		assertEquals(0, info.getWriteBytes());
+		assertTrue(monitor.isRunning());
+	}
+	
+	@Test
+	public void testGetProcessInfoReadsStorageBytesFromIOFile() throws IOException {
+		writeFile(testProcessDirectory + File.separator + "io", "rchar: 10000\nwchar: 20000\nsyscr: 5\n" 
+					+ "syscw: 6\nread_bytes: 4096\nwrite_bytes: 8192\ncancelled_write_bytes: 0\n");
+		DefaultProcessMonitor monitor = new DefaultProcessMonitor(testPid, testProcDirectory, testMemoryFileName);
+		ProcessInfo info = monitor.getProcessInfo();
+		
+		assertEquals(4096, info.getReadBytes());
+		assertEquals(8192, info.getWriteBytes());
+	}
+	
+	@Test
+	public void testGetProcessInfoComputesCPUUsageFromCPUTimeDelta() throws IOException, InterruptedException {
+		DefaultProcessMonitor monitor = new DefaultProcessMonitor(testPid, testProcDirectory, testMemoryFileName);
+		Thread.sleep(10);
+		// 100 clock ticks, 1 second of CPU, in at most some milliseconds
+		writeStatFile('R', 60, 55);
+		
+		assertTrue(monitor.getProcessInfo().getCPUUsage() > 100);
+		assertEquals(0, monitor.getProcessInfo().getCPUUsage(), testDeltaError);
+	}
+	
+	@Test
+	public void testZombieProcessIsNotRunning() throws IOException {
+		DefaultProcessMonitor monitor = new DefaultProcessMonitor(testPid, testProcDirectory, testMemoryFileName);
+		writeStatFile('Z', 10, 5);
+		
+		assertFalse(monitor.isRunning());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetProcessInfoOfZombieProcess() throws IOException {
+		DefaultProcessMonitor monitor = new DefaultProcessMonitor(testPid, testProcDirectory, testMemoryFileName);
+		writeStatFile('Z', 10, 5);
+		
+		monitor.getProcessInfo();
+	}
+	
+	@Test
+	public void testMemoryInfoFileIsNotKeptOpen() throws IOException {
+		new DefaultProcessMonitor(testPid, testProcDirectory, testMemoryFileName);
+		
+		String memoryFile = new File(testMemoryFileName).getCanonicalPath();
+		for (File descriptor : new File("/proc/self/fd").listFiles()) {
+			assertFalse(memoryFile.equals(descriptor.getCanonicalPath()));
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void testNotExistentProcess() throws IOException {
+		new DefaultProcessMonitor(testPid + 1, testProcDirectory, testMemoryFileName);
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetProcessInfoFromInvalidStatFile() throws IOException {
+		DefaultProcessMonitor monitor = new DefaultProcessMonitor(testPid, testProcDirectory, testMemoryFileName);
+		writeFile(testProcessDirectory + File.separator + "stat", testPid + " " + testCommand + " S 1 2");
+		
+		monitor.getProcessInfo();
+	}
+	
+	@Test
+	public void testGetProcessInfoOfRealProcessPerformanceTest() throws IOException {
+		int pid = Integer.parseInt(new File("/proc/self").getCanonicalFile().getName());
+		DefaultProcessMonitor monitor = new DefaultProcessMonitor(pid, testProcRealDirectory, testMemoryRealFileName);
+		
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < performanceTestNumberOfRepetitions; i++) {
+			ProcessInfo info = monitor.getProcessInfo();
+			assertTrue(info.getResidentMemory() > 0);
+			assertTrue(info.getNumberOfThreads() > 0);
+		}
+		long time = System.currentTimeMillis() - start;
+		
+		assertTrue(monitor.isRunning());
+		assertTrue(time < performanceTestLimitTime * 10);
+	}
+	
+	private void writeStatFile(char state, long userTime, long systemTime) throws IOException {
+		writeFile(testProcessDirectory + File.separator + "stat", testPid + " " + testCommand + " " + state 
+					+ " 1 1234 1234 0 -1 4194304 " + testMinorFaults + " 0 " + testMajorFaults + " 0 " 
+					+ userTime + " " + systemTime + " 0 0 20 0 " + testNumberOfThreads + " 0 100 " 
+					+ testVirtualMemory + " 125 18446744073709551615\n");
+	}
+	
+	private void writeStatusFile(String content) throws IOException {
+		writeFile(testProcessDirectory + File.separator + "status", content);
+	}
+	
+	private void writeFile(String filename, String content) throws IOException {
+		FileWriter writer = new FileWriter(filename);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+}
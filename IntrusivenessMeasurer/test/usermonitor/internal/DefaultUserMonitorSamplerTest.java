@@ -0,0 +1,218 @@
+package usermonitor.internal;
+
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import usermonitor.MonitorSnapshot;
+import usermonitor.SampleField;
+import usermonitor.SampleWindow;
+import usermonitor.UserMonitor;
+
+import commons.TimeSeriesStore;
+
+public class DefaultUserMonitorSamplerTest {
+
+	private final long samplingPeriod = 5;
+	private final int historyCapacity = 10;
+	private final long waitTimeout = 5000;
+	private final long slowSamplingPeriod = 60000;
+	
+	private final double cpuSystemUsage = 10;
+	private final double cpuUserUsage = 20;
+	private final double cpuIdle = 60;
+	private final double cpuIOWait = 6;
+	private final double cpuSteal = 4;
+	private final double totalMemory = 1000;
+	private final double usedMemory = 300;
+	private final double availableMemory = 600;
+	private final long nanoTime = 123456789;
+	private final long timestamp = 1000;
+	
+	private UserMonitor monitor;
+	
+	/**
+	 * Fills the snapshot passed to the monitor as a real monitor would.
+	 */
+	private final IAnswer<Object> fillSnapshot = new IAnswer<Object>() {
+		@Override
+		public Object answer() {
+			fillSnapshot((MonitorSnapshot) getCurrentArguments()[0]);
+			return null;
+		}
+	};
+	
+	@Before
+	public void setUp() {
+		monitor = createMock(UserMonitor.class);
+	}
+	
+	@Test
+	public void testSample() throws IOException {
+		monitor.snapshot(isA(MonitorSnapshot.class));
+		expectLastCall().andAnswer(fillSnapshot);
+		replay(monitor);
+		
+		DefaultUserMonitorSampler sampler = new DefaultUserMonitorSampler(monitor, samplingPeriod, historyCapacity);
+		sampler.sample();
+		
+		SampleWindow window = new SampleWindow(1);
+		assertTrue(sampler.getHistory().copyLatest(window));
+		assertEquals(nanoTime, window.getNanoTime(0));
+		assertEquals(timestamp, window.getTimestamp(0));
+		assertEquals(cpuUserUsage, window.getValue(0, SampleField.CPU_USER_USAGE), 0);
+		assertEquals(cpuSystemUsage, window.getValue(0, SampleField.CPU_SYSTEM_USAGE), 0);
+		assertEquals(cpuIdle, window.getValue(0, SampleField.CPU_IDLE), 0);
+		assertEquals(cpuIOWait, window.getValue(0, SampleField.CPU_IO_WAIT), 0);
+		assertEquals(cpuSteal, window.getValue(0, SampleField.CPU_STEAL), 0);
+		assertEquals(totalMemory, window.getValue(0, SampleField.TOTAL_MEMORY), 0);
+		assertEquals(usedMemory, window.getValue(0, SampleField.USED_MEMORY), 0);
+		assertEquals(availableMemory, window.getValue(0, SampleField.AVAILABLE_MEMORY), 0);
+		assertEquals(1, window.getValue(0, SampleField.CPU_SOME_PRESSURE), 0);
+		assertEquals(2, window.getValue(0, SampleField.MEMORY_SOME_PRESSURE), 0);
+		assertEquals(3, window.getValue(0, SampleField.MEMORY_FULL_PRESSURE), 0);
+		assertEquals(4, window.getValue(0, SampleField.IO_SOME_PRESSURE), 0);
+		assertEquals(5, window.getValue(0, SampleField.IO_FULL_PRESSURE), 0);
+		assertEquals(samplingPeriod, window.getValue(0, SampleField.SAMPLING_PERIOD), 0);
+	}
+	
+	@Test
+	public void testSampleIsAppendedToStore() throws IOException {
+		monitor.snapshot(isA(MonitorSnapshot.class));
+		expectLastCall().andAnswer(fillSnapshot);
+		replay(monitor);
+		double[] expectedValues = new double[SampleField.values().length];
+		fillSnapshot(expectedValues);
+		expectedValues[SampleField.SAMPLING_PERIOD.ordinal()] = samplingPeriod;
+		TimeSeriesStore store = createMock(TimeSeriesStore.class);
+		expect(store.getNumberOfValues()).andReturn(expectedValues.length);
+		store.append(eq(timestamp), aryEq(expectedValues));
+		replay(store);
+		
+		DefaultUserMonitorSampler sampler = new DefaultUserMonitorSampler(monitor, samplingPeriod, 
+																		historyCapacity, store);
+		sampler.sample();
+		
+		verify(store);
+		assertEquals(1, sampler.getHistory().getNumberOfSamples());
+	}
+	
+	@Test
+	public void testSampleIsSkippedOnReadError() throws IOException {
+		monitor.snapshot(isA(MonitorSnapshot.class));
+		expectLastCall().andThrow(new IOException());
+		replay(monitor);
+		
+		DefaultUserMonitorSampler sampler = new DefaultUserMonitorSampler(monitor, samplingPeriod, historyCapacity);
+		sampler.sample();
+		
+		assertEquals(0, sampler.getHistory().getNumberOfSamples());
+	}
+	
+	@Test
+	public void testStartAndStop() throws IOException, InterruptedException {
+		monitor.snapshot(isA(MonitorSnapshot.class));
+		expectLastCall().andAnswer(fillSnapshot).anyTimes();
+		replay(monitor);
+		
+		DefaultUserMonitorSampler sampler = new DefaultUserMonitorSampler(monitor, samplingPeriod, historyCapacity);
+		sampler.start();
+		long start = System.currentTimeMillis();
+		while (sampler.getHistory().getNumberOfSamples() < 3 
+				&& System.currentTimeMillis() - start < waitTimeout) {
+			Thread.sleep(samplingPeriod);
+		}
+		sampler.stop();
+		
+		long numberOfSamples = sampler.getHistory().getNumberOfSamples();
+		assertTrue(numberOfSamples >= 3);
+		Thread.sleep(samplingPeriod * 4);
+		assertEquals(numberOfSamples, sampler.getHistory().getNumberOfSamples());
+	}
+	
+	@Test
+	public void testAdaptiveSamplingSlowsDownWhileStable() throws IOException {
+		monitor.snapshot(isA(MonitorSnapshot.class));
+		expectLastCall().andAnswer(fillSnapshot).anyTimes();
+		replay(monitor);
+		AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(samplingPeriod, slowSamplingPeriod, 10, 0);
+		
+		DefaultUserMonitorSampler sampler = new DefaultUserMonitorSampler(monitor, policy, historyCapacity, null);
+		sampler.sample();
+		sampler.sample();
+		
+		SampleWindow window = new SampleWindow(2);
+		assertEquals(2, sampler.getHistory().copyLast(2, window));
+		assertEquals(samplingPeriod, window.getValue(0, SampleField.SAMPLING_PERIOD), 0);
+		assertEquals(2 * samplingPeriod, window.getValue(1, SampleField.SAMPLING_PERIOD), 0);
+		assertEquals(4 * samplingPeriod, sampler.getPeriod());
+	}
+	
+	@Test
+	public void testRequestFastSamplingTakesSampleRightAway() throws IOException, InterruptedException {
+		monitor.snapshot(isA(MonitorSnapshot.class));
+		expectLastCall().andAnswer(fillSnapshot).anyTimes();
+		replay(monitor);
+		AdaptiveSamplingPolicy policy = new AdaptiveSamplingPolicy(samplingPeriod, slowSamplingPeriod, 10, 0);
+		DefaultUserMonitorSampler sampler = new DefaultUserMonitorSampler(monitor, policy, historyCapacity, null);
+		while (sampler.getPeriod() < slowSamplingPeriod) {
+			sampler.sample();
+		}
+		long numberOfSamples = sampler.getHistory().getNumberOfSamples();
+		
+		sampler.start();
+		waitForSamples(sampler, numberOfSamples + 1);
+		sampler.requestFastSampling();
+		waitForSamples(sampler, numberOfSamples + 2);
+		sampler.stop();
+		
+		assertTrue(sampler.getHistory().getNumberOfSamples() >= numberOfSamples + 2);
+		assertTrue(sampler.getPeriod() < slowSamplingPeriod);
+	}
+	
+	private void waitForSamples(DefaultUserMonitorSampler sampler, long numberOfSamples) 
+									throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (sampler.getHistory().getNumberOfSamples() < numberOfSamples 
+				&& System.currentTimeMillis() - start < waitTimeout) {
+			Thread.sleep(samplingPeriod);
+		}
+	}
+	
+	private void fillSnapshot(MonitorSnapshot snapshot) {
+		snapshot.setTime(nanoTime, timestamp);
+		snapshot.setValue(SampleField.CPU_USER_USAGE, cpuUserUsage);
+		snapshot.setValue(SampleField.CPU_SYSTEM_USAGE, cpuSystemUsage);
+		snapshot.setValue(SampleField.CPU_IDLE, cpuIdle);
+		snapshot.setValue(SampleField.CPU_IO_WAIT, cpuIOWait);
+		snapshot.setValue(SampleField.CPU_STEAL, cpuSteal);
+		snapshot.setValue(SampleField.TOTAL_MEMORY, totalMemory);
+		snapshot.setValue(SampleField.USED_MEMORY, usedMemory);
+		snapshot.setValue(SampleField.AVAILABLE_MEMORY, availableMemory);
+		snapshot.setValue(SampleField.CPU_SOME_PRESSURE, 1);
+		snapshot.setValue(SampleField.MEMORY_SOME_PRESSURE, 2);
+		snapshot.setValue(SampleField.MEMORY_FULL_PRESSURE, 3);
+		snapshot.setValue(SampleField.IO_SOME_PRESSURE, 4);
+		snapshot.setValue(SampleField.IO_FULL_PRESSURE, 5);
+	}
+	
+	private void fillSnapshot(double[] values) {
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		fillSnapshot(snapshot);
+		snapshot.copyValues(values);
+	}
+}
@@ -1,20 +1,36 @@
 package usermonitor.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Properties;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import usermonitor.CPUConfiguration;
 import usermonitor.CPUInfo;
+import usermonitor.CPUUsage;
+import usermonitor.DiskInfo;
+import usermonitor.DiskUsage;
 import usermonitor.MemoryInfo;
+import usermonitor.MonitorSnapshot;
+import usermonitor.MonitorSnapshot.CoreField;
+import usermonitor.MonitorSnapshot.DeviceField;
+import usermonitor.PressureInfo;
+import usermonitor.PressureResource;
+import usermonitor.ResourcePressure;
+import usermonitor.SampleField;
+import usermonitor.test.ProcFixtures;
 
+import commons.internal.DefaultConfiguration;
 import commons.test.FileBasedTest;
 
 public class DefaultUserMonitorTest extends FileBasedTest {
@@ -26,9 +42,17 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 	private final String testMemoryFileName = dataDirectory + File.separator + "memory";
 	private final String testCPUInfoFileName = dataDirectory + File.separator + "cpuInfo";
 	private final String testCPUUsageFileName = dataDirectory + File.separator + "cpuUsage";
+	private final String testCPUStatFileName = dataDirectory + File.separator + "cpuStat";
+	private final String testCPUOnlineFileName = dataDirectory + File.separator + "online";
+	private final String testCPUSysfsDirectory = dataDirectory + File.separator + "cpu";
+	private final String testDiskStatsFileName = dataDirectory + File.separator + "diskstats";
+	private final String testPressureDirectory = dataDirectory + File.separator + "pressure";
+	private final String testVirtualMemoryStatsFileName = dataDirectory + File.separator + "vmstat";
 	private final String testMemoryRealFileName = "/proc/meminfo";
 	private final String testCPUInfoRealFileName = "/proc/cpuinfo";
 	private final String testCPUUsageRealFileName = testCPUUsageFileName;
+	private final String testCPUStatRealFileName = "/proc/stat";
+	private final String testDiskStatsRealFileName = "/proc/diskstats";
 
 	private final String testCPU1ModelName = "model name 1";
 	private final String testCPU2ModelName = "model name 2";
@@ -60,6 +84,9 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 		new File(testMemoryFileName).createNewFile();
 		new File(testCPUInfoFileName).createNewFile();
 		new File(testCPUUsageFileName).createNewFile();
+		new File(testCPUStatFileName).createNewFile();
+		new File(testDiskStatsFileName).createNewFile();
+		new File(testVirtualMemoryStatsFileName).createNewFile();
 		
 		monitor = new DefaultUserMonitor(testMemoryFileName, testCPUInfoFileName, testCPUUsageFileName);
 	}
@@ -92,6 +119,23 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 	}
 	
 	
+	@Test
+	public void testConstructorFromFilesOnlyReadsThePassedFiles() throws IOException {
+		writeValidMemoryFile();
+		
+		MemoryInfo result = monitor.getMemoryInfo();
+		
+		assertTrue(Double.isNaN(result.getMajorFaultRate()));
+		assertTrue(Double.isNaN(result.getSwapInRate()));
+		assertTrue(Double.isNaN(result.getSwapOutRate()));
+		try {
+			monitor.getDiskInfo();
+			fail("the disk stats of the system must not be read");
+		} catch (IOException e) {
+			// the disk stats file was not passed
+		}
+	}
+	
 	/*
 	 * Memory Info tests
 	 */
@@ -135,6 +179,19 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 		assertEquals(testUsedMemory, result.getUsedMemory(), testDeltaError);
 	}
 	
+	@Test
+	public void testGetMemoryUsageFromFileLargerThanReadBuffer() throws IOException {
+		writeMemoryFileWithManyLines();
+		
+		MemoryInfo result = monitor.getMemoryInfo();
+		assertEquals(testTotalMemory, result.getTotalMemory(), testDeltaError);
+		assertEquals(testUsedMemory, result.getUsedMemory(), testDeltaError);
+		
+		result = monitor.getMemoryInfo();
+		assertEquals(testTotalMemory, result.getTotalMemory(), testDeltaError);
+		assertEquals(testUsedMemory, result.getUsedMemory(), testDeltaError);
+	}
+	
 	@Test(expected = IOException.class)
 	public void testGetMemoryUsageFromIncompleteFile() throws IOException {
 		writeMemoryFileWithMissingInformation();
@@ -344,6 +401,47 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 		monitor.getCPUInfo();
 	}	
 
+	@Test
+	public void testGetCPUInfoFromFileWithoutTrailingBlankLine() throws IOException {
+		RandomAccessFile fileCPUInfo = new RandomAccessFile(testCPUInfoFileName, "rw");
+		fileCPUInfo.write(("model name     :   " + testCPU1ModelName + "\n").getBytes());
+		fileCPUInfo.write(("cpu MHz     :   " + cpu1Frequency + "\n").getBytes());
+		fileCPUInfo.write(("cache size     :   " + cpu1CacheSize + " KB \n").getBytes());
+		fileCPUInfo.write(("\n").getBytes());
+		fileCPUInfo.write(("cpu MHz     :   " + cpu2Frequency + "\n").getBytes());
+		fileCPUInfo.write(("cache size     :   " + cpu2CacheSize + " KB \n").getBytes());
+		fileCPUInfo.write(("model name     :   " + testCPU2ModelName).getBytes());
+		fileCPUInfo.close();
+		writeValidCPUUsageFile();
+		
+		CPUInfo result = monitor.getCPUInfo();
+		
+		assertEquals(2, result.getCpus().size());
+		assertEquals(testCPU2ModelName, result.getCpus().get(1).getModelName());
+		assertEquals(cpu2Frequency, result.getCpus().get(1).getCpuFrequency(), testDeltaError);
+		assertEquals(cpu2CacheSize, result.getCpus().get(1).getCacheSize(), testDeltaError);
+	}
+	
+	@Test
+	public void testGetCPUInfoFromManyCPUs() throws IOException {
+		ProcFixtures fixtures = new ProcFixtures(new File(dataDirectory, "machine"));
+		fixtures.writeMachine(512, 53);
+		monitor = new DefaultUserMonitor(new DefaultConfiguration(fixtures.getMonitorProperties()));
+		
+		CPUInfo result = monitor.getCPUInfo();
+		
+		assertEquals(512, result.getCpus().size());
+		CPUConfiguration first = result.getCpus().get(0);
+		CPUConfiguration last = result.getCpus().get(511);
+		assertEquals("Intel(R) Xeon(R) Platinum 8280 CPU @ 2.70GHz", last.getModelName());
+		assertSame(first.getModelName(), last.getModelName());
+		assertEquals(2700, first.getCpuFrequency(), testDeltaError);
+		assertEquals(2711, last.getCpuFrequency(), testDeltaError);
+		assertEquals(39424, last.getCacheSize(), testDeltaError);
+		assertEquals(512, result.getCoreFrequencies().length);
+		assertEquals(2700.511, result.getCoreFrequencies()[511], testDeltaError);
+	}
+	
 	@Test
 	public void testGetCPUInfoPerformanceTest() throws IOException {
 		writeValidCPUInfoFile();
@@ -373,6 +471,583 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 		assertTrue(delta/performanceTestNumberOfRepetitions < performanceTestCPULimitTime);
 	}
 	
+	@Test
+	public void testGetCPUInfoFromProcStatFile() throws IOException {
+		writeValidCPUInfoFile();
+		monitor = new DefaultUserMonitor(testMemoryFileName, testCPUInfoFileName, 
+										testCPUStatFileName, CPUUsageFormat.PROC_STAT);
+		
+		// the first call reports the usage since the boot
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0", 
+						"cpu0 50 0 25 400 15 5 5 0 0 0", 
+						"cpu1 50 0 25 400 15 5 5 0 0 0", 
+						"intr 1000 0 0");
+		CPUInfo result = monitor.getCPUInfo();
+		
+		assertEquals(3, result.getCpus().size());
+		assertEquals(10, result.getUserUsage(), testDeltaError);
+		assertEquals(7, result.getSystemUsage(), testDeltaError);
+		assertEquals(80, result.getIdle(), testDeltaError);
+		assertEquals(3, result.getIOWait(), testDeltaError);
+		assertEquals(0, result.getSteal(), testDeltaError);
+		assertEquals(2, result.getCoreUsages().size());
+		assertCPUUsage(result.getCoreUsages().get(0), 10, 7, 80, 3, 0);
+		assertCPUUsage(result.getCoreUsages().get(1), 10, 7, 80, 3, 0);
+		
+		// the next calls report the usage since the last call
+		writeCPUStatFile("cpu  200 100 100 1200 80 10 10 300 0 0", 
+						"cpu0 100 50 50 600 40 5 5 150 0 0", 
+						"cpu1 50 0 25 900 15 5 5 0 0 0", 
+						"intr 2000 0 0");
+		result = monitor.getCPUInfo();
+		
+		assertEquals(20, result.getUserUsage(), testDeltaError);
+		assertEquals(5, result.getSystemUsage(), testDeltaError);
+		assertEquals(40, result.getIdle(), testDeltaError);
+		assertEquals(5, result.getIOWait(), testDeltaError);
+		assertEquals(30, result.getSteal(), testDeltaError);
+		assertEquals(2, result.getCoreUsages().size());
+		assertCPUUsage(result.getCoreUsages().get(0), 20, 5, 40, 5, 30);
+		assertCPUUsage(result.getCoreUsages().get(1), 0, 0, 100, 0, 0);
+	}
+	
+	@Test
+	public void testGetCPUInfoFromProcStatFileWithOnlyMandatoryCounters() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 100 200 600", "cpu0 100 100 200 600");
+		monitor = new DefaultUserMonitor(testMemoryFileName, testCPUInfoFileName, 
+										testCPUStatFileName, CPUUsageFormat.PROC_STAT);
+		
+		CPUInfo result = monitor.getCPUInfo();
+		
+		assertEquals(20, result.getUserUsage(), testDeltaError);
+		assertEquals(20, result.getSystemUsage(), testDeltaError);
+		assertEquals(60, result.getIdle(), testDeltaError);
+		assertEquals(0, result.getIOWait(), testDeltaError);
+		assertEquals(0, result.getSteal(), testDeltaError);
+		assertEquals(1, result.getCoreUsages().size());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetCPUInfoFromProcStatFileWithMissingMachineUsage() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu0 50 0 25 400 15 5 5 0 0 0", "intr 1000 0 0");
+		monitor = new DefaultUserMonitor(testMemoryFileName, testCPUInfoFileName, 
+										testCPUStatFileName, CPUUsageFormat.PROC_STAT);
+		monitor.getCPUInfo();
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetCPUInfoFromProcStatFileWithNotNumericCounter() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 8word0 30 10 10 0 0 0");
+		monitor = new DefaultUserMonitor(testMemoryFileName, testCPUInfoFileName, 
+										testCPUStatFileName, CPUUsageFormat.PROC_STAT);
+		monitor.getCPUInfo();
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetCPUInfoFromProcStatFileWithTooLargeCPUNumber() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0", "cpu2147483645 100 0 50 800 30 10 10 0 0 0");
+		monitor = new DefaultUserMonitor(testMemoryFileName, testCPUInfoFileName, 
+										testCPUStatFileName, CPUUsageFormat.PROC_STAT);
+		monitor.getCPUInfo();
+	}
+	
+	@Test
+	public void testConstructorFromConfiguration() throws IOException {
+		writeValidMemoryFile();
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		
+		Properties properties = new Properties();
+		properties.put(DefaultUserMonitor.MEMORY_INFO_FILE, testMemoryFileName);
+		properties.put(DefaultUserMonitor.CPU_CONFIGURATION_FILE, testCPUInfoFileName);
+		properties.put(DefaultUserMonitor.CPU_USAGE_FILE, testCPUStatFileName);
+		properties.put(DefaultUserMonitor.CPU_USAGE_FORMAT, CPUUsageFormat.PROC_STAT.name());
+		monitor = new DefaultUserMonitor(new DefaultConfiguration(properties));
+		
+		assertEquals(testTotalMemory, monitor.getMemoryInfo().getTotalMemory(), testDeltaError);
+		assertEquals(80, monitor.getCPUInfo().getIdle(), testDeltaError);
+	}
+	
+	@Test
+	public void testGetCPUInfoReadsCPUConfigurationsOnlyWhenOnlineCPUsChange() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeCPUOnlineFile("0-2");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		CPUInfo result = monitor.getCPUInfo();
+		assertEquals(3, result.getCpus().size());
+		
+		// the configurations are kept while the online cpus do not change
+		writeCPUInfoFileWithOneCPU();
+		CPUInfo nextResult = monitor.getCPUInfo();
+		assertSame(result.getCpus(), nextResult.getCpus());
+		
+		writeCPUOnlineFile("0");
+		result = monitor.getCPUInfo();
+		assertEquals(1, result.getCpus().size());
+		assertEquals(testCPU1ModelName, result.getCpus().get(0).getModelName());
+	}
+	
+	@Test
+	public void testGetCPUInfoReadsCurrentFrequenciesFromCPUFrequencyFiles() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeCPUOnlineFile("0,2-3");
+		writeCPUFrequencyFile(0, "2400000");
+		writeCPUFrequencyFile(3, "800500");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		CPUInfo result = monitor.getCPUInfo();
+		assertEquals(3, result.getCoreFrequencies().length);
+		assertEquals(2400, result.getCoreFrequencies()[0], testDeltaError);
+		// the cpu 2 has no frequency file, so the configuration frequency is used
+		assertEquals(cpu2Frequency, result.getCoreFrequencies()[1], testDeltaError);
+		assertEquals(800.5, result.getCoreFrequencies()[2], testDeltaError);
+		
+		writeCPUFrequencyFile(0, "1200000");
+		result = monitor.getCPUInfo();
+		assertEquals(1200, result.getCoreFrequencies()[0], testDeltaError);
+		assertEquals(cpu1Frequency, result.getCpus().get(0).getCpuFrequency(), testDeltaError);
+	}
+	
+	private DefaultUserMonitor createMonitorWithTestCPUFiles() throws IOException {
+		Properties properties = new Properties();
+		properties.put(DefaultUserMonitor.MEMORY_INFO_FILE, testMemoryFileName);
+		properties.put(DefaultUserMonitor.CPU_CONFIGURATION_FILE, testCPUInfoFileName);
+		properties.put(DefaultUserMonitor.CPU_USAGE_FILE, testCPUStatFileName);
+		properties.put(DefaultUserMonitor.CPU_ONLINE_FILE, testCPUOnlineFileName);
+		properties.put(DefaultUserMonitor.CPU_SYSFS_DIRECTORY, testCPUSysfsDirectory);
+		properties.put(DefaultUserMonitor.DISK_STATS_FILE, testDiskStatsFileName);
+		properties.put(DefaultUserMonitor.PRESSURE_DIRECTORY, testPressureDirectory);
+		properties.put(DefaultUserMonitor.VIRTUAL_MEMORY_STATS_FILE, testVirtualMemoryStatsFileName);
+		return new DefaultUserMonitor(new DefaultConfiguration(properties));
+	}
+	
+	@Test
+	public void testGetMemoryInfoWithAvailableMemoryCacheAndSwap() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeMemoryFile("MemTotal:        1000 kB", "MemFree:          100 kB", "MemAvailable:     700 kB", 
+						"Buffers:           50 kB", "Cached:           500 kB", "SwapCached:        10 kB", 
+						"Active:           300 kB", "SwapTotal:       2000 kB", "SwapFree:        1500 kB", 
+						"Dirty:              2 kB");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		MemoryInfo result = monitor.getMemoryInfo();
+		assertEquals(1000, result.getTotalMemory(), testDeltaError);
+		assertEquals(900, result.getUsedMemory(), testDeltaError);
+		assertEquals(700, result.getAvailableMemory(), testDeltaError);
+		assertEquals(50, result.getBuffers(), testDeltaError);
+		assertEquals(500, result.getCachedMemory(), testDeltaError);
+		assertEquals(2000, result.getTotalSwap(), testDeltaError);
+		assertEquals(1500, result.getFreeSwap(), testDeltaError);
+	}
+	
+	@Test
+	public void testGetMemoryInfoEstimatesAvailableMemoryWhenNotReported() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeMemoryFile("MemTotal:        1000 kB", "MemFree:          100 kB", "Buffers:           50 kB", 
+						"Cached:           500 kB");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		MemoryInfo result = monitor.getMemoryInfo();
+		assertEquals(650, result.getAvailableMemory(), testDeltaError);
+		assertEquals(0, result.getTotalSwap(), testDeltaError);
+	}
+	
+	@Test
+	public void testGetMemoryInfoReadsFaultAndSwapRates() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeValidMemoryFile();
+		writeVirtualMemoryStatsFile("nr_free_pages 1000", "pswpin 10", "pswpout 20", "pgfault 500", 
+									"pgmajfault 30", "pgmajfault_s 1");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		MemoryInfo result = monitor.getMemoryInfo();
+		assertEquals(0, result.getMajorFaultRate(), testDeltaError);
+		
+		Thread.sleep(10);
+		writeVirtualMemoryStatsFile("nr_free_pages 1000", "pswpin 10", "pswpout 220", "pgfault 900", 
+									"pgmajfault 130", "pgmajfault_s 1");
+		result = monitor.getMemoryInfo();
+		
+		assertEquals(0, result.getSwapInRate(), testDeltaError);
+		assertTrue(result.getSwapOutRate() > 0);
+		// both deltas are read in the same interval
+		assertEquals(result.getSwapOutRate() / 2, result.getMajorFaultRate(), testDeltaError);
+	}
+	
+	private void writeMemoryFile(String ... lines) throws IOException {
+		RandomAccessFile fileMemory = new RandomAccessFile(testMemoryFileName, "rw");
+		
+		fileMemory.setLength(0);
+		for (String line : lines) {
+			fileMemory.write((line + "\n").getBytes());
+		}
+		
+		fileMemory.close();
+	}
+	
+	private void writeVirtualMemoryStatsFile(String ... lines) throws IOException {
+		RandomAccessFile fileVirtualMemoryStats = new RandomAccessFile(testVirtualMemoryStatsFileName, "rw");
+		
+		fileVirtualMemoryStats.setLength(0);
+		for (String line : lines) {
+			fileVirtualMemoryStats.write((line + "\n").getBytes());
+		}
+		
+		fileVirtualMemoryStats.close();
+	}
+	
+	@Test
+	public void testGetPressureInfo() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writePressureFile("cpu", "some avg10=1.50 avg60=2.25 avg300=0.00 total=1000");
+		writePressureFile("memory", "some avg10=10.00 avg60=5.00 avg300=1.00 total=100", 
+									"full avg10=4.00 avg60=2.00 avg300=0.50 total=50");
+		writePressureFile("io", "some avg10=0.00 avg60=0.00 avg300=0.00 total=0", 
+								"full avg10=0.00 avg60=0.00 avg300=0.00 total=0");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		Thread.sleep(10);
+		// at most 10 ms elapsed, so 1 s of stall is 100%
+		writePressureFile("memory", "some avg10=10.00 avg60=5.00 avg300=1.00 total=1000100", 
+									"full avg10=4.00 avg60=2.00 avg300=0.50 total=50");
+		PressureInfo result = monitor.getPressureInfo();
+		
+		ResourcePressure cpu = result.getCPUPressure();
+		assertEquals(1.5, cpu.getSomeAverage10(), testDeltaError);
+		assertEquals(2.25, cpu.getSomeAverage60(), testDeltaError);
+		assertEquals(0, cpu.getSomeStall(), testDeltaError);
+		assertEquals(0, cpu.getFullAverage10(), testDeltaError);
+		
+		ResourcePressure memory = result.getPressure(PressureResource.MEMORY);
+		assertEquals(10, memory.getSomeAverage10(), testDeltaError);
+		assertEquals(1, memory.getSomeAverage300(), testDeltaError);
+		assertEquals(4, memory.getFullAverage10(), testDeltaError);
+		assertEquals(0.5, memory.getFullAverage300(), testDeltaError);
+		assertEquals(100, memory.getSomeStall(), testDeltaError);
+		assertEquals(0, memory.getFullStall(), testDeltaError);
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetPressureInfoWhenNotAvailable() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		monitor.getPressureInfo();
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetPressureInfoWithInvalidFormat() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writePressureFile("cpu", "some avg10=1.50 avg60=2.25 avg300=0.00 total=1000");
+		writePressureFile("memory", "some avg10=1.50 avg60=2.25 avg300=0.00 total=1000");
+		writePressureFile("io", "some avg10=1.50 avg60=2.25 avg300=0.00 total=1000");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		writePressureFile("io", "some avg10=1.50 avg60=a avg300=0.00 total=1000");
+		monitor.getPressureInfo();
+	}
+	
+	private void writePressureFile(String resource, String ... lines) throws IOException {
+		new File(testPressureDirectory).mkdirs();
+		RandomAccessFile filePressure = new RandomAccessFile(testPressureDirectory + File.separator + resource, "rw");
+		
+		filePressure.setLength(0);
+		for (String line : lines) {
+			filePressure.write((line + "\n").getBytes());
+		}
+		
+		filePressure.close();
+	}
+	
+	@Test
+	public void testGetDiskInfoFromCounterDeltas() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeDiskStatsFile("   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0", 
+							"   8       0 sda 100 5 2000 300 50 7 800 200 0 400 500 0 0 0 0");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		DiskInfo initial = monitor.getDiskInfo();
+		assertEquals(1, initial.getDevices().size());
+		assertEquals(0, initial.getDevice("sda").getReadsPerSecond(), testDeltaError);
+		
+		Thread.sleep(20);
+		// 20 reads and 20 writes of 8 kB, waiting 400 ms in total
+		writeDiskStatsFile("   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0", 
+							"   8       0 sda 120 5 2320 500 70 7 1120 400 1 410 900 0 0 0 0");
+		DiskUsage usage = monitor.getDiskInfo().getDevice("sda");
+		
+		assertNull(monitor.getDiskInfo().getDevice("loop0"));
+		assertTrue(usage.getReadsPerSecond() > 0);
+		assertEquals(usage.getReadsPerSecond(), usage.getWritesPerSecond(), testDeltaError);
+		assertEquals(8 * usage.getReadsPerSecond(), usage.getReadThroughput(), testDeltaError);
+		assertEquals(8 * usage.getWritesPerSecond(), usage.getWriteThroughput(), testDeltaError);
+		assertEquals(10, usage.getAwaitTime(), testDeltaError);
+		assertTrue(usage.getQueueDepth() > 0);
+		assertTrue(usage.getUtilization() > 0 && usage.getUtilization() <= 100);
+	}
+	
+	@Test
+	public void testGetDiskInfoWhenDevicesChange() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeDiskStatsFile("   8       0 sda 100 5 2000 300 50 7 800 200 0 400 500");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		Thread.sleep(10);
+		// the counters of a new device are not compared to the ones of the old device
+		writeDiskStatsFile("   8      16 sdb 200 5 4000 300 50 7 800 200 0 400 500", 
+							"   8       0 sda 100 5 2000 300 50 7 800 200 0 400 500");
+		DiskInfo result = monitor.getDiskInfo();
+		
+		assertEquals(2, result.getDevices().size());
+		assertEquals("sdb", result.getDevices().get(0).getDevice());
+		assertEquals(0, result.getDevice("sdb").getReadsPerSecond(), testDeltaError);
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetDiskInfoWithNonNumericCounter() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeDiskStatsFile("   8       0 sda 100 5 2000 300 50 7 800 200 0 400 500");
+		monitor = createMonitorWithTestCPUFiles();
+		
+		writeDiskStatsFile("   8       0 sda 100 5 2000 300 5a 7 800 200 0 400 500");
+		monitor.getDiskInfo();
+	}
+	
+	@Test
+	public void testGetDiskInfoFromRealDiskStatsFile() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		Properties properties = new Properties();
+		properties.put(DefaultUserMonitor.CPU_CONFIGURATION_FILE, testCPUInfoFileName);
+		properties.put(DefaultUserMonitor.DISK_STATS_FILE, testDiskStatsRealFileName);
+		monitor = new DefaultUserMonitor(new DefaultConfiguration(properties));
+		
+		for (int i = 0; i < performanceTestNumberOfRepetitions; i++) {
+			for (DiskUsage usage : monitor.getDiskInfo().getDevices()) {
+				assertTrue(usage.getUtilization() <= 100);
+			}
+		}
+	}
+	
+	@Test
+	public void testSnapshot() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0", 
+						"cpu0 50 0 25 400 15 5 5 0 0 0", 
+						"cpu1 50 0 25 400 15 5 5 0 0 0");
+		writeMemoryFile("MemTotal:        1000 kB", "MemFree:          100 kB", "MemAvailable:     700 kB");
+		writeDiskStatsFile("   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0", 
+							"   8       0 sda 100 5 2000 300 50 7 800 200 0 400 500 0 0 0 0");
+		monitor = createMonitorWithTestCPUFiles();
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		
+		Thread.sleep(10);
+		writeDiskStatsFile("   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0", 
+							"   8       0 sda 120 5 2320 500 70 7 1120 400 1 410 900 0 0 0 0");
+		long before = System.nanoTime();
+		monitor.snapshot(snapshot);
+		
+		assertTrue(snapshot.getNanoTime() >= before);
+		assertTrue(snapshot.getTimestamp() > 0);
+		assertEquals(10, snapshot.getValue(SampleField.CPU_USER_USAGE), testDeltaError);
+		assertEquals(80, snapshot.getValue(SampleField.CPU_IDLE), testDeltaError);
+		assertEquals(2, snapshot.getNumberOfCores());
+		assertEquals(7, snapshot.getCoreUsage(1, CoreField.SYSTEM), testDeltaError);
+		assertEquals(1000, snapshot.getValue(SampleField.TOTAL_MEMORY), testDeltaError);
+		assertEquals(900, snapshot.getValue(SampleField.USED_MEMORY), testDeltaError);
+		assertEquals(700, snapshot.getValue(SampleField.AVAILABLE_MEMORY), testDeltaError);
+		assertEquals(1, snapshot.getNumberOfDevices());
+		assertEquals("sda", snapshot.getDevice(0));
+		assertEquals(10, snapshot.getDeviceUsage(0, DeviceField.AWAIT_TIME), testDeltaError);
+		assertTrue(Double.isNaN(snapshot.getValue(SampleField.IO_SOME_PRESSURE)));
+		
+		// the snapshot is reused and its devices are replaced
+		writeDiskStatsFile("   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0");
+		monitor.snapshot(snapshot);
+		assertEquals(0, snapshot.getNumberOfDevices());
+	}
+	
+	@Test
+	public void testSnapshotReadsPressure() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0");
+		writeValidMemoryFile();
+		writePressureFile("cpu", "some avg10=0.00 avg60=0.00 avg300=0.00 total=0");
+		writePressureFile("memory", "some avg10=0.00 avg60=0.00 avg300=0.00 total=0", 
+									"full avg10=0.00 avg60=0.00 avg300=0.00 total=0");
+		writePressureFile("io", "some avg10=0.00 avg60=0.00 avg300=0.00 total=0", 
+								"full avg10=0.00 avg60=0.00 avg300=0.00 total=0");
+		monitor = createMonitorWithTestCPUFiles();
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		
+		Thread.sleep(10);
+		writePressureFile("io", "some avg10=0.00 avg60=0.00 avg300=0.00 total=1000000", 
+								"full avg10=0.00 avg60=0.00 avg300=0.00 total=0");
+		monitor.snapshot(snapshot);
+		
+		assertEquals(0, snapshot.getValue(SampleField.CPU_SOME_PRESSURE), testDeltaError);
+		assertEquals(100, snapshot.getValue(SampleField.IO_SOME_PRESSURE), testDeltaError);
+		assertEquals(0, snapshot.getValue(SampleField.IO_FULL_PRESSURE), testDeltaError);
+	}
+	
+	@Test
+	public void testSnapshotReadsFrequenciesAndThrottling() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0", 
+						"cpu0 50 0 25 400 15 5 5 0 0 0", 
+						"cpu1 50 0 25 400 15 5 5 0 0 0");
+		writeValidMemoryFile();
+		writeCPUOnlineFile("0-1");
+		writeCPUFrequencyFile(0, "2400000");
+		writeCPUFrequencyFile(1, "800000");
+		writeThrottleCountFile(0, "10");
+		monitor = createMonitorWithTestCPUFiles();
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		monitor.snapshot(snapshot);
+		
+		Thread.sleep(100);
+		writeThrottleCountFile(0, "20");
+		monitor.snapshot(snapshot);
+		
+		assertEquals(2400, snapshot.getCoreUsage(0, CoreField.FREQUENCY), testDeltaError);
+		assertEquals(800, snapshot.getCoreUsage(1, CoreField.FREQUENCY), testDeltaError);
+		assertEquals(1600, snapshot.getValue(SampleField.CPU_FREQUENCY), testDeltaError);
+		double throttleRate = snapshot.getCoreUsage(0, CoreField.THROTTLE_RATE);
+		assertTrue(throttleRate > 0 && throttleRate <= 100);
+		// the cpu 1 has no throttle counter
+		assertTrue(Double.isNaN(snapshot.getCoreUsage(1, CoreField.THROTTLE_RATE)));
+		assertEquals(throttleRate, snapshot.getValue(SampleField.CPU_THROTTLE_RATE), testDeltaError);
+		
+		// the counter did not change
+		monitor.snapshot(snapshot);
+		assertEquals(0, snapshot.getValue(SampleField.CPU_THROTTLE_RATE), testDeltaError);
+	}
+	
+	@Test
+	public void testTotalThrottleRateCountsEachCoreOnce() throws IOException, InterruptedException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  150 0 75 1200 45 15 15 0 0 0", 
+						"cpu0 50 0 25 400 15 5 5 0 0 0", 
+						"cpu1 50 0 25 400 15 5 5 0 0 0", 
+						"cpu2 50 0 25 400 15 5 5 0 0 0");
+		writeValidMemoryFile();
+		writeCPUOnlineFile("0-2");
+		// the cpus 0 and 1 are the hardware threads of a core, and the cpu 2 is in another package
+		writeTopologyFiles(0, "0", "0");
+		writeTopologyFiles(1, "0", "0");
+		writeTopologyFiles(2, "1", "0");
+		for (int cpu = 0; cpu < 3; cpu++) {
+			writeThrottleCountFile(cpu, "10");
+		}
+		monitor = createMonitorWithTestCPUFiles();
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		monitor.snapshot(snapshot);
+		
+		Thread.sleep(100);
+		for (int cpu = 0; cpu < 3; cpu++) {
+			writeThrottleCountFile(cpu, "20");
+		}
+		monitor.snapshot(snapshot);
+		
+		double throttleRate = snapshot.getCoreUsage(0, CoreField.THROTTLE_RATE);
+		assertTrue(throttleRate > 0);
+		assertEquals(throttleRate, snapshot.getCoreUsage(1, CoreField.THROTTLE_RATE), testDeltaError);
+		assertEquals(2 * throttleRate, snapshot.getValue(SampleField.CPU_THROTTLE_RATE), testDeltaError);
+	}
+	
+	@Test
+	public void testSnapshotWithoutThrottleCounters() throws IOException {
+		writeValidCPUInfoFile();
+		writeCPUStatFile("cpu  100 0 50 800 30 10 10 0 0 0", "cpu0 50 0 25 400 15 5 5 0 0 0");
+		writeValidMemoryFile();
+		writeCPUOnlineFile("0-2");
+		monitor = createMonitorWithTestCPUFiles();
+		MonitorSnapshot snapshot = new MonitorSnapshot();
+		monitor.snapshot(snapshot);
+		
+		assertTrue(Double.isNaN(snapshot.getValue(SampleField.CPU_THROTTLE_RATE)));
+		// the frequencies of the configurations are used
+		assertEquals((cpu1Frequency + cpu2Frequency + cpu3Frequency) / 3, 
+					snapshot.getValue(SampleField.CPU_FREQUENCY), testDeltaError);
+		// the cores of the usage file are not the online cpus
+		assertTrue(Double.isNaN(snapshot.getCoreUsage(0, CoreField.FREQUENCY)));
+	}
+	
+	private void writeThrottleCountFile(int cpu, String count) throws IOException {
+		File directory = new File(testCPUSysfsDirectory, "cpu" + cpu + File.separator + "thermal_throttle");
+		directory.mkdirs();
+		RandomAccessFile fileThrottleCount = new RandomAccessFile(new File(directory, "core_throttle_count"), "rw");
+		
+		fileThrottleCount.setLength(0);
+		fileThrottleCount.write((count + "\n").getBytes());
+		
+		fileThrottleCount.close();
+	}
+	
+	private void writeTopologyFiles(int cpu, String packageId, String coreId) throws IOException {
+		File directory = new File(testCPUSysfsDirectory, "cpu" + cpu + File.separator + "topology");
+		directory.mkdirs();
+		RandomAccessFile filePackageId = new RandomAccessFile(new File(directory, "physical_package_id"), "rw");
+		RandomAccessFile fileCoreId = new RandomAccessFile(new File(directory, "core_id"), "rw");
+		
+		filePackageId.setLength(0);
+		filePackageId.write((packageId + "\n").getBytes());
+		fileCoreId.setLength(0);
+		fileCoreId.write((coreId + "\n").getBytes());
+		
+		filePackageId.close();
+		fileCoreId.close();
+	}
+	
+	private void writeDiskStatsFile(String ... lines) throws IOException {
+		RandomAccessFile fileDiskStats = new RandomAccessFile(testDiskStatsFileName, "rw");
+		
+		fileDiskStats.setLength(0);
+		for (String line : lines) {
+			fileDiskStats.write((line + "\n").getBytes());
+		}
+		
+		fileDiskStats.close();
+	}
+	
+	@Test
+	public void testGetCPUInfoFromRealProcStatFilePerformanceTest() throws IOException {
+		monitor = new DefaultUserMonitor(testMemoryRealFileName, testCPUInfoRealFileName, 
+										testCPUStatRealFileName, CPUUsageFormat.PROC_STAT);
+		long timeStart = System.currentTimeMillis();
+		
+		for (int i = 0; i < performanceTestNumberOfRepetitions; i++) {
+			monitor.getCPUInfo();
+		}
+		
+		double delta = System.currentTimeMillis() - timeStart;
+		assertTrue(delta/performanceTestNumberOfRepetitions < performanceTestCPULimitTime);
+	}
+	
+	private void assertCPUUsage(CPUUsage usage, double user, double system, double idle, 
+								double ioWait, double steal) {
+		assertEquals(user, usage.getUserUsage(), testDeltaError);
+		assertEquals(system, usage.getSystemUsage(), testDeltaError);
+		assertEquals(idle, usage.getIdle(), testDeltaError);
+		assertEquals(ioWait, usage.getIOWait(), testDeltaError);
+		assertEquals(steal, usage.getSteal(), testDeltaError);
+	}
 	
 	/*
 	 * Util functions
@@ -396,6 +1071,19 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 		fileMemory.close();
 	}
 	
+	private void writeMemoryFileWithManyLines() throws IOException {
+		RandomAccessFile fileMemory = new RandomAccessFile(testMemoryFileName, "rw");
+		
+		fileMemory.write("# Some header\n".getBytes());
+		for (int i = 0; i < 1000; i++) {
+			fileMemory.write(("info" + i + "     nothing    \n").getBytes());
+		}
+		fileMemory.write(("MemFree:    " + (testTotalMemory - testUsedMemory) + " kB\n").getBytes());
+		fileMemory.write(("MemTotal:    " + testTotalMemory + " kB\n").getBytes());
+		
+		fileMemory.close();
+	}
+	
 	private void writeMemoryFileWithMissingInformation() throws IOException {
 		RandomAccessFile fileMemory = new RandomAccessFile(testMemoryFileName, "rw");
 		
@@ -667,6 +1355,49 @@ public class DefaultUserMonitorTest extends FileBasedTest {
 		fileCPUInfo.close();
 	}
 	
+	private void writeCPUOnlineFile(String onlineCPUs) throws IOException {
+		RandomAccessFile fileCPUOnline = new RandomAccessFile(testCPUOnlineFileName, "rw");
+		
+		fileCPUOnline.setLength(0);
+		fileCPUOnline.write((onlineCPUs + "\n").getBytes());
+		
+		fileCPUOnline.close();
+	}
+	
+	private void writeCPUFrequencyFile(int cpu, String frequency) throws IOException {
+		File directory = new File(testCPUSysfsDirectory, "cpu" + cpu + File.separator + "cpufreq");
+		directory.mkdirs();
+		RandomAccessFile fileCPUFrequency = new RandomAccessFile(new File(directory, "scaling_cur_freq"), "rw");
+		
+		fileCPUFrequency.setLength(0);
+		fileCPUFrequency.write((frequency + "\n").getBytes());
+		
+		fileCPUFrequency.close();
+	}
+	
+	private void writeCPUInfoFileWithOneCPU() throws IOException {
+		RandomAccessFile fileCPUInfo = new RandomAccessFile(testCPUInfoFileName, "rw");
+		
+		fileCPUInfo.setLength(0);
+		fileCPUInfo.write(("model name     :   " + testCPU1ModelName + "\n").getBytes());
+		fileCPUInfo.write(("cpu MHz     :   " + cpu1Frequency + "\n").getBytes());
+		fileCPUInfo.write(("cache size     :   " + cpu1CacheSize + " KB \n").getBytes());
+		fileCPUInfo.write(("\n").getBytes());
+		
+		fileCPUInfo.close();
+	}
+	
+	private void writeCPUStatFile(String ... lines) throws IOException {
+		RandomAccessFile fileCPUStat = new RandomAccessFile(testCPUStatFileName, "rw");
+		
+		fileCPUStat.setLength(0);
+		for (String line : lines) {
+			fileCPUStat.write((line + "\n").getBytes());
+		}
+		
+		fileCPUStat.close();
+	}
+	
 	private void writeValidCPUUsageFile() throws IOException {
 		RandomAccessFile fileCPUUsage = new RandomAccessFile(testCPUUsageFileName, "rw");
 		
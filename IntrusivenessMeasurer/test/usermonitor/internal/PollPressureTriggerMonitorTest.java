@@ -0,0 +1,84 @@
+package usermonitor.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import usermonitor.PressureListener;
+import usermonitor.PressureResource;
+import usermonitor.PressureStallType;
+import usermonitor.PressureTrigger;
+
+import commons.test.FileBasedTest;
+
+public class PollPressureTriggerMonitorTest extends FileBasedTest {
+
+	@SuppressWarnings("static-access")
+	private final String dataDirectory = super.testDataDirectory;
+	private final String testHelperFileName = dataDirectory + File.separator + "psi_trigger";
+	private final String testArgumentsFileName = dataDirectory + File.separator + "arguments";
+	private final String testPressureDirectory = dataDirectory + File.separator + "pressure";
+	private final long waitTimeout = 5;
+	
+	private PressureTrigger trigger;
+	
+	@Before
+	public void setUp() {
+		trigger = new PressureTrigger(PressureResource.MEMORY, PressureStallType.FULL, 150000, 2000000);
+	}
+	
+	@Test
+	public void testListenerIsNotifiedOfEachPressureLine() throws IOException, InterruptedException {
+		writeHelper("echo \"$@\" > " + testArgumentsFileName + "\necho started\necho pressure\n" 
+					+ "echo pressure\nsleep 10\n");
+		final CountDownLatch notifications = new CountDownLatch(2);
+		PollPressureTriggerMonitor monitor = new PollPressureTriggerMonitor(testHelperFileName, 
+				testPressureDirectory, trigger, new PressureListener() {
+			@Override
+			public void onPressure(PressureTrigger notified) {
+				assertEquals(trigger, notified);
+				notifications.countDown();
+			}
+		});
+		
+		monitor.start();
+		try {
+			assertTrue(notifications.await(waitTimeout, TimeUnit.SECONDS));
+		} finally {
+			monitor.stop();
+		}
+		assertEquals(testPressureDirectory + File.separator + "memory full 150000 2000000", 
+					FileUtils.fileRead(testArgumentsFileName).trim());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testStartWhenTriggerCouldNotBeRegistered() throws IOException {
+		writeHelper("echo error\necho \"Could not register the trigger: Invalid argument\"\nexit 1\n");
+		PollPressureTriggerMonitor monitor = new PollPressureTriggerMonitor(testHelperFileName, 
+				testPressureDirectory, trigger, new PressureListener() {
+			@Override
+			public void onPressure(PressureTrigger notified) {
+			}
+		});
+		
+		monitor.start();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testTriggerWithThresholdGreaterThanWindow() {
+		new PressureTrigger(PressureResource.CPU, PressureStallType.SOME, 1000001, 1000000);
+	}
+	
+	private void writeHelper(String body) throws IOException {
+		FileUtils.fileWrite(testHelperFileName, "#!/bin/sh\n" + body);
+		new File(testHelperFileName).setExecutable(true);
+	}
+}
@@ -0,0 +1,116 @@
+package usermonitor.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import usermonitor.ProcessInfo;
+import usermonitor.ProcessMonitor;
+
+import commons.test.FileBasedTest;
+
+public class ProcessDataCollectorTest extends FileBasedTest {
+
+	@SuppressWarnings("static-access")
+	private final String dataDirectory = super.testDataDirectory;
+	private final String testOutputBaseFilename = dataDirectory + File.separator + "benchmark";
+	private final String testTimeBetweenChecks = "0.01";
+	private final int testPid = 1234;
+	
+	private ProcessMonitor monitor;
+	
+	@Before
+	public void setUp() {
+		monitor = createMock(ProcessMonitor.class);
+		expect(monitor.getPid()).andReturn(testPid).anyTimes();
+	}
+	
+	@Test
+	public void testCollect() throws IOException, InterruptedException {
+		expect(monitor.getProcessInfo()).andReturn(new ProcessInfo(testPid, 12.34, 5, 100, 200, 3, 1, 4));
+		expect(monitor.getProcessInfo()).andReturn(new ProcessInfo(testPid, 150, 5.06, 101, 200, 4, 1, 5));
+		expect(monitor.getProcessInfo()).andThrow(new IOException());
+		replay(monitor);
+		
+		new ProcessDataCollector(monitor, testTimeBetweenChecks, testOutputBaseFilename).collect();
+		verify(monitor);
+		
+		List<String> cpuLines = readLines(".cpu");
+		assertHeaderAndEnding(cpuLines, 2);
+		assertEquals("12.3", cpuLines.get(3));
+		assertEquals("150.0", cpuLines.get(4));
+		
+		List<String> memoryLines = readLines(".mem");
+		assertHeaderAndEnding(memoryLines, 2);
+		assertEquals("5.0", memoryLines.get(3));
+		assertEquals("5.1", memoryLines.get(4));
+		
+		List<String> processLines = readLines(".proc");
+		assertHeaderAndEnding(processLines, 3);
+		assertEquals("100 200 3 1 4 1 0 0 10", processLines.get(4));
+		assertEquals("101 200 4 1 5 1 0 0 10", processLines.get(5));
+	}
+	
+	@Test
+	public void testCollectStopsWhenProcessFinishes() throws IOException, InterruptedException {
+		expect(monitor.getProcessInfo()).andThrow(new IOException());
+		replay(monitor);
+		
+		new ProcessDataCollector(monitor, testTimeBetweenChecks, testOutputBaseFilename).collect();
+		verify(monitor);
+		
+		assertHeaderAndEnding(readLines(".cpu"), 0);
+	}
+	
+	@Test
+	public void testCollectWithAdaptiveTimeBetweenChecks() throws IOException, InterruptedException {
+		expect(monitor.getProcessInfo()).andReturn(new ProcessInfo(testPid, 10, 5, 100, 200, 3, 1, 4));
+		expect(monitor.getProcessInfo()).andReturn(new ProcessInfo(testPid, 90, 5, 100, 200, 3, 1, 4));
+		expect(monitor.getProcessInfo()).andThrow(new IOException());
+		replay(monitor);
+		
+		new ProcessDataCollector(monitor, "0.01:0.5", testOutputBaseFilename).collect();
+		verify(monitor);
+		
+		List<String> processLines = readLines(".proc");
+		assertEquals("time between checks=0.01:0.5", processLines.get(2));
+		assertTrue(processLines.get(3).endsWith(" period"));
+		// the sampling starts fast
+		assertEquals("100 200 3 1 4 1 0 0 10", processLines.get(4));
+		assertEquals("100 200 3 1 4 1 0 0 10", processLines.get(5));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAdaptiveTimeBetweenChecks() {
+		new ProcessDataCollector(monitor, "2:0.5", testOutputBaseFilename);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidTimeBetweenChecks() {
+		new ProcessDataCollector(monitor, "a", testOutputBaseFilename);
+	}
+	
+	private void assertHeaderAndEnding(List<String> lines, int numberOfDataLines) {
+		assertEquals(4 + numberOfDataLines, lines.size());
+		assertEquals("process=" + testPid, lines.get(0));
+		assertTrue(lines.get(1).matches("start time=\\d\\d-\\d\\d-\\d{4}-\\d\\d-\\d\\d-\\d\\d"));
+		assertEquals("time between checks=" + testTimeBetweenChecks, lines.get(2));
+		assertTrue(lines.get(lines.size() - 1).startsWith("stop time="));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<String> readLines(String extension) throws IOException {
+		return FileUtils.loadFile(new File(testOutputBaseFilename + extension));
+	}
+}
@@ -0,0 +1,276 @@
+package usermonitor.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import usermonitor.ProcessInfo;
+
+import commons.test.FileBasedTest;
+
+public class ProcessTreeMonitorTest extends FileBasedTest {
+
+	@SuppressWarnings("static-access")
+	private final String dataDirectory = super.testDataDirectory;
+	private final String testProcDirectory = dataDirectory + File.separator + "proc";
+	private final String testMemoryFileName = dataDirectory + File.separator + "memory";
+	private final String testProcRealDirectory = "/proc";
+	private final String testMemoryRealFileName = "/proc/meminfo";
+	
+	private final int rootPid = 100;
+	private final int childPid = 200;
+	private final int grandchildPid = 300;
+	private final int otherPid = 400;
+	private final int discoveryInterval = 2;
+	
+	private final long testTotalMemory = 1000;
+	private final long testResidentMemory = 50;
+	private final long sampleInterval = 100;
+	
+	private long lastSampleStart;
+	private long lastSampleEnd;
+	private long minimumElapsedTime;
+	private long maximumElapsedTime;
+	
+	@Before
+	public void setUp() throws IOException {
+		writeFile(testMemoryFileName, "MemTotal: " + testTotalMemory + " kB\nMemFree: 100 kB\n");
+	}
+	
+	@Test
+	public void testGetProcessInfoSumsDescendantsFoundFromParentPids() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		writeProcess(childPid, rootPid, 20);
+		writeProcess(grandchildPid, childPid, 30);
+		writeProcess(otherPid, 1, 40);
+		
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		ProcessInfo info = monitor.getProcessInfo();
+		
+		assertEquals(rootPid, info.getPid());
+		assertEquals(3, info.getNumberOfProcesses());
+		assertEquals(3 * testResidentMemory, info.getResidentMemory());
+		assertEquals(15, info.getMemoryUsage(), 0.005);
+		assertEquals(3, info.getNumberOfThreads());
+		assertEquals(0, info.getCPUUsage(), 0.005);
+	}
+	
+	@Test
+	public void testGetProcessInfoSumsDescendantsFoundFromChildrenFiles() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		writeProcess(childPid, rootPid, 20);
+		writeProcess(grandchildPid, childPid, 30);
+		// the children files take precedence over the parent pids
+		writeProcess(otherPid, rootPid, 40);
+		writeChildren(rootPid, rootPid, "");
+		writeChildren(rootPid, rootPid + 1, childPid + "\n");
+		writeChildren(childPid, childPid, grandchildPid + " ");
+		
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		
+		assertEquals(3, monitor.getProcessInfo().getNumberOfProcesses());
+	}
+	
+	@Test
+	public void testGetProcessInfoFindsNewDescendantsOnlyWhenDiscovering() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		writeProcess(childPid, rootPid, 20);
+		
+		assertEquals(1, monitor.getProcessInfo().getNumberOfProcesses());
+		
+		ProcessInfo info = monitor.getProcessInfo();
+		assertEquals(2, info.getNumberOfProcesses());
+		// all the CPU time of a new descendant is counted
+		assertTrue(info.getCPUUsage() > 0);
+	}
+	
+	@Test
+	public void testGetProcessInfoForgetsFinishedDescendants() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		writeProcess(childPid, rootPid, 20);
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		
+		writeStat(childPid, rootPid, 20, 'Z');
+		ProcessInfo info = monitor.getProcessInfo();
+		
+		assertEquals(1, info.getNumberOfProcesses());
+		assertEquals(testResidentMemory, info.getResidentMemory());
+		assertTrue(monitor.isRunning());
+	}
+	
+	@Test
+	public void testCPUTimeOfFinishedDescendantIsCountedOnce() throws Exception {
+		writeProcess(rootPid, 1, 10);
+		writeProcess(childPid, rootPid, 20);
+		ProcessTreeMonitor monitor = createMonitor();
+		
+		writeStat(childPid, rootPid, 50, 0, 0, 'S');
+		assertCPUTime(30, sample(monitor));
+		
+		// the child used 20 more ticks after the last sample and was waited for by the root
+		finish(childPid);
+		writeStat(rootPid, 1, 10, 70, 0, 'S');
+		ProcessInfo info = sample(monitor);
+		
+		assertCPUTime(20, info);
+		assertEquals(1, info.getNumberOfProcesses());
+	}
+	
+	@Test
+	public void testCPUTimeOfUndiscoveredDescendantIsCounted() throws Exception {
+		writeProcess(rootPid, 1, 10);
+		ProcessTreeMonitor monitor = createMonitor();
+		
+		// a child which finished before it was discovered
+		writeStat(rootPid, 1, 10, 15, 0, 'S');
+		
+		assertCPUTime(15, sample(monitor));
+	}
+	
+	@Test
+	public void testCumulativeAmountsDoNotDecreaseWhenDescendantsFinish() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		writeProcess(childPid, rootPid, 20);
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		writeStat(childPid, rootPid, 20, 0, 7, 'S');
+		assertEquals(7, monitor.getProcessInfo().getMinorFaults());
+		
+		finish(childPid);
+		writeStat(rootPid, 1, 10, 20, 3, 'S');
+		
+		assertEquals(10, monitor.getProcessInfo().getMinorFaults());
+	}
+	
+	@Test
+	public void testTreeIsNotRunningWhenRootFinishes() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		writeProcess(childPid, rootPid, 20);
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		
+		writeStat(rootPid, 1, 10, 'Z');
+		
+		assertFalse(monitor.isRunning());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testGetProcessInfoFailsWhenRootFinishes() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		
+		writeStat(rootPid, 1, 10, 'Z');
+		
+		monitor.getProcessInfo();
+	}
+	
+	@Test
+	public void testMemoryInfoFileIsNotKeptOpen() throws IOException {
+		writeProcess(rootPid, 1, 10);
+		createMonitor();
+		
+		String memoryFile = new File(testMemoryFileName).getCanonicalPath();
+		for (File descriptor : new File("/proc/self/fd").listFiles()) {
+			assertFalse(memoryFile.equals(descriptor.getCanonicalPath()));
+		}
+	}
+	
+	@Test
+	public void testGetProcessInfoOfRealProcessTree() throws IOException, InterruptedException {
+		Process child = Runtime.getRuntime().exec(new String[] {"sleep", "10"});
+		try {
+			int pid = Integer.parseInt(new File("/proc/self").getCanonicalFile().getName());
+			ProcessTreeMonitor monitor = new ProcessTreeMonitor(pid, testProcRealDirectory, 
+																testMemoryRealFileName, 1);
+			
+			assertTrue(monitor.getProcessInfo().getNumberOfProcesses() >= 2);
+		} finally {
+			child.destroy();
+			child.waitFor();
+		}
+	}
+	
+	private void writeProcess(int pid, int parentPid, long cpuTime) throws IOException {
+		new File(getProcessDirectory(pid)).mkdirs();
+		writeStat(pid, parentPid, cpuTime, 'S');
+		writeFile(getProcessDirectory(pid) + File.separator + "status", "VmRSS:\t" + testResidentMemory + " kB\n");
+	}
+	
+	private void writeStat(int pid, int parentPid, long cpuTime, char state) throws IOException {
+		writeStat(pid, parentPid, cpuTime, 0, 0, state);
+	}
+	
+	private void writeStat(int pid, int parentPid, long cpuTime, long childrenCPUTime, long minorFaults, 
+							char state) throws IOException {
+		writeFile(getProcessDirectory(pid) + File.separator + "stat", pid + " (java) " + state + " " + parentPid 
+					+ " 1 1 0 -1 0 " + minorFaults + " 0 0 0 " + cpuTime + " 0 " + childrenCPUTime 
+					+ " 0 20 0 1 0 100 4096 10\n");
+	}
+	
+	private ProcessTreeMonitor createMonitor() throws IOException {
+		lastSampleStart = System.nanoTime();
+		ProcessTreeMonitor monitor = new ProcessTreeMonitor(rootPid, testProcDirectory, testMemoryFileName, 
+															discoveryInterval);
+		lastSampleEnd = System.nanoTime();
+		return monitor;
+	}
+	
+	/*
+	 * The usage is the CPU time over the time between two samples, which is only 
+	 * known to be between the ends and the starts of the calls.
+	 */
+	private ProcessInfo sample(ProcessTreeMonitor monitor) throws Exception {
+		Thread.sleep(sampleInterval);
+		long start = System.nanoTime();
+		ProcessInfo info = monitor.getProcessInfo();
+		long end = System.nanoTime();
+		minimumElapsedTime = start - lastSampleEnd;
+		maximumElapsedTime = end - lastSampleStart;
+		lastSampleStart = start;
+		lastSampleEnd = end;
+		return info;
+	}
+	
+	private void assertCPUTime(long ticks, ProcessInfo info) {
+		// the usage is a percentage of a second of ticks
+		double minimumTicks = info.getCPUUsage() * minimumElapsedTime / 1000000000.0;
+		double maximumTicks = info.getCPUUsage() * maximumElapsedTime / 1000000000.0;
+		assertTrue(minimumTicks + " > " + ticks, minimumTicks <= ticks + 0.001);
+		assertTrue(maximumTicks + " < " + ticks, maximumTicks >= ticks - 0.001);
+	}
+	
+	/*
+	 * The files are kept open by the monitor, so an empty stat file stands for 
+	 * the files which can no longer be read.
+	 */
+	private void finish(int pid) throws IOException {
+		writeFile(getProcessDirectory(pid) + File.separator + "stat", "");
+	}
+	
+	private void writeChildren(int pid, int tid, String children) throws IOException {
+		String taskDirectory = getProcessDirectory(pid) + File.separator + "task" + File.separator + tid;
+		new File(taskDirectory).mkdirs();
+		writeFile(taskDirectory + File.separator + "children", children);
+	}
+	
+	private String getProcessDirectory(int pid) {
+		return testProcDirectory + File.separator + pid;
+	}
+	
+	private void writeFile(String filename, String content) throws IOException {
+		FileUtils.fileWrite(filename, content);
+	}
+}